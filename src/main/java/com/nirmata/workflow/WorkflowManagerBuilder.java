@@ -19,9 +19,17 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.nirmata.workflow.admin.AutoCleaner;
+import com.nirmata.workflow.admin.StandardAutoCleaner;
+import com.nirmata.workflow.admin.TaskLayout;
+import com.nirmata.workflow.blobs.BlobStore;
 import com.nirmata.workflow.details.AutoCleanerHolder;
+import com.nirmata.workflow.details.BlobValues;
+import com.nirmata.workflow.details.RunDataExpiry;
+import com.nirmata.workflow.details.RunStore;
+import com.nirmata.workflow.details.SchedulerConfig;
 import com.nirmata.workflow.details.TaskExecutorSpec;
-import com.nirmata.workflow.details.WorkflowManagerImpl;
+import com.nirmata.workflow.details.TaskPaths;
+import com.nirmata.workflow.details.WorkflowManagerConfig;
 import com.nirmata.workflow.executor.TaskExecutor;
 import com.nirmata.workflow.models.TaskType;
 import com.nirmata.workflow.queue.QueueFactory;
@@ -46,6 +54,13 @@ public class WorkflowManagerBuilder
     private AutoCleanerHolder autoCleanerHolder = newNullHolder();
     private Serializer serializer = new StandardSerializer();
     private Executor taskRunnerService = MoreExecutors.newDirectExecutorService();
+    private int schedulerParallelism = 1;
+    private int schedulerPartitions = 1;
+    private boolean schedulerStandby = false;
+    private TaskPaths taskPaths = TaskPaths.DEFAULT;
+    private Duration runDataTtl = null;
+    private RunStore runStore = RunStore.DEFAULT;
+    private BlobValues blobValues = BlobValues.NONE;
 
     private final List<TaskExecutorSpec> specs = Lists.newArrayList();
 
@@ -141,7 +156,20 @@ public class WorkflowManagerBuilder
      */
     public WorkflowManager build()
     {
-        return new WorkflowManagerImpl(curator, queueFactory, instanceName, specs, autoCleanerHolder, serializer, taskRunnerService);
+        return new WorkflowManagerConfig()
+            .withCurator(curator)
+            .withQueueFactory(queueFactory)
+            .withInstanceName(instanceName)
+            .withSpecs(specs)
+            .withAutoCleanerHolder(autoCleanerHolder)
+            .withSerializer(serializer)
+            .withTaskRunnerService(taskRunnerService)
+            .withSchedulerConfig(new SchedulerConfig(schedulerParallelism, schedulerPartitions, schedulerStandby))
+            .withTaskPaths(taskPaths)
+            .withRunDataExpiry(new RunDataExpiry(runDataTtl))
+            .withRunStore(runStore)
+            .withBlobValues(blobValues)
+            .build();
     }
 
     /**
@@ -168,7 +196,25 @@ public class WorkflowManagerBuilder
      */
     public WorkflowManagerBuilder withAutoCleaner(AutoCleaner autoCleaner, Duration runPeriod)
     {
-        autoCleanerHolder = (autoCleaner == null) ? newNullHolder() : new AutoCleanerHolder(autoCleaner, runPeriod);
+        return withAutoCleaner(autoCleaner, runPeriod, 0);
+    }
+
+    /**
+     * <em>optional</em><br>
+     * Sets an auto-cleaner that will run every given period. This is used to clean old runs.
+     * The auto cleaner runs in its own thread and cleans at most the given number of runs per second.
+     * A cleaning pass is limited to the run period - the next pass continues where the previous one stopped.
+     * IMPORTANT: the auto cleaner will only run on the instance that is the current scheduler.
+     *
+     * @param autoCleaner the auto cleaner to use
+     * @param runPeriod how often to run
+     * @param maxCleansPerSecond maximum number of runs to clean per second or 0 for no limit
+     * @return this (for chaining)
+     */
+    public WorkflowManagerBuilder withAutoCleaner(AutoCleaner autoCleaner, Duration runPeriod, int maxCleansPerSecond)
+    {
+        Preconditions.checkState(runDataTtl == null, "An auto cleaner cannot be combined with withRunDataTtl()");
+        autoCleanerHolder = (autoCleaner == null) ? newNullHolder() : new AutoCleanerHolder(autoCleaner, runPeriod, maxCleansPerSecond);
         return this;
     }
 
@@ -200,6 +246,197 @@ public class WorkflowManagerBuilder
         return this;
     }
 
+    /**
+     * <em>optional</em><br>
+     * <p>
+     *     Sets the number of threads the scheduler uses to evaluate runs. Each run is
+     *     assigned to a thread by the hash of its run ID so that a given run is always
+     *     evaluated by the same thread. Only applies to the instance that is currently
+     *     the scheduler.
+     * </p>
+     *
+     * <p>
+     *     Default is: <code>1</code>
+     * </p>
+     *
+     * @param parallelism number of scheduler threads
+     * @return this (for chaining)
+     */
+    public WorkflowManagerBuilder withSchedulerParallelism(int parallelism)
+    {
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be greater than 0");
+        this.schedulerParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * <em>optional</em><br>
+     * <p>
+     *     Splits scheduling into the given number of partitions. Each run is assigned
+     *     to a partition by the hash of its run ID. Every partition has its own leader and
+     *     an instance can be the scheduler for several partitions so that scheduling
+     *     work is spread across the cluster. The partition leader only caches and
+     *     evaluates the runs of its partition.
+     * </p>
+     *
+     * <p>
+     *     IMPORTANT: all instances of the workflow must use the same number of partitions.
+     * </p>
+     *
+     * <p>
+     *     Default is: <code>1</code>
+     * </p>
+     *
+     * @param partitions number of scheduler partitions
+     * @return this (for chaining)
+     */
+    public WorkflowManagerBuilder withSchedulerPartitions(int partitions)
+    {
+        Preconditions.checkArgument(partitions > 0, "partitions must be greater than 0");
+        this.schedulerPartitions = partitions;
+        return this;
+    }
+
+    /**
+     * <em>optional</em><br>
+     * <p>
+     *     If true, this instance keeps the scheduler's caches and run states current even
+     *     while it is not the scheduler so that it can begin scheduling immediately if it
+     *     becomes the scheduler. The caches are also kept when leadership is lost. This
+     *     costs the memory and ZooKeeper watches of the caches on every instance.
+     * </p>
+     *
+     * <p>
+     *     Default is: <code>false</code>
+     * </p>
+     *
+     * @param standby true to keep scheduler caches warm
+     * @return this (for chaining)
+     */
+    public WorkflowManagerBuilder withSchedulerStandby(boolean standby)
+    {
+        this.schedulerStandby = standby;
+        return this;
+    }
+
+    /**
+     * <em>optional</em><br>
+     * <p>
+     *     Sets how started and completed task nodes are organized in ZooKeeper. {@link TaskLayout#HIERARCHICAL}
+     *     groups the nodes of each run under a parent node so that no single node has a child for
+     *     every task of every run.
+     * </p>
+     *
+     * <p>
+     *     To change the layout of an existing workflow: restart every instance with the current layout and dual
+     *     read enabled, then with the new layout and dual read enabled, call {@link com.nirmata.workflow.admin.WorkflowAdmin#migrateTaskLayout()}
+     *     and finally restart every instance with dual read disabled.
+     * </p>
+     *
+     * <p>
+     *     Default is: <code>TaskLayout.FLAT</code> without dual read
+     * </p>
+     *
+     * @param layout the layout used when writing task nodes
+     * @param dualRead if true, task nodes are also read using the other layout
+     * @return this (for chaining)
+     */
+    public WorkflowManagerBuilder withTaskLayout(TaskLayout layout, boolean dualRead)
+    {
+        this.taskPaths = new TaskPaths(layout, dualRead);
+        return this;
+    }
+
+    /**
+     * <em>optional</em><br>
+     * <p>
+     *     Have ZooKeeper expire the data of old runs instead of cleaning it. Started and completed task nodes
+     *     are written as TTL nodes that ZooKeeper deletes once they haven't been modified for the given TTL -
+     *     so the TTL must be longer than any run takes to complete. The run and summary nodes of a run are
+     *     persistent until it completes and are then recreated as TTL nodes. This requires
+     *     <code>zookeeper.extendedTypesEnabled=true</code> on every server of the ensemble. If the ensemble
+     *     doesn't support TTL nodes, a {@link StandardAutoCleaner} with the TTL as its minimum age cleans
+     *     old runs every <code>fallbackRunPeriod</code> instead.
+     * </p>
+     *
+     * <p>
+     *     This can't be combined with {@link #withAutoCleaner(AutoCleaner, Duration)}.
+     * </p>
+     *
+     * @param ttl how long run data is kept after it was last modified
+     * @param fallbackRunPeriod how often the auto cleaner runs if the ensemble doesn't support TTL nodes
+     * @return this (for chaining)
+     */
+    public WorkflowManagerBuilder withRunDataTtl(Duration ttl, Duration fallbackRunPeriod)
+    {
+        Preconditions.checkState(!autoCleanerHolder.hasAutoCleaner(), "withRunDataTtl() cannot be combined with an auto cleaner");
+        this.runDataTtl = Preconditions.checkNotNull(ttl, "ttl cannot be null");
+        autoCleanerHolder = new AutoCleanerHolder(new StandardAutoCleaner(ttl), fallbackRunPeriod);
+        return this;
+    }
+
+    /**
+     * <p>
+     *     Runs are stored in a single ZooKeeper node which limits the size of a DAG to ZooKeeper's
+     *     maximum node size ("jute.maxbuffer" - 1MB by default). Runs whose serialized size is larger
+     *     than the chunk size are instead split into chunk nodes of at most the chunk size. The
+     *     default is 512KB. Chunks are slices of the serialized run, not groups of tasks, so reading
+     *     any task of a split run reads all of its chunks.
+     * </p>
+     *
+     * <p>
+     *     Instances of older versions cannot read split runs. As those runs could not be
+     *     stored at all before, this only matters for runs larger than the chunk size.
+     * </p>
+     *
+     * @param chunkSize maximum size in bytes of a run node or chunk
+     * @return this (for chaining)
+     */
+    public WorkflowManagerBuilder withRunChunkSize(int chunkSize)
+    {
+        runStore = new RunStore(chunkSize);
+        return this;
+    }
+
+    /**
+     * <em>optional</em><br>
+     * Task meta data and result data values longer than {@link BlobValues#DEFAULT_THRESHOLD} characters
+     * are stored in the given store and ZooKeeper only holds a reference. Stored values are read when
+     * {@link WorkflowManager#getTaskExecutionResult} results or the task passed to a
+     * task executor are accessed.
+     *
+     * @param blobStore the store
+     * @return this (for chaining)
+     */
+    public WorkflowManagerBuilder withBlobStore(BlobStore blobStore)
+    {
+        return withBlobStore(blobStore, BlobValues.DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * <em>optional</em><br>
+     * <p>
+     *     Task meta data and result data values longer than the threshold are stored in the given
+     *     store and ZooKeeper only holds a reference. Stored values are read when
+     *     {@link WorkflowManager#getTaskExecutionResult} results or the task passed to a
+     *     task executor are accessed. A run's values are deleted when the run is cleaned.
+     * </p>
+     *
+     * <p>
+     *     All instances in the cluster must use the same store. Values are not deleted when ZooKeeper
+     *     expires run data (see {@link #withRunDataTtl(Duration, Duration)}) - the store must then expire them itself.
+     * </p>
+     *
+     * @param blobStore the store
+     * @param threshold values longer than this (in characters) are stored
+     * @return this (for chaining)
+     */
+    public WorkflowManagerBuilder withBlobStore(BlobStore blobStore, int threshold)
+    {
+        blobValues = new BlobValues(Preconditions.checkNotNull(blobStore, "blobStore cannot be null"), threshold);
+        return this;
+    }
+
     private WorkflowManagerBuilder()
     {
         try
@@ -15,6 +15,9 @@
  */
 package com.nirmata.workflow.admin;
 
+import java.time.Duration;
+import java.util.Optional;
+
 @FunctionalInterface
 public interface AutoCleaner
 {
@@ -25,4 +28,17 @@ public interface AutoCleaner
      * @return true if it can be cleaned
      */
     boolean canBeCleaned(RunInfo runInfo);
+
+    /**
+     * If this cleaner cleans exactly the completed runs that completed at least some
+     * minimum age ago, return that age. The auto cleaner then only visits runs in the
+     * completed run index that are old enough instead of calling {@link #canBeCleaned(RunInfo)}
+     * for every run.
+     *
+     * @return the minimum age or empty if each run must be passed to {@link #canBeCleaned(RunInfo)}
+     */
+    default Optional<Duration> getMinCompletionAge()
+    {
+        return Optional.empty();
+    }
 }
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.admin;
+
+/**
+ * The result of cleaning a single run
+ */
+public enum CleanResult
+{
+    /**
+     * All of the run's data was deleted
+     */
+    CLEANED,
+
+    /**
+     * The run does not exist - it may already have been cleaned
+     */
+    NOT_FOUND,
+
+    /**
+     * Some of the run's data could not be deleted. The run node is kept so
+     * that the run can be cleaned again.
+     */
+    FAILED
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.admin;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Streams;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * One page of the results of a paginated admin query
+ */
+public class Page<T>
+{
+    private final List<T> items;
+    private final Optional<String> nextCursor;
+
+    /**
+     * Number of items that streams read at a time
+     */
+    public static final int DEFAULT_STREAM_PAGE_SIZE = 100;
+
+    /**
+     * @param items the page's items
+     * @param nextCursor cursor for the next page or null if this is the last page
+     */
+    public Page(List<T> items, String nextCursor)
+    {
+        this.items = ImmutableList.copyOf(Preconditions.checkNotNull(items, "items cannot be null"));
+        this.nextCursor = Optional.ofNullable(nextCursor);
+    }
+
+    public List<T> getItems()
+    {
+        return items;
+    }
+
+    /**
+     * Return the value to pass as the cursor to get the next page
+     *
+     * @return cursor or empty if this is the last page
+     */
+    public Optional<String> getNextCursor()
+    {
+        return nextCursor;
+    }
+
+    /**
+     * Return the page of the given items that follows the cursor. Items are ordered by
+     * their IDs and the cursor is the ID of the last item of the previous page.
+     *
+     * @param items all items in any order
+     * @param idOf returns an item's ID
+     * @param cursor the next cursor of the previous page or null for the first page
+     * @param pageSize maximum number of items to return
+     * @return page of items
+     */
+    static <T> Page<T> of(Collection<T> items, Function<T, String> idOf, String cursor, int pageSize)
+    {
+        Preconditions.checkArgument(pageSize > 0, "pageSize must be greater than 0");
+        List<T> sortedItems = items.stream()
+            .filter(item -> (cursor == null) || (idOf.apply(item).compareTo(cursor) > 0))
+            .sorted(Comparator.comparing(idOf))
+            .collect(Collectors.toList());
+        if ( sortedItems.size() > pageSize )
+        {
+            List<T> pageItems = sortedItems.subList(0, pageSize);
+            return new Page<>(pageItems, idOf.apply(pageItems.get(pageSize - 1)));
+        }
+        return new Page<>(sortedItems, null);
+    }
+
+    /**
+     * Return a lazy stream that reads each page only when the previous page has been consumed
+     *
+     * @param pageReader reads the page for the given cursor (null for the first page)
+     * @param firstCursor cursor of the first page to read or null to start at the beginning
+     * @return stream of the items of all pages
+     */
+    static <T> Stream<T> stream(Function<String, Page<T>> pageReader, String firstCursor)
+    {
+        Iterator<T> iterator = new AbstractIterator<T>()
+        {
+            private Iterator<T> pageIterator = Collections.emptyIterator();
+            private Optional<String> cursor = Optional.ofNullable(firstCursor);
+            private boolean isFirstPage = true;
+
+            @Override
+            protected T computeNext()
+            {
+                while ( !pageIterator.hasNext() )
+                {
+                    if ( !isFirstPage && !cursor.isPresent() )
+                    {
+                        return endOfData();
+                    }
+                    Page<T> page = pageReader.apply(cursor.orElse(null));
+                    isFirstPage = false;
+                    pageIterator = page.getItems().iterator();
+                    cursor = page.getNextCursor();
+                }
+                return pageIterator.next();
+            }
+        };
+        return Streams.stream(iterator);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Page{" +
+            "items=" + items +
+            ", nextCursor=" + nextCursor +
+            '}';
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.admin;
+
+import com.google.common.base.Preconditions;
+import java.time.LocalDateTime;
+
+/**
+ * Filter for run queries. Filters are immutable - each method returns a new filter.
+ * Time ranges are inclusive and a null bound is open.
+ */
+public class RunFilter
+{
+    private final Completion completion;
+    private final LocalDateTime startedFromUtc;
+    private final LocalDateTime startedToUtc;
+    private final LocalDateTime completedFromUtc;
+    private final LocalDateTime completedToUtc;
+
+    public enum Completion
+    {
+        ANY,
+        COMPLETE,
+        INCOMPLETE
+    }
+
+    /**
+     * A filter that matches all runs
+     */
+    public static final RunFilter ALL = new RunFilter(Completion.ANY, null, null, null, null);
+
+    private RunFilter(Completion completion, LocalDateTime startedFromUtc, LocalDateTime startedToUtc, LocalDateTime completedFromUtc, LocalDateTime completedToUtc)
+    {
+        this.completion = Preconditions.checkNotNull(completion, "completion cannot be null");
+        this.startedFromUtc = startedFromUtc;
+        this.startedToUtc = startedToUtc;
+        this.completedFromUtc = completedFromUtc;
+        this.completedToUtc = completedToUtc;
+    }
+
+    /**
+     * @return a copy of this filter that only matches completed runs
+     */
+    public RunFilter complete()
+    {
+        return new RunFilter(Completion.COMPLETE, startedFromUtc, startedToUtc, completedFromUtc, completedToUtc);
+    }
+
+    /**
+     * @return a copy of this filter that only matches runs that have not completed
+     */
+    public RunFilter incomplete()
+    {
+        Preconditions.checkState((completedFromUtc == null) && (completedToUtc == null), "A completion time range requires completed runs");
+        return new RunFilter(Completion.INCOMPLETE, startedFromUtc, startedToUtc, null, null);
+    }
+
+    /**
+     * @param fromUtc earliest start time or null
+     * @param toUtc latest start time or null
+     * @return a copy of this filter that only matches runs started in the given range
+     */
+    public RunFilter startedBetween(LocalDateTime fromUtc, LocalDateTime toUtc)
+    {
+        return new RunFilter(completion, fromUtc, toUtc, completedFromUtc, completedToUtc);
+    }
+
+    /**
+     * @param fromUtc earliest completion time or null
+     * @param toUtc latest completion time or null
+     * @return a copy of this filter that only matches runs completed in the given range
+     */
+    public RunFilter completedBetween(LocalDateTime fromUtc, LocalDateTime toUtc)
+    {
+        Preconditions.checkState(completion != Completion.INCOMPLETE, "A completion time range requires completed runs");
+        return new RunFilter(Completion.COMPLETE, startedFromUtc, startedToUtc, fromUtc, toUtc);
+    }
+
+    public Completion getCompletion()
+    {
+        return completion;
+    }
+
+    public boolean matches(RunInfo runInfo)
+    {
+        if ( (completion == Completion.COMPLETE) && !runInfo.isComplete() )
+        {
+            return false;
+        }
+        if ( (completion == Completion.INCOMPLETE) && runInfo.isComplete() )
+        {
+            return false;
+        }
+        if ( !isInRange(runInfo.getStartTimeUtc(), startedFromUtc, startedToUtc) )
+        {
+            return false;
+        }
+        //noinspection RedundantIfStatement
+        if ( runInfo.isComplete() && !isInRange(runInfo.getCompletionTimeUtc(), completedFromUtc, completedToUtc) )
+        {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isInRange(LocalDateTime time, LocalDateTime fromUtc, LocalDateTime toUtc)
+    {
+        return ((fromUtc == null) || !time.isBefore(fromUtc)) && ((toUtc == null) || !time.isAfter(toUtc));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RunFilter{" +
+            "completion=" + completion +
+            ", startedFromUtc=" + startedFromUtc +
+            ", startedToUtc=" + startedToUtc +
+            ", completedFromUtc=" + completedFromUtc +
+            ", completedToUtc=" + completedToUtc +
+            '}';
+    }
+}
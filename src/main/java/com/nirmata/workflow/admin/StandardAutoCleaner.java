@@ -18,6 +18,7 @@ package com.nirmata.workflow.admin;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Optional;
 
 /**
  * Default auto cleaner. Cleans if the run is completed and was completed past the given minimum age
@@ -45,4 +46,10 @@ public class StandardAutoCleaner implements AutoCleaner
         }
         return false;
     }
+
+    @Override
+    public Optional<Duration> getMinCompletionAge()
+    {
+        return Optional.of(minAge);
+    }
 }
@@ -16,7 +16,7 @@
 package com.nirmata.workflow.admin;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
+import com.nirmata.workflow.blobs.BlobMap;
 import com.nirmata.workflow.models.Task;
 import com.nirmata.workflow.models.TaskId;
 import com.nirmata.workflow.models.TaskType;
@@ -38,7 +38,7 @@ public class TaskDetails
         this.taskType = Optional.ofNullable(taskType);
         metaData = Preconditions.checkNotNull(metaData, "metaData cannot be null");
 
-        this.metaData = ImmutableMap.copyOf(metaData);
+        this.metaData = BlobMap.copyOf(metaData);
     }
 
     public TaskId getTaskId()
@@ -0,0 +1,34 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.admin;
+
+/**
+ * How started and completed task nodes are organized in ZooKeeper
+ */
+public enum TaskLayout
+{
+    /**
+     * The original layout. Every task node is a direct child of the started/completed parent:
+     * <code>/tasks-completed/runId|taskId</code>
+     */
+    FLAT,
+
+    /**
+     * Task nodes are grouped under a parent node per run: <code>/tasks-completed/runId/taskId</code>.
+     * This keeps the number of children of any one node small.
+     */
+    HIERARCHICAL
+}
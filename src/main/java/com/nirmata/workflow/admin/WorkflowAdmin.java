@@ -15,10 +15,16 @@
  */
 package com.nirmata.workflow.admin;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 import com.nirmata.workflow.models.RunId;
 import com.nirmata.workflow.models.TaskId;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Admin operations
@@ -33,6 +39,28 @@ public interface WorkflowAdmin
      */
     List<RunId> getRunIds();
 
+    /**
+     * Return one page of the run IDs in the workflow manager in RunId order
+     *
+     * @param cursor the next cursor of the previous page or null for the first page
+     * @param pageSize maximum number of run IDs to return
+     * @return page of run IDs
+     */
+    default Page<RunId> getRunIds(String cursor, int pageSize)
+    {
+        return Page.of(getRunIds(), RunId::getId, cursor, pageSize);
+    }
+
+    /**
+     * Return a lazy stream of all run IDs in RunId order. Run IDs are read a page at a time.
+     *
+     * @return run IDs
+     */
+    default Stream<RunId> streamRunIds()
+    {
+        return Page.stream(cursor -> getRunIds(cursor, Page.DEFAULT_STREAM_PAGE_SIZE), null);
+    }
+
     /**
      * Return info about all runs completed or currently executing
      * in the workflow manager
@@ -49,6 +77,66 @@ public interface WorkflowAdmin
      */
     RunInfo getRunInfo(RunId runId);
 
+    /**
+     * Return a lazy stream of the IDs of runs that completed at or before the given time.
+     * The workflow manager uses its completed run index so that only runs that are old
+     * enough are read - they are returned roughly oldest first.
+     *
+     * @param completedBeforeUtc latest completion time
+     * @return run IDs
+     */
+    default Stream<RunId> streamCompletedRunIds(LocalDateTime completedBeforeUtc)
+    {
+        return streamRunInfo(RunFilter.ALL.completedBetween(null, completedBeforeUtc)).map(RunInfo::getRunId);
+    }
+
+    /**
+     * Return one page of info about the runs that match the given filter in RunId order.
+     * Only runs in the page are read and runs that don't match are skipped. A page
+     * can have fewer than <code>pageSize</code> runs even if it is not the last page.
+     *
+     * @param filter the filter
+     * @param cursor the next cursor of the previous page or null for the first page
+     * @param pageSize maximum number of runs to read for the page
+     * @return page of run infos
+     */
+    default Page<RunInfo> getRunInfo(RunFilter filter, String cursor, int pageSize)
+    {
+        Preconditions.checkNotNull(filter, "filter cannot be null");
+        Page<RunId> runIds = getRunIds(cursor, pageSize);
+        List<RunInfo> runInfos = runIds.getItems().stream()
+            .map(this::getRunInfo)
+            .filter(filter::matches)
+            .collect(Collectors.toList());
+        return new Page<>(runInfos, runIds.getNextCursor().orElse(null));
+    }
+
+    /**
+     * Return a lazy stream of info about the runs that match the given filter in RunId order.
+     * Runs are read a page at a time.
+     *
+     * @param filter the filter
+     * @return run infos
+     */
+    default Stream<RunInfo> streamRunInfo(RunFilter filter)
+    {
+        return streamRunInfo(filter, null);
+    }
+
+    /**
+     * Return a lazy stream of info about the runs that match the given filter in RunId order,
+     * starting after the given cursor - e.g. the ID of the last run a previous stream returned.
+     * Runs are read a page at a time.
+     *
+     * @param filter the filter
+     * @param cursor runs with IDs up to and including this are skipped - null to start at the first run
+     * @return run infos
+     */
+    default Stream<RunInfo> streamRunInfo(RunFilter filter, String cursor)
+    {
+        return Page.stream(pageCursor -> getRunInfo(filter, pageCursor, Page.DEFAULT_STREAM_PAGE_SIZE), cursor);
+    }
+
     /**
      * Return info about all the tasks completed, started or waiting for
      * the given run
@@ -58,6 +146,31 @@ public interface WorkflowAdmin
      */
     List<TaskInfo> getTaskInfo(RunId runId);
 
+    /**
+     * Return one page of info about the tasks of the given run in TaskId order
+     *
+     * @param runId run
+     * @param cursor the next cursor of the previous page or null for the first page
+     * @param pageSize maximum number of tasks to return
+     * @return page of task infos
+     */
+    default Page<TaskInfo> getTaskInfo(RunId runId, String cursor, int pageSize)
+    {
+        return Page.of(getTaskInfo(runId), taskInfo -> taskInfo.getTaskId().getId(), cursor, pageSize);
+    }
+
+    /**
+     * Return a lazy stream of info about the tasks of the given run in TaskId order.
+     * Tasks are read a page at a time.
+     *
+     * @param runId run
+     * @return task infos
+     */
+    default Stream<TaskInfo> streamTaskInfo(RunId runId)
+    {
+        return Page.stream(cursor -> getTaskInfo(runId, cursor, Page.DEFAULT_STREAM_PAGE_SIZE), null);
+    }
+
     /**
      * Returns a map of all task details for the given run
      *
@@ -74,6 +187,45 @@ public interface WorkflowAdmin
      */
     boolean clean(RunId runId);
 
+    /**
+     * Delete all saved data for the given runs. An error cleaning one run
+     * doesn't stop the others - it is reported as {@link CleanResult#FAILED}.
+     *
+     * @param runIds the runs
+     * @return the result for each run
+     */
+    default Map<RunId, CleanResult> clean(Collection<RunId> runIds)
+    {
+        Map<RunId, CleanResult> results = Maps.newLinkedHashMap();
+        for ( RunId runId : runIds )
+        {
+            CleanResult result;
+            try
+            {
+                result = clean(runId) ? CleanResult.CLEANED : CleanResult.NOT_FOUND;
+            }
+            catch ( Exception e )
+            {
+                result = CleanResult.FAILED;
+            }
+            results.put(runId, result);
+        }
+        return results;
+    }
+
+    /**
+     * Move all started and completed task nodes that were written with a different
+     * {@link TaskLayout} to the layout this instance is configured with. Instances
+     * must be using dual read while nodes in both layouts exist. The default implementation
+     * is for admins that have only one layout and moves nothing.
+     *
+     * @return number of task nodes moved
+     */
+    default int migrateTaskLayout()
+    {
+        return 0;
+    }
+
     /**
      * Return information about the internal run/state of the workflow manager
      *
@@ -24,6 +24,7 @@ public class WorkflowManagerState
     private final boolean isConnectedToZooKeeper;
     private final State schedulerState;
     private final List<State> consumersState;
+    private final int schedulerPendingRuns;
 
     public enum State
     {
@@ -50,6 +51,12 @@ public class WorkflowManagerState
 
     public WorkflowManagerState(boolean isConnectedToZooKeeper, State schedulerState, List<State> consumersState)
     {
+        this(isConnectedToZooKeeper, schedulerState, consumersState, 0);
+    }
+
+    public WorkflowManagerState(boolean isConnectedToZooKeeper, State schedulerState, List<State> consumersState, int schedulerPendingRuns)
+    {
+        this.schedulerPendingRuns = schedulerPendingRuns;
         this.isConnectedToZooKeeper = isConnectedToZooKeeper;
         this.schedulerState = Preconditions.checkNotNull(schedulerState, "schedulerState cannot be null");
         this.consumersState = ImmutableList.copyOf(Preconditions.checkNotNull(consumersState, "consumersState cannot be null"));
@@ -86,6 +93,17 @@ public class WorkflowManagerState
         return consumersState;
     }
 
+    /**
+     * Return the number of runs that have pending updates waiting to be evaluated by
+     * the scheduler. Always 0 if this instance is not currently the scheduler.
+     *
+     * @return pending run count
+     */
+    public int getSchedulerPendingRuns()
+    {
+        return schedulerPendingRuns;
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -104,6 +122,10 @@ public class WorkflowManagerState
         {
             return false;
         }
+        if ( schedulerPendingRuns != that.schedulerPendingRuns )
+        {
+            return false;
+        }
         //noinspection SimplifiableIfStatement
         if ( schedulerState != that.schedulerState )
         {
@@ -119,6 +141,7 @@ public class WorkflowManagerState
         int result = (isConnectedToZooKeeper ? 1 : 0);
         result = 31 * result + schedulerState.hashCode();
         result = 31 * result + consumersState.hashCode();
+        result = 31 * result + schedulerPendingRuns;
         return result;
     }
 
@@ -129,6 +152,7 @@ public class WorkflowManagerState
             "isConnectedToZooKeeper=" + isConnectedToZooKeeper +
             ", schedulerState=" + schedulerState +
             ", consumersState=" + consumersState +
+            ", schedulerPendingRuns=" + schedulerPendingRuns +
             '}';
     }
 }
@@ -0,0 +1,210 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.blobs;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * An unmodifiable map of values some of which are references to values in a {@link BlobStore}.
+ * Referenced values are read from the store the first time they are accessed.
+ */
+@SuppressWarnings("serial") // never in a stream itself - see writeReplace()
+public final class BlobMap extends AbstractMap<String, String> implements Serializable
+{
+    private final transient BlobStore blobStore;
+    private final Map<String, String> values;
+    private final transient Map<String, String> resolvedValues = new ConcurrentHashMap<>();
+
+    private static final String REFERENCE_PREFIX = "\u0000blob:";
+
+    /**
+     * Return a reference to a stored value
+     *
+     * @param key the key returned by {@link BlobStore#put(com.nirmata.workflow.models.RunId, byte[])}
+     * @return reference
+     */
+    public static String newReference(String key)
+    {
+        return REFERENCE_PREFIX + key;
+    }
+
+    /**
+     * @param value value or null
+     * @return true if the value is a reference to a stored value
+     */
+    public static boolean isReference(String value)
+    {
+        return (value != null) && value.startsWith(REFERENCE_PREFIX);
+    }
+
+    /**
+     * Return an immutable copy of the given map. BlobMaps are already immutable and are
+     * returned as is so that their values aren't read.
+     *
+     * @param map map to copy
+     * @return immutable map
+     */
+    public static Map<String, String> copyOf(Map<String, String> map)
+    {
+        return (map instanceof BlobMap) ? map : ImmutableMap.copyOf(map);
+    }
+
+    /**
+     * @param blobStore store that holds the referenced values
+     * @param values values - any of which may be references
+     */
+    public BlobMap(BlobStore blobStore, Map<String, String> values)
+    {
+        this.blobStore = Preconditions.checkNotNull(blobStore, "blobStore cannot be null");
+        this.values = ImmutableMap.copyOf(Preconditions.checkNotNull(values, "values cannot be null"));
+    }
+
+    /**
+     * Return the values without reading any referenced values
+     *
+     * @return values - any of which may be references
+     */
+    public Map<String, String> getUnresolvedValues()
+    {
+        return values;
+    }
+
+    @Override
+    public String get(Object key)
+    {
+        String value = values.get(key);
+        if ( isReference(value) )
+        {
+            return resolvedValues.computeIfAbsent((String)key, k -> read(value));
+        }
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return values.containsKey(key);
+    }
+
+    @Override
+    public int size()
+    {
+        return values.size();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet()
+    {
+        return new AbstractSet<Entry<String, String>>()
+        {
+            @Override
+            public Iterator<Entry<String, String>> iterator()
+            {
+                return Iterators.transform(values.keySet().iterator(), LazyEntry::new);
+            }
+
+            @Override
+            public int size()
+            {
+                return values.size();
+            }
+        };
+    }
+
+    @Override
+    public String toString()
+    {
+        // don't read values just to log them
+        return values.entrySet().stream()
+            .map(entry -> entry.getKey() + "=" + (isReference(entry.getValue()) ? entry.getValue().substring(1) : entry.getValue()))
+            .collect(Collectors.joining(", ", "{", "}"));
+    }
+
+    private String read(String reference)
+    {
+        String key = reference.substring(REFERENCE_PREFIX.length());
+        return StandardCharsets.UTF_8.decode(blobStore.get(key)).toString();
+    }
+
+    private Object writeReplace()
+    {
+        // the store isn't serializable - serialize the values themselves
+        return ImmutableMap.copyOf(this);
+    }
+
+    private class LazyEntry implements Entry<String, String>
+    {
+        private final String key;
+
+        private LazyEntry(String key)
+        {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey()
+        {
+            return key;
+        }
+
+        @Override
+        public String getValue()
+        {
+            return get(key);
+        }
+
+        @Override
+        public String setValue(String value)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if ( !(o instanceof Entry) )
+            {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>)o;
+            return key.equals(entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString()
+        {
+            return key + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.blobs;
+
+import com.nirmata.workflow.models.RunId;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ *     Stores large task meta data and result data values outside of ZooKeeper. ZooKeeper
+ *     then only holds a reference to the value which is read from the store when the value
+ *     is accessed.
+ * </p>
+ *
+ * <p>
+ *     All instances in the cluster must be able to read the values that any instance writes.
+ * </p>
+ */
+public interface BlobStore
+{
+    /**
+     * Store a value
+     *
+     * @param runId the run the value belongs to
+     * @param data the value
+     * @return key that identifies the value - it's passed to {@link #get(String)}
+     */
+    String put(RunId runId, byte[] data);
+
+    /**
+     * Return a stored value
+     *
+     * @param key key returned by {@link #put(RunId, byte[])}
+     * @return the value - can be a read-only view of the stored value
+     */
+    ByteBuffer get(String key);
+
+    /**
+     * Delete all values of the given run. Called when the run is cleaned. It is not an
+     * error if the run has no values.
+     *
+     * @param runId the run
+     */
+    void delete(RunId runId);
+}
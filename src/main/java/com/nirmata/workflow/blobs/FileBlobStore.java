@@ -0,0 +1,119 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.blobs;
+
+import com.google.common.base.Preconditions;
+import com.nirmata.workflow.models.RunId;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * A {@link BlobStore} that writes each value to a file in a directory per run. Values
+ * are read by memory-mapping their file. For clusters, the directory must be shared by
+ * all instances (e.g. a network file system).
+ */
+public class FileBlobStore implements BlobStore
+{
+    private final Path directory;
+
+    /**
+     * @param directory the directory that holds the values - it's created if needed
+     */
+    public FileBlobStore(Path directory)
+    {
+        this.directory = Preconditions.checkNotNull(directory, "directory cannot be null").toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String put(RunId runId, byte[] data)
+    {
+        Path runDirectory = getRunDirectory(runId);
+        String name = UUID.randomUUID().toString();
+        try
+        {
+            // write to a temp file first so that a value is never visible partially written
+            Files.createDirectories(runDirectory);
+            Path tempPath = runDirectory.resolve(name + ".tmp");
+            Files.write(tempPath, data);
+            Files.move(tempPath, runDirectory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException("Could not write value for run: " + runId, e);
+        }
+        return runId.getId() + "/" + name;
+    }
+
+    @Override
+    public ByteBuffer get(String key)
+    {
+        Path path = directory.resolve(key).normalize();
+        Preconditions.checkArgument(path.startsWith(directory), "Invalid key: " + key);
+        try ( FileChannel channel = FileChannel.open(path, StandardOpenOption.READ) )
+        {
+            // the mapping remains valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException("Could not read value: " + key, e);
+        }
+    }
+
+    @Override
+    public void delete(RunId runId)
+    {
+        Path runDirectory = getRunDirectory(runId);
+        try ( Stream<Path> paths = Files.walk(runDirectory) )
+        {
+            // children before their directory
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try
+                {
+                    Files.deleteIfExists(path);
+                }
+                catch ( IOException e )
+                {
+                    throw new RuntimeException("Could not delete: " + path, e);
+                }
+            });
+        }
+        catch ( NoSuchFileException dummy )
+        {
+            // run has no values
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException("Could not delete values of run: " + runId, e);
+        }
+    }
+
+    private Path getRunDirectory(RunId runId)
+    {
+        Path runDirectory = directory.resolve(runId.getId()).normalize();
+        Preconditions.checkArgument(runDirectory.getParent().equals(directory), "Invalid runId: " + runId);
+        return runDirectory;
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.collect.Maps;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.zookeeper.KeeperException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads many ZNodes using background (asynchronous) operations. At most
+ * <code>maxInFlight</code> reads are outstanding at any time.
+ */
+class AsyncReader
+{
+    private final CuratorFramework curator;
+    private final int maxInFlight;
+
+    AsyncReader(CuratorFramework curator, int maxInFlight)
+    {
+        this.curator = curator;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Read the given nodes. Nodes that don't exist are not included in the result.
+     *
+     * @param paths nodes to read
+     * @return map of path to node data/stat
+     * @throws Exception the first error other than a missing node
+     */
+    Map<String, ChildData> read(Collection<String> paths) throws Exception
+    {
+        Map<String, ChildData> results = Maps.newConcurrentMap();
+        AtomicReference<KeeperException> error = new AtomicReference<>();
+        Semaphore window = new Semaphore(maxInFlight);
+        CountDownLatch latch = new CountDownLatch(paths.size());
+        for ( String path : paths )
+        {
+            window.acquire();
+            try
+            {
+                curator.getData().inBackground((client, event) -> {
+                    KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+                    if ( code == KeeperException.Code.OK )
+                    {
+                        results.put(path, new ChildData(path, event.getStat(), event.getData()));
+                    }
+                    else if ( code != KeeperException.Code.NONODE )
+                    {
+                        error.compareAndSet(null, KeeperException.create(code, path));
+                    }
+                    window.release();
+                    latch.countDown();
+                }).forPath(path);
+            }
+            catch ( Exception e )
+            {
+                window.release();
+                latch.countDown();
+                throw e;
+            }
+        }
+        latch.await();
+
+        if ( error.get() != null )
+        {
+            throw error.get();
+        }
+        return results;
+    }
+}
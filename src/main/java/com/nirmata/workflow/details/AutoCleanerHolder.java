@@ -16,12 +16,27 @@
 package com.nirmata.workflow.details;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.RateLimiter;
 import com.nirmata.workflow.admin.AutoCleaner;
+import com.nirmata.workflow.admin.RunFilter;
+import com.nirmata.workflow.admin.RunInfo;
 import com.nirmata.workflow.admin.WorkflowAdmin;
+import com.nirmata.workflow.models.RunId;
+import org.apache.curator.utils.ThreadUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class AutoCleanerHolder
@@ -29,12 +44,38 @@ public class AutoCleanerHolder
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final AutoCleaner autoCleaner;
     private final Duration runPeriod;
+    private final RateLimiter rateLimiter;
+    private final int cleanBatchSize;
     private final AtomicReference<Instant> lastRun = new AtomicReference<>(Instant.now());
+    private final AtomicReference<String> lastVisitedId = new AtomicReference<>();
+    private final AtomicBoolean needsFullScan = new AtomicBoolean(true);
+    private ScheduledExecutorService executorService = null;
+
+    private static final int MAX_CLEAN_BATCH_SIZE = 100;
+    private static final long STOP_WAIT_MS = TimeUnit.SECONDS.toMillis(5);
 
     public AutoCleanerHolder(AutoCleaner autoCleaner, Duration runPeriod)
     {
+        this(autoCleaner, runPeriod, 0);
+    }
+
+    /**
+     * @param autoCleaner the auto cleaner or null
+     * @param runPeriod how often to run
+     * @param maxCleansPerSecond the maximum number of runs to clean per second or 0 for no limit
+     */
+    public AutoCleanerHolder(AutoCleaner autoCleaner, Duration runPeriod, int maxCleansPerSecond)
+    {
+        Preconditions.checkArgument(maxCleansPerSecond >= 0, "maxCleansPerSecond cannot be negative");
         this.autoCleaner = autoCleaner;
         this.runPeriod = Preconditions.checkNotNull(runPeriod, "runPeriod cannot be null");
+        rateLimiter = (maxCleansPerSecond > 0) ? RateLimiter.create(maxCleansPerSecond) : null;
+        cleanBatchSize = (maxCleansPerSecond > 0) ? Math.min(maxCleansPerSecond, MAX_CLEAN_BATCH_SIZE) : MAX_CLEAN_BATCH_SIZE;
+    }
+
+    public boolean hasAutoCleaner()
+    {
+        return autoCleaner != null;
     }
 
     public Duration getRunPeriod()
@@ -42,20 +83,149 @@ public class AutoCleanerHolder
         return runPeriod;
     }
 
+    /**
+     * Start running the auto cleaner every run period in a background thread. Called when
+     * this instance becomes the scheduler. Does nothing if already started or if there is
+     * no auto cleaner.
+     *
+     * @param admin admin used for cleaning
+     */
+    public synchronized void start(WorkflowAdmin admin)
+    {
+        Preconditions.checkNotNull(admin, "admin cannot be null");
+        if ( (autoCleaner == null) || (executorService != null) )
+        {
+            return;
+        }
+
+        // a new leader can't know which runs were completed without being indexed
+        needsFullScan.set(true);
+        executorService = ThreadUtils.newSingleThreadScheduledExecutor("AutoCleaner");
+        long periodMs = Math.max(1, Math.min(runPeriod.toMillis(), TimeUnit.DAYS.toMillis(1)));
+        executorService.scheduleWithFixedDelay(() -> {
+            try
+            {
+                if ( shouldRun() )
+                {
+                    run(admin);
+                }
+            }
+            catch ( Throwable e )
+            {
+                // Curator may clear the interrupt - stop() interrupts passes that are reading or cleaning
+                if ( Thread.currentThread().isInterrupted() || Throwables.getCausalChain(e).stream().anyMatch(InterruptedException.class::isInstance) )
+                {
+                    log.debug("Auto cleaning interrupted", e);
+                }
+                else
+                {
+                    log.error("Error while auto cleaning", e);
+                }
+            }
+        }, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the background auto cleaner. A pass in progress is interrupted and the next
+     * pass continues from where it left off. Waits briefly for the interrupted pass to end.
+     */
+    public synchronized void stop()
+    {
+        if ( executorService != null )
+        {
+            executorService.shutdownNow();
+            try
+            {
+                // wait for a pass in progress so that it doesn't outlive the Curator client
+                if ( !executorService.awaitTermination(STOP_WAIT_MS, TimeUnit.MILLISECONDS) )
+                {
+                    log.warn("Auto cleaning pass did not stop in time");
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            executorService = null;
+        }
+    }
+
+    /**
+     * Run a cleaning pass. A pass stops after one run period so that a large backlog is cleaned
+     * incrementally over several passes. If the auto cleaner has a minimum completion age, passes
+     * only visit the runs in the completed run index that are old enough. Otherwise, and until a
+     * first full pass has completed, runs are visited in RunId order starting after the last run
+     * visited by an interrupted or time-limited previous pass.
+     *
+     * @param admin admin used for cleaning
+     */
     public void run(WorkflowAdmin admin)
     {
         Preconditions.checkNotNull(admin, "admin cannot be null");
         log.debug("Running");
         if ( autoCleaner != null )
         {
-            admin.getRunInfo().stream().filter(autoCleaner::canBeCleaned).forEach(r -> {
-                log.debug("Auto cleaning: " + r);
-                admin.clean(r.getRunId());
-            });
+            Instant passEnd = Instant.now().plus(runPeriod);
+            Optional<Duration> minCompletionAge = autoCleaner.getMinCompletionAge();
+            if ( minCompletionAge.isPresent() && !needsFullScan.get() )
+            {
+                runIndexed(admin, minCompletionAge.get(), passEnd);
+            }
+            else if ( runFullScan(admin, passEnd) )
+            {
+                needsFullScan.set(false);
+            }
         }
         lastRun.set(Instant.now());
     }
 
+    private void runIndexed(WorkflowAdmin admin, Duration minCompletionAge, Instant passEnd)
+    {
+        LocalDateTime completedBeforeUtc = LocalDateTime.now(Clock.systemUTC()).minus(minCompletionAge);
+        Iterator<List<RunId>> batches = Iterators.partition(admin.streamCompletedRunIds(completedBeforeUtc).iterator(), cleanBatchSize);
+        while ( batches.hasNext() && !Thread.currentThread().isInterrupted() && !Instant.now().isAfter(passEnd) )
+        {
+            List<RunId> batch = batches.next();
+            if ( rateLimiter != null )
+            {
+                rateLimiter.acquire(batch.size());
+            }
+            log.debug("Auto cleaning: " + batch);
+            admin.clean(batch);
+        }
+    }
+
+    private boolean runFullScan(WorkflowAdmin admin, Instant passEnd)
+    {
+        // the stream lists the runs once and reads them a page at a time so that a time-limited
+        // pass only reads the runs it visits. The next pass continues after the last visited run.
+        Iterator<RunInfo> runInfos = admin.streamRunInfo(RunFilter.ALL, lastVisitedId.get()).iterator();
+        while ( true )
+        {
+            if ( Thread.currentThread().isInterrupted() || Instant.now().isAfter(passEnd) )
+            {
+                return false;
+            }
+            if ( !runInfos.hasNext() )
+            {
+                break;
+            }
+            RunInfo runInfo = runInfos.next();
+            if ( autoCleaner.canBeCleaned(runInfo) )
+            {
+                if ( rateLimiter != null )
+                {
+                    rateLimiter.acquire();
+                }
+                log.debug("Auto cleaning: " + runInfo);
+                admin.clean(runInfo.getRunId());
+            }
+            lastVisitedId.set(runInfo.getRunId().getId());
+        }
+        lastVisitedId.set(null);
+        return true;
+    }
+
     public boolean shouldRun()
     {
         if ( autoCleaner == null )
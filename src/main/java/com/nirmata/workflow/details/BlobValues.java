@@ -0,0 +1,143 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.nirmata.workflow.blobs.BlobMap;
+import com.nirmata.workflow.blobs.BlobStore;
+import com.nirmata.workflow.models.ExecutableTask;
+import com.nirmata.workflow.models.RunId;
+import com.nirmata.workflow.models.TaskExecutionResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Moves task meta data and result data values that are longer than a threshold to a {@link BlobStore}
+ * and replaces them with references. Values read back are wrapped in a {@link BlobMap} so that the
+ * store is only read when a value is accessed. Keys that start with "__" are used internally and
+ * are never moved.
+ */
+public class BlobValues
+{
+    private final BlobStore blobStore;
+    private final int threshold;
+
+    public static final int DEFAULT_THRESHOLD = 16 * 1024;
+    public static final BlobValues NONE = new BlobValues(null, DEFAULT_THRESHOLD);
+
+    private static final String INTERNAL_KEY_PREFIX = "__";
+
+    /**
+     * @param blobStore the store or null to keep all values in ZooKeeper
+     * @param threshold values longer than this (in characters) are moved to the store
+     */
+    public BlobValues(BlobStore blobStore, int threshold)
+    {
+        Preconditions.checkArgument(threshold > 0, "threshold must be greater than 0");
+        this.blobStore = blobStore;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Return the values with any that are longer than the threshold moved to the store
+     *
+     * @param runId the run the values belong to
+     * @param values values
+     * @return the values or, if any were moved, a copy with references in their place
+     */
+    public Map<String, String> store(RunId runId, Map<String, String> values)
+    {
+        if ( (blobStore == null) || values.entrySet().stream().noneMatch(this::shouldStore) )
+        {
+            return values;
+        }
+
+        Map<String, String> stored = Maps.newLinkedHashMap();
+        values.forEach((key, value) -> {
+            if ( shouldStore(Maps.immutableEntry(key, value)) )
+            {
+                value = BlobMap.newReference(blobStore.put(runId, value.getBytes(StandardCharsets.UTF_8)));
+            }
+            stored.put(key, value);
+        });
+        return stored;
+    }
+
+    public TaskExecutionResult store(RunId runId, TaskExecutionResult result)
+    {
+        Map<String, String> resultData = store(runId, result.getResultData());
+        if ( resultData == result.getResultData() )
+        {
+            return result;
+        }
+        return new TaskExecutionResult(result.getStatus(), result.getMessage(), resultData, result.getSubTaskRunId().orElse(null), result.getCompletionTimeUtc());
+    }
+
+    /**
+     * Return the values such that referenced values are read from the store when accessed
+     *
+     * @param values values - any of which may be references
+     * @return the values or, if any are references, a {@link BlobMap}
+     */
+    public Map<String, String> resolve(Map<String, String> values)
+    {
+        if ( values.values().stream().noneMatch(BlobMap::isReference) )
+        {
+            return values;
+        }
+        Preconditions.checkState(blobStore != null, "Values were stored in a BlobStore but none is configured");
+        return new BlobMap(blobStore, values);
+    }
+
+    public TaskExecutionResult resolve(TaskExecutionResult result)
+    {
+        Map<String, String> resultData = resolve(result.getResultData());
+        if ( resultData == result.getResultData() )
+        {
+            return result;
+        }
+        return new TaskExecutionResult(result.getStatus(), result.getMessage(), resultData, result.getSubTaskRunId().orElse(null), result.getCompletionTimeUtc());
+    }
+
+    public ExecutableTask resolve(ExecutableTask executableTask)
+    {
+        Map<String, String> metaData = resolve(executableTask.getMetaData());
+        if ( metaData == executableTask.getMetaData() )
+        {
+            return executableTask;
+        }
+        return new ExecutableTask(executableTask.getRunId(), executableTask.getTaskId(), executableTask.getTaskType(), metaData, executableTask.isExecutable());
+    }
+
+    /**
+     * Delete the stored values of a run
+     *
+     * @param runId the run
+     */
+    public void delete(RunId runId)
+    {
+        if ( blobStore != null )
+        {
+            blobStore.delete(runId);
+        }
+    }
+
+    private boolean shouldStore(Map.Entry<String, String> entry)
+    {
+        return !entry.getKey().startsWith(INTERNAL_KEY_PREFIX) && (entry.getValue().length() > threshold);
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded work queue that coalesces duplicates: adding an item that is already pending
+ * is a no-op. Items are returned in the order they were first added. If the queue is full,
+ * new items are dropped and the queue is marked as having overflowed - the consumer must then
+ * fall back to re-evaluating everything (see {@link #clearOverflowed()}).
+ */
+class CoalescingQueue<T>
+{
+    private final int maxSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Set<T> items = Sets.newLinkedHashSet();
+    private boolean overflowed = false;
+
+    CoalescingQueue(int maxSize)
+    {
+        Preconditions.checkArgument(maxSize > 0, "maxSize must be greater than 0");
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Add an item if it isn't already pending
+     *
+     * @param item item to add
+     * @return false if the queue is full and the item was dropped
+     */
+    boolean add(T item)
+    {
+        Preconditions.checkNotNull(item, "item cannot be null");
+        lock.lock();
+        try
+        {
+            if ( items.contains(item) )
+            {
+                return true;
+            }
+            if ( items.size() >= maxSize )
+            {
+                overflowed = true;
+                notEmpty.signal();
+                return false;
+            }
+            items.add(item);
+            notEmpty.signal();
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the oldest pending item waiting up to the given time if needed. Returns early
+     * (with null) if the queue has overflowed.
+     *
+     * @param timeout max time to wait
+     * @param unit time unit
+     * @return item or null
+     * @throws InterruptedException if interrupted while waiting
+     */
+    T poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try
+        {
+            while ( items.isEmpty() && !overflowed )
+            {
+                if ( nanos <= 0 )
+                {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+
+            Iterator<T> iterator = items.iterator();
+            if ( !iterator.hasNext() )
+            {
+                return null;
+            }
+            T item = iterator.next();
+            iterator.remove();
+            return item;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Force the overflow state so that the consumer re-evaluates everything
+     */
+    void markOverflowed()
+    {
+        lock.lock();
+        try
+        {
+            overflowed = true;
+            notEmpty.signal();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns true if items were dropped since the last call. Clears the overflow state.
+     *
+     * @return true/false
+     */
+    boolean clearOverflowed()
+    {
+        lock.lock();
+        try
+        {
+            boolean localOverflowed = overflowed;
+            overflowed = false;
+            return localOverflowed;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    int size()
+    {
+        lock.lock();
+        try
+        {
+            return items.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    void clear()
+    {
+        lock.lock();
+        try
+        {
+            items.clear();
+            overflowed = false;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+}
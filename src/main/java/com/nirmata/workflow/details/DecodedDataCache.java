@@ -0,0 +1,179 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Sets;
+import com.nirmata.workflow.serialization.Serializer;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.zookeeper.data.Stat;
+import java.util.Set;
+
+/**
+ * Bounded cache of deserialized ZNode data. Entries are keyed by path and decoded type (the
+ * same node can be decoded as different types - e.g. a run and its summary) and are only
+ * valid for the exact ZNode version that was decoded (as identified by the Stat's
+ * mzxid and version) so that stale objects are never returned. Callers should
+ * {@link #remove(String)} paths as their ZNodes are deleted.
+ */
+class DecodedDataCache
+{
+    private final Serializer serializer;
+    private final Cache<Key, Entry> cache;
+    private final Set<Class<?>> decodedClasses = Sets.newConcurrentHashSet();
+
+    @FunctionalInterface
+    interface Decoder<T>
+    {
+        T decode(byte[] data) throws Exception;
+    }
+
+    private static class Key
+    {
+        private final String path;
+        private final Class<?> clazz;
+
+        private Key(String path, Class<?> clazz)
+        {
+            this.path = path;
+            this.clazz = clazz;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( (o == null) || (getClass() != o.getClass()) )
+            {
+                return false;
+            }
+            Key key = (Key)o;
+            return path.equals(key.path) && clazz.equals(key.clazz);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (31 * path.hashCode()) + clazz.hashCode();
+        }
+    }
+
+    private static class Entry
+    {
+        private final long mzxid;
+        private final int version;
+        private final Object value;
+
+        private Entry(long mzxid, int version, Object value)
+        {
+            this.mzxid = mzxid;
+            this.version = version;
+            this.value = value;
+        }
+
+        private boolean matches(Stat stat)
+        {
+            return (mzxid == stat.getMzxid()) && (version == stat.getVersion());
+        }
+    }
+
+    /**
+     * @param serializer serializer used to decode data
+     * @param maxSize maximum number of decoded objects to keep
+     */
+    DecodedDataCache(Serializer serializer, long maxSize)
+    {
+        this.serializer = serializer;
+        cache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /**
+     * Return the decoded value of the given node data, decoding it only if the cached
+     * value is missing or is for a different version of the node
+     *
+     * @param data node data
+     * @param clazz type to decode
+     * @return decoded value
+     */
+    <T> T get(ChildData data, Class<T> clazz)
+    {
+        return get(data, clazz, bytes -> serializer.deserialize(bytes, clazz));
+    }
+
+    /**
+     * Same as {@link #get(ChildData, Class)} but decodes with the given decoder
+     *
+     * @param data node data
+     * @param clazz type to decode
+     * @param decoder decodes the node's bytes
+     * @return decoded value
+     */
+    <T> T get(ChildData data, Class<T> clazz, Decoder<T> decoder)
+    {
+        Stat stat = data.getStat();
+        if ( stat == null )
+        {
+            return decode(data, decoder);
+        }
+
+        Key key = new Key(data.getPath(), clazz);
+        Entry entry = cache.getIfPresent(key);
+        if ( (entry != null) && entry.matches(stat) )
+        {
+            return clazz.cast(entry.value);
+        }
+
+        T value = decode(data, decoder);
+        decodedClasses.add(clazz);
+        cache.put(key, new Entry(stat.getMzxid(), stat.getVersion(), value));
+        return value;
+    }
+
+    private static <T> T decode(ChildData data, Decoder<T> decoder)
+    {
+        try
+        {
+            return decoder.decode(data.getData());
+        }
+        catch ( RuntimeException e )
+        {
+            throw e;
+        }
+        catch ( Exception e )
+        {
+            throw new RuntimeException("Could not decode: " + data.getPath(), e);
+        }
+    }
+
+    void remove(String path)
+    {
+        decodedClasses.forEach(clazz -> cache.invalidate(new Key(path, clazz)));
+    }
+
+    void clear()
+    {
+        cache.invalidateAll();
+    }
+
+    long size()
+    {
+        return cache.size();
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.collect.Lists;
+import com.nirmata.workflow.admin.TaskLayout;
+import com.nirmata.workflow.models.RunId;
+import com.nirmata.workflow.models.TaskId;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorOp;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Moves started and completed task nodes written with the other {@link TaskLayout} to the
+ * workflow manager's configured layout. Each node is moved with a transaction that creates
+ * the new node and deletes the old one so readers that use dual read always find the node.
+ */
+class LayoutMigrator
+{
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final CuratorFramework curator;
+    private final TaskLayout layout;
+    private final RunDataExpiry runDataExpiry;
+
+    LayoutMigrator(WorkflowManagerImpl workflowManager)
+    {
+        curator = workflowManager.getCurator();
+        layout = workflowManager.getTaskPaths().getLayout();
+        runDataExpiry = workflowManager.getRunDataExpiry();
+    }
+
+    /**
+     * Move all task nodes that are not in the configured layout
+     *
+     * @return number of nodes moved
+     */
+    int migrate()
+    {
+        int count = migrate(ZooKeeperConstants.getStartedTasksParentPath(), (runId, taskId) -> TaskPaths.getStartedTaskPath(layout, runId, taskId));
+        count += migrate(ZooKeeperConstants.getCompletedTaskParentPath(), (runId, taskId) -> TaskPaths.getCompletedTaskPath(layout, runId, taskId));
+        log.info("Migrated task nodes to layout " + layout + ": " + count);
+        return count;
+    }
+
+    private int migrate(String parentPath, BiFunction<RunId, TaskId, String> newPathBuilder)
+    {
+        int count = 0;
+        for ( String oldPath : getOldPaths(parentPath) )
+        {
+            RunId runId = new RunId(ZooKeeperConstants.getRunIdFromTaskPath(parentPath, oldPath));
+            TaskId taskId = new TaskId(ZooKeeperConstants.getTaskIdFromTaskPath(parentPath, oldPath));
+            if ( move(oldPath, newPathBuilder.apply(runId, taskId)) )
+            {
+                ++count;
+            }
+        }
+
+        if ( layout == TaskLayout.FLAT )
+        {
+            getChildren(parentPath).stream().filter(child -> !ZooKeeperConstants.isFlatTaskNode(child)).forEach(child -> delete(ZKPaths.makePath(parentPath, child)));
+        }
+        return count;
+    }
+
+    private List<String> getOldPaths(String parentPath)
+    {
+        List<String> paths = Lists.newArrayList();
+        for ( String child : getChildren(parentPath) )
+        {
+            String path = ZKPaths.makePath(parentPath, child);
+            boolean isFlatNode = ZooKeeperConstants.isFlatTaskNode(child);
+            if ( (layout == TaskLayout.HIERARCHICAL) && isFlatNode )
+            {
+                paths.add(path);
+            }
+            else if ( (layout == TaskLayout.FLAT) && !isFlatNode )
+            {
+                getChildren(path).forEach(taskChild -> paths.add(ZKPaths.makePath(path, taskChild)));
+            }
+        }
+        return paths;
+    }
+
+    private boolean move(String oldPath, String newPath)
+    {
+        for ( int i = 0; i < MAX_ATTEMPTS; ++i )
+        {
+            try
+            {
+                Stat stat = new Stat();
+                byte[] data = curator.getData().storingStatIn(stat).forPath(oldPath);
+                String newParentPath = ZKPaths.getPathAndNode(newPath).getPath();
+                if ( layout == TaskLayout.HIERARCHICAL )
+                {
+                    createRunPath(newParentPath);
+                }
+
+                CuratorOp createOp = runDataExpiry.transactionCreateTask(curator).forPath(newPath, data);
+                CuratorOp deleteOp = curator.transactionOp().delete().withVersion(stat.getVersion()).forPath(oldPath);
+                curator.transaction().forOperations(createOp, deleteOp);
+                return true;
+            }
+            catch ( KeeperException.NodeExistsException dummy )
+            {
+                // already written with the new layout - the old node is redundant
+                delete(oldPath);
+                return false;
+            }
+            catch ( KeeperException.NoNodeException | KeeperException.BadVersionException dummy )
+            {
+                // the old node was deleted/changed or the new run node was removed in the interim - try again
+            }
+            catch ( Exception e )
+            {
+                String message = "Could not migrate task node: " + oldPath;
+                log.error(message, e);
+                throw new RuntimeException(message, e);
+            }
+        }
+        log.warn("Could not migrate task node, it is changing or was deleted: " + oldPath);
+        return false;
+    }
+
+    private void createRunPath(String path) throws Exception
+    {
+        try
+        {
+            curator.create().withMode(CreateMode.CONTAINER).forPath(path);
+        }
+        catch ( KeeperException.NodeExistsException ignore )
+        {
+            // ignore
+        }
+    }
+
+    private List<String> getChildren(String path)
+    {
+        try
+        {
+            return curator.getChildren().forPath(path);
+        }
+        catch ( KeeperException.NoNodeException dummy )
+        {
+            return Lists.newArrayList();
+        }
+        catch ( Exception e )
+        {
+            throw new RuntimeException("Could not read children of: " + path, e);
+        }
+    }
+
+    private void delete(String path)
+    {
+        try
+        {
+            curator.delete().forPath(path);
+        }
+        catch ( KeeperException.NoNodeException | KeeperException.NotEmptyException ignore )
+        {
+            // ignore
+        }
+        catch ( Exception e )
+        {
+            throw new RuntimeException("Could not delete: " + path, e);
+        }
+    }
+}
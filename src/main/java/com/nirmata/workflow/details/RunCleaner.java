@@ -0,0 +1,274 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.nirmata.workflow.admin.CleanResult;
+import com.nirmata.workflow.admin.TaskLayout;
+import com.nirmata.workflow.details.internalmodels.RunnableTask;
+import com.nirmata.workflow.models.ExecutableTask;
+import com.nirmata.workflow.models.RunId;
+import com.nirmata.workflow.models.TaskId;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.transaction.CuratorOp;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+/**
+ * Deletes the data of runs. Task nodes are deleted in multi-op transactions that are
+ * pipelined using background operations - at most <code>maxInFlight</code> operations
+ * are outstanding at any time. A transaction fails as a whole if any of its nodes is
+ * missing (e.g. tasks of incomplete runs) - the nodes of failed transactions are then
+ * deleted one at a time. Run nodes are deleted last so that a run whose clean fails
+ * can be cleaned again.
+ */
+class RunCleaner
+{
+    // approximate serialized size of a delete operation excluding its path
+    private static final int DELETE_OPERATION_OVERHEAD = 32;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final WorkflowManagerImpl workflowManager;
+    private final CuratorFramework curator;
+    private final TaskPaths taskPaths;
+    private final int maxInFlight;
+
+    @FunctionalInterface
+    private interface BackgroundOperation<T>
+    {
+        void start(T item, BackgroundCallback callback) throws Exception;
+    }
+
+    RunCleaner(WorkflowManagerImpl workflowManager, int maxInFlight)
+    {
+        this.workflowManager = workflowManager;
+        curator = workflowManager.getCurator();
+        taskPaths = workflowManager.getTaskPaths();
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Delete all data of the given runs
+     *
+     * @param runIds runs to clean
+     * @return the result for each run
+     * @throws Exception errors reading the runs
+     */
+    Map<RunId, CleanResult> clean(Collection<RunId> runIds) throws Exception
+    {
+        Map<RunId, CleanResult> results = Maps.newLinkedHashMap();
+        Map<String, RunId> transactionalPaths = Maps.newLinkedHashMap();
+        Map<String, RunId> singlePaths = Maps.newLinkedHashMap();
+        Map<RunId, String> indexPaths = Maps.newHashMap();
+        Map<String, RunId> chunkPaths = Maps.newLinkedHashMap();
+
+        Map<String, ChildData> runData = new AsyncReader(curator, maxInFlight).read(runIds.stream().map(ZooKeeperConstants::getRunPath).collect(Collectors.toList()));
+        for ( RunId runId : runIds )
+        {
+            ChildData data = runData.get(ZooKeeperConstants.getRunPath(runId));
+            if ( data == null )
+            {
+                results.put(runId, CleanResult.NOT_FOUND);
+                continue;
+            }
+
+            RunnableTask runnableTask;
+            try
+            {
+                runnableTask = workflowManager.readRun(runId, data.getData());
+            }
+            catch ( Exception e )
+            {
+                log.error("Could not read run: " + runId, e);
+                results.put(runId, CleanResult.FAILED);
+                continue;
+            }
+            results.put(runId, CleanResult.CLEANED);
+            RunStore.getChunkPaths(runId, data.getData()).forEach(path -> chunkPaths.put(path, runId));
+            runnableTask.getCompletionTimeUtc().ifPresent(completionTimeUtc -> indexPaths.put(runId, ZooKeeperConstants.getCompletedRunIndexPath(runId, completionTimeUtc)));
+
+            // only executable tasks have nodes. Nodes in the write layout normally exist - nodes in
+            // the other layout (only read during a layout migration) normally don't.
+            runnableTask.getTasks().values().stream().filter(ExecutableTask::isExecutable).map(ExecutableTask::getTaskId).forEach(taskId -> {
+                addTaskPaths(runId, taskPaths.getStartedTaskPath(runId, taskId), taskPaths.getStartedTaskReadPaths(runId, taskId), transactionalPaths, singlePaths);
+                addTaskPaths(runId, taskPaths.getCompletedTaskPath(runId, taskId), taskPaths.getCompletedTaskReadPaths(runId, taskId), transactionalPaths, singlePaths);
+            });
+        }
+
+        List<List<String>> batches = partition(transactionalPaths.keySet());
+        Map<List<String>, KeeperException.Code> transactionResults = inBackground(batches, (batch, callback) -> {
+            List<CuratorOp> operations = Lists.newArrayList();
+            for ( String path : batch )
+            {
+                operations.add(curator.transactionOp().delete().forPath(path));
+            }
+            curator.transaction().inBackground(callback).forOperations(operations);
+        });
+        transactionResults.forEach((batch, code) -> {
+            if ( code != KeeperException.Code.OK )
+            {
+                log.debug("Could not delete batch of task nodes - deleting individually. Code: " + code);
+                batch.forEach(path -> singlePaths.put(path, transactionalPaths.get(path)));
+            }
+        });
+
+        deleteIndividually(singlePaths, results, false);
+
+        if ( taskPaths.readsLayout(TaskLayout.HIERARCHICAL) )
+        {
+            // run directories are containers - ZooKeeper may already have deleted them. If a task was
+            // written in the interim, ZooKeeper deletes the directory eventually.
+            Map<String, RunId> runDirectoryPaths = Maps.newLinkedHashMap();
+            getCleanedRunIds(results).forEach(runId -> {
+                runDirectoryPaths.put(ZooKeeperConstants.getStartedTaskRunPath(runId), runId);
+                runDirectoryPaths.put(ZooKeeperConstants.getCompletedTaskRunPath(runId), runId);
+            });
+            deleteIndividually(runDirectoryPaths, results, true);
+        }
+
+        Map<String, RunId> runDataPaths = Maps.newLinkedHashMap();
+        getCleanedRunIds(results).forEach(runId -> {
+            runDataPaths.put(ZooKeeperConstants.getRunSummaryPath(runId), runId);
+            if ( indexPaths.containsKey(runId) )
+            {
+                runDataPaths.put(indexPaths.get(runId), runId);
+            }
+        });
+        // chunk parents are containers that ZooKeeper deletes once their chunks are deleted
+        chunkPaths.forEach((path, runId) -> {
+            if ( results.get(runId) == CleanResult.CLEANED )
+            {
+                runDataPaths.put(path, runId);
+            }
+        });
+        deleteIndividually(runDataPaths, results, false);
+        getCleanedRunIds(results).forEach(runId -> {
+            try
+            {
+                workflowManager.getBlobValues().delete(runId);
+            }
+            catch ( Exception e )
+            {
+                log.error("Could not delete stored values of run: " + runId, e);
+                results.put(runId, CleanResult.FAILED);
+            }
+        });
+
+        Map<RunId, KeeperException.Code> runResults = inBackground(getCleanedRunIds(results), (runId, callback) -> curator.delete().inBackground(callback).forPath(ZooKeeperConstants.getRunPath(runId)));
+        runResults.forEach((runId, code) -> {
+            if ( code == KeeperException.Code.NONODE )
+            {
+                results.put(runId, CleanResult.NOT_FOUND);    // cleaned concurrently
+            }
+            else if ( code != KeeperException.Code.OK )
+            {
+                log.error("Could not delete run: " + runId + " - code: " + code);
+                results.put(runId, CleanResult.FAILED);
+            }
+        });
+        return results;
+    }
+
+    private static void addTaskPaths(RunId runId, String writePath, List<String> readPaths, Map<String, RunId> transactionalPaths, Map<String, RunId> singlePaths)
+    {
+        transactionalPaths.put(writePath, runId);
+        readPaths.stream().filter(path -> !path.equals(writePath)).forEach(path -> singlePaths.put(path, runId));
+    }
+
+    private static List<List<String>> partition(Collection<String> paths)
+    {
+        List<List<String>> batches = Lists.newArrayList();
+        List<String> batch = Lists.newArrayList();
+        int batchBytes = 0;
+        for ( String path : paths )
+        {
+            int bytes = path.getBytes(StandardCharsets.UTF_8).length + DELETE_OPERATION_OVERHEAD;
+            if ( !batch.isEmpty() && ((batchBytes + bytes) > ZooKeeperConstants.MAX_TRANSACTION_BYTES) )
+            {
+                batches.add(batch);
+                batch = Lists.newArrayList();
+                batchBytes = 0;
+            }
+            batch.add(path);
+            batchBytes += bytes;
+        }
+        if ( !batch.isEmpty() )
+        {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private void deleteIndividually(Map<String, RunId> paths, Map<RunId, CleanResult> results, boolean ignoreNotEmpty) throws Exception
+    {
+        Map<String, KeeperException.Code> deleteResults = inBackground(paths.keySet(), (path, callback) -> curator.delete().inBackground(callback).forPath(path));
+        deleteResults.forEach((path, code) -> {
+            boolean ignore = (code == KeeperException.Code.OK) || (code == KeeperException.Code.NONODE) || (ignoreNotEmpty && (code == KeeperException.Code.NOTEMPTY));
+            if ( !ignore )
+            {
+                RunId runId = paths.get(path);
+                log.error("Could not delete node for run: " + runId + " - path: " + path + " - code: " + code);
+                results.put(runId, CleanResult.FAILED);
+            }
+        });
+    }
+
+    private static List<RunId> getCleanedRunIds(Map<RunId, CleanResult> results)
+    {
+        return results.entrySet().stream()
+            .filter(entry -> entry.getValue() == CleanResult.CLEANED)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+    }
+
+    private <T> Map<T, KeeperException.Code> inBackground(Collection<T> items, BackgroundOperation<T> operation) throws Exception
+    {
+        Map<T, KeeperException.Code> results = Maps.newConcurrentMap();
+        Semaphore window = new Semaphore(maxInFlight);
+        CountDownLatch latch = new CountDownLatch(items.size());
+        for ( T item : items )
+        {
+            window.acquire();
+            try
+            {
+                operation.start(item, (client, event) -> {
+                    results.put(item, KeeperException.Code.get(event.getResultCode()));
+                    window.release();
+                    latch.countDown();
+                });
+            }
+            catch ( Exception e )
+            {
+                window.release();
+                latch.countDown();
+                throw e;
+            }
+        }
+        latch.await();
+        return results;
+    }
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.base.Preconditions;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.ACLBackgroundPathAndBytesable;
+import org.apache.curator.framework.api.ACLPathAndBytesable;
+import org.apache.curator.framework.api.transaction.CuratorOp;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <p>
+ *     How the nodes of a run are created. If a TTL is set and the ZooKeeper ensemble supports TTL nodes
+ *     (<code>zookeeper.extendedTypesEnabled=true</code>) ZooKeeper deletes run data once it hasn't been
+ *     modified for the TTL. Without TTL nodes old runs must be cleaned.
+ * </p>
+ *
+ * <p>
+ *     Started and completed task nodes are TTL nodes from the start - they are written once (apart from
+ *     progress updates) so the TTL must be longer than any run takes to complete. The run, summary and
+ *     chunk nodes of a run are persistent until it completes so that a run can never expire while it
+ *     executes. ZooKeeper can't change the mode of a node so the run and summary nodes are recreated
+ *     as TTL nodes by the completion transaction and the chunk nodes afterwards. ZooKeeper doesn't
+ *     report the mode of a node so readers that watch run nodes tell a recreated node from a new run
+ *     by its data: only the former is completed.
+ * </p>
+ */
+public class RunDataExpiry
+{
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final Duration ttl;
+    private volatile boolean ttlEnabled = false;
+
+    public static final RunDataExpiry NONE = new RunDataExpiry(null);
+
+    /**
+     * @param ttl TTL of run nodes or null for persistent nodes
+     */
+    public RunDataExpiry(Duration ttl)
+    {
+        Preconditions.checkArgument((ttl == null) || (ttl.toMillis() > 0), "ttl must be greater than 0");
+        this.ttl = ttl;
+    }
+
+    public Optional<Duration> getTtl()
+    {
+        return Optional.ofNullable(ttl);
+    }
+
+    /**
+     * @return true if a TTL is set and the ensemble supports TTL nodes. Only valid after {@link #start(CuratorFramework)}
+     */
+    public boolean isTtlEnabled()
+    {
+        return ttlEnabled;
+    }
+
+    /**
+     * If a TTL is set, check whether the ensemble supports TTL nodes by creating a probe node
+     *
+     * @param curator the curator instance
+     */
+    public void start(CuratorFramework curator)
+    {
+        if ( ttl == null )
+        {
+            return;
+        }
+
+        String probePath = ZooKeeperConstants.getTtlProbePath();
+        try
+        {
+            try
+            {
+                curator.create().withTtl(ttl.toMillis()).withMode(CreateMode.PERSISTENT_WITH_TTL).forPath(probePath);
+            }
+            catch ( KeeperException.NodeExistsException ignore )
+            {
+                // created by another instance - the TTL is validated before existence
+            }
+            ttlEnabled = true;
+            curator.delete().quietly().forPath(probePath);
+        }
+        catch ( KeeperException.UnimplementedException dummy )
+        {
+            log.warn("TTL nodes are not enabled in the ZooKeeper ensemble - old runs will be cleaned instead");
+        }
+        catch ( Exception e )
+        {
+            log.error("Could not determine whether TTL nodes are enabled - old runs will be cleaned instead", e);
+        }
+    }
+
+    /**
+     * Return a builder that creates a persistent node of a run that hasn't completed (and its
+     * parents, as containers, if needed)
+     *
+     * @param curator the curator instance
+     * @return create builder
+     */
+    public ACLBackgroundPathAndBytesable<String> create(CuratorFramework curator)
+    {
+        return curator.create().creatingParentContainersIfNeeded().withMode(CreateMode.PERSISTENT);
+    }
+
+    /**
+     * Return a builder for a transaction operation that creates a persistent node of a run that hasn't completed
+     *
+     * @param curator the curator instance
+     * @return create operation builder
+     */
+    public ACLPathAndBytesable<CuratorOp> transactionCreate(CuratorFramework curator)
+    {
+        return curator.transactionOp().create().withMode(CreateMode.PERSISTENT);
+    }
+
+    /**
+     * Return a builder that creates a started or completed task node (and its parents, as containers, if needed)
+     *
+     * @param curator the curator instance
+     * @return create builder
+     */
+    public ACLBackgroundPathAndBytesable<String> createTask(CuratorFramework curator)
+    {
+        return createCompleted(curator);
+    }
+
+    /**
+     * Return a builder for a transaction operation that creates a started or completed task node
+     *
+     * @param curator the curator instance
+     * @return create operation builder
+     */
+    public ACLPathAndBytesable<CuratorOp> transactionCreateTask(CuratorFramework curator)
+    {
+        return transactionCreateCompleted(curator);
+    }
+
+    /**
+     * Return a builder that creates a node of a completed run (and its parents, as containers, if needed)
+     *
+     * @param curator the curator instance
+     * @return create builder
+     */
+    public ACLBackgroundPathAndBytesable<String> createCompleted(CuratorFramework curator)
+    {
+        return curator.create().withTtl(getTtlMs()).creatingParentContainersIfNeeded().withMode(getCompletedCreateMode());
+    }
+
+    /**
+     * Return a builder for a transaction operation that creates a node of a completed run
+     *
+     * @param curator the curator instance
+     * @return create operation builder
+     */
+    public ACLPathAndBytesable<CuratorOp> transactionCreateCompleted(CuratorFramework curator)
+    {
+        return curator.transactionOp().create().withTtl(getTtlMs()).withMode(getCompletedCreateMode());
+    }
+
+    /**
+     * Return the transaction operations that write the data of a node when its run completes. If
+     * TTL nodes are enabled the node is deleted and recreated as a TTL node.
+     *
+     * @param curator the curator instance
+     * @param path the node
+     * @param version expected version of the node or -1 for any version
+     * @param data the node's new data
+     * @return operations
+     * @throws Exception errors building the operations
+     */
+    public List<CuratorOp> transactionComplete(CuratorFramework curator, String path, int version, byte[] data) throws Exception
+    {
+        if ( !ttlEnabled )
+        {
+            return Collections.singletonList(curator.transactionOp().setData().withVersion(version).forPath(path, data));
+        }
+        return Arrays.asList(
+            curator.transactionOp().delete().withVersion(version).forPath(path),
+            transactionCreateCompleted(curator).forPath(path, data)
+        );
+    }
+
+    /**
+     * In the background, recreate the given nodes of a completed run (i.e. its chunks) as TTL nodes. Nodes
+     * that don't exist are skipped. Does nothing if TTL nodes aren't enabled.
+     *
+     * @param curator the curator instance
+     * @param paths the nodes
+     */
+    public void completeInBackground(CuratorFramework curator, Collection<String> paths)
+    {
+        if ( !ttlEnabled )
+        {
+            return;
+        }
+        for ( String path : paths )
+        {
+            try
+            {
+                curator.getData().inBackground((client, event) -> {
+                    if ( event.getResultCode() == KeeperException.Code.OK.intValue() )
+                    {
+                        completeNodeInBackground(curator, path, event.getStat().getVersion(), event.getData());
+                    }
+                    else if ( (event.getResultCode() != KeeperException.Code.OK.intValue()) && (event.getResultCode() != KeeperException.Code.NONODE.intValue()) )
+                    {
+                        log.error("Could not read node of completed run: " + path + " - code: " + KeeperException.Code.get(event.getResultCode()));
+                    }
+                }).forPath(path);
+            }
+            catch ( Exception e )
+            {
+                log.error("Could not read node of completed run: " + path, e);
+            }
+        }
+    }
+
+    private void completeNodeInBackground(CuratorFramework curator, String path, int version, byte[] data)
+    {
+        try
+        {
+            curator.transaction().inBackground((client, event) -> {
+                KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+                if ( code == KeeperException.Code.BADVERSION )
+                {
+                    // modified in the interim - read it again
+                    completeInBackground(curator, Collections.singletonList(path));
+                }
+                else if ( (code != KeeperException.Code.OK) && (code != KeeperException.Code.NONODE) )
+                {
+                    log.error("Could not recreate node of completed run as a TTL node: " + path + " - code: " + code);
+                }
+            }).forOperations(transactionComplete(curator, path, version, data));
+        }
+        catch ( Exception e )
+        {
+            log.error("Could not recreate node of completed run as a TTL node: " + path, e);
+        }
+    }
+
+    private CreateMode getCompletedCreateMode()
+    {
+        return ttlEnabled ? CreateMode.PERSISTENT_WITH_TTL : CreateMode.PERSISTENT;
+    }
+
+    private long getTtlMs()
+    {
+        return ttlEnabled ? ttl.toMillis() : -1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RunDataExpiry{" +
+            "ttl=" + ttl +
+            ", ttlEnabled=" + ttlEnabled +
+            '}';
+    }
+}
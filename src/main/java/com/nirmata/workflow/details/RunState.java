@@ -0,0 +1,233 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.nirmata.workflow.details.internalmodels.RunnableTask;
+import com.nirmata.workflow.models.ExecutableTask;
+import com.nirmata.workflow.models.RunId;
+import com.nirmata.workflow.models.TaskId;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory model of a single run used by the scheduler. Built once from the run's
+ * {@link RunnableTask} and then updated incrementally as tasks start and complete so that
+ * a task completion only touches the tasks that depend on it (see
+ * {@link RunnableTask#getTaskDependents()}). Not thread safe - a run's state must only
+ * be accessed by the thread that schedules the run.
+ */
+class RunState
+{
+    private final RunId runId;
+    private final RunnableTask runnableTask;
+    private final int version;
+    private final Map<TaskId, Integer> remainingDependencies = Maps.newHashMap();
+    private final Set<TaskId> completedTasks = Sets.newHashSet();
+    private final Set<TaskId> startedTasks = Sets.newHashSet();
+    private final Set<TaskId> failedTasks = Sets.newHashSet();
+    private final Set<TaskId> readyTasks = Sets.newLinkedHashSet();
+    private final Map<RunId, TaskId> subTaskRuns = Maps.newHashMap();
+    private boolean canceled = false;
+
+    /**
+     * @param runId the run
+     * @param runnableTask the run's tasks/DAG
+     * @param version the version of the run's ZNode that <code>runnableTask</code> was read from
+     */
+    RunState(RunId runId, RunnableTask runnableTask, int version)
+    {
+        this.runId = Preconditions.checkNotNull(runId, "runId cannot be null");
+        this.runnableTask = Preconditions.checkNotNull(runnableTask, "runnableTask cannot be null");
+        this.version = version;
+
+        Map<TaskId, ExecutableTask> tasks = runnableTask.getTasks();
+        runnableTask.getTaskDags().forEach(entry -> {
+            // dependencies that aren't in the run are considered complete
+            int count = (int)entry.getDependencies().stream().filter(tasks::containsKey).count();
+            remainingDependencies.put(entry.getTaskId(), count);
+            if ( count == 0 )
+            {
+                readyTasks.add(entry.getTaskId());
+            }
+        });
+
+        // non-executable tasks are merely containers and are always complete
+        tasks.values().stream().filter(task -> !task.isExecutable()).forEach(task -> taskCompleted(task.getTaskId()));
+    }
+
+    RunId getRunId()
+    {
+        return runId;
+    }
+
+    RunnableTask getRunnableTask()
+    {
+        return runnableTask;
+    }
+
+    int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Returns true if the given task is either complete or is waiting on a sub-task run
+     *
+     * @param taskId task
+     * @return true/false
+     */
+    boolean hasResult(TaskId taskId)
+    {
+        return completedTasks.contains(taskId) || subTaskRuns.containsValue(taskId);
+    }
+
+    void taskStarted(TaskId taskId)
+    {
+        startedTasks.add(taskId);
+        readyTasks.remove(taskId);
+    }
+
+    /**
+     * The task was marked as started but the write that dispatches it failed. Unless the task
+     * has since completed it becomes ready again.
+     *
+     * @param taskId task
+     */
+    void taskDispatchFailed(TaskId taskId)
+    {
+        if ( startedTasks.remove(taskId) && !hasResult(taskId) )
+        {
+            readyTasks.add(taskId);
+        }
+    }
+
+    /**
+     * Mark the given task as complete and release any dependents that are now ready
+     *
+     * @param taskId task
+     */
+    void taskCompleted(TaskId taskId)
+    {
+        if ( !runnableTask.getTasks().containsKey(taskId) || !completedTasks.add(taskId) )
+        {
+            return;
+        }
+        readyTasks.remove(taskId);
+
+        runnableTask.getTaskDependents().getOrDefault(taskId, ImmutableList.of()).forEach(dependent -> {
+            int remaining = remainingDependencies.merge(dependent, -1, Integer::sum);
+            if ( (remaining == 0) && !completedTasks.contains(dependent) && !startedTasks.contains(dependent) )
+            {
+                readyTasks.add(dependent);
+            }
+        });
+    }
+
+    /**
+     * The given task has completed but started a sub-task run. The task isn't
+     * complete until the sub-task run completes.
+     *
+     * @param subTaskRunId the sub-task run
+     * @param taskId task
+     */
+    void taskWaitingOnSubTaskRun(RunId subTaskRunId, TaskId taskId)
+    {
+        if ( !completedTasks.contains(taskId) )
+        {
+            subTaskRuns.put(subTaskRunId, taskId);
+            readyTasks.remove(taskId);
+        }
+    }
+
+    void subTaskRunCompleted(RunId subTaskRunId)
+    {
+        TaskId taskId = subTaskRuns.remove(subTaskRunId);
+        if ( taskId != null )
+        {
+            taskCompleted(taskId);
+        }
+    }
+
+    Collection<RunId> getSubTaskRunIds()
+    {
+        return ImmutableList.copyOf(subTaskRuns.keySet());
+    }
+
+    /**
+     * Record that the given task completed with a failure status
+     *
+     * @param taskId task
+     */
+    void taskFailed(TaskId taskId)
+    {
+        if ( runnableTask.getTasks().containsKey(taskId) )
+        {
+            failedTasks.add(taskId);
+        }
+    }
+
+    int getCompletedTaskQty()
+    {
+        return (int)completedTasks.stream().map(runnableTask.getTasks()::get).filter(ExecutableTask::isExecutable).count();
+    }
+
+    int getFailedTaskQty()
+    {
+        return failedTasks.size();
+    }
+
+    void setCanceled()
+    {
+        canceled = true;
+    }
+
+    boolean isCanceled()
+    {
+        return canceled;
+    }
+
+    /**
+     * Returns the executable tasks whose dependencies are all complete and that have not
+     * yet been started. The returned tasks are marked as started.
+     *
+     * @return ready tasks in DAG order
+     */
+    List<ExecutableTask> takeReadyTasks()
+    {
+        ImmutableList.Builder<ExecutableTask> builder = ImmutableList.builder();
+        readyTasks.forEach(taskId -> {
+            ExecutableTask task = runnableTask.getTasks().get(taskId);
+            if ( (task != null) && !startedTasks.contains(taskId) && !hasResult(taskId) )
+            {
+                builder.add(task);
+                startedTasks.add(taskId);
+            }
+        });
+        readyTasks.clear();
+        return builder.build();
+    }
+
+    boolean isComplete()
+    {
+        return completedTasks.size() == runnableTask.getTasks().size();
+    }
+}
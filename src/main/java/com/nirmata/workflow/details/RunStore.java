@@ -0,0 +1,327 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.nirmata.workflow.admin.RunInfo;
+import com.nirmata.workflow.details.internalmodels.RunSummary;
+import com.nirmata.workflow.details.internalmodels.RunnableTask;
+import com.nirmata.workflow.models.RunId;
+import com.nirmata.workflow.serialization.Serializer;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ *     How runs are stored. A run whose serialized {@link RunnableTask} is no larger than the chunk size
+ *     is stored in its run node as before. Larger runs are split into chunk nodes and the run
+ *     node holds a manifest instead: a marker byte (which can never start a serialized run), the
+ *     chunk count, the total length and checksum of the chunks and a serialized {@link RunSummary}
+ *     with the run's times and parent.
+ * </p>
+ *
+ * <p>
+ *     Chunks are never modified - completing a run only rewrites the manifest. Readers that only need
+ *     the times or parent of a run read the manifest. The chunks are read, in parallel, only when the
+ *     tasks of the run are needed.
+ * </p>
+ *
+ * <p>
+ *     Known limitation: chunks are opaque slices of the serialized run, not groups of tasks, and the
+ *     manifest has no index of which tasks are in which chunk. Reading any task of a split run therefore
+ *     reads all of its chunks, i.e. the scheduler can't load only the chunks it needs. It does so once per
+ *     version of the run node and {@link DecodedDataCache} keeps the result. Splitting along task
+ *     boundaries alone wouldn't help the scheduler - {@link RunState} needs the dependencies of every
+ *     task - so that would also need the DAG to be stored apart from the tasks.
+ * </p>
+ *
+ * <p>
+ *     When run data has a TTL the chunks, like the manifest, are persistent while the run is live. They
+ *     are recreated as TTL nodes only after the manifest has been, so they never expire before it.
+ * </p>
+ */
+public class RunStore
+{
+    private static final Logger log = LoggerFactory.getLogger(RunStore.class);
+    private final int chunkSize;
+
+    public static final int DEFAULT_CHUNK_SIZE = 512 * 1024;
+    public static final RunStore DEFAULT = new RunStore(DEFAULT_CHUNK_SIZE);
+
+    private static final byte MANIFEST_MARKER = 2;
+    private static final byte MANIFEST_VERSION = 1;
+    private static final int MANIFEST_HEADER_LENGTH = 2 + (3 * Integer.BYTES);
+    private static final int MAX_CHUNK_READS = 10;
+
+    /**
+     * @param chunkSize runs whose serialized size is larger than this many bytes are split into chunks of this size
+     */
+    public RunStore(int chunkSize)
+    {
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize must be greater than 0");
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    /**
+     * @param data data of a run node
+     * @return true if the run node holds a manifest
+     */
+    static boolean isChunked(byte[] data)
+    {
+        return (data.length >= MANIFEST_HEADER_LENGTH) && (data[0] == MANIFEST_MARKER);
+    }
+
+    /**
+     * Serialize a new run. If the run is split, its chunk nodes are created before returning.
+     *
+     * @param workflowManager manager
+     * @param runId the run
+     * @param runnableTask the run
+     * @return the data to store in the run node
+     * @throws Exception errors writing chunks
+     */
+    byte[] newRunData(WorkflowManagerImpl workflowManager, RunId runId, RunnableTask runnableTask) throws Exception
+    {
+        byte[] bytes = workflowManager.getSerializer().serialize(runnableTask);
+        if ( bytes.length <= chunkSize )
+        {
+            return bytes;
+        }
+
+        int chunkQty = (bytes.length + chunkSize - 1) / chunkSize;
+        log.debug(String.format("Storing run %s of %d bytes in %d chunks", runId, bytes.length, chunkQty));
+        CuratorFramework curator = workflowManager.getCurator();
+        int createdQty = 0;
+        try
+        {
+            for ( ; createdQty < chunkQty; ++createdQty )
+            {
+                int offset = createdQty * chunkSize;
+                byte[] chunk = Arrays.copyOfRange(bytes, offset, Math.min(offset + chunkSize, bytes.length));
+                workflowManager.getRunDataExpiry().create(curator).forPath(ZooKeeperConstants.getRunChunkPath(runId, createdQty), chunk);
+            }
+        }
+        catch ( Exception e )
+        {
+            // don't leave the chunks of a run that was never submitted - but only delete the
+            // ones created here. Any others belong to an existing run with the same id.
+            for ( int i = 0; i < createdQty; ++i )
+            {
+                curator.delete().quietly().forPath(ZooKeeperConstants.getRunChunkPath(runId, i));
+            }
+            throw e;
+        }
+        return newManifest(workflowManager.getSerializer(), chunkQty, bytes.length, checksum(bytes), runnableTask);
+    }
+
+    /**
+     * Delete the chunks created by {@link #newRunData(WorkflowManagerImpl, RunId, RunnableTask)} when the
+     * run node could not be created. Nothing is deleted if the run node holds the given data - i.e. the
+     * create succeeded but its result was lost.
+     *
+     * @param workflowManager manager
+     * @param runId the run
+     * @param data the data returned by newRunData()
+     */
+    void deleteNewRunData(WorkflowManagerImpl workflowManager, RunId runId, byte[] data)
+    {
+        List<String> chunkPaths = getChunkPaths(runId, data);
+        if ( chunkPaths.isEmpty() )
+        {
+            return;
+        }
+
+        CuratorFramework curator = workflowManager.getCurator();
+        try
+        {
+            byte[] currentData = curator.getData().forPath(ZooKeeperConstants.getRunPath(runId));
+            if ( Arrays.equals(currentData, data) )
+            {
+                return;
+            }
+        }
+        catch ( KeeperException.NoNodeException ignore )
+        {
+            // the run wasn't created
+        }
+        catch ( Exception e )
+        {
+            log.error("Could not read run node - leaving its chunks. Run: " + runId, e);
+            return;
+        }
+
+        for ( String path : chunkPaths )
+        {
+            try
+            {
+                curator.delete().quietly().forPath(path);
+            }
+            catch ( Exception e )
+            {
+                log.error("Could not delete chunk: " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Serialize an updated version of a run (e.g. its completion). The tasks of a run never change
+     * so the chunks of a split run are kept and only its manifest is replaced.
+     *
+     * @param serializer serializer
+     * @param currentData the current data of the run node
+     * @param runnableTask the updated run
+     * @return the data to store in the run node
+     */
+    byte[] updatedRunData(Serializer serializer, byte[] currentData, RunnableTask runnableTask)
+    {
+        if ( !isChunked(currentData) )
+        {
+            return serializer.serialize(runnableTask);
+        }
+        ByteBuffer header = ByteBuffer.wrap(currentData, 2, MANIFEST_HEADER_LENGTH - 2);
+        return newManifest(serializer, header.getInt(), header.getInt(), header.getInt(), runnableTask);
+    }
+
+    /**
+     * Read a run, reassembling it from its chunks if it was split
+     *
+     * @param workflowManager manager
+     * @param runId the run
+     * @param data data of the run node
+     * @return the run
+     * @throws Exception errors reading chunks
+     */
+    RunnableTask readRun(WorkflowManagerImpl workflowManager, RunId runId, byte[] data) throws Exception
+    {
+        Serializer serializer = workflowManager.getSerializer();
+        if ( !isChunked(data) )
+        {
+            return serializer.deserialize(data, RunnableTask.class);
+        }
+
+        ByteBuffer header = ByteBuffer.wrap(data, 2, MANIFEST_HEADER_LENGTH - 2);
+        int chunkQty = header.getInt();
+        int length = header.getInt();
+        int checksum = header.getInt();
+        List<String> chunkPaths = getChunkPaths(runId, data);
+        Map<String, ChildData> chunks = new AsyncReader(workflowManager.getCurator(), MAX_CHUNK_READS).read(chunkPaths);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        for ( String path : chunkPaths )
+        {
+            ChildData chunk = chunks.get(path);
+            if ( chunk == null )
+            {
+                throw new IllegalStateException("Missing chunk " + path + " of " + chunkQty + " for run: " + runId);
+            }
+            out.write(chunk.getData(), 0, chunk.getData().length);
+        }
+        byte[] bytes = out.toByteArray();
+        if ( (bytes.length != length) || (checksum(bytes) != checksum) )
+        {
+            throw new IllegalStateException("Chunks of run do not match its manifest: " + runId);
+        }
+
+        // the chunks have the run as submitted - its times, etc. are in the manifest
+        RunnableTask chunkedRunnableTask = serializer.deserialize(bytes, RunnableTask.class);
+        RunSummary summary = readSummary(serializer, data);
+        return new RunnableTask(chunkedRunnableTask.getTasks(), chunkedRunnableTask.getTaskDags(), chunkedRunnableTask.getTaskDependents(), summary.getStartTimeUtc(), summary.getCompletionTimeUtc().orElse(null), summary.getParentRunId().orElse(null));
+    }
+
+    /**
+     * Read only the times and parent of a run - i.e. without reading its chunks. The
+     * task counts of the result are always 0.
+     *
+     * @param serializer serializer
+     * @param data data of the run node
+     * @return times and parent
+     */
+    static RunSummary readSummary(Serializer serializer, byte[] data)
+    {
+        if ( !isChunked(data) )
+        {
+            RunnableTask runnableTask = serializer.deserialize(data, RunnableTask.class);
+            return newSummary(runnableTask);
+        }
+        return serializer.deserialize(Arrays.copyOfRange(data, MANIFEST_HEADER_LENGTH, data.length), RunSummary.class);
+    }
+
+    static RunInfo readRunInfo(Serializer serializer, RunId runId, byte[] data)
+    {
+        if ( !isChunked(data) )
+        {
+            return serializer.deserializeRunInfo(runId, data);
+        }
+        RunSummary summary = readSummary(serializer, data);
+        return new RunInfo(runId, summary.getStartTimeUtc(), summary.getCompletionTimeUtc().orElse(null));
+    }
+
+    /**
+     * @param runId the run
+     * @param data data of the run node
+     * @return paths of the run's chunk nodes - empty if it isn't split
+     */
+    static List<String> getChunkPaths(RunId runId, byte[] data)
+    {
+        if ( !isChunked(data) )
+        {
+            return Lists.newArrayList();
+        }
+        int chunkQty = ByteBuffer.wrap(data, 2, Integer.BYTES).getInt();
+        return IntStream.range(0, chunkQty).mapToObj(i -> ZooKeeperConstants.getRunChunkPath(runId, i)).collect(Collectors.toList());
+    }
+
+    static RunSummary newSummary(RunnableTask runnableTask)
+    {
+        return new RunSummary(runnableTask.getStartTimeUtc(), runnableTask.getCompletionTimeUtc().orElse(null), runnableTask.getParentRunId().orElse(null), 0, 0);
+    }
+
+    private static byte[] newManifest(Serializer serializer, int chunkQty, int length, int checksum, RunnableTask runnableTask)
+    {
+        byte[] summaryBytes = serializer.serialize(newSummary(runnableTask));
+        return ByteBuffer.allocate(MANIFEST_HEADER_LENGTH + summaryBytes.length)
+            .put(MANIFEST_MARKER)
+            .put(MANIFEST_VERSION)
+            .putInt(chunkQty)
+            .putInt(length)
+            .putInt(checksum)
+            .put(summaryBytes)
+            .array();
+    }
+
+    private static int checksum(byte[] bytes)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int)crc.getValue();
+    }
+}
@@ -17,6 +17,7 @@ package com.nirmata.workflow.details;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.nirmata.workflow.details.internalmodels.RunnableTaskDag;
 import com.nirmata.workflow.models.Task;
@@ -25,6 +26,7 @@ import org.jgrapht.alg.CycleDetector;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.traverse.TopologicalOrderIterator;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -34,15 +36,18 @@ public class RunnableTaskDagBuilder
 {
     private final List<RunnableTaskDag> entries;
     private final Map<TaskId, Task> tasks;
+    private final Map<TaskId, Collection<TaskId>> dependents;
 
     public RunnableTaskDagBuilder(Task task)
     {
         ImmutableList.Builder<RunnableTaskDag> entriesBuilder = ImmutableList.builder();
         ImmutableMap.Builder<TaskId, Task> tasksBuilder = ImmutableMap.builder();
-        build(task, entriesBuilder, tasksBuilder);
+        ImmutableMap.Builder<TaskId, Collection<TaskId>> dependentsBuilder = ImmutableMap.builder();
+        build(task, entriesBuilder, tasksBuilder, dependentsBuilder);
 
         entries = entriesBuilder.build();
         tasks = tasksBuilder.build();
+        dependents = dependentsBuilder.build();
     }
 
     public List<RunnableTaskDag> getEntries()
@@ -55,7 +60,18 @@ public class RunnableTaskDagBuilder
         return tasks;
     }
 
-    private void build(Task task, ImmutableList.Builder<RunnableTaskDag> entriesBuilder, ImmutableMap.Builder<TaskId, Task> tasksBuilder)
+    /**
+     * Returns the reverse of {@link #getEntries()}: for each task, the tasks that depend
+     * on it. Tasks without dependents are not included.
+     *
+     * @return dependents
+     */
+    public Map<TaskId, Collection<TaskId>> getDependents()
+    {
+        return dependents;
+    }
+
+    private void build(Task task, ImmutableList.Builder<RunnableTaskDag> entriesBuilder, ImmutableMap.Builder<TaskId, Task> tasksBuilder, ImmutableMap.Builder<TaskId, Collection<TaskId>> dependentsBuilder)
     {
         DefaultDirectedGraph<TaskId, DefaultEdge> graph = new DefaultDirectedGraph<>(DefaultEdge.class);
         worker(graph, task, null, tasksBuilder, Sets.newHashSet());
@@ -77,6 +93,19 @@ public class RunnableTaskDagBuilder
                 .filter(edge -> !edge.equals(taskId) && !edge.getId().equals(""))
                 .collect(Collectors.toSet());
             entriesBuilder.add(new RunnableTaskDag(taskId, processed));
+
+            if ( !taskId.getId().equals("") )
+            {
+                Set<TaskId> taskDependents = graph.outgoingEdgesOf(taskId)
+                    .stream()
+                    .map(graph::getEdgeTarget)
+                    .filter(target -> !target.equals(taskId))
+                    .collect(Collectors.toSet());
+                if ( !taskDependents.isEmpty() )
+                {
+                    dependentsBuilder.put(taskId, ImmutableSet.copyOf(taskDependents));
+                }
+            }
         }
     }
 
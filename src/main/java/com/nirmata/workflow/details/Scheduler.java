@@ -20,11 +20,14 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalNotification;
-import com.google.common.collect.Queues;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.nirmata.workflow.admin.TaskLayout;
 import com.nirmata.workflow.admin.WorkflowManagerState;
+import com.nirmata.workflow.details.internalmodels.RunSummary;
 import com.nirmata.workflow.details.internalmodels.RunnableTask;
 import com.nirmata.workflow.details.internalmodels.StartedTask;
+import com.nirmata.workflow.executor.TaskExecutionStatus;
 import com.nirmata.workflow.models.ExecutableTask;
 import com.nirmata.workflow.models.RunId;
 import com.nirmata.workflow.models.TaskExecutionResult;
@@ -32,35 +35,89 @@ import com.nirmata.workflow.models.TaskId;
 import com.nirmata.workflow.models.TaskType;
 import com.nirmata.workflow.queue.Queue;
 import com.nirmata.workflow.queue.QueueFactory;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.curator.framework.api.transaction.CuratorOp;
 import org.apache.curator.framework.recipes.cache.ChildData;
-import org.apache.curator.framework.recipes.cache.PathChildrenCache;
-import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
+import org.apache.curator.framework.recipes.cache.TreeCacheSelector;
 import org.apache.curator.utils.CloseableUtils;
+import org.apache.curator.utils.ThreadUtils;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.jute.Record;
+import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
+import org.apache.zookeeper.proto.CreateRequest;
+import org.apache.zookeeper.proto.CreateTTLRequest;
+import org.apache.zookeeper.proto.SetDataRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.LocalDateTime;
-import java.util.Set;
-import java.util.concurrent.BlockingQueue;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 class Scheduler
 {
     @VisibleForTesting
     static volatile AtomicInteger debugBadRunIdCount;
 
+    private static final int MAX_PENDING_RUNS = 10000;
+    private static final int MAX_DECODED_DATA = 10000;
+    // approximate serialized size of an operation excluding its path and data
+    private static final int OPERATION_OVERHEAD = 64;
+    private static final int MAX_IN_FLIGHT_WRITES = 1000;
+    private static final long WORKER_POLL_MS = TimeUnit.MINUTES.toMillis(1);
+
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final WorkflowManagerImpl workflowManager;
     private final QueueFactory queueFactory;
     private final AutoCleanerHolder autoCleanerHolder;
-    private final PathChildrenCache completedTasksCache;
-    private final PathChildrenCache startedTasksCache;
-    private final PathChildrenCache runsCache;
+    private final TreeCache completedTasksCache;
+    private final TreeCache startedTasksCache;
+    private final TreeCache runsCache;
+    private final SchedulerConfig schedulerConfig;
+    private final TaskPaths taskPaths;
+    private final int partition;
+    private final DecodedDataCache decodedData;
+    private final List<CoalescingQueue<RunId>> updatedRunIds;
+    private final ConcurrentMap<RunId, RunState> runStates = Maps.newConcurrentMap();
+    private final ConcurrentMap<RunId, List<TaskId>> pendingCompletedTasks = Maps.newConcurrentMap();
+    private final ConcurrentMap<RunId, RunId> foreignSubTaskRuns = Maps.newConcurrentMap();
+    private final ConcurrentMap<RunId, List<DispatchFailure>> pendingDispatchFailures = Maps.newConcurrentMap();
+    private final Semaphore writePermits = new Semaphore(MAX_IN_FLIGHT_WRITES);
+    private final CuratorWatcher subTaskRunWatcher = this::subTaskRunChanged;
     private final AtomicReference<WorkflowManagerState.State> state = new AtomicReference<>(WorkflowManagerState.State.LATENT);
+    private final AtomicInteger processingQty = new AtomicInteger(0);
+    private final CountDownLatch initLatch = new CountDownLatch(2);
+    private final CountDownLatch failedLatch = new CountDownLatch(1);
+    private final ReadWriteLock evaluationLock = new ReentrantReadWriteLock();
+    private final ExecutorService workerService;
+    private volatile boolean leader = false;
     private final LoadingCache<TaskType, Queue> queues = CacheBuilder.newBuilder()
         .removalListener(Scheduler::remover)
         .build(new CacheLoader<TaskType, Queue>()
@@ -75,261 +132,1026 @@ class Scheduler
             }
         });
 
+    private static class DispatchFailure
+    {
+        private final ExecutableTask task;
+        private final boolean missingParent;
+
+        private DispatchFailure(ExecutableTask task, boolean missingParent)
+        {
+            this.task = task;
+            this.missingParent = missingParent;
+        }
+    }
+
     private static void remover(RemovalNotification<TaskType, Queue> notification)
     {
         CloseableUtils.closeQuietly(notification.getValue());
     }
 
-    Scheduler(WorkflowManagerImpl workflowManager, QueueFactory queueFactory, AutoCleanerHolder autoCleanerHolder)
+    Scheduler(WorkflowManagerImpl workflowManager, QueueFactory queueFactory, AutoCleanerHolder autoCleanerHolder, SchedulerConfig schedulerConfig, int partition)
     {
         this.workflowManager = workflowManager;
         this.queueFactory = queueFactory;
         this.autoCleanerHolder = autoCleanerHolder;
+        this.schedulerConfig = schedulerConfig;
+        this.partition = partition;
+        taskPaths = workflowManager.getTaskPaths();
+        decodedData = new DecodedDataCache(workflowManager.getSerializer(), MAX_DECODED_DATA);
+
+        updatedRunIds = IntStream.range(0, schedulerConfig.getWorkerQty())
+            .mapToObj(i -> new CoalescingQueue<RunId>(MAX_PENDING_RUNS))
+            .collect(Collectors.toList());
+        workerService = ThreadUtils.newFixedThreadPool(schedulerConfig.getWorkerQty(), "Scheduler");
+
+        // each cache only holds the nodes of runs that belong to this scheduler's partition
+        // the hierarchical layout nests task nodes one level deeper: parent/runId/taskId
+        int taskDepth = taskPaths.readsLayout(TaskLayout.HIERARCHICAL) ? 2 : 1;
+        String completedParentPath = ZooKeeperConstants.getCompletedTaskParentPath();
+        String startedParentPath = ZooKeeperConstants.getStartedTasksParentPath();
+        completedTasksCache = newPartitionCache(completedParentPath, path -> ZooKeeperConstants.parseRunIdFromTaskPath(completedParentPath, path), taskDepth, true);
+        startedTasksCache = newPartitionCache(startedParentPath, path -> ZooKeeperConstants.parseRunIdFromTaskPath(startedParentPath, path), taskDepth, false);
+        runsCache = newPartitionCache(ZooKeeperConstants.getRunParentPath(), ZooKeeperConstants::parseRunIdFromRunPath, 1, true);
+    }
+
+    private TreeCache newPartitionCache(String parentPath, Function<String, RunId> runIdFromPath, int maxDepth, boolean cacheData)
+    {
+        TreeCacheSelector selector = new TreeCacheSelector()
+        {
+            @Override
+            public boolean traverseChildren(String fullPath)
+            {
+                return true;
+            }
+
+            @Override
+            public boolean acceptChild(String fullPath)
+            {
+                return isPartitionRun(runIdFromPath.apply(fullPath));
+            }
+        };
+        return TreeCache.newBuilder(workflowManager.getCurator(), parentPath)
+            .setCacheData(cacheData)
+            .setMaxDepth(maxDepth)
+            .setCreateParentNodes(true)
+            .setSelector(selector)
+            .build();
+    }
+
+    private boolean isPartitionRun(RunId runId)
+    {
+        return schedulerConfig.getPartition(runId) == partition;
+    }
+
+    private static ChildData getChildData(TreeCacheEvent event, String parentPath)
+    {
+        // tree caches also report the parent node itself - only the children are of interest
+        ChildData data = event.getData();
+        if ( (data != null) && parentPath.equals(ZKPaths.getPathAndNode(data.getPath()).getPath()) )
+        {
+            return data;
+        }
+        return null;
+    }
+
+    private static ChildData getTaskData(TreeCacheEvent event, String parentPath)
+    {
+        // ignore the parent node and, for the hierarchical layout, the per-run nodes
+        ChildData data = event.getData();
+        if ( (data != null) && ZooKeeperConstants.isTaskPath(parentPath, data.getPath()) )
+        {
+            return data;
+        }
+        return null;
+    }
+
+    private static ChildData getCurrentData(TreeCache cache, List<String> paths)
+    {
+        for ( String path : paths )
+        {
+            ChildData data = cache.getCurrentData(path);
+            if ( data != null )
+            {
+                return data;
+            }
+        }
+        return null;
+    }
 
-        completedTasksCache = new PathChildrenCache(workflowManager.getCurator(), ZooKeeperConstants.getCompletedTaskParentPath(), true);
-        startedTasksCache = new PathChildrenCache(workflowManager.getCurator(), ZooKeeperConstants.getStartedTasksParentPath(), false);
-        runsCache = new PathChildrenCache(workflowManager.getCurator(), ZooKeeperConstants.getRunParentPath(), true);
+    private ChildData getCompletedTaskData(RunId runId, TaskId taskId)
+    {
+        return getCurrentData(completedTasksCache, taskPaths.getCompletedTaskReadPaths(runId, taskId));
+    }
+
+    private boolean isStartedTask(RunId runId, TaskId taskId)
+    {
+        return getCurrentData(startedTasksCache, taskPaths.getStartedTaskReadPaths(runId, taskId)) != null;
     }
 
     WorkflowManagerState.State getState()
     {
-        return state.get();
+        WorkflowManagerState.State localState = state.get();
+        if ( (localState == WorkflowManagerState.State.SLEEPING) && (processingQty.get() > 0) )
+        {
+            return WorkflowManagerState.State.PROCESSING;
+        }
+        return localState;
     }
 
-    void run()
+    int getPendingRunCount()
     {
-        CountDownLatch initLatch = new CountDownLatch(2);
+        return updatedRunIds.stream().mapToInt(CoalescingQueue::size).sum();
+    }
 
-        BlockingQueue<RunId> updatedRunIds = Queues.newLinkedBlockingQueue();
+    /**
+     * Start the caches and the worker threads. Until {@link #lead()} is called the scheduler
+     * is a standby: it keeps its caches and run states current but doesn't dispatch tasks
+     * or complete runs.
+     */
+    void start()
+    {
         completedTasksCache.getListenable().addListener((client, event) -> {
-            if ( event.getType() == PathChildrenCacheEvent.Type.INITIALIZED )
+            ChildData data = getTaskData(event, ZooKeeperConstants.getCompletedTaskParentPath());
+            if ( event.getType() == TreeCacheEvent.Type.INITIALIZED )
             {
                 initLatch.countDown();
             }
-            else if ( event.getType() == PathChildrenCacheEvent.Type.CHILD_ADDED )
+            else if ( (event.getType() == TreeCacheEvent.Type.NODE_ADDED) && (data != null) )
             {
-                RunId runId = new RunId(ZooKeeperConstants.getRunIdFromCompletedTasksPath(event.getData().getPath()));
-                updatedRunIds.add(runId);
+                String parentPath = ZooKeeperConstants.getCompletedTaskParentPath();
+                RunId runId = ZooKeeperConstants.parseRunIdFromTaskPath(parentPath, data.getPath());
+                if ( initLatch.getCount() == 0 )
+                {
+                    // before initialization, run states are built from the fully loaded cache
+                    TaskId taskId = ZooKeeperConstants.parseTaskIdFromTaskPath(parentPath, data.getPath());
+                    addPendingCompletedTask(runId, taskId);
+                }
+                addUpdatedRunId(runId);
+            }
+            else if ( (event.getType() == TreeCacheEvent.Type.NODE_REMOVED) && (data != null) )
+            {
+                decodedData.remove(data.getPath());
             }
         });
         runsCache.getListenable().addListener((client, event) -> {
-            if ( event.getType() == PathChildrenCacheEvent.Type.INITIALIZED )
+            ChildData data = getChildData(event, ZooKeeperConstants.getRunParentPath());
+            if ( event.getType() == TreeCacheEvent.Type.INITIALIZED )
             {
                 initLatch.countDown();
             }
-            else if ( event.getType() == PathChildrenCacheEvent.Type.CHILD_ADDED )
+            else if ( data == null )
             {
-                RunId runId = new RunId(ZooKeeperConstants.getRunIdFromRunPath(event.getData().getPath()));
-                updatedRunIds.add(runId);
+                // ignore events for the parent node
             }
-            else if ( event.getType() == PathChildrenCacheEvent.Type.CHILD_UPDATED )
+            else if ( event.getType() == TreeCacheEvent.Type.NODE_ADDED )
             {
-                RunnableTask runnableTask = workflowManager.getSerializer().deserialize(event.getData().getData(), RunnableTask.class);
-                if ( runnableTask.getParentRunId().isPresent() )
+                RunSummary runSummary = getRunSummary(data);
+                if ( runSummary.getCompletionTimeUtc().isPresent() )
                 {
-                    updatedRunIds.add(runnableTask.getParentRunId().get());
+                    // not a new run - either loaded when the cache started or recreated as a TTL node
+                    // when it completed. Its parent is updated as for a completion.
+                    addUpdatedParentRunId(runSummary);
                 }
+                else
+                {
+                    addUpdatedRunId(ZooKeeperConstants.parseRunIdFromRunPath(data.getPath()));
+                }
+            }
+            else if ( event.getType() == TreeCacheEvent.Type.NODE_UPDATED )
+            {
+                RunSummary runSummary = getRunSummary(data);
+                addUpdatedParentRunId(runSummary);
+
+                RunId runId = ZooKeeperConstants.parseRunIdFromRunPath(data.getPath());
+                if ( runSummary.getCompletionTimeUtc().isPresent() && runStates.containsKey(runId) )
+                {
+                    addUpdatedRunId(runId);   // completed externally (e.g. canceled) - causes the run state to be dropped
+                }
+            }
+            else if ( event.getType() == TreeCacheEvent.Type.NODE_REMOVED )
+            {
+                RunId runId = ZooKeeperConstants.parseRunIdFromRunPath(data.getPath());
+                decodedData.remove(data.getPath());
+                runStates.remove(runId);
+                pendingCompletedTasks.remove(runId);
             }
         });
 
         try
         {
-            completedTasksCache.start(PathChildrenCache.StartMode.POST_INITIALIZED_EVENT);
-            startedTasksCache.start(PathChildrenCache.StartMode.NORMAL);
-            runsCache.start(PathChildrenCache.StartMode.POST_INITIALIZED_EVENT);
+            completedTasksCache.start();
+            startedTasksCache.start();
+            runsCache.start();
+        }
+        catch ( Exception e )
+        {
+            String message = "Could not start scheduler caches for partition " + partition;
+            log.error(message, e);
+            throw new RuntimeException(message, e);
+        }
+        state.set(WorkflowManagerState.State.SLEEPING);
 
-            state.set(WorkflowManagerState.State.SLEEPING);
+        for ( int i = 0; i < schedulerConfig.getWorkerQty(); ++i )
+        {
+            int workerIndex = i;
+            workerService.submit(() -> {
+                try
+                {
+                    initLatch.await();
+                    runWorker(workerIndex);
+                }
+                catch ( InterruptedException dummy )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                catch ( Throwable e )
+                {
+                    // a failed scheduler can't be trusted - it must be closed and replaced
+                    log.error("Error while running scheduler worker " + workerIndex, e);
+                    failedLatch.countDown();
+                }
+            });
+        }
+    }
+
+    /**
+     * Dispatch tasks for this scheduler's partition. Blocks until interrupted (i.e. leadership
+     * is lost) or until the scheduler fails. The caches and run states are kept on return so that
+     * the scheduler reverts to being a standby.
+     */
+    void lead()
+    {
+        try
+        {
             initLatch.await();
             log.debug("initLatch completed");
 
-            while ( !Thread.currentThread().isInterrupted() )
+            leader = true;
+            // nothing is dispatched while in standby - re-evaluate every run of the partition
+            updatedRunIds.forEach(CoalescingQueue::markOverflowed);
+            if ( partition == 0 )
             {
-                state.set(WorkflowManagerState.State.SLEEPING);
-                RunId runId = updatedRunIds.poll(autoCleanerHolder.getRunPeriod().toMillis(), TimeUnit.MILLISECONDS);
-                state.set(WorkflowManagerState.State.PROCESSING);
-                if ( runId != null )
+                // the auto cleaner runs in its own thread so that it never delays scheduling. It isn't
+                // needed when ZooKeeper expires run data.
+                if ( !workflowManager.getRunDataExpiry().isTtlEnabled() )
                 {
-                    updateTasks(runId);
-                }
-                if ( autoCleanerHolder.shouldRun() )
-                {
-                    autoCleanerHolder.run(workflowManager.getAdmin());
+                    autoCleanerHolder.start(workflowManager.getAdmin());
                 }
             }
+            failedLatch.await();
         }
         catch ( InterruptedException dummy )
         {
             Thread.currentThread().interrupt();
         }
-        catch ( Throwable e )
-        {
-            log.error("Error while running scheduler", e);
-        }
         finally
         {
-            state.set(WorkflowManagerState.State.CLOSED);
+            if ( partition == 0 )
+            {
+                autoCleanerHolder.stop();
+            }
+
+            // wait for evaluations in progress so that nothing is dispatched after leadership is released
+            evaluationLock.writeLock().lock();
+            try
+            {
+                leader = false;
+            }
+            finally
+            {
+                evaluationLock.writeLock().unlock();
+            }
             queues.invalidateAll();
             queues.cleanUp();
-            CloseableUtils.closeQuietly(completedTasksCache);
-            CloseableUtils.closeQuietly(startedTasksCache);
-            CloseableUtils.closeQuietly(runsCache);
         }
     }
 
-    private boolean hasCanceledTasks(RunId runId, RunnableTask runnableTask)
+    boolean isFailed()
+    {
+        return failedLatch.getCount() == 0;
+    }
+
+    void close()
+    {
+        workerService.shutdownNow();
+        state.set(WorkflowManagerState.State.CLOSED);
+        updatedRunIds.forEach(CoalescingQueue::clear);
+        runStates.clear();
+        pendingCompletedTasks.clear();
+        foreignSubTaskRuns.clear();
+        pendingDispatchFailures.clear();
+        decodedData.clear();
+        queues.invalidateAll();
+        queues.cleanUp();
+        CloseableUtils.closeQuietly(completedTasksCache);
+        CloseableUtils.closeQuietly(startedTasksCache);
+        CloseableUtils.closeQuietly(runsCache);
+    }
+
+    private void runWorker(int workerIndex) throws InterruptedException
     {
-        return runnableTask.getTasks().keySet().stream().anyMatch(taskId -> {
-            String completedTaskPath = ZooKeeperConstants.getCompletedTaskPath(runId, taskId);
-            ChildData currentData = completedTasksCache.getCurrentData(completedTaskPath);
-            if ( currentData != null )
+        CoalescingQueue<RunId> workerRunIds = updatedRunIds.get(workerIndex);
+        while ( !Thread.currentThread().isInterrupted() )
+        {
+            RunId runId = workerRunIds.poll(WORKER_POLL_MS, TimeUnit.MILLISECONDS);
+            processingQty.incrementAndGet();
+            evaluationLock.readLock().lockInterruptibly();
+            try
             {
-                TaskExecutionResult taskExecutionResult = workflowManager.getSerializer().deserialize(currentData.getData(), TaskExecutionResult.class);
-                return taskExecutionResult.getStatus().isCancelingStatus();
+                if ( runId != null )
+                {
+                    updateTasks(runId);
+                }
+                if ( workerRunIds.clearOverflowed() )
+                {
+                    log.info("Re-evaluating all runs for worker " + workerIndex);
+                    Collection<String> ids = getCurrentChildren(runsCache, ZooKeeperConstants.getRunParentPath()).keySet();
+                    for ( RunId workerRunId : getWorkerRunIds(ids, workerIndex, updatedRunIds.size()) )
+                    {
+                        updateTasks(workerRunId);
+                    }
+                }
             }
-            return false;
-        });
+            finally
+            {
+                evaluationLock.readLock().unlock();
+                processingQty.decrementAndGet();
+            }
+        }
+    }
+
+    private static Map<String, ChildData> getCurrentChildren(TreeCache cache, String parentPath)
+    {
+        Map<String, ChildData> children = cache.getCurrentChildren(parentPath);
+        return (children != null) ? children : Collections.emptyMap();
+    }
+
+    private int getWorkerIndex(RunId runId)
+    {
+        return getWorkerIndex(runId, updatedRunIds.size());
+    }
+
+    @VisibleForTesting
+    static int getWorkerIndex(RunId runId, int workerQty)
+    {
+        return Math.floorMod(runId.hashCode(), workerQty);
+    }
+
+    /**
+     * Return the runs owned by a worker - used when the worker re-evaluates all of its runs
+     *
+     * @param ids IDs of all runs
+     * @param workerIndex the worker
+     * @param workerQty number of workers
+     * @return the worker's runs
+     */
+    @VisibleForTesting
+    static List<RunId> getWorkerRunIds(Collection<String> ids, int workerIndex, int workerQty)
+    {
+        return ids.stream()
+            .map(RunId::new)
+            .filter(runId -> getWorkerIndex(runId, workerQty) == workerIndex)
+            .collect(Collectors.toList());
     }
 
-    static void completeRunnableTask(Logger log, WorkflowManagerImpl workflowManager, RunId runId, RunnableTask runnableTask, int version)
+    private void addUpdatedParentRunId(RunSummary runSummary)
+    {
+        if ( runSummary.getParentRunId().isPresent() && isPartitionRun(runSummary.getParentRunId().get()) )
+        {
+            addUpdatedRunId(runSummary.getParentRunId().get());
+        }
+    }
+
+    private void addUpdatedRunId(RunId runId)
+    {
+        // run states and queued updates of a run share a single instance of its ID
+        updatedRunIds.get(getWorkerIndex(runId)).add(runId.intern());
+    }
+
+    /**
+     * Write the completion of a run. The run and its summary are written in one transaction that is
+     * conditional on the given version of the run node. Once it succeeds the run is indexed for the
+     * auto cleaner. This is the only place runs are completed - the scheduler and cancelRun() both use it.
+     *
+     * @param log logger
+     * @param workflowManager manager
+     * @param runId the run
+     * @param runnableTask the run as read
+     * @param runData data of the run node
+     * @param version version of the run node
+     * @param completedTaskQty number of tasks that have completed
+     * @param failedTaskQty number of tasks that have failed
+     * @return completes with the result of the write - on a Curator event thread
+     * @throws Exception errors starting the write
+     */
+    static CompletableFuture<KeeperException.Code> completeRunnableTask(Logger log, WorkflowManagerImpl workflowManager, RunId runId, RunnableTask runnableTask, byte[] runData, int version, int completedTaskQty, int failedTaskQty) throws Exception
     {
         log.info("Completing run: " + runId);
+        RunnableTask completedRunnableTask = newCompletedRunnableTask(runnableTask);
+        String runPath = ZooKeeperConstants.getRunPath(runId);
+        byte[] json = workflowManager.getRunStore().updatedRunData(workflowManager.getSerializer(), runData, completedRunnableTask);
+        byte[] summaryBytes = workflowManager.getSerializer().serialize(newRunSummary(completedRunnableTask, completedTaskQty, failedTaskQty));
+        String summaryPath = ZooKeeperConstants.getRunSummaryPath(runId);
+
+        // the run and its summary are written together so that they can't disagree
+        CuratorFramework curator = workflowManager.getCurator();
+        RunDataExpiry runDataExpiry = workflowManager.getRunDataExpiry();
+        List<CuratorOp> runOperations = runDataExpiry.transactionComplete(curator, runPath, version, json);
+        List<CuratorOp> operations = Lists.newArrayList(runOperations);
+        operations.addAll(runDataExpiry.transactionComplete(curator, summaryPath, -1, summaryBytes));
+
+        CompletableFuture<KeeperException.Code> future = new CompletableFuture<>();
+        BackgroundCallback completed = (client, event) -> {
+            KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+            try
+            {
+                if ( code == KeeperException.Code.OK )
+                {
+                    indexCompletedRun(log, workflowManager, runId, completedRunnableTask);
+                    completeChunks(workflowManager, runId, runData);
+                }
+            }
+            finally
+            {
+                future.complete(code);
+            }
+        };
+        curator.transaction().inBackground((client, event) -> {
+            if ( event.getResultCode() == KeeperException.Code.NONODE.intValue() )
+            {
+                // most likely the run was submitted before summaries were written
+                try
+                {
+                    List<CuratorOp> withoutSummaryOperations = Lists.newArrayList(runOperations);
+                    withoutSummaryOperations.add(runDataExpiry.transactionCreateCompleted(curator).forPath(summaryPath, summaryBytes));
+                    curator.transaction().inBackground(completed).forOperations(withoutSummaryOperations);
+                }
+                catch ( Exception e )
+                {
+                    log.error("Could not write completed task data for run: " + runId, e);
+                    future.complete(KeeperException.Code.NONODE);
+                }
+            }
+            else
+            {
+                completed.processResult(client, event);
+            }
+        }).forOperations(operations);
+        return future;
+    }
+
+    private static void indexCompletedRun(Logger log, WorkflowManagerImpl workflowManager, RunId runId, RunnableTask completedRunnableTask)
+    {
+        // bucket nodes are containers so ZooKeeper deletes them once all their runs are cleaned. The
+        // auto cleaner's first pass scans all runs so runs whose entry was never written are still cleaned.
+        String indexPath = ZooKeeperConstants.getCompletedRunIndexPath(runId, completedRunnableTask.getCompletionTimeUtc().orElseThrow(IllegalStateException::new));
         try
         {
-            RunId parentRunId = runnableTask.getParentRunId().orElse(null);
-            RunnableTask completedRunnableTask = new RunnableTask(runnableTask.getTasks(), runnableTask.getTaskDags(), runnableTask.getStartTimeUtc(), LocalDateTime.now(Clock.systemUTC()), parentRunId);
-            String runPath = ZooKeeperConstants.getRunPath(runId);
-            byte[] json = workflowManager.getSerializer().serialize(completedRunnableTask);
-            workflowManager.getCurator().setData().withVersion(version).forPath(runPath, json);
+            workflowManager.getRunDataExpiry().createCompleted(workflowManager.getCurator()).inBackground((client, event) -> {
+                if ( (event.getResultCode() != KeeperException.Code.OK.intValue()) && (event.getResultCode() != KeeperException.Code.NODEEXISTS.intValue()) )
+                {
+                    log.error("Could not write completed run index for run: " + runId + " - code: " + KeeperException.Code.get(event.getResultCode()));
+                }
+            }).forPath(indexPath);
         }
         catch ( Exception e )
         {
-            String message = "Could not write completed task data for run: " + runId;
-            log.error(message, e);
-            throw new RuntimeException(message, e);
+            log.error("Could not write completed run index for run: " + runId, e);
         }
     }
 
-    private void updateTasks(RunId runId)
+    private static void completeChunks(WorkflowManagerImpl workflowManager, RunId runId, byte[] runData)
+    {
+        // the run and summary nodes are recreated by the completion transaction and task nodes are
+        // TTL nodes from the start - only the chunks of a split run are left
+        workflowManager.getRunDataExpiry().completeInBackground(workflowManager.getCurator(), RunStore.getChunkPaths(runId, runData));
+    }
+
+    private static RunnableTask newCompletedRunnableTask(RunnableTask runnableTask)
+    {
+        RunId parentRunId = runnableTask.getParentRunId().orElse(null);
+        return new RunnableTask(runnableTask.getTasks(), runnableTask.getTaskDags(), runnableTask.getTaskDependents(), runnableTask.getStartTimeUtc(), LocalDateTime.now(Clock.systemUTC()), parentRunId);
+    }
+
+    private static RunSummary newRunSummary(RunnableTask runnableTask, int completedTaskQty, int failedTaskQty)
+    {
+        return new RunSummary(runnableTask.getStartTimeUtc(), runnableTask.getCompletionTimeUtc().orElse(null), runnableTask.getParentRunId().orElse(null), completedTaskQty, failedTaskQty);
+    }
+
+    private void updateTasks(RunId runId) throws InterruptedException
     {
         log.info("Updating run: " + runId);
 
-        RunnableTask runnableTask = getRunnableTask(runId);
-        if ( runnableTask == null )
+        RunState runState = getRunState(runId);
+        if ( runState == null )
         {
-            if ( debugBadRunIdCount != null )
+            return;
+        }
+
+        List<TaskId> completedTaskIds = pendingCompletedTasks.remove(runId);
+        if ( completedTaskIds != null )
+        {
+            completedTaskIds.stream()
+                .filter(taskId -> !runState.hasResult(taskId))
+                .forEach(taskId -> applyCompletedTask(runState, taskId, getCompletedTaskData(runId, taskId)));
+        }
+        runState.getSubTaskRunIds().forEach(subTaskRunId -> {
+            if ( !leader && !isPartitionRun(subTaskRunId) )
             {
-                debugBadRunIdCount.incrementAndGet();
+                return; // sub-task runs of other partitions are only read/watched by the leader
+            }
+            if ( isSubTaskRunComplete(runId, subTaskRunId) )
+            {
+                runState.subTaskRunCompleted(subTaskRunId);
+                foreignSubTaskRuns.remove(subTaskRunId);
             }
+        });
 
-            log.warn("Could not find run for RunId: " + runId + " - ignoring");
-            return;
-        }
-        if ( runnableTask.getCompletionTimeUtc().isPresent() )
+        if ( !leader )
         {
-            log.debug("Run is completed. Ignoring: " + runId);
+            // standby - keep the run state current but don't dispatch or complete anything
+            applyDispatchFailures(runState, false);
             return;
         }
 
-        if ( hasCanceledTasks(runId, runnableTask) )
+        if ( runState.isCanceled() )
         {
             log.debug("Run has canceled tasks and will be marked completed: " + runId);
-            completeRunnableTask(log, workflowManager, runId, runnableTask, -1);
+            completeRun(runState);
             return; // one or more tasks has canceled the entire run
         }
 
-        Set<TaskId> completedTasks = Sets.newHashSet();
-        runnableTask.getTaskDags().forEach(entry -> {
-            TaskId taskId = entry.getTaskId();
-            ExecutableTask task = runnableTask.getTasks().get(taskId);
-            if ( task == null )
+        // tasks whose dispatch failed are retried one per transaction
+        boolean hadDispatchFailures = applyDispatchFailures(runState, true);
+        queueTasks(runId, runState.takeReadyTasks(), !hadDispatchFailures);
+
+        if ( runState.isComplete() )
+        {
+            completeRun(runState);
+        }
+    }
+
+    private RunState getRunState(RunId runId)
+    {
+        ChildData currentData = runsCache.getCurrentData(ZooKeeperConstants.getRunPath(runId));
+        if ( currentData == null )
+        {
+            if ( debugBadRunIdCount != null )
             {
-                log.error(String.format("Could not find task: %s for run: %s", taskId, runId));
-                return;
+                debugBadRunIdCount.incrementAndGet();
             }
-            
-            boolean taskIsComplete = taskIsComplete(completedTasksCache, runId, task);
-            if ( taskIsComplete )
+
+            log.warn("Could not find run for RunId: " + runId + " - ignoring");
+            runStates.remove(runId);
+            pendingCompletedTasks.remove(runId);
+            return null;
+        }
+
+        RunState runState = runStates.get(runId);
+        if ( (runState != null) && (runState.getVersion() == currentData.getStat().getVersion()) )
+        {
+            return runState;
+        }
+
+        // checked before decoding the entire run so that split runs aren't reassembled once completed
+        if ( getRunSummary(currentData).getCompletionTimeUtc().isPresent() )
+        {
+            log.debug("Run is completed. Ignoring: " + runId);
+            runStates.remove(runId);
+            pendingCompletedTasks.remove(runId);
+            return null;
+        }
+        RunnableTask runnableTask = getRunnableTask(currentData);
+
+        // one time load of the run's current state - after this the state is updated incrementally
+        RunState newRunState = new RunState(runId, runnableTask, currentData.getStat().getVersion());
+        runnableTask.getTasks().values().stream().filter(ExecutableTask::isExecutable).forEach(task -> {
+            ChildData completedData = getCompletedTaskData(runId, task.getTaskId());
+            if ( completedData != null )
             {
-                completedTasks.add(taskId);
+                applyCompletedTask(newRunState, task.getTaskId(), completedData);
             }
-            else if ( !taskIsStarted(startedTasksCache, runId, taskId) )
+            else if ( isStartedTask(runId, task.getTaskId()) )
             {
-                boolean allDependenciesAreComplete = entry
-                    .getDependencies()
-                    .stream()
-                    .allMatch(id -> taskIsComplete(completedTasksCache, runId, runnableTask.getTasks().get(id)));
-                if ( allDependenciesAreComplete )
-                {
-                    queueTask(runId, task);
-                }
+                newRunState.taskStarted(task.getTaskId());
             }
         });
+        runStates.put(runId, newRunState);
+        return newRunState;
+    }
+
+    private void applyCompletedTask(RunState runState, TaskId taskId, ChildData completedData)
+    {
+        if ( completedData == null )
+        {
+            return;
+        }
+
+        TaskExecutionResult result = decodedData.get(completedData, TaskExecutionResult.class);
+        if ( result.getStatus().isCancelingStatus() )
+        {
+            runState.setCanceled();
+        }
+        if ( result.getStatus() != TaskExecutionStatus.SUCCESS )
+        {
+            runState.taskFailed(taskId);
+        }
+        if ( result.getSubTaskRunId().isPresent() )
+        {
+            runState.taskWaitingOnSubTaskRun(result.getSubTaskRunId().get(), taskId);
+        }
+        else
+        {
+            runState.taskCompleted(taskId);
+        }
+    }
 
-        if ( completedTasks.equals(runnableTask.getTasks().keySet()))
+    private void completeRun(RunState runState) throws InterruptedException
+    {
+        RunId runId = runState.getRunId();
+        runStates.remove(runId);
+        pendingDispatchFailures.remove(runId);
+
+        ChildData currentData = runsCache.getCurrentData(ZooKeeperConstants.getRunPath(runId));
+        if ( currentData == null )
+        {
+            log.debug("Run was deleted before it was completed: " + runId);
+            return;
+        }
+
+        writePermits.acquire();
+        try
+        {
+            // the write is conditional on the version the run state was built from. If it fails, the run
+            // is re-evaluated from the cache which either completes it again or drops it as already completed.
+            completeRunnableTask(log, workflowManager, runId, runState.getRunnableTask(), currentData.getData(), runState.getVersion(), runState.getCompletedTaskQty(), runState.getFailedTaskQty())
+                .thenAccept(code -> {
+                    writePermits.release();
+                    if ( code != KeeperException.Code.OK )
+                    {
+                        log.debug("Could not write completed task data for run: " + runId + " - code: " + code);
+                        addUpdatedRunId(runId);
+                    }
+                });
+        }
+        catch ( Exception e )
         {
-            completeRunnableTask(log, workflowManager, runId, runnableTask, -1);
+            writePermits.release();
+            String message = "Could not write completed task data for run: " + runId;
+            log.error(message, e);
+            throw new RuntimeException(message, e);
         }
     }
 
-    private RunnableTask getRunnableTask(RunId runId)
+    private void addPendingCompletedTask(RunId runId, TaskId taskId)
+    {
+        pendingCompletedTasks.compute(runId.intern(), (key, taskIds) -> {
+            List<TaskId> list = (taskIds != null) ? taskIds : Lists.newArrayList();
+            list.add(taskId.intern());
+            return list;
+        });
+    }
+
+    private RunSummary getRunSummary(RunId runId)
     {
         ChildData currentData = runsCache.getCurrentData(ZooKeeperConstants.getRunPath(runId));
         if ( currentData != null )
         {
-            return workflowManager.getSerializer().deserialize(currentData.getData(), RunnableTask.class);
+            return getRunSummary(currentData);
         }
         return null;
     }
 
-    private void queueTask(RunId runId, ExecutableTask task)
+    /**
+     * Return the times and parent of the run in the given run node data. Split runs are not reassembled.
+     */
+    private RunSummary getRunSummary(ChildData runData)
+    {
+        if ( RunStore.isChunked(runData.getData()) )
+        {
+            return decodedData.get(runData, RunSummary.class, bytes -> RunStore.readSummary(workflowManager.getSerializer(), bytes));
+        }
+        return RunStore.newSummary(decodedData.get(runData, RunnableTask.class));
+    }
+
+    private RunnableTask getRunnableTask(ChildData runData)
     {
-        String path = ZooKeeperConstants.getStartedTaskPath(runId, task.getTaskId());
+        RunId runId = ZooKeeperConstants.parseRunIdFromRunPath(runData.getPath());
+        return decodedData.get(runData, RunnableTask.class, bytes -> workflowManager.readRun(runId, bytes));
+    }
+
+    private boolean isSubTaskRunComplete(RunId runId, RunId subTaskRunId)
+    {
+        if ( isPartitionRun(subTaskRunId) )
+        {
+            RunSummary runSummary = getRunSummary(subTaskRunId);
+            return (runSummary != null) && runSummary.getCompletionTimeUtc().isPresent();
+        }
+
+        // the sub-task run belongs to another partition and isn't cached here. Read its summary
+        // directly and watch it so that the parent run is re-evaluated when the sub-task run changes.
+        foreignSubTaskRuns.put(subTaskRunId, runId);
         try
         {
-            StartedTask startedTask = new StartedTask(workflowManager.getInstanceName(), LocalDateTime.now(Clock.systemUTC()), 0);
-            byte[] data = workflowManager.getSerializer().serialize(startedTask);
-            workflowManager.getCurator().create().creatingParentContainersIfNeeded().forPath(path, data);
-            Queue queue = queues.get(task.getTaskType());
-            queue.put(task);
-            log.info("Queued task: " + task);
+            ChildData summaryData = getWatchedData(ZooKeeperConstants.getRunSummaryPath(subTaskRunId));
+            if ( summaryData != null )
+            {
+                return decodedData.get(summaryData, RunSummary.class).getCompletionTimeUtc().isPresent();
+            }
+
+            // runs submitted before summaries were written only have the full run
+            ChildData runData = getWatchedData(ZooKeeperConstants.getRunPath(subTaskRunId));
+            if ( runData != null )
+            {
+                return getRunSummary(runData).getCompletionTimeUtc().isPresent();
+            }
+
+            log.warn("Could not find sub-task run: " + subTaskRunId + " for run: " + runId);
+            return false;
         }
-        catch ( KeeperException.NodeExistsException ignore )
+        catch ( Exception e )
         {
-            log.debug("Task already queued: " + task);
-            // race due to caching latency - task already started
+            String message = "Could not read sub-task run: " + subTaskRunId;
+            log.error(message, e);
+            throw new RuntimeException(message, e);
+        }
+    }
+
+    private ChildData getWatchedData(String path) throws Exception
+    {
+        try
+        {
+            Stat stat = new Stat();
+            byte[] data = workflowManager.getCurator().getData().storingStatIn(stat).usingWatcher(subTaskRunWatcher).forPath(path);
+            return new ChildData(path, stat, data);
+        }
+        catch ( KeeperException.NoNodeException dummy )
+        {
+            return null;
+        }
+    }
+
+    private void subTaskRunChanged(WatchedEvent event)
+    {
+        if ( event.getType() == Watcher.Event.EventType.NodeDeleted )
+        {
+            decodedData.remove(event.getPath());
+        }
+        if ( event.getType() != Watcher.Event.EventType.None )
+        {
+            RunId parentRunId = foreignSubTaskRuns.remove(ZooKeeperConstants.parseRunIdFromRunPath(event.getPath()));
+            if ( parentRunId != null )
+            {
+                addUpdatedRunId(parentRunId);
+            }
+        }
+    }
+
+    private void queueTasks(RunId runId, List<ExecutableTask> tasks, boolean batched) throws InterruptedException
+    {
+        // tasks whose queue supports it are marked started and queued in a single transaction per batch
+        List<ExecutableTask> transactionalTasks = Lists.newArrayList();
+        Map<ExecutableTask, List<CuratorOp>> operations = Maps.newHashMap();
+        for ( ExecutableTask task : tasks )
+        {
+            if ( isStartedTask(runId, task.getTaskId()) )
+            {
+                log.debug("Task already started: " + task);
+                continue;   // e.g. started by a previous leader while this scheduler was a standby
+            }
+
+            Optional<CuratorOp> putOperation = getQueue(task).newPutOperation(task);
+            if ( putOperation.isPresent() )
+            {
+                transactionalTasks.add(task);
+                operations.put(task, Lists.newArrayList(newStartedTaskOperation(runId, task), putOperation.get()));
+            }
+            else
+            {
+                queueTask(runId, task);
+            }
+        }
+
+        if ( !transactionalTasks.isEmpty() )
+        {
+            ensureStartedTaskRunPath(runId);
+        }
+        for ( List<ExecutableTask> batch : partition(transactionalTasks, operations, batched) )
+        {
+            List<CuratorOp> batchOperations = batch.stream().flatMap(task -> operations.get(task).stream()).collect(Collectors.toList());
+            writePermits.acquire();
+            try
+            {
+                workflowManager.getCurator().transaction().inBackground((client, event) -> transactionCompleted(runId, batch, event)).forOperations(batchOperations);
+            }
+            catch ( Exception e )
+            {
+                writePermits.release();
+                String message = "Could not start tasks for run " + runId;
+                log.error(message, e);
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static List<List<ExecutableTask>> partition(List<ExecutableTask> tasks, Map<ExecutableTask, List<CuratorOp>> operations, boolean batched)
+    {
+        if ( !batched )
+        {
+            return Lists.partition(tasks, 1);
+        }
+
+        // each operation carries a serialized task - batches are bounded by size, not task count
+        List<List<ExecutableTask>> batches = Lists.newArrayList();
+        List<ExecutableTask> batch = Lists.newArrayList();
+        int batchBytes = 0;
+        for ( ExecutableTask task : tasks )
+        {
+            int bytes = operations.get(task).stream().mapToInt(Scheduler::getOperationSize).sum();
+            if ( !batch.isEmpty() && ((batchBytes + bytes) > ZooKeeperConstants.MAX_TRANSACTION_BYTES) )
+            {
+                batches.add(batch);
+                batch = Lists.newArrayList();
+                batchBytes = 0;
+            }
+            batch.add(task);
+            batchBytes += bytes;
+        }
+        if ( !batch.isEmpty() )
+        {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    @VisibleForTesting
+    static int getOperationSize(CuratorOp operation)
+    {
+        Record request = operation.get().toRequestRecord();
+        byte[] data = null;
+        if ( request instanceof CreateRequest )
+        {
+            data = ((CreateRequest)request).getData();
+        }
+        else if ( request instanceof CreateTTLRequest )
+        {
+            data = ((CreateTTLRequest)request).getData();
+        }
+        else if ( request instanceof SetDataRequest )
+        {
+            data = ((SetDataRequest)request).getData();
+        }
+        int pathBytes = operation.get().getPath().getBytes(StandardCharsets.UTF_8).length;
+        return OPERATION_OVERHEAD + pathBytes + ((data != null) ? data.length : 0);
+    }
+
+    private void ensureStartedTaskRunPath(RunId runId) throws InterruptedException
+    {
+        if ( taskPaths.getLayout() != TaskLayout.HIERARCHICAL )
+        {
+            return;
+        }
+        String runPath = ZooKeeperConstants.getStartedTaskRunPath(runId);
+        if ( startedTasksCache.getCurrentData(runPath) != null )
+        {
+            return;
+        }
+
+        // transactions can't create parents. ZooKeeper applies a session's operations in order so
+        // this create is applied before the transactions that follow it. If it fails anyway, the
+        // missing parent is handled by the dispatch failure path.
+        writePermits.acquire();
+        try
+        {
+            workflowManager.getCurator().create().withMode(CreateMode.CONTAINER).inBackground((client, event) -> {
+                writePermits.release();
+                if ( (event.getResultCode() != KeeperException.Code.OK.intValue()) && (event.getResultCode() != KeeperException.Code.NODEEXISTS.intValue()) )
+                {
+                    log.debug("Could not create started tasks node for run: " + runId + " - code: " + KeeperException.Code.get(event.getResultCode()));
+                }
+            }).forPath(runPath);
         }
         catch ( Exception e )
         {
-            String message = "Could not start task " + task;
+            writePermits.release();
+            String message = "Could not create started tasks node for run: " + runId;
             log.error(message, e);
-            throw new RuntimeException(e);
+            throw new RuntimeException(message, e);
         }
     }
 
-    private boolean taskIsStarted(PathChildrenCache startedTasksCache, RunId runId, TaskId taskId)
+    private void transactionCompleted(RunId runId, List<ExecutableTask> batch, CuratorEvent event)
     {
-        String startedTaskPath = ZooKeeperConstants.getStartedTaskPath(runId, taskId);
-        return (startedTasksCache.getCurrentData(startedTaskPath) != null);
+        writePermits.release();
+
+        KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+        if ( code == KeeperException.Code.OK )
+        {
+            batch.forEach(this::putCommitted);
+            return;
+        }
+
+        if ( (batch.size() == 1) && (code == KeeperException.Code.NODEEXISTS) )
+        {
+            log.debug("Task already queued: " + batch.get(0));
+            // race due to caching latency - task already started
+            return;
+        }
+
+        // the transaction was rolled back - the run's worker re-dispatches the tasks one per transaction
+        log.debug("Could not queue tasks for run: " + runId + " - code: " + code);
+        boolean missingParent = (batch.size() == 1) && (code == KeeperException.Code.NONODE);
+        pendingDispatchFailures.compute(runId, (key, failures) -> {
+            List<DispatchFailure> list = (failures != null) ? failures : Lists.newArrayList();
+            batch.forEach(task -> list.add(new DispatchFailure(task, missingParent)));
+            return list;
+        });
+        addUpdatedRunId(runId);
     }
 
-    private boolean taskIsComplete(PathChildrenCache completedTasksCache, RunId runId, ExecutableTask task)
+    private boolean applyDispatchFailures(RunState runState, boolean dispatch)
     {
-        if ( (task == null) || !task.isExecutable() )
+        List<DispatchFailure> failures = pendingDispatchFailures.remove(runState.getRunId());
+        if ( failures == null )
         {
-            return true;
+            return false;
         }
-        String completedTaskPath = ZooKeeperConstants.getCompletedTaskPath(runId, task.getTaskId());
-        ChildData currentData = completedTasksCache.getCurrentData(completedTaskPath);
-        if ( currentData != null )
+
+        for ( DispatchFailure failure : failures )
         {
-            TaskExecutionResult result = workflowManager.getSerializer().deserialize(currentData.getData(), TaskExecutionResult.class);
-            if ( result.getSubTaskRunId().isPresent() )
+            TaskId taskId = failure.task.getTaskId();
+            if ( runState.hasResult(taskId) )
+            {
+                continue;
+            }
+            if ( dispatch && failure.missingParent )
             {
-                RunnableTask runnableTask = getRunnableTask(result.getSubTaskRunId().get());
-                return (runnableTask != null) && runnableTask.getCompletionTimeUtc().isPresent();
+                // transactions can't create parents - use the non-transactional path
+                queueTask(runState.getRunId(), failure.task);
             }
-            return true;
+            else
+            {
+                runState.taskDispatchFailed(taskId);
+            }
+        }
+        return true;
+    }
+
+    private CuratorOp newStartedTaskOperation(RunId runId, ExecutableTask task)
+    {
+        try
+        {
+            StartedTask startedTask = new StartedTask(workflowManager.getInstanceName(), LocalDateTime.now(Clock.systemUTC()), 0);
+            byte[] data = workflowManager.getSerializer().serialize(startedTask);
+            return workflowManager.getRunDataExpiry().transactionCreateTask(workflowManager.getCurator()).forPath(taskPaths.getStartedTaskPath(runId, task.getTaskId()), data);
+        }
+        catch ( Exception e )
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void putCommitted(ExecutableTask task)
+    {
+        getQueue(task).putCommitted(task);
+        log.info("Queued task: " + task);
+    }
+
+    private Queue getQueue(ExecutableTask task)
+    {
+        try
+        {
+            return queues.get(task.getTaskType());
+        }
+        catch ( ExecutionException e )
+        {
+            String message = "Could not create queue for task type " + task.getTaskType();
+            log.error(message, e);
+            throw new RuntimeException(message, e);
+        }
+    }
+
+    private void queueTask(RunId runId, ExecutableTask task)
+    {
+        String path = taskPaths.getStartedTaskPath(runId, task.getTaskId());
+        try
+        {
+            StartedTask startedTask = new StartedTask(workflowManager.getInstanceName(), LocalDateTime.now(Clock.systemUTC()), 0);
+            byte[] data = workflowManager.getSerializer().serialize(startedTask);
+            workflowManager.getRunDataExpiry().createTask(workflowManager.getCurator()).forPath(path, data);
+            getQueue(task).put(task);
+            log.info("Queued task: " + task);
+        }
+        catch ( KeeperException.NodeExistsException ignore )
+        {
+            log.debug("Task already queued: " + task);
+            // race due to caching latency - task already started
+        }
+        catch ( Exception e )
+        {
+            String message = "Could not start task " + task;
+            log.error(message, e);
+            throw new RuntimeException(e);
         }
-        return false;
     }
 }
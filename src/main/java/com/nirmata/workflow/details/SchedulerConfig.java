@@ -0,0 +1,119 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.nirmata.workflow.models.RunId;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tuning values for the scheduler
+ */
+public class SchedulerConfig
+{
+    private final int workerQty;
+    private final int partitionQty;
+    private final boolean standby;
+
+    public static final SchedulerConfig DEFAULT = new SchedulerConfig(1, 1, false);
+
+    /**
+     * @param workerQty number of threads the scheduler uses to evaluate runs. Runs are
+     *                  assigned to a worker by the hash of their RunId so each run is
+     *                  always evaluated by the same thread.
+     */
+    public SchedulerConfig(int workerQty)
+    {
+        this(workerQty, 1);
+    }
+
+    /**
+     * @param workerQty number of threads the scheduler uses to evaluate runs. Runs are
+     *                  assigned to a worker by the hash of their RunId so each run is
+     *                  always evaluated by the same thread.
+     * @param partitionQty number of scheduler partitions. Runs are assigned to a partition by
+     *                     the hash of their RunId. Each partition has its own leader and
+     *                     any instance can lead several partitions. All instances
+     *                     in the cluster must use the same value.
+     */
+    public SchedulerConfig(int workerQty, int partitionQty)
+    {
+        this(workerQty, partitionQty, false);
+    }
+
+    /**
+     * @param workerQty number of threads the scheduler uses to evaluate runs. Runs are
+     *                  assigned to a worker by the hash of their RunId so each run is
+     *                  always evaluated by the same thread.
+     * @param partitionQty number of scheduler partitions. Runs are assigned to a partition by
+     *                     the hash of their RunId. Each partition has its own leader and
+     *                     any instance can lead several partitions. All instances
+     *                     in the cluster must use the same value.
+     * @param standby if true, instances keep the caches and run states of every partition current
+     *                even when they are not its leader so that they can take over immediately
+     */
+    public SchedulerConfig(int workerQty, int partitionQty, boolean standby)
+    {
+        Preconditions.checkArgument(workerQty > 0, "workerQty must be greater than 0");
+        Preconditions.checkArgument(partitionQty > 0, "partitionQty must be greater than 0");
+        this.workerQty = workerQty;
+        this.partitionQty = partitionQty;
+        this.standby = standby;
+    }
+
+    public int getWorkerQty()
+    {
+        return workerQty;
+    }
+
+    public int getPartitionQty()
+    {
+        return partitionQty;
+    }
+
+    public boolean isStandby()
+    {
+        return standby;
+    }
+
+    /**
+     * Return the scheduler partition that owns the given run
+     *
+     * @param runId run
+     * @return partition index - 0 through <code>partitionQty - 1</code>
+     */
+    public int getPartition(RunId runId)
+    {
+        if ( partitionQty == 1 )
+        {
+            return 0;
+        }
+        // use a different hash than the worker assignment so that partitions and workers don't correlate
+        int hash = Hashing.murmur3_32().hashString(runId.getId(), StandardCharsets.UTF_8).asInt();
+        return Math.floorMod(hash, partitionQty);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SchedulerConfig{" +
+            "workerQty=" + workerQty +
+            ", partitionQty=" + partitionQty +
+            ", standby=" + standby +
+            '}';
+    }
+}
@@ -17,6 +17,7 @@ package com.nirmata.workflow.details;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 import com.nirmata.workflow.admin.WorkflowManagerState;
 import com.nirmata.workflow.queue.QueueFactory;
 import org.apache.curator.framework.CuratorFramework;
@@ -27,8 +28,12 @@ import org.apache.curator.utils.CloseableUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class SchedulerSelector implements Closeable
 {
@@ -36,70 +41,180 @@ public class SchedulerSelector implements Closeable
     private final WorkflowManagerImpl workflowManager;
     private final QueueFactory queueFactory;
     private final AutoCleanerHolder autoCleanerHolder;
-    private final LeaderSelector leaderSelector;
-    private final AtomicReference<Scheduler> scheduler = new AtomicReference<>();
+    private final SchedulerConfig schedulerConfig;
+    private final List<LeaderSelector> leaderSelectors;
+    private final Map<Integer, Scheduler> schedulers = Maps.newConcurrentMap();
+    private final Map<Integer, Scheduler> standbySchedulers = Maps.newHashMap();
+    private boolean closed = false;
 
     volatile AtomicReference<CountDownLatch> debugLatch = new AtomicReference<>();
 
     public SchedulerSelector(WorkflowManagerImpl workflowManager, QueueFactory queueFactory, AutoCleanerHolder autoCleanerHolder)
+    {
+        this(workflowManager, queueFactory, autoCleanerHolder, SchedulerConfig.DEFAULT);
+    }
+
+    public SchedulerSelector(WorkflowManagerImpl workflowManager, QueueFactory queueFactory, AutoCleanerHolder autoCleanerHolder, SchedulerConfig schedulerConfig)
     {
         this.workflowManager = workflowManager;
         this.queueFactory = queueFactory;
         this.autoCleanerHolder = autoCleanerHolder;
+        this.schedulerConfig = schedulerConfig;
 
+        // each partition has its own leader - an instance can lead any number of partitions
+        leaderSelectors = IntStream.range(0, schedulerConfig.getPartitionQty())
+            .mapToObj(this::newLeaderSelector)
+            .collect(Collectors.toList());
+    }
+
+    private LeaderSelector newLeaderSelector(int partition)
+    {
         LeaderSelectorListener listener = new LeaderSelectorListenerAdapter()
         {
             @Override
             public void takeLeadership(CuratorFramework client) throws Exception
             {
-                SchedulerSelector.this.takeLeadership();
+                SchedulerSelector.this.takeLeadership(partition);
             }
         };
-        leaderSelector = new LeaderSelector(workflowManager.getCurator(), ZooKeeperConstants.getSchedulerLeaderPath(), listener);
+        // a single partition uses the original leader path so that it remains compatible with older instances
+        String leaderPath = (schedulerConfig.getPartitionQty() == 1) ? ZooKeeperConstants.getSchedulerLeaderPath() : ZooKeeperConstants.getSchedulerPartitionLeaderPath(partition);
+        LeaderSelector leaderSelector = new LeaderSelector(workflowManager.getCurator(), leaderPath, listener);
         leaderSelector.autoRequeue();
+        return leaderSelector;
     }
 
     public WorkflowManagerState.State getState()
     {
-        Scheduler localScheduler = scheduler.get();
-        return (localScheduler != null) ? localScheduler.getState() : WorkflowManagerState.State.LATENT;
+        // report the busiest state of the partitions this instance leads
+        List<WorkflowManagerState.State> states = schedulers.values().stream().map(Scheduler::getState).collect(Collectors.toList());
+        if ( states.contains(WorkflowManagerState.State.PROCESSING) )
+        {
+            return WorkflowManagerState.State.PROCESSING;
+        }
+        if ( states.contains(WorkflowManagerState.State.SLEEPING) )
+        {
+            return WorkflowManagerState.State.SLEEPING;
+        }
+        return states.isEmpty() ? WorkflowManagerState.State.LATENT : states.get(0);
+    }
+
+    public int getPendingRunCount()
+    {
+        return schedulers.values().stream().mapToInt(Scheduler::getPendingRunCount).sum();
     }
 
     public void start()
     {
-        leaderSelector.start();
+        if ( schedulerConfig.isStandby() )
+        {
+            IntStream.range(0, schedulerConfig.getPartitionQty()).forEach(this::replaceStandbyScheduler);
+        }
+        leaderSelectors.forEach(LeaderSelector::start);
     }
 
     @Override
     public void close()
     {
-        CloseableUtils.closeQuietly(leaderSelector);
+        leaderSelectors.forEach(CloseableUtils::closeQuietly);
+        synchronized(standbySchedulers)
+        {
+            closed = true;
+            standbySchedulers.values().forEach(Scheduler::close);
+            standbySchedulers.clear();
+        }
     }
 
     @VisibleForTesting
     LeaderSelector getLeaderSelector()
     {
-        return leaderSelector;
+        return getLeaderSelector(0);
+    }
+
+    @VisibleForTesting
+    LeaderSelector getLeaderSelector(int partition)
+    {
+        return leaderSelectors.get(partition);
     }
 
     @VisibleForTesting
     void debugValidateClosed()
     {
-        Preconditions.checkState(!leaderSelector.hasLeadership());
+        leaderSelectors.forEach(leaderSelector -> Preconditions.checkState(!leaderSelector.hasLeadership()));
+        synchronized(standbySchedulers)
+        {
+            Preconditions.checkState(standbySchedulers.isEmpty());
+        }
+    }
+
+    private Scheduler getStandbyScheduler(int partition)
+    {
+        synchronized(standbySchedulers)
+        {
+            Scheduler scheduler = standbySchedulers.get(partition);
+            return ((scheduler != null) && !scheduler.isFailed()) ? scheduler : replaceStandbyScheduler(partition);
+        }
     }
 
-    private void takeLeadership()
+    private Scheduler replaceStandbyScheduler(int partition)
     {
-        log.info(workflowManager.getInstanceName() + " is now the scheduler");
+        synchronized(standbySchedulers)
+        {
+            Scheduler oldScheduler = standbySchedulers.remove(partition);
+            if ( oldScheduler != null )
+            {
+                oldScheduler.close();
+            }
+            if ( closed )
+            {
+                return null;
+            }
+
+            // standby schedulers keep their caches warm for the life of this instance - not just while leading
+            Scheduler scheduler = new Scheduler(workflowManager, queueFactory, autoCleanerHolder, schedulerConfig, partition);
+            scheduler.start();
+            standbySchedulers.put(partition, scheduler);
+            return scheduler;
+        }
+    }
+
+    private void takeLeadership(int partition)
+    {
+        log.info(workflowManager.getInstanceName() + " is now the scheduler for partition " + partition);
+        Scheduler scheduler = null;
         try
         {
-            scheduler.set(new Scheduler(workflowManager, queueFactory, autoCleanerHolder));
-            scheduler.get().run();
+            if ( schedulerConfig.isStandby() )
+            {
+                scheduler = getStandbyScheduler(partition);
+                if ( scheduler == null )
+                {
+                    return; // closed
+                }
+            }
+            else
+            {
+                scheduler = new Scheduler(workflowManager, queueFactory, autoCleanerHolder, schedulerConfig, partition);
+                scheduler.start();
+            }
+            schedulers.put(partition, scheduler);
+            scheduler.lead();
         }
         finally
         {
-            log.info(workflowManager.getInstanceName() + " is no longer the scheduler");
-            scheduler.set(null);
+            log.info(workflowManager.getInstanceName() + " is no longer the scheduler for partition " + partition);
+            schedulers.remove(partition);
+            if ( scheduler != null )
+            {
+                if ( !schedulerConfig.isStandby() )
+                {
+                    scheduler.close();
+                }
+                else if ( scheduler.isFailed() )
+                {
+                    replaceStandbyScheduler(partition);
+                }
+            }
 
             CountDownLatch latch = debugLatch.getAndSet(null);
             if ( latch != null )
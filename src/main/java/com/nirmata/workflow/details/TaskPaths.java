@@ -0,0 +1,122 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.nirmata.workflow.admin.TaskLayout;
+import com.nirmata.workflow.models.RunId;
+import com.nirmata.workflow.models.TaskId;
+import java.util.List;
+
+/**
+ * Determines the paths of started and completed task nodes. Nodes are always written using
+ * the configured {@link TaskLayout}. When dual read is enabled, nodes are also read using
+ * the other layout so that instances can be moved to a new layout without losing track of
+ * nodes written with the old one (see {@link com.nirmata.workflow.admin.WorkflowAdmin#migrateTaskLayout()}).
+ */
+public class TaskPaths
+{
+    private final TaskLayout layout;
+    private final boolean dualRead;
+    private final List<TaskLayout> readLayouts;
+
+    public static final TaskPaths DEFAULT = new TaskPaths(TaskLayout.FLAT, false);
+
+    /**
+     * @param layout the layout used for writing
+     * @param dualRead if true, nodes are read using both layouts
+     */
+    public TaskPaths(TaskLayout layout, boolean dualRead)
+    {
+        this.layout = Preconditions.checkNotNull(layout, "layout cannot be null");
+        this.dualRead = dualRead;
+        TaskLayout otherLayout = (layout == TaskLayout.FLAT) ? TaskLayout.HIERARCHICAL : TaskLayout.FLAT;
+        readLayouts = dualRead ? ImmutableList.of(layout, otherLayout) : ImmutableList.of(layout);
+    }
+
+    public TaskLayout getLayout()
+    {
+        return layout;
+    }
+
+    public boolean isDualRead()
+    {
+        return dualRead;
+    }
+
+    public boolean readsLayout(TaskLayout layout)
+    {
+        return readLayouts.contains(layout);
+    }
+
+    public String getStartedTaskPath(RunId runId, TaskId taskId)
+    {
+        return getStartedTaskPath(layout, runId, taskId);
+    }
+
+    public String getCompletedTaskPath(RunId runId, TaskId taskId)
+    {
+        return getCompletedTaskPath(layout, runId, taskId);
+    }
+
+    /**
+     * Return the paths where the given started task may be found - the write path first
+     *
+     * @param runId run
+     * @param taskId task
+     * @return paths
+     */
+    public List<String> getStartedTaskReadPaths(RunId runId, TaskId taskId)
+    {
+        ImmutableList.Builder<String> builder = ImmutableList.builder();
+        readLayouts.forEach(readLayout -> builder.add(getStartedTaskPath(readLayout, runId, taskId)));
+        return builder.build();
+    }
+
+    /**
+     * Return the paths where the given completed task may be found - the write path first
+     *
+     * @param runId run
+     * @param taskId task
+     * @return paths
+     */
+    public List<String> getCompletedTaskReadPaths(RunId runId, TaskId taskId)
+    {
+        ImmutableList.Builder<String> builder = ImmutableList.builder();
+        readLayouts.forEach(readLayout -> builder.add(getCompletedTaskPath(readLayout, runId, taskId)));
+        return builder.build();
+    }
+
+    public static String getStartedTaskPath(TaskLayout layout, RunId runId, TaskId taskId)
+    {
+        return (layout == TaskLayout.HIERARCHICAL) ? ZooKeeperConstants.getHierarchicalStartedTaskPath(runId, taskId) : ZooKeeperConstants.getStartedTaskPath(runId, taskId);
+    }
+
+    public static String getCompletedTaskPath(TaskLayout layout, RunId runId, TaskId taskId)
+    {
+        return (layout == TaskLayout.HIERARCHICAL) ? ZooKeeperConstants.getHierarchicalCompletedTaskPath(runId, taskId) : ZooKeeperConstants.getCompletedTaskPath(runId, taskId);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TaskPaths{" +
+            "layout=" + layout +
+            ", dualRead=" + dualRead +
+            '}';
+    }
+}
@@ -15,6 +15,8 @@
  */
 package com.nirmata.workflow.details;
 
+import com.nirmata.workflow.admin.TaskLayout;
+import com.nirmata.workflow.details.internalmodels.RunSummary;
 import com.nirmata.workflow.events.WorkflowEvent;
 import com.nirmata.workflow.events.WorkflowListener;
 import com.nirmata.workflow.events.WorkflowListenerManager;
@@ -24,61 +26,73 @@ import org.apache.curator.framework.listen.Listenable;
 import org.apache.curator.framework.listen.ListenerContainer;
 import org.apache.curator.framework.recipes.cache.PathChildrenCache;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
 import org.apache.curator.utils.CloseableUtils;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
 
 public class WorkflowListenerManagerImpl implements WorkflowListenerManager
 {
-    private final PathChildrenCache completedTasksCache;
-    private final PathChildrenCache startedTasksCache;
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final TreeCache completedTasksCache;
+    private final TreeCache startedTasksCache;
     private final PathChildrenCache runsCache;
     private final ListenerContainer<WorkflowListener> listenerContainer = new ListenerContainer<>();
+    private final CountDownLatch initLatch = new CountDownLatch(2);
+    private final WorkflowManagerImpl workflowManager;
 
     public WorkflowListenerManagerImpl(WorkflowManagerImpl workflowManager)
     {
-        completedTasksCache = new PathChildrenCache(workflowManager.getCurator(), ZooKeeperConstants.getCompletedTaskParentPath(), false);
-        startedTasksCache = new PathChildrenCache(workflowManager.getCurator(), ZooKeeperConstants.getStartedTasksParentPath(), false);
+        this.workflowManager = workflowManager;
+        // the hierarchical layout nests task nodes one level deeper: parent/runId/taskId
+        int taskDepth = workflowManager.getTaskPaths().readsLayout(TaskLayout.HIERARCHICAL) ? 2 : 1;
+        completedTasksCache = newTaskCache(workflowManager, ZooKeeperConstants.getCompletedTaskParentPath(), taskDepth);
+        startedTasksCache = newTaskCache(workflowManager, ZooKeeperConstants.getStartedTasksParentPath(), taskDepth);
         runsCache = new PathChildrenCache(workflowManager.getCurator(), ZooKeeperConstants.getRunParentPath(), false);
     }
 
+    private static TreeCache newTaskCache(WorkflowManagerImpl workflowManager, String parentPath, int maxDepth)
+    {
+        return TreeCache.newBuilder(workflowManager.getCurator(), parentPath)
+            .setCacheData(false)
+            .setMaxDepth(maxDepth)
+            .setCreateParentNodes(true)
+            .build();
+    }
+
     @Override
     public void start()
     {
         try
         {
             runsCache.getListenable().addListener((client, event) -> {
-                RunId runId = new RunId(ZooKeeperConstants.getRunIdFromRunPath(event.getData().getPath()));
-                if ( event.getType() == PathChildrenCacheEvent.Type.CHILD_ADDED )
+                RunId runId = ZooKeeperConstants.parseRunIdFromRunPath(event.getData().getPath());
+                if ( (event.getType() == PathChildrenCacheEvent.Type.CHILD_ADDED) && !isRecreatedRun(runId) )
                 {
                     postEvent(new WorkflowEvent(WorkflowEvent.EventType.RUN_STARTED, runId));
                 }
-                else if ( event.getType() == PathChildrenCacheEvent.Type.CHILD_UPDATED )
+                else if ( (event.getType() == PathChildrenCacheEvent.Type.CHILD_UPDATED) || (event.getType() == PathChildrenCacheEvent.Type.CHILD_ADDED) )
                 {
                     postEvent(new WorkflowEvent(WorkflowEvent.EventType.RUN_UPDATED, runId));
                 }
             });
 
-            startedTasksCache.getListenable().addListener((client, event) -> {
-                if ( event.getType() == PathChildrenCacheEvent.Type.CHILD_ADDED )
-                {
-                    RunId runId = new RunId(ZooKeeperConstants.getRunIdFromStartedTasksPath(event.getData().getPath()));
-                    TaskId taskId = new TaskId(ZooKeeperConstants.getTaskIdFromStartedTasksPath(event.getData().getPath()));
-                    postEvent(new WorkflowEvent(WorkflowEvent.EventType.TASK_STARTED, runId, taskId));
-                }
-            });
-
-            completedTasksCache.getListenable().addListener((client, event) -> {
-                if ( event.getType() == PathChildrenCacheEvent.Type.CHILD_ADDED )
-                {
-                    RunId runId = new RunId(ZooKeeperConstants.getRunIdFromCompletedTasksPath(event.getData().getPath()));
-                    TaskId taskId = new TaskId(ZooKeeperConstants.getTaskIdFromCompletedTasksPath(event.getData().getPath()));
-                    postEvent(new WorkflowEvent(WorkflowEvent.EventType.TASK_COMPLETED, runId, taskId));
-                }
-            });
+            startedTasksCache.getListenable().addListener((client, event) -> taskEvent(event, ZooKeeperConstants.getStartedTasksParentPath(), WorkflowEvent.EventType.TASK_STARTED));
+            completedTasksCache.getListenable().addListener((client, event) -> taskEvent(event, ZooKeeperConstants.getCompletedTaskParentPath(), WorkflowEvent.EventType.TASK_COMPLETED));
 
             runsCache.start(PathChildrenCache.StartMode.BUILD_INITIAL_CACHE);
-            completedTasksCache.start(PathChildrenCache.StartMode.BUILD_INITIAL_CACHE);
-            startedTasksCache.start(PathChildrenCache.StartMode.BUILD_INITIAL_CACHE);
+            completedTasksCache.start();
+            startedTasksCache.start();
+            initLatch.await();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
         }
         catch ( Exception e )
         {
@@ -100,6 +114,49 @@ public class WorkflowListenerManagerImpl implements WorkflowListenerManager
         return listenerContainer;
     }
 
+    private boolean isRecreatedRun(RunId runId)
+    {
+        // with TTL nodes a completed run is deleted and added again. Run data isn't cached so the
+        // (small) summary is read to tell it from a new run - which is never completed.
+        if ( !workflowManager.getRunDataExpiry().isTtlEnabled() )
+        {
+            return false;
+        }
+        try
+        {
+            byte[] bytes = workflowManager.getCurator().getData().forPath(ZooKeeperConstants.getRunSummaryPath(runId));
+            return workflowManager.getSerializer().deserialize(bytes, RunSummary.class).getCompletionTimeUtc().isPresent();
+        }
+        catch ( KeeperException.NoNodeException dummy )
+        {
+            return false;   // submitted before summaries were written or already deleted
+        }
+        catch ( Exception e )
+        {
+            log.error("Could not read summary of run: " + runId, e);
+            return false;
+        }
+    }
+
+    private void taskEvent(TreeCacheEvent event, String parentPath, WorkflowEvent.EventType eventType)
+    {
+        if ( event.getType() == TreeCacheEvent.Type.INITIALIZED )
+        {
+            initLatch.countDown();
+        }
+        else if ( (event.getType() == TreeCacheEvent.Type.NODE_ADDED) && (initLatch.getCount() == 0) )
+        {
+            // like the runs cache, nodes that exist when the cache starts don't generate events
+            String path = event.getData().getPath();
+            TaskId taskId = ZooKeeperConstants.parseTaskIdFromTaskPath(parentPath, path);
+            if ( taskId != null )   // ignore the parent node and hierarchical run nodes
+            {
+                RunId runId = ZooKeeperConstants.parseRunIdFromTaskPath(parentPath, path);
+                postEvent(new WorkflowEvent(eventType, runId, taskId));
+            }
+        }
+    }
+
     private void postEvent(WorkflowEvent event)
     {
         listenerContainer.forEach(l -> {
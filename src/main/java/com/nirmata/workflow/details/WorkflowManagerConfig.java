@@ -0,0 +1,187 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.collect.ImmutableList;
+import com.nirmata.workflow.queue.QueueFactory;
+import com.nirmata.workflow.serialization.Serializer;
+import org.apache.curator.framework.CuratorFramework;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Holds the values of a {@link WorkflowManagerImpl}. Filled in by
+ * {@link com.nirmata.workflow.WorkflowManagerBuilder} - values that aren't
+ * set are null or, for optional values, their defaults. The values are
+ * checked when the manager is built.
+ */
+public class WorkflowManagerConfig
+{
+    private CuratorFramework curator;
+    private QueueFactory queueFactory;
+    private String instanceName;
+    private List<TaskExecutorSpec> specs = ImmutableList.of();
+    private AutoCleanerHolder autoCleanerHolder;
+    private Serializer serializer;
+    private Executor taskRunnerService;
+    private SchedulerConfig schedulerConfig = SchedulerConfig.DEFAULT;
+    private TaskPaths taskPaths = TaskPaths.DEFAULT;
+    private RunDataExpiry runDataExpiry = RunDataExpiry.NONE;
+    private RunStore runStore = RunStore.DEFAULT;
+    private BlobValues blobValues = BlobValues.NONE;
+
+    /**
+     * Return a new manager using these values
+     *
+     * @return new manager
+     */
+    public WorkflowManagerImpl build()
+    {
+        return new WorkflowManagerImpl(this);
+    }
+
+    public WorkflowManagerConfig withCurator(CuratorFramework curator)
+    {
+        this.curator = curator;
+        return this;
+    }
+
+    public WorkflowManagerConfig withQueueFactory(QueueFactory queueFactory)
+    {
+        this.queueFactory = queueFactory;
+        return this;
+    }
+
+    public WorkflowManagerConfig withInstanceName(String instanceName)
+    {
+        this.instanceName = instanceName;
+        return this;
+    }
+
+    public WorkflowManagerConfig withSpecs(List<TaskExecutorSpec> specs)
+    {
+        this.specs = specs;
+        return this;
+    }
+
+    public WorkflowManagerConfig withAutoCleanerHolder(AutoCleanerHolder autoCleanerHolder)
+    {
+        this.autoCleanerHolder = autoCleanerHolder;
+        return this;
+    }
+
+    public WorkflowManagerConfig withSerializer(Serializer serializer)
+    {
+        this.serializer = serializer;
+        return this;
+    }
+
+    public WorkflowManagerConfig withTaskRunnerService(Executor taskRunnerService)
+    {
+        this.taskRunnerService = taskRunnerService;
+        return this;
+    }
+
+    public WorkflowManagerConfig withSchedulerConfig(SchedulerConfig schedulerConfig)
+    {
+        this.schedulerConfig = schedulerConfig;
+        return this;
+    }
+
+    public WorkflowManagerConfig withTaskPaths(TaskPaths taskPaths)
+    {
+        this.taskPaths = taskPaths;
+        return this;
+    }
+
+    public WorkflowManagerConfig withRunDataExpiry(RunDataExpiry runDataExpiry)
+    {
+        this.runDataExpiry = runDataExpiry;
+        return this;
+    }
+
+    public WorkflowManagerConfig withRunStore(RunStore runStore)
+    {
+        this.runStore = runStore;
+        return this;
+    }
+
+    public WorkflowManagerConfig withBlobValues(BlobValues blobValues)
+    {
+        this.blobValues = blobValues;
+        return this;
+    }
+
+    CuratorFramework getCurator()
+    {
+        return curator;
+    }
+
+    QueueFactory getQueueFactory()
+    {
+        return queueFactory;
+    }
+
+    String getInstanceName()
+    {
+        return instanceName;
+    }
+
+    List<TaskExecutorSpec> getSpecs()
+    {
+        return specs;
+    }
+
+    AutoCleanerHolder getAutoCleanerHolder()
+    {
+        return autoCleanerHolder;
+    }
+
+    Serializer getSerializer()
+    {
+        return serializer;
+    }
+
+    Executor getTaskRunnerService()
+    {
+        return taskRunnerService;
+    }
+
+    SchedulerConfig getSchedulerConfig()
+    {
+        return schedulerConfig;
+    }
+
+    TaskPaths getTaskPaths()
+    {
+        return taskPaths;
+    }
+
+    RunDataExpiry getRunDataExpiry()
+    {
+        return runDataExpiry;
+    }
+
+    RunStore getRunStore()
+    {
+        return runStore;
+    }
+
+    BlobValues getBlobValues()
+    {
+        return blobValues;
+    }
+}
@@ -19,20 +19,27 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Streams;
 import com.nirmata.workflow.WorkflowManager;
+import com.nirmata.workflow.admin.CleanResult;
+import com.nirmata.workflow.admin.Page;
+import com.nirmata.workflow.admin.RunFilter;
 import com.nirmata.workflow.admin.RunInfo;
 import com.nirmata.workflow.admin.TaskDetails;
 import com.nirmata.workflow.admin.TaskInfo;
 import com.nirmata.workflow.admin.WorkflowAdmin;
 import com.nirmata.workflow.admin.WorkflowManagerState;
+import com.nirmata.workflow.details.internalmodels.RunSummary;
 import com.nirmata.workflow.details.internalmodels.RunnableTask;
 import com.nirmata.workflow.details.internalmodels.StartedTask;
 import com.nirmata.workflow.events.WorkflowListenerManager;
 import com.nirmata.workflow.executor.TaskExecution;
+import com.nirmata.workflow.executor.TaskExecutionStatus;
 import com.nirmata.workflow.executor.TaskExecutor;
 import com.nirmata.workflow.models.ExecutableTask;
+import com.nirmata.workflow.models.Id;
 import com.nirmata.workflow.models.RunId;
 import com.nirmata.workflow.models.Task;
 import com.nirmata.workflow.models.TaskExecutionResult;
@@ -42,6 +49,8 @@ import com.nirmata.workflow.queue.QueueConsumer;
 import com.nirmata.workflow.queue.QueueFactory;
 import com.nirmata.workflow.serialization.Serializer;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorOp;
+import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.utils.CloseableUtils;
 import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.KeeperException;
@@ -50,17 +59,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
 {
@@ -69,11 +83,18 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
     private final String instanceName;
     private final List<QueueConsumer> consumers;
     private final SchedulerSelector schedulerSelector;
+    private final AutoCleanerHolder autoCleanerHolder;
     private final AtomicReference<State> state = new AtomicReference<>(State.LATENT);
     private final Serializer serializer;
     private final Executor taskRunnerService;
+    private final TaskPaths taskPaths;
+    private final RunDataExpiry runDataExpiry;
+    private final RunStore runStore;
+    private final BlobValues blobValues;
 
     private static final TaskType nullTaskType = new TaskType("", "", false);
+    private static final int MAX_ASYNC_READS = 100;
+    private static final int MAX_ASYNC_WRITES = 100;
 
     private enum State
     {
@@ -82,18 +103,23 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
         CLOSED
     }
 
-    public WorkflowManagerImpl(CuratorFramework curator, QueueFactory queueFactory, String instanceName, List<TaskExecutorSpec> specs, AutoCleanerHolder autoCleanerHolder, Serializer serializer, Executor taskRunnerService)
+    WorkflowManagerImpl(WorkflowManagerConfig config)
     {
-        this.taskRunnerService = Preconditions.checkNotNull(taskRunnerService, "taskRunnerService cannot be null");
-        this.serializer = Preconditions.checkNotNull(serializer, "serializer cannot be null");
-        autoCleanerHolder = Preconditions.checkNotNull(autoCleanerHolder, "autoCleanerHolder cannot be null");
-        this.curator = Preconditions.checkNotNull(curator, "curator cannot be null");
-        queueFactory = Preconditions.checkNotNull(queueFactory, "queueFactory cannot be null");
-        this.instanceName = Preconditions.checkNotNull(instanceName, "instanceName cannot be null");
-        specs = Preconditions.checkNotNull(specs, "specs cannot be null");
+        this.blobValues = Preconditions.checkNotNull(config.getBlobValues(), "blobValues cannot be null");
+        this.runStore = Preconditions.checkNotNull(config.getRunStore(), "runStore cannot be null");
+        this.runDataExpiry = Preconditions.checkNotNull(config.getRunDataExpiry(), "runDataExpiry cannot be null");
+        this.taskPaths = Preconditions.checkNotNull(config.getTaskPaths(), "taskPaths cannot be null");
+        SchedulerConfig schedulerConfig = Preconditions.checkNotNull(config.getSchedulerConfig(), "schedulerConfig cannot be null");
+        this.taskRunnerService = Preconditions.checkNotNull(config.getTaskRunnerService(), "taskRunnerService cannot be null");
+        this.serializer = Preconditions.checkNotNull(config.getSerializer(), "serializer cannot be null");
+        this.autoCleanerHolder = Preconditions.checkNotNull(config.getAutoCleanerHolder(), "autoCleanerHolder cannot be null");
+        this.curator = Preconditions.checkNotNull(config.getCurator(), "curator cannot be null");
+        QueueFactory queueFactory = Preconditions.checkNotNull(config.getQueueFactory(), "queueFactory cannot be null");
+        this.instanceName = Preconditions.checkNotNull(config.getInstanceName(), "instanceName cannot be null");
+        List<TaskExecutorSpec> specs = Preconditions.checkNotNull(config.getSpecs(), "specs cannot be null");
 
         consumers = makeTaskConsumers(queueFactory, specs);
-        schedulerSelector = new SchedulerSelector(this, queueFactory, autoCleanerHolder);
+        schedulerSelector = new SchedulerSelector(this, queueFactory, autoCleanerHolder, schedulerConfig);
     }
 
     public CuratorFramework getCurator()
@@ -101,6 +127,31 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
         return curator;
     }
 
+    public TaskPaths getTaskPaths()
+    {
+        return taskPaths;
+    }
+
+    public RunDataExpiry getRunDataExpiry()
+    {
+        return runDataExpiry;
+    }
+
+    public RunStore getRunStore()
+    {
+        return runStore;
+    }
+
+    public BlobValues getBlobValues()
+    {
+        return blobValues;
+    }
+
+    RunnableTask readRun(RunId runId, byte[] runData) throws Exception
+    {
+        return runStore.readRun(this, runId, runData);
+    }
+
     @VisibleForTesting
     volatile boolean debugDontStartConsumers = false;
 
@@ -109,6 +160,7 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
     {
         Preconditions.checkState(state.compareAndSet(State.LATENT, State.STARTED), "Already started");
 
+        runDataExpiry.start(curator);
         if ( !debugDontStartConsumers )
         {
             startQueueConsumers();
@@ -135,14 +187,14 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
         {
             String runPath = ZooKeeperConstants.getRunPath(runId);
             byte[] runnableTaskBytes = curator.getData().forPath(runPath);
-            RunnableTask runnableTask = serializer.deserialize(runnableTaskBytes, RunnableTask.class);
+            RunnableTask runnableTask = readRun(runId, runnableTaskBytes);
             return runnableTask.getTasks()
                 .entrySet()
                 .stream()
                 .collect(Collectors.toMap(Map.Entry::getKey, entry -> {
                     ExecutableTask executableTask = entry.getValue();
                     TaskType taskType = executableTask.getTaskType().equals(nullTaskType) ? null : executableTask.getTaskType();
-                    return new TaskDetails(entry.getKey(), taskType, executableTask.getMetaData());
+                    return new TaskDetails(entry.getKey(), taskType, blobValues.resolve(executableTask.getMetaData()));
                 }))
                 ;
         }
@@ -186,15 +238,23 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
             .getTasks()
             .values()
             .stream()
-            .collect(Collectors.toMap(Task::getTaskId, t -> new ExecutableTask(runId, t.getTaskId(), t.isExecutable() ? t.getTaskType() : nullTaskType, t.getMetaData(), t.isExecutable())));
-        RunnableTask runnableTask = new RunnableTask(tasks, builder.getEntries(), LocalDateTime.now(), null, parentRunId);
+            .collect(Collectors.toMap(Task::getTaskId, t -> new ExecutableTask(runId, t.getTaskId(), t.isExecutable() ? t.getTaskType() : nullTaskType, blobValues.store(runId, t.getMetaData()), t.isExecutable())));
+        RunnableTask runnableTask = new RunnableTask(tasks, builder.getEntries(), builder.getDependents(), LocalDateTime.now(), null, parentRunId);
 
         try
         {
-            byte[] runnableTaskBytes = serializer.serialize(runnableTask);
-            String runPath = ZooKeeperConstants.getRunPath(runId);
+            byte[] runnableTaskBytes = runStore.newRunData(this, runId, runnableTask);
+            byte[] runSummaryBytes = serializer.serialize(new RunSummary(runnableTask.getStartTimeUtc(), parentRunId));
             debugLastSubmittedTimeMs = System.currentTimeMillis();
-            curator.create().creatingParentContainersIfNeeded().forPath(runPath, runnableTaskBytes);
+            try
+            {
+                createRunNodes(runId, runnableTaskBytes, runSummaryBytes);
+            }
+            catch ( Exception e )
+            {
+                runStore.deleteNewRunData(this, runId, runnableTaskBytes);
+                throw e;
+            }
         }
         catch ( Exception e )
         {
@@ -204,27 +264,56 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
         return runId;
     }
     
-    public void updateTaskProgress(RunId runId, TaskId taskId, int progress)
-    {   
-        Preconditions.checkArgument((progress >= 0) && (progress <= 100), "progress must be between 0 and 100");
-         
-        String path = ZooKeeperConstants.getStartedTaskPath(runId, taskId);
+    private void createRunNodes(RunId runId, byte[] runBytes, byte[] runSummaryBytes) throws Exception
+    {
+        // the run and its summary are created together - otherwise the scheduler could complete
+        // the run before its summary exists. Transactions can't create parents so they are created
+        // as needed and the transaction retried.
+        String runPath = ZooKeeperConstants.getRunPath(runId);
+        String summaryPath = ZooKeeperConstants.getRunSummaryPath(runId);
         try
         {
-            byte[] bytes = curator.getData().forPath(path);
-            StartedTask startedTask = serializer.deserialize(bytes, StartedTask.class);
-            StartedTask updatedStartedTask = new StartedTask(startedTask.getInstanceName(), startedTask.getStartDateUtc(), progress);
-            byte[] data = getSerializer().serialize(updatedStartedTask);
-            curator.setData().forPath(path, data);
+            createRunNodes(runPath, runBytes, summaryPath, runSummaryBytes);
         }
-        catch ( KeeperException.NoNodeException ignore )
+        catch ( KeeperException.NoNodeException dummy )
         {
-            // ignore - must have been deleted in the interim, for example before we update 
-            // progress the task is completed
+            curator.createContainers(ZKPaths.getPathAndNode(runPath).getPath());
+            curator.createContainers(ZKPaths.getPathAndNode(summaryPath).getPath());
+            createRunNodes(runPath, runBytes, summaryPath, runSummaryBytes);
         }
-        catch ( Exception e )
+    }
+
+    private void createRunNodes(String runPath, byte[] runBytes, String summaryPath, byte[] runSummaryBytes) throws Exception
+    {
+        CuratorOp runOperation = runDataExpiry.transactionCreate(curator).forPath(runPath, runBytes);
+        CuratorOp summaryOperation = runDataExpiry.transactionCreate(curator).forPath(summaryPath, runSummaryBytes);
+        curator.transaction().forOperations(runOperation, summaryOperation);
+    }
+
+    public void updateTaskProgress(RunId runId, TaskId taskId, int progress)
+    {   
+        Preconditions.checkArgument((progress >= 0) && (progress <= 100), "progress must be between 0 and 100");
+         
+        for ( String path : taskPaths.getStartedTaskReadPaths(runId, taskId) )
         {
-            throw new RuntimeException("Trying to read started task info from: " + path, e);
+            try
+            {
+                byte[] bytes = curator.getData().forPath(path);
+                StartedTask startedTask = serializer.deserialize(bytes, StartedTask.class);
+                StartedTask updatedStartedTask = new StartedTask(startedTask.getInstanceName(), startedTask.getStartDateUtc(), progress);
+                byte[] data = getSerializer().serialize(updatedStartedTask);
+                curator.setData().forPath(path, data);
+                return;
+            }
+            catch ( KeeperException.NoNodeException ignore )
+            {
+                // ignore - must have been deleted in the interim, for example before we update
+                // progress the task is completed
+            }
+            catch ( Exception e )
+            {
+                throw new RuntimeException("Trying to read started task info from: " + path, e);
+            }
         }
     }
     
@@ -238,8 +327,14 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
         {
             Stat stat = new Stat();
             byte[] bytes = curator.getData().storingStatIn(stat).forPath(runPath);
-            RunnableTask runnableTask = serializer.deserialize(bytes, RunnableTask.class);
-            Scheduler.completeRunnableTask(log, this, runId, runnableTask, stat.getVersion());
+            RunnableTask runnableTask = readRun(runId, bytes);
+            List<TaskExecutionResult> results = readTaskResults(runId, runnableTask);
+            int failedTaskQty = (int)results.stream().filter(result -> result.getStatus() != TaskExecutionStatus.SUCCESS).count();
+            KeeperException.Code code = Scheduler.completeRunnableTask(log, this, runId, runnableTask, bytes, stat.getVersion(), results.size(), failedTaskQty).get();
+            if ( code != KeeperException.Code.OK )
+            {
+                throw KeeperException.create(code, runPath);
+            }
             return true;
         }
         catch ( KeeperException.NoNodeException ignore )
@@ -252,23 +347,44 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
         }
     }
 
-    @Override
-    public Optional<TaskExecutionResult> getTaskExecutionResult(RunId runId, TaskId taskId)
+    private List<TaskExecutionResult> readTaskResults(RunId runId, RunnableTask runnableTask) throws Exception
     {
-        String completedTaskPath = ZooKeeperConstants.getCompletedTaskPath(runId, taskId);
-        try
-        {
-            byte[] bytes = curator.getData().forPath(completedTaskPath);
-            TaskExecutionResult taskExecutionResult = serializer.deserialize(bytes, TaskExecutionResult.class);
-            return Optional.of(taskExecutionResult);
-        }
-        catch ( KeeperException.NoNodeException dummy )
+        // results are only counted so referenced blob values aren't read
+        List<TaskId> taskIds = runnableTask.getTasks().values().stream().filter(ExecutableTask::isExecutable).map(ExecutableTask::getTaskId).collect(Collectors.toList());
+        List<String> paths = taskIds.stream().flatMap(taskId -> taskPaths.getCompletedTaskReadPaths(runId, taskId).stream()).collect(Collectors.toList());
+        Map<String, ChildData> taskData = new AsyncReader(curator, MAX_ASYNC_READS).read(paths);
+
+        List<TaskExecutionResult> results = Lists.newArrayList();
+        for ( TaskId taskId : taskIds )
         {
-            // dummy
+            ChildData completedData = getFirst(taskData, taskPaths.getCompletedTaskReadPaths(runId, taskId));
+            if ( completedData != null )
+            {
+                results.add(serializer.deserialize(completedData.getData(), TaskExecutionResult.class));
+            }
         }
-        catch ( Exception e )
+        return results;
+    }
+
+    @Override
+    public Optional<TaskExecutionResult> getTaskExecutionResult(RunId runId, TaskId taskId)
+    {
+        for ( String completedTaskPath : taskPaths.getCompletedTaskReadPaths(runId, taskId) )
         {
-            throw new RuntimeException(String.format("No data for runId %s taskId %s", runId, taskId), e);
+            try
+            {
+                byte[] bytes = curator.getData().forPath(completedTaskPath);
+                TaskExecutionResult taskExecutionResult = serializer.deserialize(bytes, TaskExecutionResult.class);
+                return Optional.of(blobValues.resolve(taskExecutionResult));
+            }
+            catch ( KeeperException.NoNodeException dummy )
+            {
+                // dummy
+            }
+            catch ( Exception e )
+            {
+                throw new RuntimeException(String.format("No data for runId %s taskId %s", runId, taskId), e);
+            }
         }
         return Optional.empty();
     }
@@ -290,6 +406,8 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
     {
         if ( state.compareAndSet(State.STARTED, State.CLOSED) )
         {
+            // the cleaner uses the Curator client - stop it before the caller can close the client
+            autoCleanerHolder.stop();
             CloseableUtils.closeQuietly(schedulerSelector);
             consumers.forEach(CloseableUtils::closeQuietly);
         }
@@ -307,63 +425,34 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
         return new WorkflowManagerState(
             curator.getZookeeperClient().isConnected(),
             schedulerSelector.getState(),
-            consumers.stream().map(QueueConsumer::getState).collect(Collectors.toList())
+            consumers.stream().map(QueueConsumer::getState).collect(Collectors.toList()),
+            schedulerSelector.getPendingRunCount()
         );
     }
 
+    @Override
+    public int migrateTaskLayout()
+    {
+        return new LayoutMigrator(this).migrate();
+    }
+
     @Override
     public boolean clean(RunId runId)
     {
-        String runPath = ZooKeeperConstants.getRunPath(runId);
-        try
+        CleanResult result = clean(Collections.singletonList(runId)).get(runId);
+        if ( result == CleanResult.FAILED )
         {
-            byte[] bytes = curator.getData().forPath(runPath);
-            RunnableTask runnableTask = serializer.deserialize(bytes, RunnableTask.class);
-            runnableTask.getTasks().keySet().forEach(taskId -> {
-                String startedTaskPath = ZooKeeperConstants.getStartedTaskPath(runId, taskId);
-                try
-                {
-                    curator.delete().forPath(startedTaskPath);
-                }
-                catch ( KeeperException.NoNodeException ignore )
-                {
-                    // ignore
-                }
-                catch ( Exception e )
-                {
-                    throw new RuntimeException("Could not delete started task at: " + startedTaskPath, e);
-                }
-
-                String completedTaskPath = ZooKeeperConstants.getCompletedTaskPath(runId, taskId);
-                try
-                {
-                    curator.delete().forPath(completedTaskPath);
-                }
-                catch ( KeeperException.NoNodeException ignore )
-                {
-                    // ignore
-                }
-                catch ( Exception e )
-                {
-                    throw new RuntimeException("Could not delete completed task at: " + completedTaskPath, e);
-                }
-            });
-
-            try
-            {
-                curator.delete().forPath(runPath);
-            }
-            catch ( Exception e )
-            {
-                // at this point, the node should exist
-                throw new RuntimeException(e);
-            }
-
-            return true;
+            throw new RuntimeException("Could not clean run: " + runId);
         }
-        catch ( KeeperException.NoNodeException dummy )
+        return result == CleanResult.CLEANED;
+    }
+
+    @Override
+    public Map<RunId, CleanResult> clean(Collection<RunId> runIds)
+    {
+        try
         {
-            return false;
+            return new RunCleaner(this, MAX_ASYNC_WRITES).clean(runIds);
         }
         catch ( Throwable e )
         {
@@ -376,10 +465,19 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
     {
         try
         {
+            try
+            {
+                byte[] summaryBytes = curator.getData().forPath(ZooKeeperConstants.getRunSummaryPath(runId));
+                return newRunInfo(runId, serializer.deserialize(summaryBytes, RunSummary.class));
+            }
+            catch ( KeeperException.NoNodeException dummy )
+            {
+                // runs submitted before summaries were written only have the full run
+            }
+
             String runPath = ZooKeeperConstants.getRunPath(runId);
             byte[] bytes = curator.getData().forPath(runPath);
-            RunnableTask runnableTask = serializer.deserialize(bytes, RunnableTask.class);
-            return new RunInfo(runId, runnableTask.getStartTimeUtc(), runnableTask.getCompletionTimeUtc().orElse(null));
+            return RunStore.readRunInfo(serializer, runId, bytes);
         }
         catch ( Exception e )
         {
@@ -409,34 +507,133 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
         return Collections.emptyList();
     }
 
+    @Override
+    public Page<RunInfo> getRunInfo(RunFilter filter, String cursor, int pageSize)
+    {
+        Preconditions.checkNotNull(filter, "filter cannot be null");
+        Preconditions.checkArgument(pageSize > 0, "pageSize must be greater than 0");
+
+        // only the page's runs are read and the filter is applied to their summaries
+        List<RunId> runIds = getSortedIdsAfter(getRunIds(), cursor);
+        List<RunInfo> runInfos = readRunInfo(getPageIds(runIds, pageSize)).stream()
+            .filter(filter::matches)
+            .collect(Collectors.toList());
+        return new Page<>(runInfos, getNextCursor(runIds, pageSize));
+    }
+
+    @Override
+    public Stream<RunId> streamRunIds()
+    {
+        return getSortedIdsAfter(getRunIds(), null).stream();
+    }
+
+    @Override
+    public Stream<RunInfo> streamRunInfo(RunFilter filter, String cursor)
+    {
+        Preconditions.checkNotNull(filter, "filter cannot be null");
+
+        // the run IDs are listed once for the whole stream - the runs are read a page at a time
+        List<RunId> runIds = getSortedIdsAfter(getRunIds(), cursor);
+        return streamInPages(runIds, pageIds -> readRunInfo(pageIds).stream().filter(filter::matches).collect(Collectors.toList()));
+    }
+
+    @Override
+    public Stream<RunId> streamCompletedRunIds(LocalDateTime completedBeforeUtc)
+    {
+        Preconditions.checkNotNull(completedBeforeUtc, "completedBeforeUtc cannot be null");
+        List<String> buckets;
+        try
+        {
+            buckets = curator.getChildren().forPath(ZooKeeperConstants.getCompletedRunIndexParentPath());
+        }
+        catch ( KeeperException.NoNodeException dummy )
+        {
+            return Stream.empty();
+        }
+        catch ( Exception e )
+        {
+            throw new RuntimeException(e);
+        }
+
+        // buckets that start after the time are never read
+        return buckets.stream()
+            .filter(bucket -> !ZooKeeperConstants.getCompletedRunBucketStartUtc(bucket).isAfter(completedBeforeUtc))
+            .sorted()
+            .flatMap(bucket -> readCompletedRunBucket(bucket, completedBeforeUtc).stream());
+    }
+
+    private List<RunId> readCompletedRunBucket(String bucket, LocalDateTime completedBeforeUtc)
+    {
+        try
+        {
+            List<RunId> runIds = curator.getChildren().forPath(ZooKeeperConstants.getCompletedRunBucketPath(bucket)).stream()
+                .map(RunId::new)
+                .collect(Collectors.toList());
+            if ( ZooKeeperConstants.getCompletedRunBucketEndUtc(bucket).isAfter(completedBeforeUtc) )
+            {
+                // only some of the runs in the bucket that contains the time are old enough
+                return readRunInfo(runIds).stream()
+                    .filter(runInfo -> runInfo.isComplete() && !runInfo.getCompletionTimeUtc().isAfter(completedBeforeUtc))
+                    .map(RunInfo::getRunId)
+                    .collect(Collectors.toList());
+            }
+            return runIds;
+        }
+        catch ( KeeperException.NoNodeException dummy )
+        {
+            return Collections.emptyList();  // bucket was emptied and deleted in the interim
+        }
+        catch ( Exception e )
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public List<RunInfo> getRunInfo()
     {
         try
         {
-            String runParentPath = ZooKeeperConstants.getRunParentPath();
-            return curator.getChildren().forPath(runParentPath).stream()
-                .map(child -> {
-                    String fullPath = ZKPaths.makePath(runParentPath, child);
-                    try
-                    {
-                        RunId runId = new RunId(ZooKeeperConstants.getRunIdFromRunPath(fullPath));
-                        byte[] bytes = curator.getData().forPath(fullPath);
-                        RunnableTask runnableTask = serializer.deserialize(bytes, RunnableTask.class);
-                        return new RunInfo(runId, runnableTask.getStartTimeUtc(), runnableTask.getCompletionTimeUtc().orElse(null));
-                    }
-                    catch ( KeeperException.NoNodeException ignore )
-                    {
-                        // ignore - must have been deleted in the interim
-                    }
-                    catch ( Exception e )
-                    {
-                        throw new RuntimeException("Trying to read run info from: " + fullPath, e);
-                    }
-                    return null;
-                })
-                .filter(info -> (info != null))
+            List<RunId> runIds = curator.getChildren().forPath(ZooKeeperConstants.getRunParentPath()).stream()
+                .map(RunId::new)
+                .collect(Collectors.toList());
+            return readRunInfo(runIds);
+        }
+        catch ( Throwable e )
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private List<RunInfo> readRunInfo(List<RunId> runIds)
+    {
+        try
+        {
+            // read the small summaries - only runs without one are read in full
+            AsyncReader reader = new AsyncReader(curator, MAX_ASYNC_READS);
+            Map<String, ChildData> summaryData = reader.read(runIds.stream().map(ZooKeeperConstants::getRunSummaryPath).collect(Collectors.toList()));
+            List<String> unsummarizedRunPaths = runIds.stream()
+                .filter(runId -> !summaryData.containsKey(ZooKeeperConstants.getRunSummaryPath(runId)))
+                .map(ZooKeeperConstants::getRunPath)
                 .collect(Collectors.toList());
+            Map<String, ChildData> runData = reader.read(unsummarizedRunPaths);
+
+            // runs deleted in the interim are not included
+            List<RunInfo> runInfos = Lists.newArrayList();
+            for ( RunId runId : runIds )
+            {
+                ChildData summary = summaryData.get(ZooKeeperConstants.getRunSummaryPath(runId));
+                ChildData run = runData.get(ZooKeeperConstants.getRunPath(runId));
+                if ( summary != null )
+                {
+                    runInfos.add(newRunInfo(runId, serializer.deserialize(summary.getData(), RunSummary.class)));
+                }
+                else if ( run != null )
+                {
+                    runInfos.add(RunStore.readRunInfo(serializer, runId, run.getData()));
+                }
+            }
+            return runInfos;
         }
         catch ( Throwable e )
         {
@@ -444,71 +641,82 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
         }
     }
 
+    private static RunInfo newRunInfo(RunId runId, RunSummary runSummary)
+    {
+        return new RunInfo(runId, runSummary.getStartTimeUtc(), runSummary.getCompletionTimeUtc().orElse(null));
+    }
+
     @Override
     public List<TaskInfo> getTaskInfo(RunId runId)
     {
-        List<TaskInfo> taskInfos = Lists.newArrayList();
-        String startedTasksParentPath = ZooKeeperConstants.getStartedTasksParentPath();
-        String completedTaskParentPath = ZooKeeperConstants.getCompletedTaskParentPath();
+        return readTaskInfo(runId, getExecutableTaskIds(runId));
+    }
+
+    @Override
+    public Page<TaskInfo> getTaskInfo(RunId runId, String cursor, int pageSize)
+    {
+        Preconditions.checkArgument(pageSize > 0, "pageSize must be greater than 0");
+        List<TaskId> taskIds = getSortedIdsAfter(getExecutableTaskIds(runId), cursor);
+        return new Page<>(readTaskInfo(runId, getPageIds(taskIds, pageSize)), getNextCursor(taskIds, pageSize));
+    }
+
+    @Override
+    public Stream<TaskInfo> streamTaskInfo(RunId runId)
+    {
+        // the run is read and decoded once for the whole stream - its tasks' nodes are read a page at a time
+        List<TaskId> taskIds = getSortedIdsAfter(getExecutableTaskIds(runId), null);
+        return streamInPages(taskIds, pageIds -> readTaskInfo(runId, pageIds));
+    }
+
+    private List<TaskId> getExecutableTaskIds(RunId runId)
+    {
         try
         {
             String runPath = ZooKeeperConstants.getRunPath(runId);
             byte[] runBytes = curator.getData().forPath(runPath);
-            RunnableTask runnableTask = serializer.deserialize(runBytes, RunnableTask.class);
+            RunnableTask runnableTask = readRun(runId, runBytes);
+            return runnableTask.getTasks().values().stream().filter(ExecutableTask::isExecutable).map(ExecutableTask::getTaskId).collect(Collectors.toList());
+        }
+        catch ( Exception e )
+        {
+            throw new RuntimeException(e);
+        }
+    }
 
-            Set<TaskId> notStartedTasks = runnableTask.getTasks().values().stream().filter(ExecutableTask::isExecutable).map(ExecutableTask::getTaskId).collect(Collectors.toSet());
-            Map<TaskId, StartedTask> startedTasks = Maps.newHashMap();
+    private List<TaskInfo> readTaskInfo(RunId runId, List<TaskId> taskIds)
+    {
+        List<TaskInfo> taskInfos = Lists.newArrayList();
+        try
+        {
+            // only the given tasks' nodes are read - all of them in parallel
+            List<String> paths = Lists.newArrayList();
+            taskIds.forEach(taskId -> {
+                paths.addAll(taskPaths.getStartedTaskReadPaths(runId, taskId));
+                paths.addAll(taskPaths.getCompletedTaskReadPaths(runId, taskId));
+            });
+            Map<String, ChildData> taskData = new AsyncReader(curator, MAX_ASYNC_READS).read(paths);
 
-            curator.getChildren().forPath(startedTasksParentPath).forEach(child -> {
-                String fullPath = ZKPaths.makePath(startedTasksParentPath, child);
-                TaskId taskId = new TaskId(ZooKeeperConstants.getTaskIdFromStartedTasksPath(fullPath));
-                try
+            for ( TaskId taskId : taskIds )
+            {
+                ChildData startedData = getFirst(taskData, taskPaths.getStartedTaskReadPaths(runId, taskId));
+                if ( startedData == null )
                 {
-                    byte[] bytes = curator.getData().forPath(fullPath);
-                    StartedTask startedTask = serializer.deserialize(bytes, StartedTask.class);
-                    startedTasks.put(taskId, startedTask);
-                    notStartedTasks.remove(taskId);
+                    taskInfos.add(new TaskInfo(taskId));
+                    continue;
                 }
-                catch ( KeeperException.NoNodeException ignore )
+
+                StartedTask startedTask = serializer.deserialize(startedData.getData(), StartedTask.class);
+                ChildData completedData = getFirst(taskData, taskPaths.getCompletedTaskReadPaths(runId, taskId));
+                if ( completedData != null )
                 {
-                    // ignore - must have been deleted in the interim
+                    TaskExecutionResult taskExecutionResult = blobValues.resolve(serializer.deserialize(completedData.getData(), TaskExecutionResult.class));
+                    taskInfos.add(new TaskInfo(taskId, startedTask.getInstanceName(), startedTask.getStartDateUtc(), startedTask.getProgress(), taskExecutionResult));
                 }
-                catch ( Exception e )
+                else
                 {
-                    throw new RuntimeException("Trying to read started task info from: " + fullPath, e);
+                    taskInfos.add(new TaskInfo(taskId, startedTask.getInstanceName(), startedTask.getStartDateUtc(), startedTask.getProgress()));
                 }
-            });
-
-            curator.getChildren().forPath(completedTaskParentPath).forEach(child -> {
-                String fullPath = ZKPaths.makePath(completedTaskParentPath, child);
-                TaskId taskId = new TaskId(ZooKeeperConstants.getTaskIdFromCompletedTasksPath(fullPath));
-
-                StartedTask startedTask = startedTasks.remove(taskId);
-                if ( startedTask != null )  // otherwise it must have been deleted
-                {
-                    try
-                    {
-                        byte[] bytes = curator.getData().forPath(fullPath);
-                        TaskExecutionResult taskExecutionResult = serializer.deserialize(bytes, TaskExecutionResult.class);
-                        taskInfos.add(new TaskInfo(taskId, startedTask.getInstanceName(), startedTask.getStartDateUtc(), startedTask.getProgress(), taskExecutionResult));
-                        notStartedTasks.remove(taskId);
-                    }
-                    catch ( KeeperException.NoNodeException ignore )
-                    {
-                        // ignore - must have been deleted in the interim
-                    }
-                    catch ( Exception e )
-                    {
-                        throw new RuntimeException("Trying to read completed task info from: " + fullPath, e);
-                    }
-                }               
-            });
-
-            // remaining started tasks have not completed
-            startedTasks.forEach((key, startedTask) -> taskInfos.add(new TaskInfo(key, startedTask.getInstanceName(), startedTask.getStartDateUtc(), startedTask.getProgress())));
-
-            // finally, taskIds not added have not started
-            notStartedTasks.forEach(taskId -> taskInfos.add(new TaskInfo(taskId)));
+            }
         }
         catch ( Throwable e )
         {
@@ -517,6 +725,36 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
         return taskInfos;
     }
 
+    private static <T extends Id> List<T> getSortedIdsAfter(List<T> ids, String cursor)
+    {
+        return ids.stream()
+            .filter(id -> (cursor == null) || (id.getId().compareTo(cursor) > 0))
+            .sorted(Comparator.comparing(Id::getId))
+            .collect(Collectors.toList());
+    }
+
+    private static <I, T> Stream<T> streamInPages(List<I> sortedIds, Function<List<I>, List<T>> pageReader)
+    {
+        Iterator<List<I>> pages = Iterators.partition(sortedIds.iterator(), Page.DEFAULT_STREAM_PAGE_SIZE);
+        return Streams.stream(Iterators.concat(Iterators.transform(pages, pageIds -> pageReader.apply(pageIds).iterator())));
+    }
+
+    private static <T extends Id> List<T> getPageIds(List<T> sortedIds, int pageSize)
+    {
+        return sortedIds.subList(0, Math.min(pageSize, sortedIds.size()));
+    }
+
+    private static String getNextCursor(List<? extends Id> sortedIds, int pageSize)
+    {
+        // the cursor is the last ID of the page - the next page starts after it
+        return (sortedIds.size() > pageSize) ? sortedIds.get(pageSize - 1).getId() : null;
+    }
+
+    private static ChildData getFirst(Map<String, ChildData> data, List<String> paths)
+    {
+        return paths.stream().map(data::get).filter(Objects::nonNull).findFirst().orElse(null);
+    }
+
     public Serializer getSerializer()
     {
         return serializer;
@@ -535,13 +773,16 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
             return;
         }
 
-        String path = ZooKeeperConstants.getCompletedTaskPath(executableTask.getRunId(), executableTask.getTaskId());
+        String path = taskPaths.getCompletedTaskPath(executableTask.getRunId(), executableTask.getTaskId());
         try
         {
-            if ( curator.checkExists().forPath(path) != null )
+            for ( String completedTaskPath : taskPaths.getCompletedTaskReadPaths(executableTask.getRunId(), executableTask.getTaskId()) )
             {
-                log.warn("Attempt to execute an already complete task - skipping - most likely due to a system restart: " + executableTask);
-                return;
+                if ( curator.checkExists().forPath(completedTaskPath) != null )
+                {
+                    log.warn("Attempt to execute an already complete task - skipping - most likely due to a system restart: " + executableTask);
+                    return;
+                }
             }
         }
         catch ( Exception e )
@@ -551,7 +792,7 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
         }
 
         log.info("Executing task: " + executableTask);
-        TaskExecution taskExecution = taskExecutor.newTaskExecution(this, executableTask);
+        TaskExecution taskExecution = taskExecutor.newTaskExecution(this, blobValues.resolve(executableTask));
 
         TaskExecutionResult result;
         try
@@ -574,14 +815,15 @@ public class WorkflowManagerImpl implements WorkflowManager, WorkflowAdmin
         {
             throw new RuntimeException(String.format("null returned from task executor for run: %s, task %s", executableTask.getRunId(), executableTask.getTaskId()));
         }
-        byte[] bytes = serializer.serialize(result);
+        byte[] bytes = serializer.serialize(blobValues.store(executableTask.getRunId(), result));
         try
         {
-            curator.create().creatingParentContainersIfNeeded().forPath(path, bytes);
+            runDataExpiry.createTask(curator).forPath(path, bytes);
         }
         catch ( KeeperException.NodeExistsException ignore )
         {
             // this is an edge case - the system was interrupted before the Curator queue recipe could remove the entry in the queue
+            // any values just moved to the BlobStore aren't referenced - they are deleted when the run is cleaned
             log.warn("Task executed twice - most likely due to a system restart. Task is idempotent so there should be no issues: " + executableTask);
         }
         catch ( Exception e )
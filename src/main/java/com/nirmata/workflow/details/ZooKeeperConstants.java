@@ -15,23 +15,37 @@
  */
 package com.nirmata.workflow.details;
 
-import com.google.common.base.Splitter;
 import com.nirmata.workflow.models.RunId;
 import com.nirmata.workflow.models.TaskId;
 import com.nirmata.workflow.models.TaskType;
 import org.apache.curator.utils.ZKPaths;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 
 public class ZooKeeperConstants
 {
     private static final String SCHEDULER_LEADER_PATH = "/scheduler-leader";
+    private static final String SCHEDULER_PARTITION_LEADER_PATH = "/scheduler-partition-leader";
     private static final String RUN_PATH = "/runs";
+    private static final String RUN_SUMMARY_PATH = "/run-summaries";
+    private static final String RUN_CHUNK_PATH = "/run-chunks";
+    private static final String COMPLETED_RUN_INDEX_PATH = "/completed-runs";
     private static final String COMPLETED_TASKS_PATH = "/tasks-completed";
     private static final String STARTED_TASKS_PATH = "/tasks-started";
     private static final String QUEUE_PATH_BASE = "/tasks-queue";
+    private static final String TTL_PROBE_PATH = "/ttl-probe";
 
-    private static final String SEPARATOR = "|";
+    private static final char SEPARATOR = '|';
+    private static final char PATH_SEPARATOR = '/';
+
+    private static final ChronoUnit COMPLETED_RUN_BUCKET_UNIT = ChronoUnit.HOURS;
+    private static final DateTimeFormatter COMPLETED_RUN_BUCKET_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH");
 
     public static final int MAX_PAYLOAD = 0xfffff;  // see "jute.maxbuffer" at http://zookeeper.apache.org/doc/r3.3.1/zookeeperAdmin.html
+    // ZooKeeper closes the connection of requests larger than jute.maxbuffer - transactions stay well below it
+    public static final int MAX_TRANSACTION_BYTES = 256 * 1024;
 
     private ZooKeeperConstants()
     {
@@ -57,8 +71,16 @@ public class ZooKeeperConstants
         System.out.println();
 
         System.out.println("getSchedulerLeaderPath:\t\t\t\t" + getSchedulerLeaderPath());
+        System.out.println("getSchedulerPartitionLeaderPath:\t" + getSchedulerPartitionLeaderPath(0));
         System.out.println("getRunParentPath:\t\t\t\t\t" + getRunParentPath());
         System.out.println("getRunPath:\t\t\t\t\t\t\t" + getRunPath(runId));
+        System.out.println("getRunSummaryParentPath:\t\t\t" + getRunSummaryParentPath());
+        System.out.println("getRunSummaryPath:\t\t\t\t\t" + getRunSummaryPath(runId));
+        System.out.println("getRunChunkParentPath:\t\t\t\t" + getRunChunkParentPath(runId));
+        System.out.println("getRunChunkPath:\t\t\t\t\t" + getRunChunkPath(runId, 0));
+        System.out.println("getCompletedRunIndexParentPath:\t\t" + getCompletedRunIndexParentPath());
+        System.out.println("getCompletedRunIndexPath:\t\t\t" + getCompletedRunIndexPath(runId, LocalDateTime.now(Clock.systemUTC())));
+        System.out.println("getTtlProbePath:\t\t\t\t\t" + getTtlProbePath());
         System.out.println("getQueueBasePath:\t\t\t\t\t" + getQueueBasePath(taskType));
         System.out.println("getQueuePath:\t\t\t\t\t\t" + getQueuePath(taskType));
         System.out.println("getQueueLockPath:\t\t\t\t\t" + getQueueLockPath(taskType));
@@ -73,6 +95,11 @@ public class ZooKeeperConstants
         return SCHEDULER_LEADER_PATH;
     }
 
+    public static String getSchedulerPartitionLeaderPath(int partition)
+    {
+        return ZKPaths.makePath(SCHEDULER_PARTITION_LEADER_PATH, Integer.toString(partition));
+    }
+
     public static String getRunParentPath()
     {
         return RUN_PATH;
@@ -88,9 +115,90 @@ public class ZooKeeperConstants
         return ZKPaths.makePath(RUN_PATH, runId.getId());
     }
 
+    public static String getRunSummaryParentPath()
+    {
+        return RUN_SUMMARY_PATH;
+    }
+
+    public static String getRunSummaryPath(RunId runId)
+    {
+        return ZKPaths.makePath(RUN_SUMMARY_PATH, runId.getId());
+    }
+
+    public static String getRunChunkParentPath(RunId runId)
+    {
+        return ZKPaths.makePath(RUN_CHUNK_PATH, runId.getId());
+    }
+
+    public static String getRunChunkPath(RunId runId, int index)
+    {
+        return ZKPaths.makePath(RUN_CHUNK_PATH, runId.getId(), Integer.toString(index));
+    }
+
+    public static String getTtlProbePath()
+    {
+        return TTL_PROBE_PATH;
+    }
+
+    public static String getCompletedRunIndexParentPath()
+    {
+        return COMPLETED_RUN_INDEX_PATH;
+    }
+
+    /**
+     * Return the bucket of the completed run index for the given completion time. Buckets
+     * are named so that they sort in time order.
+     *
+     * @param completionTimeUtc run completion time
+     * @return bucket name
+     */
+    public static String getCompletedRunBucket(LocalDateTime completionTimeUtc)
+    {
+        return completionTimeUtc.truncatedTo(COMPLETED_RUN_BUCKET_UNIT).format(COMPLETED_RUN_BUCKET_FORMAT);
+    }
+
+    /**
+     * @param bucket bucket name
+     * @return the earliest completion time of the bucket's runs
+     */
+    public static LocalDateTime getCompletedRunBucketStartUtc(String bucket)
+    {
+        return LocalDateTime.parse(bucket + ":00");
+    }
+
+    /**
+     * @param bucket bucket name
+     * @return the time at which the next bucket starts
+     */
+    public static LocalDateTime getCompletedRunBucketEndUtc(String bucket)
+    {
+        return getCompletedRunBucketStartUtc(bucket).plus(1, COMPLETED_RUN_BUCKET_UNIT);
+    }
+
+    public static String getCompletedRunBucketPath(String bucket)
+    {
+        return ZKPaths.makePath(COMPLETED_RUN_INDEX_PATH, bucket);
+    }
+
+    public static String getCompletedRunIndexPath(RunId runId, LocalDateTime completionTimeUtc)
+    {
+        return ZKPaths.makePath(getCompletedRunBucketPath(getCompletedRunBucket(completionTimeUtc)), runId.getId());
+    }
+
     public static String getRunIdFromRunPath(String path)
     {
-        return ZKPaths.getPathAndNode(path).getNode();
+        return path.substring(path.lastIndexOf(PATH_SEPARATOR) + 1);
+    }
+
+    /**
+     * Same as {@link #getRunIdFromRunPath(String)} but without allocating an intermediate string
+     *
+     * @param path run node path
+     * @return run ID
+     */
+    public static RunId parseRunIdFromRunPath(String path)
+    {
+        return new RunId(path, path.lastIndexOf(PATH_SEPARATOR) + 1, path.length());
     }
 
     public static String getQueuePath(TaskType taskType)
@@ -119,8 +227,8 @@ public class ZooKeeperConstants
 
     public static String getRunIdFromCompletedTasksPath(String path)
     {
-        String n = ZKPaths.getNodeFromPath(path);
-        return Splitter.on(SEPARATOR).splitToList(n).get(0);
+        int start = path.lastIndexOf(PATH_SEPARATOR) + 1;
+        return path.substring(start, getPartEnd(path, start));
     }
 
     public static String getTaskIdFromStartedTasksPath(String path)
@@ -130,8 +238,8 @@ public class ZooKeeperConstants
 
     public static String getTaskIdFromCompletedTasksPath(String path)
     {
-        String n = ZKPaths.getNodeFromPath(path);
-        return Splitter.on(SEPARATOR).splitToList(n).get(1);
+        int start = path.indexOf(SEPARATOR, path.lastIndexOf(PATH_SEPARATOR) + 1) + 1;
+        return path.substring(start, getPartEnd(path, start));
     }
 
     public static String getCompletedTaskPath(RunId runId, TaskId taskId)
@@ -155,6 +263,151 @@ public class ZooKeeperConstants
         return getRunIdFromCompletedTasksPath(path);
     }
 
+    public static String getCompletedTaskRunPath(RunId runId)
+    {
+        return ZKPaths.makePath(getCompletedTaskParentPath(), runId.getId());
+    }
+
+    public static String getStartedTaskRunPath(RunId runId)
+    {
+        return ZKPaths.makePath(getStartedTasksParentPath(), runId.getId());
+    }
+
+    public static String getHierarchicalCompletedTaskPath(RunId runId, TaskId taskId)
+    {
+        return ZKPaths.makePath(getCompletedTaskRunPath(runId), taskId.getId());
+    }
+
+    public static String getHierarchicalStartedTaskPath(RunId runId, TaskId taskId)
+    {
+        return ZKPaths.makePath(getStartedTaskRunPath(runId), taskId.getId());
+    }
+
+    /**
+     * Return the run ID for any node below the started or completed tasks parent in either layout
+     *
+     * @param parentPath started or completed tasks parent
+     * @param path the node path
+     * @return run ID or null if the path is not below the parent
+     */
+    public static String getRunIdFromTaskPath(String parentPath, String path)
+    {
+        int start = getChildStart(parentPath, path);
+        return (start >= 0) ? path.substring(start, getPartEnd(path, start)) : null;
+    }
+
+    /**
+     * Same as {@link #getRunIdFromTaskPath(String, String)} but without allocating an intermediate string
+     *
+     * @param parentPath started or completed tasks parent
+     * @param path the node path
+     * @return run ID or null if the path is not below the parent
+     */
+    public static RunId parseRunIdFromTaskPath(String parentPath, String path)
+    {
+        int start = getChildStart(parentPath, path);
+        return (start >= 0) ? new RunId(path, start, getPartEnd(path, start)) : null;
+    }
+
+    /**
+     * Return the task ID for a started or completed task node in either layout
+     *
+     * @param parentPath started or completed tasks parent
+     * @param path the node path
+     * @return task ID or null if the path is not a task node (e.g. it's the parent node of a run's tasks)
+     */
+    public static String getTaskIdFromTaskPath(String parentPath, String path)
+    {
+        int start = getTaskIdStart(parentPath, path);
+        return (start >= 0) ? path.substring(start, getTaskIdEnd(path, start)) : null;
+    }
+
+    /**
+     * Same as {@link #getTaskIdFromTaskPath(String, String)} but without allocating an intermediate string
+     *
+     * @param parentPath started or completed tasks parent
+     * @param path the node path
+     * @return task ID or null if the path is not a task node (e.g. it's the parent node of a run's tasks)
+     */
+    public static TaskId parseTaskIdFromTaskPath(String parentPath, String path)
+    {
+        int start = getTaskIdStart(parentPath, path);
+        return (start >= 0) ? new TaskId(path, start, getTaskIdEnd(path, start)) : null;
+    }
+
+    /**
+     * Returns true if the path is a started or completed task node in either layout
+     *
+     * @param parentPath started or completed tasks parent
+     * @param path the node path
+     * @return true/false
+     */
+    public static boolean isTaskPath(String parentPath, String path)
+    {
+        return getTaskIdStart(parentPath, path) >= 0;
+    }
+
+    /**
+     * Returns true if the given child of the started or completed tasks parent is a task node
+     * of the flat layout as opposed to a run node of the hierarchical layout
+     *
+     * @param nodeName child node name
+     * @return true/false
+     */
+    public static boolean isFlatTaskNode(String nodeName)
+    {
+        return nodeName.indexOf(SEPARATOR) >= 0;
+    }
+
+    // index of the first character below the parent or -1 if the path isn't below it
+    private static int getChildStart(String parentPath, String path)
+    {
+        int length = parentPath.length();
+        boolean isChild = (path != null) && (path.length() > (length + 1)) && path.startsWith(parentPath) && (path.charAt(length) == PATH_SEPARATOR);
+        return isChild ? (length + 1) : -1;
+    }
+
+    // index of the first character of the task ID (<parent>/<run>|<task> or <parent>/<run>/<task>) or -1
+    private static int getTaskIdStart(String parentPath, String path)
+    {
+        int start = getChildStart(parentPath, path);
+        if ( start < 0 )
+        {
+            return -1;
+        }
+        int end = getPartEnd(path, start);
+        if ( end == path.length() )
+        {
+            return -1;  // a run node of the hierarchical layout
+        }
+        if ( path.charAt(end) == SEPARATOR )
+        {
+            return end + 1;
+        }
+        // hierarchical - deeper nodes aren't tasks
+        return (path.indexOf(PATH_SEPARATOR, end + 1) < 0) ? (end + 1) : -1;
+    }
+
+    private static int getTaskIdEnd(String path, int start)
+    {
+        // in the hierarchical layout the task ID is the rest of the path
+        return (path.charAt(start - 1) == SEPARATOR) ? getPartEnd(path, start) : path.length();
+    }
+
+    // index of the separator or slash that ends the part that starts at the given index or the path length
+    private static int getPartEnd(String path, int start)
+    {
+        for ( int i = start; i < path.length(); ++i )
+        {
+            char c = path.charAt(i);
+            if ( (c == SEPARATOR) || (c == PATH_SEPARATOR) )
+            {
+                return i;
+            }
+        }
+        return path.length();
+    }
+
     private static String makeRunTask(RunId runId, TaskId taskId)
     {
         return runId.getId() + SEPARATOR + taskId.getId();
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details.internalmodels;
+
+import com.google.common.base.Preconditions;
+import com.nirmata.workflow.models.RunId;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Small record of a run's state that is stored separately from the run's
+ * {@link RunnableTask} so that it can be read and watched cheaply. Written when
+ * the run is submitted and again when it completes - the task counts are set
+ * when the run completes.
+ */
+public class RunSummary implements Serializable
+{
+    private static final long serialVersionUID = -2111340627929983664L;
+    private final LocalDateTime startTimeUtc;
+    private final LocalDateTime completionTimeUtc;
+    private final RunId parentRunId;
+    private final int completedTaskQty;
+    private final int failedTaskQty;
+
+    public RunSummary(LocalDateTime startTimeUtc, RunId parentRunId)
+    {
+        this(startTimeUtc, null, parentRunId, 0, 0);
+    }
+
+    public RunSummary(LocalDateTime startTimeUtc, LocalDateTime completionTimeUtc, RunId parentRunId, int completedTaskQty, int failedTaskQty)
+    {
+        this.startTimeUtc = Preconditions.checkNotNull(startTimeUtc, "startTimeUtc cannot be null");
+        this.completionTimeUtc = completionTimeUtc;
+        this.parentRunId = parentRunId;
+        this.completedTaskQty = completedTaskQty;
+        this.failedTaskQty = failedTaskQty;
+    }
+
+    public LocalDateTime getStartTimeUtc()
+    {
+        return startTimeUtc;
+    }
+
+    public Optional<LocalDateTime> getCompletionTimeUtc()
+    {
+        return Optional.ofNullable(completionTimeUtc);
+    }
+
+    public Optional<RunId> getParentRunId()
+    {
+        return Optional.ofNullable(parentRunId);
+    }
+
+    public int getCompletedTaskQty()
+    {
+        return completedTaskQty;
+    }
+
+    public int getFailedTaskQty()
+    {
+        return failedTaskQty;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+        if ( o == null || getClass() != o.getClass() )
+        {
+            return false;
+        }
+
+        RunSummary that = (RunSummary)o;
+
+        if ( completedTaskQty != that.completedTaskQty )
+        {
+            return false;
+        }
+        if ( failedTaskQty != that.failedTaskQty )
+        {
+            return false;
+        }
+        if ( !startTimeUtc.equals(that.startTimeUtc) )
+        {
+            return false;
+        }
+        if ( !Objects.equals(completionTimeUtc, that.completionTimeUtc) )
+        {
+            return false;
+        }
+        //noinspection RedundantIfStatement
+        if ( !Objects.equals(parentRunId, that.parentRunId) )
+        {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = startTimeUtc.hashCode();
+        result = 31 * result + Objects.hashCode(completionTimeUtc);
+        result = 31 * result + Objects.hashCode(parentRunId);
+        result = 31 * result + completedTaskQty;
+        result = 31 * result + failedTaskQty;
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RunSummary{" +
+            "startTimeUtc=" + startTimeUtc +
+            ", completionTimeUtc=" + completionTimeUtc +
+            ", parentRunId=" + parentRunId +
+            ", completedTaskQty=" + completedTaskQty +
+            ", failedTaskQty=" + failedTaskQty +
+            '}';
+    }
+}
@@ -18,11 +18,15 @@ package com.nirmata.workflow.details.internalmodels;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.nirmata.workflow.models.ExecutableTask;
 import com.nirmata.workflow.models.RunId;
 import com.nirmata.workflow.models.TaskId;
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -31,6 +35,7 @@ public class RunnableTask implements Serializable
 {
     private final Map<TaskId, ExecutableTask> tasks;
     private final List<RunnableTaskDag> taskDags;
+    private final Map<TaskId, Collection<TaskId>> taskDependents;
     private final LocalDateTime startTimeUtc;
     private final Optional<LocalDateTime> completionTimeUtc;
     private final Optional<RunId> parentRunId;
@@ -46,6 +51,19 @@ public class RunnableTask implements Serializable
     }
 
     public RunnableTask(Map<TaskId, ExecutableTask> tasks, List<RunnableTaskDag> taskDags, LocalDateTime startTimeUtc, LocalDateTime completionTimeUtc, RunId parentRunId)
+    {
+        this(tasks, taskDags, null, startTimeUtc, completionTimeUtc, parentRunId);
+    }
+
+    /**
+     * @param tasks the run's tasks
+     * @param taskDags each task's dependencies
+     * @param taskDependents each task's dependents (the reverse of <code>taskDags</code>). If null, it's built from <code>taskDags</code>
+     * @param startTimeUtc start time
+     * @param completionTimeUtc completion time or null
+     * @param parentRunId parent run or null
+     */
+    public RunnableTask(Map<TaskId, ExecutableTask> tasks, List<RunnableTaskDag> taskDags, Map<TaskId, Collection<TaskId>> taskDependents, LocalDateTime startTimeUtc, LocalDateTime completionTimeUtc, RunId parentRunId)
     {
         this.startTimeUtc = Preconditions.checkNotNull(startTimeUtc, "startTimeUtc cannot be null");
         this.completionTimeUtc = Optional.ofNullable(completionTimeUtc);
@@ -55,6 +73,7 @@ public class RunnableTask implements Serializable
 
         this.tasks = ImmutableMap.copyOf(tasks);
         this.taskDags = ImmutableList.copyOf(taskDags);
+        this.taskDependents = copyDependents((taskDependents != null) ? taskDependents : buildDependents(taskDags));
     }
 
     public Map<TaskId, ExecutableTask> getTasks()
@@ -67,6 +86,17 @@ public class RunnableTask implements Serializable
         return taskDags;
     }
 
+    /**
+     * Returns the reverse of {@link #getTaskDags()} - i.e. for each task, the tasks that
+     * depend on it. Tasks without dependents are not included.
+     *
+     * @return dependents
+     */
+    public Map<TaskId, Collection<TaskId>> getTaskDependents()
+    {
+        return taskDependents;
+    }
+
     public Optional<LocalDateTime> getCompletionTimeUtc()
     {
         return completionTimeUtc;
@@ -112,6 +142,10 @@ public class RunnableTask implements Serializable
         {
             return false;
         }
+        if ( !taskDependents.equals(that.taskDependents) )
+        {
+            return false;
+        }
         //noinspection RedundantIfStatement
         if ( !tasks.equals(that.tasks) )
         {
@@ -126,6 +160,7 @@ public class RunnableTask implements Serializable
     {
         int result = tasks.hashCode();
         result = 31 * result + taskDags.hashCode();
+        result = 31 * result + taskDependents.hashCode();
         result = 31 * result + startTimeUtc.hashCode();
         result = 31 * result + completionTimeUtc.hashCode();
         result = 31 * result + parentRunId.hashCode();
@@ -138,9 +173,24 @@ public class RunnableTask implements Serializable
         return "RunnableTask{" +
             "tasks=" + tasks +
             ", taskDags=" + taskDags +
+            ", taskDependents=" + taskDependents +
             ", startTime=" + startTimeUtc +
             ", completionTime=" + completionTimeUtc +
             ", parentRunId=" + parentRunId +
             '}';
     }
+
+    private static Map<TaskId, Collection<TaskId>> buildDependents(List<RunnableTaskDag> taskDags)
+    {
+        Map<TaskId, Collection<TaskId>> dependents = Maps.newLinkedHashMap();
+        taskDags.forEach(entry -> entry.getDependencies().forEach(dependency -> dependents.computeIfAbsent(dependency, id -> Lists.newArrayList()).add(entry.getTaskId())));
+        return dependents;
+    }
+
+    private static Map<TaskId, Collection<TaskId>> copyDependents(Map<TaskId, Collection<TaskId>> taskDependents)
+    {
+        ImmutableMap.Builder<TaskId, Collection<TaskId>> builder = ImmutableMap.builder();
+        taskDependents.forEach((taskId, dependents) -> builder.put(taskId, ImmutableSet.copyOf(dependents)));
+        return builder.build();
+    }
 }
@@ -16,7 +16,7 @@
 package com.nirmata.workflow.models;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
+import com.nirmata.workflow.blobs.BlobMap;
 import java.io.Serializable;
 import java.util.Map;
 
@@ -46,7 +46,7 @@ public class ExecutableTask implements Serializable
         this.isExecutable = isExecutable;
         this.taskId = Preconditions.checkNotNull(taskId, "taskId cannot be null");
         this.taskType = Preconditions.checkNotNull(taskType, "taskType cannot be null");
-        this.metaData = ImmutableMap.copyOf(metaData);
+        this.metaData = BlobMap.copyOf(metaData);
     }
 
     public RunId getRunId()
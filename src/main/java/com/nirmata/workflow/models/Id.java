@@ -16,19 +16,39 @@
 package com.nirmata.workflow.models;
 
 import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.UUID;
 
 /**
- * Base for IDs
+ * Base for IDs. IDs that are lower case UUID strings (e.g. random IDs) are held as
+ * two longs instead of a string. Other IDs are held as is. The string form of a UUID
+ * is only built the first time {@link #getId()} is called and is then kept.
  */
 public class Id implements Serializable
 {
-    private final String id;
+    // fields aren't final so that readObject() can set them
+    private long mostSigBits;
+    private long leastSigBits;
+    private String id;  // null for UUIDs
+    private transient String formattedId;  // UUIDs formatted on first use - benign race as for String.hashCode()
+
+    // the serialized form is the same as that of versions that held the ID string
+    private static final long serialVersionUID = -3201350318577751979L;
+    private static final ObjectStreamField[] serialPersistentFields = {new ObjectStreamField("id", String.class)};
+
+    private static final int UUID_LENGTH = 36;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     protected Id()
     {
-        id = newRandomId();
+        UUID uuid = UUID.randomUUID();
+        mostSigBits = uuid.getMostSignificantBits();
+        leastSigBits = uuid.getLeastSignificantBits();
     }
 
     static String newRandomId()
@@ -38,17 +58,43 @@ public class Id implements Serializable
 
     protected Id(String id)
     {
-        this.id = Preconditions.checkNotNull(id, "id cannot be null");
+        Preconditions.checkNotNull(id, "id cannot be null");
+        set(id, 0, id.length());
+    }
+
+    /**
+     * Creates the ID from a range of characters - e.g. part of a ZooKeeper path. If
+     * the range is a UUID, nothing other than this object is allocated.
+     *
+     * @param chars characters
+     * @param start start of the ID (inclusive)
+     * @param end end of the ID (exclusive)
+     */
+    protected Id(CharSequence chars, int start, int end)
+    {
+        Preconditions.checkNotNull(chars, "chars cannot be null");
+        Preconditions.checkPositionIndexes(start, end, chars.length());
+        set(chars, start, end);
     }
 
     public String getId()
     {
-        return id;
+        if ( id != null )
+        {
+            return id;
+        }
+        String localFormattedId = formattedId;
+        if ( localFormattedId == null )
+        {
+            localFormattedId = formatUuid(mostSigBits, leastSigBits);
+            formattedId = localFormattedId;
+        }
+        return localFormattedId;
     }
 
     public boolean isValid()
     {
-        return (id.length() > 0);
+        return (id == null) || (id.length() > 0);
     }
 
     @Override
@@ -65,26 +111,110 @@ public class Id implements Serializable
 
         Id id1 = (Id)o;
 
-        //noinspection RedundantIfStatement
-        if ( !id.equals(id1.id) )
+        if ( id != null )
         {
-            return false;
+            return id.equals(id1.id);
         }
-
-        return true;
+        return (id1.id == null) && (mostSigBits == id1.mostSigBits) && (leastSigBits == id1.leastSigBits);
     }
 
     @Override
     public int hashCode()
     {
-        return id.hashCode();
+        return (id != null) ? id.hashCode() : Long.hashCode(mostSigBits ^ leastSigBits);
     }
 
     @Override
     public String toString()
     {
         return "Id{" +
-            "id='" + id + '\'' +
+            "id='" + getId() + '\'' +
             '}';
     }
+
+    private void set(CharSequence chars, int start, int end)
+    {
+        if ( isUuid(chars, start, end) )
+        {
+            mostSigBits = (parseHex(chars, start, start + 8) << 32) | (parseHex(chars, start + 9, start + 13) << 16) | parseHex(chars, start + 14, start + 18);
+            leastSigBits = (parseHex(chars, start + 19, start + 23) << 48) | parseHex(chars, start + 24, end);
+            id = null;
+            formattedId = null;
+        }
+        else
+        {
+            id = chars.subSequence(start, end).toString();
+        }
+    }
+
+    // only the exact form produced by UUID.toString() so that getId() returns the original string
+    private static boolean isUuid(CharSequence chars, int start, int end)
+    {
+        if ( (end - start) != UUID_LENGTH )
+        {
+            return false;
+        }
+        for ( int i = 0; i < UUID_LENGTH; ++i )
+        {
+            char c = chars.charAt(start + i);
+            boolean isDash = (i == 8) || (i == 13) || (i == 18) || (i == 23);
+            if ( isDash ? (c != '-') : !(((c >= '0') && (c <= '9')) || ((c >= 'a') && (c <= 'f'))) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(CharSequence chars, int start, int end)
+    {
+        long value = 0;
+        for ( int i = start; i < end; ++i )
+        {
+            char c = chars.charAt(i);
+            value = (value << 4) | ((c <= '9') ? (c - '0') : (c - 'a' + 10));
+        }
+        return value;
+    }
+
+    private static String formatUuid(long mostSigBits, long leastSigBits)
+    {
+        char[] chars = new char[UUID_LENGTH];
+        formatHex(chars, 0, mostSigBits >>> 32, 8);
+        chars[8] = '-';
+        formatHex(chars, 9, mostSigBits >>> 16, 4);
+        chars[13] = '-';
+        formatHex(chars, 14, mostSigBits, 4);
+        chars[18] = '-';
+        formatHex(chars, 19, leastSigBits >>> 48, 4);
+        chars[23] = '-';
+        formatHex(chars, 24, leastSigBits, 12);
+        return new String(chars);
+    }
+
+    private static void formatHex(char[] chars, int offset, long value, int digits)
+    {
+        for ( int i = digits - 1; i >= 0; --i )
+        {
+            chars[offset + i] = HEX_DIGITS[(int)(value & 0xf)];
+            value >>>= 4;
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", getId());
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        String id = (String)in.readFields().get("id", null);
+        if ( id == null )
+        {
+            throw new InvalidObjectException("id cannot be null");
+        }
+        set(id, 0, id.length());
+    }
 }
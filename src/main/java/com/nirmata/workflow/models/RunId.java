@@ -15,8 +15,14 @@
  */
 package com.nirmata.workflow.models;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 public class RunId extends Id
 {
+    private static final long serialVersionUID = -3543604414602874462L;
+    private static final Interner<RunId> interner = Interners.newWeakInterner();
+
     /**
      * Generate a new, globally unique ID that has the given prefix.
      * E.g. <code>newRandomIdWithPrefix("test")</code> generates: <code>test-828119e0-cd47-45a1-b120-94d284ecb7b3</code>
@@ -45,4 +51,26 @@ public class RunId extends Id
     {
         super(id);
     }
+
+    /**
+     * @param chars characters
+     * @param start start of the ID (inclusive)
+     * @param end end of the ID (exclusive)
+     */
+    public RunId(CharSequence chars, int start, int end)
+    {
+        super(chars, start, end);
+    }
+
+    /**
+     * Return the canonical instance of this ID. The pool of canonical instances is weak - IDs
+     * are removed from it once they are no longer referenced. Use this for IDs that are
+     * held for a long time so that copies read from ZooKeeper share one instance.
+     *
+     * @return canonical instance
+     */
+    public RunId intern()
+    {
+        return interner.intern(this);
+    }
 }
@@ -16,8 +16,8 @@
 package com.nirmata.workflow.models;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.nirmata.workflow.blobs.BlobMap;
 import com.nirmata.workflow.WorkflowManager;
 import com.nirmata.workflow.executor.TaskExecutionStatus;
 import java.io.Serializable;
@@ -86,7 +86,7 @@ public class TaskExecutionResult implements Serializable
         this.completionTimeUtc = (completionTimeUtc != null) ? completionTimeUtc : LocalDateTime.now(Clock.systemUTC());
 
         resultData = Preconditions.checkNotNull(resultData, "resultData cannot be null");
-        this.resultData = ImmutableMap.copyOf(resultData);
+        this.resultData = BlobMap.copyOf(resultData);
     }
 
     public String getMessage()
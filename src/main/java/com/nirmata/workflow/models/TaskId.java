@@ -15,8 +15,14 @@
  */
 package com.nirmata.workflow.models;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 public class TaskId extends Id
 {
+    private static final long serialVersionUID = -643756803039255676L;
+    private static final Interner<TaskId> interner = Interners.newWeakInterner();
+
     public TaskId()
     {
     }
@@ -25,4 +31,26 @@ public class TaskId extends Id
     {
         super(id);
     }
+
+    /**
+     * @param chars characters
+     * @param start start of the ID (inclusive)
+     * @param end end of the ID (exclusive)
+     */
+    public TaskId(CharSequence chars, int start, int end)
+    {
+        super(chars, start, end);
+    }
+
+    /**
+     * Return the canonical instance of this ID. The pool of canonical instances is weak - IDs
+     * are removed from it once they are no longer referenced. Use this for IDs that are
+     * held for a long time so that copies read from ZooKeeper share one instance.
+     *
+     * @return canonical instance
+     */
+    public TaskId intern()
+    {
+        return interner.intern(this);
+    }
 }
@@ -16,7 +16,9 @@
 package com.nirmata.workflow.queue;
 
 import com.nirmata.workflow.models.ExecutableTask;
+import org.apache.curator.framework.api.transaction.CuratorOp;
 import java.io.Closeable;
+import java.util.Optional;
 
 public interface Queue extends Closeable
 {
@@ -26,4 +28,30 @@ public interface Queue extends Closeable
     void close();
 
     void put(ExecutableTask executableTask);
+
+    /**
+     * Optionally return an operation that adds the task to the queue when it is committed. The
+     * scheduler commits the operation in the same ZooKeeper transaction that marks the task
+     * as started so that a task can never be marked started without also being queued. The operation
+     * must be created from the workflow manager's Curator instance. Queues that aren't stored in
+     * ZooKeeper should return an empty value (the default) and {@link #put(ExecutableTask)} is used instead.
+     *
+     * @param executableTask task to add
+     * @return operation or empty
+     */
+    default Optional<CuratorOp> newPutOperation(ExecutableTask executableTask)
+    {
+        return Optional.empty();
+    }
+
+    /**
+     * Called after the transaction containing an operation returned by
+     * {@link #newPutOperation(ExecutableTask)} has been committed
+     *
+     * @param executableTask the task that was added
+     */
+    default void putCommitted(ExecutableTask executableTask)
+    {
+        // NOP
+    }
 }
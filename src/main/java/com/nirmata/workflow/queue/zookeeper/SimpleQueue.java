@@ -28,6 +28,7 @@ import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.EnsureContainers;
 import org.apache.curator.framework.api.BackgroundCallback;
 import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.framework.api.transaction.CuratorOp;
 import org.apache.curator.utils.ThreadUtils;
 import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.CreateMode;
@@ -185,6 +186,24 @@ public class SimpleQueue implements Closeable, QueueConsumer
         client.create().creatingParentContainersIfNeeded().withMode(CreateMode.PERSISTENT_SEQUENTIAL).inBackground(debugBackgroundCallback).forPath(path, data);
     }
 
+    CuratorOp newPutOperation(byte[] data, long value) throws Exception
+    {
+        // transactions can't create parents
+        ensurePath.ensure();
+
+        String basePath = ZKPaths.makePath(path, PREFIX);
+        String path = keyFunc.apply(basePath, value);
+        return client.transactionOp().create().withMode(CreateMode.PERSISTENT_SEQUENTIAL).forPath(path, data);
+    }
+
+    void putCommitted()
+    {
+        if ( debugQueuedTasks != null )
+        {
+            debugQueuedTasks.release();
+        }
+    }
+
     @Override
     public WorkflowManagerState.State getState()
     {
@@ -24,8 +24,10 @@ import com.nirmata.workflow.queue.Queue;
 import com.nirmata.workflow.queue.TaskRunner;
 import com.nirmata.workflow.serialization.Serializer;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorOp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.util.Optional;
 
 public class ZooKeeperSimpleQueue implements Queue
 {
@@ -56,32 +58,57 @@ public class ZooKeeperSimpleQueue implements Queue
     @Override
     public void put(ExecutableTask executableTask)
     {
-        long value = 0;
         try
         {
-            String valueStr = executableTask.getMetaData().get(Task.META_TASK_SUBMIT_VALUE);
-            if ( valueStr != null )
-            {
-                value = Long.parseLong(valueStr);
-            }
+            byte[] bytes = serializer.serialize(executableTask);
+            queue.put(bytes, getValue(executableTask));
         }
-        catch ( NumberFormatException ignore )
+        catch ( Exception e )
         {
-            // ignore
+            log.error("Could not add to queue for: " + executableTask, e);
+            throw new RuntimeException(e);
         }
+    }
 
+    @Override
+    public Optional<CuratorOp> newPutOperation(ExecutableTask executableTask)
+    {
         try
         {
             byte[] bytes = serializer.serialize(executableTask);
-            queue.put(bytes, value);
+            return Optional.of(queue.newPutOperation(bytes, getValue(executableTask)));
         }
         catch ( Exception e )
         {
-            log.error("Could not add to queue for: " + executableTask, e);
+            log.error("Could not create queue operation for: " + executableTask, e);
             throw new RuntimeException(e);
         }
     }
 
+    @Override
+    public void putCommitted(ExecutableTask executableTask)
+    {
+        queue.putCommitted();
+    }
+
+    private static long getValue(ExecutableTask executableTask)
+    {
+        long value = 0;
+        try
+        {
+            String valueStr = executableTask.getMetaData().get(Task.META_TASK_SUBMIT_VALUE);
+            if ( valueStr != null )
+            {
+                value = Long.parseLong(valueStr);
+            }
+        }
+        catch ( NumberFormatException ignore )
+        {
+            // ignore
+        }
+        return value;
+    }
+
     SimpleQueue getQueue()
     {
         return queue;
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.serialization;
+
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reads the primitives written by {@link BinaryEncoder}
+ */
+class BinaryDecoder
+{
+    private final List<String> dictionary = Lists.newArrayList();
+    private final byte[] data;
+    private int position;
+
+    BinaryDecoder(byte[] data, int offset)
+    {
+        this.data = data;
+        this.position = offset;
+    }
+
+    int getPosition()
+    {
+        return position;
+    }
+
+    int readByte() throws IOException
+    {
+        if ( position >= data.length )
+        {
+            throw new IOException("Unexpected end of data at: " + position);
+        }
+        return data[position++] & 0xFF;
+    }
+
+    boolean readBoolean() throws IOException
+    {
+        return readByte() != 0;
+    }
+
+    long readVarint() throws IOException
+    {
+        long value = 0;
+        for ( int shift = 0; shift < 64; shift += 7 )
+        {
+            int b = readByte();
+            value |= (long)(b & 0x7F) << shift;
+            if ( (b & 0x80) == 0 )
+            {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint at: " + position);
+    }
+
+    long readSignedVarint() throws IOException
+    {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    int readInt() throws IOException
+    {
+        return Math.toIntExact(readSignedVarint());
+    }
+
+    int readSize() throws IOException
+    {
+        long size = readVarint();
+        if ( size > (data.length - position) )    // every entry takes at least one byte
+        {
+            throw new IOException("Bad size: " + size + " at: " + position);
+        }
+        return (int)size;
+    }
+
+    String readString() throws IOException
+    {
+        int type = readByte();
+        switch ( type )
+        {
+            case BinaryEncoder.STRING_NULL:
+            {
+                return null;
+            }
+
+            case BinaryEncoder.STRING_REFERENCE:
+            {
+                long index = readVarint();
+                if ( index >= dictionary.size() )
+                {
+                    throw new IOException("Bad string reference: " + index + " at: " + position);
+                }
+                return dictionary.get((int)index);
+            }
+
+            case BinaryEncoder.STRING_UTF8:
+            {
+                int length = readSize();
+                String str = new String(data, position, length, StandardCharsets.UTF_8);
+                position += length;
+                dictionary.add(str);
+                return str;
+            }
+
+            case BinaryEncoder.STRING_UUID:
+            {
+                String str = new UUID(readLong(), readLong()).toString();
+                dictionary.add(str);
+                return str;
+            }
+
+            default:
+            {
+                throw new IOException("Unknown string type: " + type + " at: " + position);
+            }
+        }
+    }
+
+    String readRequiredString() throws IOException
+    {
+        String str = readString();
+        if ( str == null )
+        {
+            throw new IOException("Unexpected null string at: " + position);
+        }
+        return str;
+    }
+
+    LocalDateTime readDateTime() throws IOException
+    {
+        long millis = readSignedVarint();
+        long subMillisNanos = readVarint();
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), (int)((Math.floorMod(millis, 1000) * 1000000) + subMillisNanos), ZoneOffset.UTC);
+    }
+
+    LocalDateTime readOptionalDateTime() throws IOException
+    {
+        return readBoolean() ? readDateTime() : null;
+    }
+
+    private long readLong() throws IOException
+    {
+        long value = 0;
+        for ( int i = 0; i < 8; ++i )
+        {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.serialization;
+
+import com.google.common.collect.Maps;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes the primitives of the binary format. Strings are written once - later occurrences
+ * are written as references to the first. UUID strings are written as 16 bytes.
+ */
+class BinaryEncoder
+{
+    private final Map<String, Integer> dictionary = Maps.newHashMap();
+    private byte[] buffer = new byte[256];
+    private int position = 0;
+
+    static final int STRING_NULL = 0;
+    static final int STRING_REFERENCE = 1;
+    static final int STRING_UTF8 = 2;
+    static final int STRING_UUID = 3;
+
+    private static final int UUID_STRING_LENGTH = 36;
+
+    void writeByte(int b)
+    {
+        ensureCapacity(1);
+        buffer[position++] = (byte)b;
+    }
+
+    void writeBoolean(boolean b)
+    {
+        writeByte(b ? 1 : 0);
+    }
+
+    void writeVarint(long value)
+    {
+        ensureCapacity(10);
+        while ( (value & ~0x7FL) != 0 )
+        {
+            buffer[position++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte)value;
+    }
+
+    void writeSignedVarint(long value)
+    {
+        writeVarint((value << 1) ^ (value >> 63));  // zig-zag so that small negative values stay small
+    }
+
+    void writeString(String str)
+    {
+        if ( str == null )
+        {
+            writeByte(STRING_NULL);
+            return;
+        }
+
+        Integer index = dictionary.get(str);
+        if ( index != null )
+        {
+            writeByte(STRING_REFERENCE);
+            writeVarint(index);
+            return;
+        }
+        dictionary.put(str, dictionary.size());
+
+        UUID uuid = asUuid(str);
+        if ( uuid != null )
+        {
+            writeByte(STRING_UUID);
+            writeLong(uuid.getMostSignificantBits());
+            writeLong(uuid.getLeastSignificantBits());
+        }
+        else
+        {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            writeByte(STRING_UTF8);
+            writeVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+    }
+
+    void writeDateTime(LocalDateTime dateTime)
+    {
+        // epoch millis plus the sub-millisecond nanos (almost always 0) so that values round trip exactly
+        long seconds = dateTime.toEpochSecond(ZoneOffset.UTC);
+        int nanos = dateTime.getNano();
+        writeSignedVarint((seconds * 1000) + (nanos / 1000000));
+        writeVarint(nanos % 1000000);
+    }
+
+    void writeOptionalDateTime(LocalDateTime dateTime)
+    {
+        writeBoolean(dateTime != null);
+        if ( dateTime != null )
+        {
+            writeDateTime(dateTime);
+        }
+    }
+
+    byte[] toByteArray()
+    {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void writeLong(long value)
+    {
+        ensureCapacity(8);
+        for ( int shift = 56; shift >= 0; shift -= 8 )
+        {
+            buffer[position++] = (byte)(value >>> shift);
+        }
+    }
+
+    private void ensureCapacity(int qty)
+    {
+        if ( (position + qty) > buffer.length )
+        {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + qty));
+        }
+    }
+
+    private static UUID asUuid(String str)
+    {
+        if ( (str.length() != UUID_STRING_LENGTH) || (str.charAt(8) != '-') || (str.charAt(13) != '-') || (str.charAt(18) != '-') || (str.charAt(23) != '-') )
+        {
+            return null;
+        }
+        try
+        {
+            UUID uuid = UUID.fromString(str);
+            return uuid.toString().equals(str) ? uuid : null;   // only canonical forms can be restored exactly
+        }
+        catch ( IllegalArgumentException ignore )
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,455 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.serialization;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.nirmata.workflow.admin.RunInfo;
+import com.nirmata.workflow.details.RunnableTaskDagBuilder;
+import com.nirmata.workflow.details.internalmodels.RunSummary;
+import com.nirmata.workflow.details.internalmodels.RunnableTask;
+import com.nirmata.workflow.details.internalmodels.RunnableTaskDag;
+import com.nirmata.workflow.details.internalmodels.StartedTask;
+import com.nirmata.workflow.executor.TaskExecutionStatus;
+import com.nirmata.workflow.models.ExecutableTask;
+import com.nirmata.workflow.models.RunId;
+import com.nirmata.workflow.models.Task;
+import com.nirmata.workflow.models.TaskExecutionResult;
+import com.nirmata.workflow.models.TaskId;
+import com.nirmata.workflow.models.TaskMode;
+import com.nirmata.workflow.models.TaskType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ *     Compact binary serializer. Ids are written as 16 bytes, timestamps as epoch millis,
+ *     lengths as varints and repeated strings (metadata keys, run ids, etc.) are written once
+ *     per payload. Payloads start with a two byte header: a 0 marker (which can never start
+ *     a JSON payload) and the format version.
+ * </p>
+ *
+ * <p>
+ *     Payloads without the header are read as JSON so that data written by {@link StandardSerializer}
+ *     remains readable. {@link StandardSerializer} likewise reads binary payloads. To migrate a
+ *     cluster, first upgrade every instance to a version that has this serializer and then
+ *     switch instances to it one at a time.
+ * </p>
+ */
+public class BinarySerializer implements Serializer
+{
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final Serializer fallbackSerializer;
+
+    static final byte FORMAT_MARKER = 0;
+    static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = 2;
+
+    @FunctionalInterface
+    private interface Writer<T>
+    {
+        void write(BinaryEncoder encoder, T obj);
+    }
+
+    @FunctionalInterface
+    private interface Reader<T>
+    {
+        T read(BinaryDecoder decoder) throws IOException;
+    }
+
+    private static class Codec<T>
+    {
+        private final Writer<T> writer;
+        private final Reader<T> reader;
+
+        private Codec(Writer<T> writer, Reader<T> reader)
+        {
+            this.writer = writer;
+            this.reader = reader;
+        }
+    }
+
+    private static final Map<Class<?>, Codec<?>> codecs = ImmutableMap.<Class<?>, Codec<?>>builder()
+        .put(Task.class, new Codec<>(BinarySerializer::writeTask, BinarySerializer::readTask))
+        .put(RunnableTaskDag.class, new Codec<>(BinarySerializer::writeRunnableTaskDag, BinarySerializer::readRunnableTaskDag))
+        .put(TaskType.class, new Codec<>(BinarySerializer::writeTaskType, BinarySerializer::readTaskType))
+        .put(ExecutableTask.class, new Codec<>(BinarySerializer::writeExecutableTask, BinarySerializer::readExecutableTask))
+        .put(RunnableTask.class, new Codec<>(BinarySerializer::writeRunnableTask, BinarySerializer::readRunnableTask))
+        .put(TaskExecutionResult.class, new Codec<>(BinarySerializer::writeTaskExecutionResult, BinarySerializer::readTaskExecutionResult))
+        .put(RunSummary.class, new Codec<>(BinarySerializer::writeRunSummary, BinarySerializer::readRunSummary))
+        .put(StartedTask.class, new Codec<>(BinarySerializer::writeStartedTask, BinarySerializer::readStartedTask))
+        .build();
+
+    public BinarySerializer()
+    {
+        this(new StandardSerializer());
+    }
+
+    /**
+     * @param fallbackSerializer used to write types that have no binary encoding and to read
+     *                           payloads that are not binary
+     */
+    public BinarySerializer(Serializer fallbackSerializer)
+    {
+        this.fallbackSerializer = fallbackSerializer;
+    }
+
+    @Override
+    public <T> byte[] serialize(T obj)
+    {
+        @SuppressWarnings("unchecked")
+        Codec<T> codec = (Codec<T>)codecs.get(obj.getClass());
+        if ( codec == null )
+        {
+            return fallbackSerializer.serialize(obj);
+        }
+
+        BinaryEncoder encoder = new BinaryEncoder();
+        encoder.writeByte(FORMAT_MARKER);
+        encoder.writeByte(FORMAT_VERSION);
+        codec.writer.write(encoder, obj);
+        return encoder.toByteArray();
+    }
+
+    @Override
+    public <T> T deserialize(byte[] data, Class<T> clazz)
+    {
+        if ( !isBinary(data) )
+        {
+            return fallbackSerializer.deserialize(data, clazz);
+        }
+
+        try
+        {
+            return decode(data, clazz);
+        }
+        catch ( IOException e )
+        {
+            log.error("Could not deserialize: " + Arrays.toString(data), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public RunInfo deserializeRunInfo(RunId runId, byte[] data)
+    {
+        if ( !isBinary(data) )
+        {
+            return fallbackSerializer.deserializeRunInfo(runId, data);
+        }
+
+        try
+        {
+            return decodeRunInfo(runId, data);
+        }
+        catch ( IOException e )
+        {
+            log.error("Could not deserialize run info: " + Arrays.toString(data), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    static boolean isBinary(byte[] data)
+    {
+        return (data.length >= HEADER_LENGTH) && (data[0] == FORMAT_MARKER);
+    }
+
+    static <T> T decode(byte[] data, Class<T> clazz) throws IOException
+    {
+        Codec<?> codec = codecs.get(clazz);
+        if ( codec == null )
+        {
+            throw new IOException("No binary deserializer found for: " + clazz);
+        }
+        return clazz.cast(codec.reader.read(newDecoder(data)));
+    }
+
+    /**
+     * Runs are written with their times first so that only those need be read
+     */
+    static RunInfo decodeRunInfo(RunId runId, byte[] data) throws IOException
+    {
+        BinaryDecoder decoder = newDecoder(data);
+        LocalDateTime startTime = decoder.readDateTime();
+        LocalDateTime completionTime = decoder.readOptionalDateTime();
+        return new RunInfo(runId, startTime, completionTime);
+    }
+
+    private static BinaryDecoder newDecoder(byte[] data) throws IOException
+    {
+        if ( data[1] > FORMAT_VERSION )
+        {
+            throw new IOException("Unsupported binary format version: " + data[1]);
+        }
+        return new BinaryDecoder(data, HEADER_LENGTH);
+    }
+
+    private static void writeTask(BinaryEncoder encoder, Task task)
+    {
+        RunnableTaskDagBuilder builder = new RunnableTaskDagBuilder(task);
+        encoder.writeString(task.getTaskId().getId());
+        encoder.writeVarint(builder.getTasks().size());
+        for ( Task thisTask : builder.getTasks().values() )
+        {
+            encoder.writeString(thisTask.getTaskId().getId());
+            encoder.writeBoolean(thisTask.isExecutable());
+            if ( thisTask.isExecutable() )
+            {
+                writeTaskType(encoder, thisTask.getTaskType());
+            }
+            writeMap(encoder, thisTask.getMetaData());
+            encoder.writeVarint(thisTask.getChildrenTasks().size());
+            for ( Task child : thisTask.getChildrenTasks() )
+            {
+                encoder.writeString(child.getTaskId().getId());
+            }
+        }
+    }
+
+    private static Task readTask(BinaryDecoder decoder) throws IOException
+    {
+        String rootTaskId = decoder.readRequiredString();
+        int qty = decoder.readSize();
+        Map<TaskId, JsonSerializer.WorkTask> workMap = Maps.newHashMapWithExpectedSize(qty);
+        for ( int i = 0; i < qty; ++i )
+        {
+            JsonSerializer.WorkTask workTask = new JsonSerializer.WorkTask();
+            workTask.taskId = new TaskId(decoder.readRequiredString());
+            workTask.taskType = decoder.readBoolean() ? readTaskType(decoder) : null;
+            workTask.metaData = readMap(decoder);
+            int childrenQty = decoder.readSize();
+            workTask.childrenTaskIds = Lists.newArrayListWithCapacity(childrenQty);
+            for ( int j = 0; j < childrenQty; ++j )
+            {
+                workTask.childrenTaskIds.add(decoder.readRequiredString());
+            }
+            workMap.put(workTask.taskId, workTask);
+        }
+        return JsonSerializer.buildTask(workMap, Maps.newHashMap(), rootTaskId);
+    }
+
+    private static void writeRunnableTaskDag(BinaryEncoder encoder, RunnableTaskDag runnableTaskDag)
+    {
+        encoder.writeString(runnableTaskDag.getTaskId().getId());
+        writeTaskIds(encoder, runnableTaskDag.getDependencies());
+    }
+
+    private static RunnableTaskDag readRunnableTaskDag(BinaryDecoder decoder) throws IOException
+    {
+        TaskId taskId = new TaskId(decoder.readRequiredString());
+        return new RunnableTaskDag(taskId, readTaskIds(decoder));
+    }
+
+    private static void writeTaskType(BinaryEncoder encoder, TaskType taskType)
+    {
+        encoder.writeString(taskType.getType());
+        encoder.writeString(taskType.getVersion());
+        encoder.writeBoolean(taskType.isIdempotent());
+        encoder.writeSignedVarint(taskType.getMode().getCode());
+    }
+
+    private static TaskType readTaskType(BinaryDecoder decoder) throws IOException
+    {
+        String type = decoder.readRequiredString();
+        String version = decoder.readRequiredString();
+        boolean isIdempotent = decoder.readBoolean();
+        TaskMode taskMode = TaskMode.fromCode(decoder.readInt());
+        return new TaskType(type, version, isIdempotent, taskMode);
+    }
+
+    private static void writeExecutableTask(BinaryEncoder encoder, ExecutableTask executableTask)
+    {
+        encoder.writeString(executableTask.getRunId().getId());
+        encoder.writeString(executableTask.getTaskId().getId());
+        writeTaskType(encoder, executableTask.getTaskType());
+        writeMap(encoder, executableTask.getMetaData());
+        encoder.writeBoolean(executableTask.isExecutable());
+    }
+
+    private static ExecutableTask readExecutableTask(BinaryDecoder decoder) throws IOException
+    {
+        RunId runId = new RunId(decoder.readRequiredString());
+        TaskId taskId = new TaskId(decoder.readRequiredString());
+        TaskType taskType = readTaskType(decoder);
+        Map<String, String> metaData = readMap(decoder);
+        boolean isExecutable = decoder.readBoolean();
+        return new ExecutableTask(runId, taskId, taskType, metaData, isExecutable);
+    }
+
+    private static void writeRunnableTask(BinaryEncoder encoder, RunnableTask runnableTask)
+    {
+        // times must be first - see decodeRunInfo()
+        encoder.writeDateTime(runnableTask.getStartTimeUtc());
+        encoder.writeOptionalDateTime(runnableTask.getCompletionTimeUtc().orElse(null));
+        encoder.writeString(runnableTask.getParentRunId().map(RunId::getId).orElse(null));
+
+        encoder.writeVarint(runnableTask.getTaskDags().size());
+        for ( RunnableTaskDag taskDag : runnableTask.getTaskDags() )
+        {
+            writeRunnableTaskDag(encoder, taskDag);
+        }
+
+        encoder.writeVarint(runnableTask.getTasks().size());
+        for ( Map.Entry<TaskId, ExecutableTask> entry : runnableTask.getTasks().entrySet() )
+        {
+            encoder.writeString(entry.getKey().getId());
+            writeExecutableTask(encoder, entry.getValue());
+        }
+
+        encoder.writeVarint(runnableTask.getTaskDependents().size());
+        for ( Map.Entry<TaskId, Collection<TaskId>> entry : runnableTask.getTaskDependents().entrySet() )
+        {
+            encoder.writeString(entry.getKey().getId());
+            writeTaskIds(encoder, entry.getValue());
+        }
+    }
+
+    private static RunnableTask readRunnableTask(BinaryDecoder decoder) throws IOException
+    {
+        LocalDateTime startTime = decoder.readDateTime();
+        LocalDateTime completionTime = decoder.readOptionalDateTime();
+        String parentRunId = decoder.readString();
+
+        int taskDagQty = decoder.readSize();
+        List<RunnableTaskDag> taskDags = Lists.newArrayListWithCapacity(taskDagQty);
+        for ( int i = 0; i < taskDagQty; ++i )
+        {
+            taskDags.add(readRunnableTaskDag(decoder));
+        }
+
+        int taskQty = decoder.readSize();
+        Map<TaskId, ExecutableTask> tasks = Maps.newHashMapWithExpectedSize(taskQty);
+        for ( int i = 0; i < taskQty; ++i )
+        {
+            TaskId taskId = new TaskId(decoder.readRequiredString());
+            tasks.put(taskId, readExecutableTask(decoder));
+        }
+
+        int dependentsQty = decoder.readSize();
+        Map<TaskId, Collection<TaskId>> taskDependents = Maps.newHashMapWithExpectedSize(dependentsQty);
+        for ( int i = 0; i < dependentsQty; ++i )
+        {
+            TaskId taskId = new TaskId(decoder.readRequiredString());
+            taskDependents.put(taskId, readTaskIds(decoder));
+        }
+
+        return new RunnableTask(tasks, taskDags, taskDependents, startTime, completionTime, (parentRunId == null) ? null : new RunId(parentRunId));
+    }
+
+    private static void writeTaskExecutionResult(BinaryEncoder encoder, TaskExecutionResult taskExecutionResult)
+    {
+        encoder.writeString(taskExecutionResult.getStatus().name());
+        encoder.writeString(taskExecutionResult.getMessage());
+        writeMap(encoder, taskExecutionResult.getResultData());
+        encoder.writeString(taskExecutionResult.getSubTaskRunId().map(RunId::getId).orElse(null));
+        encoder.writeDateTime(taskExecutionResult.getCompletionTimeUtc());
+    }
+
+    private static TaskExecutionResult readTaskExecutionResult(BinaryDecoder decoder) throws IOException
+    {
+        TaskExecutionStatus status = TaskExecutionStatus.valueOf(decoder.readRequiredString());
+        String message = decoder.readRequiredString();
+        Map<String, String> resultData = readMap(decoder);
+        String subTaskRunId = decoder.readString();
+        LocalDateTime completionTime = decoder.readDateTime();
+        return new TaskExecutionResult(status, message, resultData, (subTaskRunId == null) ? null : new RunId(subTaskRunId), completionTime);
+    }
+
+    private static void writeRunSummary(BinaryEncoder encoder, RunSummary runSummary)
+    {
+        encoder.writeDateTime(runSummary.getStartTimeUtc());
+        encoder.writeOptionalDateTime(runSummary.getCompletionTimeUtc().orElse(null));
+        encoder.writeString(runSummary.getParentRunId().map(RunId::getId).orElse(null));
+        encoder.writeSignedVarint(runSummary.getCompletedTaskQty());
+        encoder.writeSignedVarint(runSummary.getFailedTaskQty());
+    }
+
+    private static RunSummary readRunSummary(BinaryDecoder decoder) throws IOException
+    {
+        LocalDateTime startTime = decoder.readDateTime();
+        LocalDateTime completionTime = decoder.readOptionalDateTime();
+        String parentRunId = decoder.readString();
+        int completedTaskQty = decoder.readInt();
+        int failedTaskQty = decoder.readInt();
+        return new RunSummary(startTime, completionTime, (parentRunId == null) ? null : new RunId(parentRunId), completedTaskQty, failedTaskQty);
+    }
+
+    private static void writeStartedTask(BinaryEncoder encoder, StartedTask startedTask)
+    {
+        encoder.writeString(startedTask.getInstanceName());
+        encoder.writeDateTime(startedTask.getStartDateUtc());
+        encoder.writeSignedVarint(startedTask.getProgress());
+    }
+
+    private static StartedTask readStartedTask(BinaryDecoder decoder) throws IOException
+    {
+        String instanceName = decoder.readRequiredString();
+        LocalDateTime startDate = decoder.readDateTime();
+        int progress = decoder.readInt();
+        return new StartedTask(instanceName, startDate, progress);
+    }
+
+    private static void writeMap(BinaryEncoder encoder, Map<String, String> map)
+    {
+        encoder.writeVarint((map != null) ? map.size() : 0);
+        if ( map != null )
+        {
+            map.forEach((key, value) -> {
+                encoder.writeString(key);
+                encoder.writeString(value);
+            });
+        }
+    }
+
+    private static Map<String, String> readMap(BinaryDecoder decoder) throws IOException
+    {
+        int qty = decoder.readSize();
+        Map<String, String> map = Maps.newHashMapWithExpectedSize(qty);
+        for ( int i = 0; i < qty; ++i )
+        {
+            String key = decoder.readString();
+            map.put(key, decoder.readString());
+        }
+        return map;
+    }
+
+    private static void writeTaskIds(BinaryEncoder encoder, Collection<TaskId> taskIds)
+    {
+        encoder.writeVarint(taskIds.size());
+        for ( TaskId taskId : taskIds )
+        {
+            encoder.writeString(taskId.getId());
+        }
+    }
+
+    private static List<TaskId> readTaskIds(BinaryDecoder decoder) throws IOException
+    {
+        int qty = decoder.readSize();
+        List<TaskId> taskIds = Lists.newArrayListWithCapacity(qty);
+        for ( int i = 0; i < qty; ++i )
+        {
+            taskIds.add(new TaskId(decoder.readRequiredString()));
+        }
+        return taskIds;
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.serialization;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.nirmata.workflow.admin.RunInfo;
+import com.nirmata.workflow.details.ZooKeeperConstants;
+import com.nirmata.workflow.models.RunId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <p>
+ *     Serializer decorator that compresses payloads larger than a threshold. Smaller payloads
+ *     are written exactly as the wrapped serializer writes them. Compressed payloads start with
+ *     a marker byte (which can never start a JSON, binary or JDK payload), a byte that identifies
+ *     the compression algorithm and the uncompressed length.
+ * </p>
+ *
+ * <p>
+ *     Payloads that are still larger than the maximum payload size after compression are
+ *     logged. Use {@link #getStats()} for the compression ratio and the payload size distributions -
+ *     both as serialized and as stored.
+ * </p>
+ *
+ * <p>
+ *     Instances without this decorator cannot read compressed payloads. Upgrade every
+ *     instance in the cluster before enabling compression.
+ * </p>
+ */
+public class CompressingSerializer implements Serializer
+{
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final Serializer serializer;
+    private final int threshold;
+    private final int maxPayload;
+    private final LongAdder payloadQty = new LongAdder();
+    private final LongAdder compressedQty = new LongAdder();
+    private final LongAdder oversizedQty = new LongAdder();
+    private final LongAdder compressedInputBytes = new LongAdder();
+    private final LongAdder compressedOutputBytes = new LongAdder();
+    private final LongAdder[] uncompressedSizeBuckets = newBuckets();
+    private final LongAdder[] storedSizeBuckets = newBuckets();
+
+    public static final int DEFAULT_THRESHOLD = 4096;
+
+    static final byte COMPRESSED_MARKER = 1;
+    static final byte DEFLATE = 1;
+
+    private static final int[] SIZE_BUCKET_BOUNDS = {1024, 4096, 16384, 65536, 262144, ZooKeeperConstants.MAX_PAYLOAD, Integer.MAX_VALUE};
+
+    /**
+     * @param serializer the serializer to wrap
+     */
+    public CompressingSerializer(Serializer serializer)
+    {
+        this(serializer, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param serializer the serializer to wrap
+     * @param threshold payloads larger than this many bytes are compressed
+     */
+    public CompressingSerializer(Serializer serializer, int threshold)
+    {
+        this(serializer, threshold, ZooKeeperConstants.MAX_PAYLOAD);
+    }
+
+    /**
+     * @param serializer the serializer to wrap
+     * @param threshold payloads larger than this many bytes are compressed
+     * @param maxPayload payloads larger than this many bytes after compression are logged - i.e. "jute.maxbuffer"
+     */
+    public CompressingSerializer(Serializer serializer, int threshold, int maxPayload)
+    {
+        Preconditions.checkArgument(threshold >= 0, "threshold cannot be negative");
+        Preconditions.checkArgument(maxPayload > 0, "maxPayload must be greater than 0");
+        this.serializer = Preconditions.checkNotNull(serializer, "serializer cannot be null");
+        this.threshold = threshold;
+        this.maxPayload = maxPayload;
+    }
+
+    @Override
+    public <T> byte[] serialize(T obj)
+    {
+        byte[] bytes = serializer.serialize(obj);
+        payloadQty.increment();
+        recordSize(uncompressedSizeBuckets, bytes.length);
+
+        byte[] payload = bytes;
+        if ( bytes.length > threshold )
+        {
+            byte[] compressed = deflate(bytes);
+            if ( compressed.length < bytes.length )
+            {
+                compressedQty.increment();
+                compressedInputBytes.add(bytes.length);
+                compressedOutputBytes.add(compressed.length);
+                payload = compressed;
+            }
+        }
+
+        recordSize(storedSizeBuckets, payload.length);
+        if ( payload.length > maxPayload )
+        {
+            oversizedQty.increment();
+            log.warn(String.format("Serialized %s is %d bytes which is more than the maximum payload of %d bytes", obj.getClass().getSimpleName(), payload.length, maxPayload));
+        }
+        return payload;
+    }
+
+    @Override
+    public <T> T deserialize(byte[] data, Class<T> clazz)
+    {
+        return serializer.deserialize(isCompressed(data) ? inflate(data) : data, clazz);
+    }
+
+    @Override
+    public RunInfo deserializeRunInfo(RunId runId, byte[] data)
+    {
+        return serializer.deserializeRunInfo(runId, isCompressed(data) ? inflate(data) : data);
+    }
+
+    public CompressionStats getStats()
+    {
+        return new CompressionStats(payloadQty.sum(), compressedQty.sum(), oversizedQty.sum(), compressedInputBytes.sum(), compressedOutputBytes.sum(), toDistribution(uncompressedSizeBuckets), toDistribution(storedSizeBuckets));
+    }
+
+    static boolean isCompressed(byte[] data)
+    {
+        return (data.length >= 3) && (data[0] == COMPRESSED_MARKER);
+    }
+
+    private static LongAdder[] newBuckets()
+    {
+        LongAdder[] buckets = new LongAdder[SIZE_BUCKET_BOUNDS.length];
+        for ( int i = 0; i < buckets.length; ++i )
+        {
+            buckets[i] = new LongAdder();
+        }
+        return buckets;
+    }
+
+    private static void recordSize(LongAdder[] buckets, int size)
+    {
+        for ( int i = 0; i < SIZE_BUCKET_BOUNDS.length; ++i )
+        {
+            if ( size <= SIZE_BUCKET_BOUNDS[i] )
+            {
+                buckets[i].increment();
+                break;
+            }
+        }
+    }
+
+    private static SortedMap<Integer, Long> toDistribution(LongAdder[] buckets)
+    {
+        SortedMap<Integer, Long> distribution = Maps.newTreeMap();
+        for ( int i = 0; i < SIZE_BUCKET_BOUNDS.length; ++i )
+        {
+            distribution.put(SIZE_BUCKET_BOUNDS[i], buckets[i].sum());
+        }
+        return distribution;
+    }
+
+    private static byte[] deflate(byte[] bytes)
+    {
+        BinaryEncoder header = new BinaryEncoder();
+        header.writeByte(COMPRESSED_MARKER);
+        header.writeByte(DEFLATE);
+        header.writeVarint(bytes.length);
+        byte[] headerBytes = header.toByteArray();
+
+        Deflater deflater = new Deflater();
+        try
+        {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+            out.write(headerBytes, 0, headerBytes.length);
+            byte[] buffer = new byte[8192];
+            while ( !deflater.finished() )
+            {
+                int qty = deflater.deflate(buffer);
+                out.write(buffer, 0, qty);
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    private byte[] inflate(byte[] data)
+    {
+        Inflater inflater = new Inflater();
+        try
+        {
+            BinaryDecoder header = new BinaryDecoder(data, 1);
+            int algorithm = header.readByte();
+            if ( algorithm != DEFLATE )
+            {
+                throw new IOException("Unknown compression algorithm: " + algorithm);
+            }
+            long length = header.readVarint();
+            if ( (length < 0) || (length > Integer.MAX_VALUE) )
+            {
+                throw new IOException("Bad uncompressed length: " + length);
+            }
+
+            int offset = header.getPosition();
+            inflater.setInput(data, offset, data.length - offset);
+            byte[] bytes = new byte[(int)length];
+            int position = 0;
+            while ( (position < bytes.length) && !inflater.finished() )
+            {
+                int qty = inflater.inflate(bytes, position, bytes.length - position);
+                if ( (qty == 0) && (inflater.needsInput() || inflater.needsDictionary()) )
+                {
+                    break;
+                }
+                position += qty;
+            }
+            if ( position != bytes.length )
+            {
+                throw new IOException("Expected " + bytes.length + " bytes but inflated " + position);
+            }
+            return bytes;
+        }
+        catch ( IOException | DataFormatException e )
+        {
+            log.error("Could not decompress payload", e);
+            throw new RuntimeException(e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+}
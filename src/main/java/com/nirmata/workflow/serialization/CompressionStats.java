@@ -0,0 +1,130 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.serialization;
+
+import com.google.common.collect.ImmutableSortedMap;
+import java.util.SortedMap;
+
+/**
+ * Point in time statistics for a {@link CompressingSerializer}
+ */
+public class CompressionStats
+{
+    private final long payloadQty;
+    private final long compressedQty;
+    private final long oversizedQty;
+    private final long compressedInputBytes;
+    private final long compressedOutputBytes;
+    private final SortedMap<Integer, Long> uncompressedSizeDistribution;
+    private final SortedMap<Integer, Long> storedSizeDistribution;
+
+    CompressionStats(long payloadQty, long compressedQty, long oversizedQty, long compressedInputBytes, long compressedOutputBytes, SortedMap<Integer, Long> uncompressedSizeDistribution, SortedMap<Integer, Long> storedSizeDistribution)
+    {
+        this.payloadQty = payloadQty;
+        this.compressedQty = compressedQty;
+        this.oversizedQty = oversizedQty;
+        this.compressedInputBytes = compressedInputBytes;
+        this.compressedOutputBytes = compressedOutputBytes;
+        this.uncompressedSizeDistribution = ImmutableSortedMap.copyOfSorted(uncompressedSizeDistribution);
+        this.storedSizeDistribution = ImmutableSortedMap.copyOfSorted(storedSizeDistribution);
+    }
+
+    /**
+     * @return number of payloads serialized
+     */
+    public long getPayloadQty()
+    {
+        return payloadQty;
+    }
+
+    /**
+     * @return number of payloads that were stored compressed
+     */
+    public long getCompressedQty()
+    {
+        return compressedQty;
+    }
+
+    /**
+     * @return number of payloads that were larger than the maximum payload size even after compression
+     */
+    public long getOversizedQty()
+    {
+        return oversizedQty;
+    }
+
+    /**
+     * @return total size of the payloads that were compressed - before compression
+     */
+    public long getCompressedInputBytes()
+    {
+        return compressedInputBytes;
+    }
+
+    /**
+     * @return total size of the payloads that were compressed - after compression
+     */
+    public long getCompressedOutputBytes()
+    {
+        return compressedOutputBytes;
+    }
+
+    /**
+     * @return uncompressed size divided by compressed size for the payloads that were compressed
+     * or 1 if none were
+     */
+    public double getCompressionRatio()
+    {
+        return (compressedOutputBytes > 0) ? ((double)compressedInputBytes / compressedOutputBytes) : 1.0;
+    }
+
+    /**
+     * Return the number of payloads by size as serialized - i.e. before compression. Keys are the upper
+     * bound (inclusive) of each bucket in bytes. The last bucket's bound is {@link Integer#MAX_VALUE}.
+     *
+     * @return distribution
+     */
+    public SortedMap<Integer, Long> getUncompressedSizeDistribution()
+    {
+        return uncompressedSizeDistribution;
+    }
+
+    /**
+     * Return the number of payloads by size as stored - i.e. after compression if they were compressed.
+     * This is the size to compare with the maximum payload size. Buckets are the same as for
+     * {@link #getUncompressedSizeDistribution()}.
+     *
+     * @return distribution
+     */
+    public SortedMap<Integer, Long> getStoredSizeDistribution()
+    {
+        return storedSizeDistribution;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CompressionStats{" +
+            "payloadQty=" + payloadQty +
+            ", compressedQty=" + compressedQty +
+            ", oversizedQty=" + oversizedQty +
+            ", compressedInputBytes=" + compressedInputBytes +
+            ", compressedOutputBytes=" + compressedOutputBytes +
+            ", uncompressedSizeDistribution=" + uncompressedSizeDistribution +
+            ", storedSizeDistribution=" + storedSizeDistribution +
+            '}';
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.serialization;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * JSON encoding for a single type. Register codecs with a {@link JsonCodecRegistry} to have
+ * {@link StandardSerializer} and {@link JsonSerializerMapper} handle additional types.
+ */
+public interface JsonCodec<T>
+{
+    /**
+     * Return a codec that uses the given tree functions
+     *
+     * @param toJson converts an object to a JSON tree
+     * @param fromJson converts a JSON tree to an object
+     * @return codec
+     */
+    static <T> JsonCodec<T> of(Function<T, JsonNode> toJson, Function<JsonNode, T> fromJson)
+    {
+        Preconditions.checkNotNull(toJson, "toJson cannot be null");
+        Preconditions.checkNotNull(fromJson, "fromJson cannot be null");
+        return new JsonCodec<T>()
+        {
+            @Override
+            public JsonNode toJson(T obj)
+            {
+                return toJson.apply(obj);
+            }
+
+            @Override
+            public T fromJson(JsonNode node)
+            {
+                return fromJson.apply(node);
+            }
+        };
+    }
+
+    /**
+     * Convert the object to a JSON tree
+     *
+     * @param obj the object
+     * @return tree
+     */
+    JsonNode toJson(T obj);
+
+    /**
+     * Convert a JSON tree to an object
+     *
+     * @param node tree
+     * @return the object
+     */
+    T fromJson(JsonNode node);
+
+    /**
+     * Write the object to the generator. The default writes the tree from {@link #toJson(Object)}.
+     * Codecs that can write directly should override this.
+     *
+     * @param generator generator
+     * @param obj the object
+     * @throws IOException errors
+     */
+    default void write(JsonGenerator generator, T obj) throws IOException
+    {
+        generator.writeTree(toJson(obj));
+    }
+
+    /**
+     * Read the object starting at the parser's current token. The default reads a tree
+     * and calls {@link #fromJson(JsonNode)}. Codecs that can read directly should override this.
+     *
+     * @param parser parser
+     * @return the object
+     * @throws IOException errors
+     */
+    default T read(JsonParser parser) throws IOException
+    {
+        return fromJson(parser.readValueAsTree());
+    }
+}
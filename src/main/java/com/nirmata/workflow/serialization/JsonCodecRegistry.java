@@ -0,0 +1,102 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.serialization;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.nirmata.workflow.details.internalmodels.RunSummary;
+import com.nirmata.workflow.details.internalmodels.RunnableTask;
+import com.nirmata.workflow.details.internalmodels.RunnableTaskDag;
+import com.nirmata.workflow.details.internalmodels.StartedTask;
+import com.nirmata.workflow.models.ExecutableTask;
+import com.nirmata.workflow.models.Task;
+import com.nirmata.workflow.models.TaskExecutionResult;
+import com.nirmata.workflow.models.TaskType;
+import java.util.Map;
+
+/**
+ * Immutable mapping of types to {@link JsonCodec}s. Codecs are looked up by the exact
+ * class of the object being serialized. {@link #STANDARD} has the codecs for the
+ * workflow models - use {@link #with(Class, JsonCodec)} to add your own types.
+ */
+public class JsonCodecRegistry
+{
+    private final Map<Class<?>, JsonCodec<?>> codecs;
+
+    /**
+     * Codecs for the workflow models
+     */
+    public static final JsonCodecRegistry STANDARD = new JsonCodecRegistry(ImmutableMap.<Class<?>, JsonCodec<?>>builder()
+        .put(Task.class, new StandardJsonCodec<>(JsonSerializer::newTask, JsonSerializer::getTask, JsonStreamingSerializer::writeTask, JsonStreamingSerializer::readTask))
+        .put(RunnableTaskDag.class, new StandardJsonCodec<>(JsonSerializer::newRunnableTaskDag, JsonSerializer::getRunnableTaskDag, JsonStreamingSerializer::writeRunnableTaskDag, JsonStreamingSerializer::readRunnableTaskDag))
+        .put(TaskType.class, new StandardJsonCodec<>(JsonSerializer::newTaskType, JsonSerializer::getTaskType, JsonStreamingSerializer::writeTaskType, JsonStreamingSerializer::readTaskType))
+        .put(ExecutableTask.class, new StandardJsonCodec<>(JsonSerializer::newExecutableTask, JsonSerializer::getExecutableTask, JsonStreamingSerializer::writeExecutableTask, JsonStreamingSerializer::readExecutableTask))
+        .put(RunnableTask.class, new StandardJsonCodec<>(JsonSerializer::newRunnableTask, JsonSerializer::getRunnableTask, JsonStreamingSerializer::writeRunnableTask, JsonStreamingSerializer::readRunnableTask))
+        .put(TaskExecutionResult.class, new StandardJsonCodec<>(JsonSerializer::newTaskExecutionResult, JsonSerializer::getTaskExecutionResult, JsonStreamingSerializer::writeTaskExecutionResult, JsonStreamingSerializer::readTaskExecutionResult))
+        .put(RunSummary.class, new StandardJsonCodec<>(JsonSerializer::newRunSummary, JsonSerializer::getRunSummary, JsonStreamingSerializer::writeRunSummary, JsonStreamingSerializer::readRunSummary))
+        .put(StartedTask.class, new StandardJsonCodec<>(JsonSerializer::newStartedTask, JsonSerializer::getStartedTask, JsonStreamingSerializer::writeStartedTask, JsonStreamingSerializer::readStartedTask))
+        .build());
+
+    private JsonCodecRegistry(Map<Class<?>, JsonCodec<?>> codecs)
+    {
+        this.codecs = codecs;
+    }
+
+    /**
+     * Return a new registry with the given codec added. If this registry already has a
+     * codec for the type it is replaced.
+     *
+     * @param clazz type
+     * @param codec codec for the type
+     * @return new registry
+     */
+    public <T> JsonCodecRegistry with(Class<T> clazz, JsonCodec<T> codec)
+    {
+        Preconditions.checkNotNull(clazz, "clazz cannot be null");
+        Preconditions.checkNotNull(codec, "codec cannot be null");
+        ImmutableMap.Builder<Class<?>, JsonCodec<?>> builder = ImmutableMap.builder();
+        codecs.entrySet().stream().filter(entry -> entry.getKey() != clazz).forEach(builder::put);
+        builder.put(clazz, codec);
+        return new JsonCodecRegistry(builder.build());
+    }
+
+    /**
+     * Return the codec for the given type
+     *
+     * @param clazz type
+     * @return codec
+     * @throws NullPointerException if there is no codec for the type
+     */
+    public <T> JsonCodec<T> getCodec(Class<T> clazz)
+    {
+        @SuppressWarnings("unchecked")
+        JsonCodec<T> codec = (JsonCodec<T>)codecs.get(clazz);
+        return Preconditions.checkNotNull(codec, "No serializer found for: " + clazz);
+    }
+
+    /**
+     * Return the codec for the class of the given object
+     *
+     * @param obj object
+     * @return codec
+     * @throws NullPointerException if there is no codec for the type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> JsonCodec<T> getCodecFor(T obj)
+    {
+        return getCodec((Class<T>)obj.getClass());
+    }
+}
@@ -15,15 +15,19 @@
  */
 package com.nirmata.workflow.serialization;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.nirmata.workflow.admin.RunInfo;
 import com.nirmata.workflow.details.RunnableTaskDagBuilder;
 import com.nirmata.workflow.details.internalmodels.RunnableTask;
+import com.nirmata.workflow.details.internalmodels.RunSummary;
 import com.nirmata.workflow.details.internalmodels.RunnableTaskDag;
 import com.nirmata.workflow.details.internalmodels.StartedTask;
 import com.nirmata.workflow.executor.TaskExecutionStatus;
@@ -39,6 +43,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -123,7 +128,7 @@ class JsonSerializer
         return node;
     }
 
-    private static class WorkTask
+    static class WorkTask
     {
         TaskId taskId;
         TaskType taskType;
@@ -131,7 +136,7 @@ class JsonSerializer
         List<String> childrenTaskIds;
     }
 
-    private static Task buildTask(Map<TaskId, WorkTask> workMap, Map<TaskId, Task> buildMap, String taskIdStr)
+    static Task buildTask(Map<TaskId, WorkTask> workMap, Map<TaskId, Task> buildMap, String taskIdStr)
     {
         TaskId taskId = new TaskId(taskIdStr);
         Task builtTask = buildMap.get(taskId);
@@ -253,9 +258,17 @@ class JsonSerializer
         ObjectNode tasks = newNode();
         runnableTask.getTasks().forEach((key, value) -> tasks.set(key.getId(), newExecutableTask(value)));
 
+        ObjectNode taskDependents = newNode();
+        runnableTask.getTaskDependents().forEach((key, value) -> {
+            ArrayNode tab = newArrayNode();
+            value.forEach(taskId -> tab.add(taskId.getId()));
+            taskDependents.set(key.getId(), tab);
+        });
+
         ObjectNode node = newNode();
         node.set("taskDags", taskDags);
         node.set("tasks", tasks);
+        node.set("taskDependents", taskDependents);
         node.put("startTimeUtc", runnableTask.getStartTimeUtc().format(DateTimeFormatter.ISO_DATE_TIME));
         node.put("completionTimeUtc", runnableTask.getCompletionTimeUtc().isPresent() ? runnableTask.getCompletionTimeUtc().get().format(DateTimeFormatter.ISO_DATE_TIME) : null);
         node.put("parentRunId", runnableTask.getParentRunId().isPresent() ? runnableTask.getParentRunId().get().getId() : null);
@@ -275,10 +288,65 @@ class JsonSerializer
             tasks.put(new TaskId(next.getKey()), getExecutableTask(next.getValue()));
         }
 
+        Map<TaskId, Collection<TaskId>> taskDependents = null; // older runs don't have dependents - RunnableTask will build them
+        JsonNode taskDependentsNode = node.get("taskDependents");
+        if ( (taskDependentsNode != null) && !taskDependentsNode.isNull() )
+        {
+            Map<TaskId, Collection<TaskId>> work = Maps.newHashMap();
+            taskDependentsNode.fields().forEachRemaining(entry -> {
+                List<TaskId> dependents = Lists.newArrayList();
+                entry.getValue().forEach(n -> dependents.add(new TaskId(n.asText())));
+                work.put(new TaskId(entry.getKey()), dependents);
+            });
+            taskDependents = work;
+        }
+
         LocalDateTime startTime = LocalDateTime.parse(node.get("startTimeUtc").asText(), DateTimeFormatter.ISO_DATE_TIME);
         LocalDateTime completionTime = node.get("completionTimeUtc").isNull() ? null : LocalDateTime.parse(node.get("completionTimeUtc").asText(), DateTimeFormatter.ISO_DATE_TIME);
         RunId parentRunId = node.get("parentRunId").isNull() ? null : new RunId(node.get("parentRunId").asText());
-        return new RunnableTask(tasks, taskDags, startTime, completionTime, parentRunId);
+        return new RunnableTask(tasks, taskDags, taskDependents, startTime, completionTime, parentRunId);
+    }
+
+    /**
+     * Read only the start and completion times of a serialized {@link RunnableTask}. The
+     * tasks, DAGs, etc. are skipped without being decoded.
+     */
+    static RunInfo getRunInfo(RunId runId, byte[] data) throws IOException
+    {
+        String startTimeUtc = null;
+        String completionTimeUtc = null;
+        try ( JsonParser parser = mapper.getFactory().createParser(data) )
+        {
+            if ( parser.nextToken() != JsonToken.START_OBJECT )
+            {
+                throw new IOException("Expected an object for run: " + runId);
+            }
+            while ( parser.nextToken() == JsonToken.FIELD_NAME )
+            {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ( fieldName.equals("startTimeUtc") )
+                {
+                    startTimeUtc = parser.getValueAsString();
+                }
+                else if ( fieldName.equals("completionTimeUtc") )
+                {
+                    completionTimeUtc = (token == JsonToken.VALUE_NULL) ? null : parser.getValueAsString();
+                }
+                else
+                {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if ( startTimeUtc == null )
+        {
+            throw new IOException("Missing startTimeUtc for run: " + runId);
+        }
+
+        LocalDateTime startTime = LocalDateTime.parse(startTimeUtc, DateTimeFormatter.ISO_DATE_TIME);
+        LocalDateTime completionTime = (completionTimeUtc == null) ? null : LocalDateTime.parse(completionTimeUtc, DateTimeFormatter.ISO_DATE_TIME);
+        return new RunInfo(runId, startTime, completionTime);
     }
 
     static JsonNode newTaskExecutionResult(TaskExecutionResult taskExecutionResult)
@@ -305,6 +373,29 @@ class JsonSerializer
         );
     }
 
+    static JsonNode newRunSummary(RunSummary runSummary)
+    {
+        ObjectNode node = newNode();
+        node.put("startTimeUtc", runSummary.getStartTimeUtc().format(DateTimeFormatter.ISO_DATE_TIME));
+        node.put("completionTimeUtc", runSummary.getCompletionTimeUtc().isPresent() ? runSummary.getCompletionTimeUtc().get().format(DateTimeFormatter.ISO_DATE_TIME) : null);
+        node.put("parentRunId", runSummary.getParentRunId().isPresent() ? runSummary.getParentRunId().get().getId() : null);
+        node.put("completedTaskQty", runSummary.getCompletedTaskQty());
+        node.put("failedTaskQty", runSummary.getFailedTaskQty());
+        return node;
+    }
+
+    static RunSummary getRunSummary(JsonNode node)
+    {
+        return new RunSummary
+        (
+            LocalDateTime.parse(node.get("startTimeUtc").asText(), DateTimeFormatter.ISO_DATE_TIME),
+            node.get("completionTimeUtc").isNull() ? null : LocalDateTime.parse(node.get("completionTimeUtc").asText(), DateTimeFormatter.ISO_DATE_TIME),
+            node.get("parentRunId").isNull() ? null : new RunId(node.get("parentRunId").asText()),
+            node.get("completedTaskQty").asInt(),
+            node.get("failedTaskQty").asInt()
+        );
+    }
+
     static JsonNode newStartedTask(StartedTask startedTask)
     {
         ObjectNode node = newNode();
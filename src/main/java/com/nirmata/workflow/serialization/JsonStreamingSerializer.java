@@ -0,0 +1,742 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.serialization;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.nirmata.workflow.details.RunnableTaskDagBuilder;
+import com.nirmata.workflow.details.internalmodels.RunSummary;
+import com.nirmata.workflow.details.internalmodels.RunnableTask;
+import com.nirmata.workflow.details.internalmodels.RunnableTaskDag;
+import com.nirmata.workflow.details.internalmodels.StartedTask;
+import com.nirmata.workflow.executor.TaskExecutionStatus;
+import com.nirmata.workflow.models.ExecutableTask;
+import com.nirmata.workflow.models.RunId;
+import com.nirmata.workflow.models.Task;
+import com.nirmata.workflow.models.TaskExecutionResult;
+import com.nirmata.workflow.models.TaskId;
+import com.nirmata.workflow.models.TaskMode;
+import com.nirmata.workflow.models.TaskType;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming versions of the {@link JsonSerializer} encodings. Models are written directly
+ * to a {@link JsonGenerator} and read directly from a {@link JsonParser} without building
+ * an intermediate tree. The output is byte-for-byte the same as the tree encoding and
+ * either encoding can read data written by the other. The methods are registered with
+ * {@link JsonCodecRegistry#STANDARD}.
+ */
+class JsonStreamingSerializer
+{
+    static void writeTask(JsonGenerator generator, Task task) throws IOException
+    {
+        RunnableTaskDagBuilder builder = new RunnableTaskDagBuilder(task);
+        generator.writeStartObject();
+        generator.writeStringField("rootTaskId", task.getTaskId().getId());
+        generator.writeArrayFieldStart("tasks");
+        for ( Task thisTask : builder.getTasks().values() )
+        {
+            generator.writeStartObject();
+            generator.writeStringField("taskId", thisTask.getTaskId().getId());
+            generator.writeFieldName("taskType");
+            if ( thisTask.isExecutable() )
+            {
+                writeTaskType(generator, thisTask.getTaskType());
+            }
+            else
+            {
+                generator.writeNull();
+            }
+            generator.writeFieldName("metaData");
+            writeMap(generator, thisTask.getMetaData());
+            generator.writeBooleanField("isExecutable", thisTask.isExecutable());
+            generator.writeArrayFieldStart("childrenTaskIds");
+            for ( Task child : thisTask.getChildrenTasks() )
+            {
+                generator.writeString(child.getTaskId().getId());
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    static Task readTask(JsonParser parser) throws IOException
+    {
+        Map<TaskId, JsonSerializer.WorkTask> workMap = Maps.newHashMap();
+        String rootTaskId = null;
+        expect(parser, JsonToken.START_OBJECT);
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ( fieldName.equals("rootTaskId") )
+            {
+                rootTaskId = getText(parser);
+            }
+            else if ( fieldName.equals("tasks") )
+            {
+                expect(parser, JsonToken.START_ARRAY);
+                while ( parser.nextToken() != JsonToken.END_ARRAY )
+                {
+                    JsonSerializer.WorkTask workTask = readWorkTask(parser);
+                    workMap.put(workTask.taskId, workTask);
+                }
+            }
+            else
+            {
+                parser.skipChildren();
+            }
+        }
+        return JsonSerializer.buildTask(workMap, Maps.newHashMap(), required(rootTaskId, "rootTaskId"));
+    }
+
+    private static JsonSerializer.WorkTask readWorkTask(JsonParser parser) throws IOException
+    {
+        JsonSerializer.WorkTask workTask = new JsonSerializer.WorkTask();
+        workTask.metaData = Maps.newHashMap();
+        workTask.childrenTaskIds = Lists.newArrayList();
+        expect(parser, JsonToken.START_OBJECT);
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch ( fieldName )
+            {
+                case "taskId":
+                {
+                    workTask.taskId = new TaskId(getText(parser));
+                    break;
+                }
+
+                case "taskType":
+                {
+                    workTask.taskType = (token == JsonToken.VALUE_NULL) ? null : readTaskType(parser);
+                    break;
+                }
+
+                case "metaData":
+                {
+                    workTask.metaData = readMap(parser);
+                    break;
+                }
+
+                case "childrenTaskIds":
+                {
+                    workTask.childrenTaskIds = readStringList(parser);
+                    break;
+                }
+
+                default:
+                {
+                    parser.skipChildren();
+                    break;
+                }
+            }
+        }
+        required(workTask.taskId, "taskId");
+        return workTask;
+    }
+
+    static void writeRunnableTaskDag(JsonGenerator generator, RunnableTaskDag runnableTaskDag) throws IOException
+    {
+        generator.writeStartObject();
+        generator.writeStringField("taskId", runnableTaskDag.getTaskId().getId());
+        generator.writeFieldName("dependencies");
+        writeTaskIds(generator, runnableTaskDag.getDependencies());
+        generator.writeEndObject();
+    }
+
+    static RunnableTaskDag readRunnableTaskDag(JsonParser parser) throws IOException
+    {
+        String taskId = null;
+        List<TaskId> dependencies = Lists.newArrayList();
+        expect(parser, JsonToken.START_OBJECT);
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ( fieldName.equals("taskId") )
+            {
+                taskId = getText(parser);
+            }
+            else if ( fieldName.equals("dependencies") )
+            {
+                dependencies = readTaskIds(parser);
+            }
+            else
+            {
+                parser.skipChildren();
+            }
+        }
+        return new RunnableTaskDag(new TaskId(required(taskId, "taskId")), dependencies);
+    }
+
+    static void writeTaskType(JsonGenerator generator, TaskType taskType) throws IOException
+    {
+        generator.writeStartObject();
+        generator.writeStringField("type", taskType.getType());
+        generator.writeStringField("version", taskType.getVersion());
+        generator.writeBooleanField("isIdempotent", taskType.isIdempotent());
+        generator.writeNumberField("mode", taskType.getMode().getCode());
+        generator.writeEndObject();
+    }
+
+    static TaskType readTaskType(JsonParser parser) throws IOException
+    {
+        String type = null;
+        String version = null;
+        boolean isIdempotent = false;
+        TaskMode taskMode = TaskMode.STANDARD; // for backward compatability
+        expect(parser, JsonToken.START_OBJECT);
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch ( fieldName )
+            {
+                case "type":
+                {
+                    type = getText(parser);
+                    break;
+                }
+
+                case "version":
+                {
+                    version = getText(parser);
+                    break;
+                }
+
+                case "isIdempotent":
+                {
+                    isIdempotent = parser.getValueAsBoolean();
+                    break;
+                }
+
+                case "mode":
+                {
+                    taskMode = TaskMode.fromCode(parser.getValueAsInt());
+                    break;
+                }
+
+                default:
+                {
+                    parser.skipChildren();
+                    break;
+                }
+            }
+        }
+        return new TaskType(required(type, "type"), required(version, "version"), isIdempotent, taskMode);
+    }
+
+    static void writeExecutableTask(JsonGenerator generator, ExecutableTask executableTask) throws IOException
+    {
+        generator.writeStartObject();
+        generator.writeStringField("runId", executableTask.getRunId().getId());
+        generator.writeStringField("taskId", executableTask.getTaskId().getId());
+        generator.writeFieldName("taskType");
+        writeTaskType(generator, executableTask.getTaskType());
+        generator.writeFieldName("metaData");
+        writeMap(generator, executableTask.getMetaData());
+        generator.writeBooleanField("isExecutable", executableTask.isExecutable());
+        generator.writeEndObject();
+    }
+
+    static ExecutableTask readExecutableTask(JsonParser parser) throws IOException
+    {
+        String runId = null;
+        String taskId = null;
+        TaskType taskType = null;
+        Map<String, String> metaData = Maps.newHashMap();
+        boolean isExecutable = false;
+        expect(parser, JsonToken.START_OBJECT);
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch ( fieldName )
+            {
+                case "runId":
+                {
+                    runId = getText(parser);
+                    break;
+                }
+
+                case "taskId":
+                {
+                    taskId = getText(parser);
+                    break;
+                }
+
+                case "taskType":
+                {
+                    taskType = readTaskType(parser);
+                    break;
+                }
+
+                case "metaData":
+                {
+                    metaData = readMap(parser);
+                    break;
+                }
+
+                case "isExecutable":
+                {
+                    isExecutable = parser.getValueAsBoolean();
+                    break;
+                }
+
+                default:
+                {
+                    parser.skipChildren();
+                    break;
+                }
+            }
+        }
+        return new ExecutableTask(new RunId(required(runId, "runId")), new TaskId(required(taskId, "taskId")), required(taskType, "taskType"), metaData, isExecutable);
+    }
+
+    static void writeRunnableTask(JsonGenerator generator, RunnableTask runnableTask) throws IOException
+    {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("taskDags");
+        for ( RunnableTaskDag taskDag : runnableTask.getTaskDags() )
+        {
+            writeRunnableTaskDag(generator, taskDag);
+        }
+        generator.writeEndArray();
+
+        generator.writeObjectFieldStart("tasks");
+        for ( Map.Entry<TaskId, ExecutableTask> entry : runnableTask.getTasks().entrySet() )
+        {
+            generator.writeFieldName(entry.getKey().getId());
+            writeExecutableTask(generator, entry.getValue());
+        }
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart("taskDependents");
+        for ( Map.Entry<TaskId, Collection<TaskId>> entry : runnableTask.getTaskDependents().entrySet() )
+        {
+            generator.writeFieldName(entry.getKey().getId());
+            writeTaskIds(generator, entry.getValue());
+        }
+        generator.writeEndObject();
+
+        generator.writeStringField("startTimeUtc", runnableTask.getStartTimeUtc().format(DateTimeFormatter.ISO_DATE_TIME));
+        generator.writeStringField("completionTimeUtc", runnableTask.getCompletionTimeUtc().isPresent() ? runnableTask.getCompletionTimeUtc().get().format(DateTimeFormatter.ISO_DATE_TIME) : null);
+        generator.writeStringField("parentRunId", runnableTask.getParentRunId().isPresent() ? runnableTask.getParentRunId().get().getId() : null);
+        generator.writeEndObject();
+    }
+
+    static RunnableTask readRunnableTask(JsonParser parser) throws IOException
+    {
+        List<RunnableTaskDag> taskDags = Lists.newArrayList();
+        Map<TaskId, ExecutableTask> tasks = Maps.newHashMap();
+        Map<TaskId, Collection<TaskId>> taskDependents = null; // older runs don't have dependents - RunnableTask will build them
+        String startTimeUtc = null;
+        String completionTimeUtc = null;
+        String parentRunId = null;
+        expect(parser, JsonToken.START_OBJECT);
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch ( fieldName )
+            {
+                case "taskDags":
+                {
+                    expect(parser, JsonToken.START_ARRAY);
+                    while ( parser.nextToken() != JsonToken.END_ARRAY )
+                    {
+                        taskDags.add(readRunnableTaskDag(parser));
+                    }
+                    break;
+                }
+
+                case "tasks":
+                {
+                    expect(parser, JsonToken.START_OBJECT);
+                    while ( parser.nextToken() == JsonToken.FIELD_NAME )
+                    {
+                        TaskId taskId = new TaskId(parser.getCurrentName());
+                        parser.nextToken();
+                        tasks.put(taskId, readExecutableTask(parser));
+                    }
+                    break;
+                }
+
+                case "taskDependents":
+                {
+                    if ( token != JsonToken.VALUE_NULL )
+                    {
+                        expect(parser, JsonToken.START_OBJECT);
+                        taskDependents = Maps.newHashMap();
+                        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+                        {
+                            TaskId taskId = new TaskId(parser.getCurrentName());
+                            parser.nextToken();
+                            taskDependents.put(taskId, readTaskIds(parser));
+                        }
+                    }
+                    break;
+                }
+
+                case "startTimeUtc":
+                {
+                    startTimeUtc = getText(parser);
+                    break;
+                }
+
+                case "completionTimeUtc":
+                {
+                    completionTimeUtc = getNullableText(parser);
+                    break;
+                }
+
+                case "parentRunId":
+                {
+                    parentRunId = getNullableText(parser);
+                    break;
+                }
+
+                default:
+                {
+                    parser.skipChildren();
+                    break;
+                }
+            }
+        }
+
+        LocalDateTime startTime = getDateTime(required(startTimeUtc, "startTimeUtc"));
+        LocalDateTime completionTime = (completionTimeUtc == null) ? null : getDateTime(completionTimeUtc);
+        return new RunnableTask(tasks, taskDags, taskDependents, startTime, completionTime, (parentRunId == null) ? null : new RunId(parentRunId));
+    }
+
+    static void writeTaskExecutionResult(JsonGenerator generator, TaskExecutionResult taskExecutionResult) throws IOException
+    {
+        generator.writeStartObject();
+        generator.writeStringField("status", taskExecutionResult.getStatus().name().toLowerCase());
+        generator.writeStringField("message", taskExecutionResult.getMessage());
+        generator.writeFieldName("resultData");
+        writeMap(generator, taskExecutionResult.getResultData());
+        generator.writeStringField("subTaskRunId", taskExecutionResult.getSubTaskRunId().isPresent() ? taskExecutionResult.getSubTaskRunId().get().getId() : null);
+        generator.writeStringField("completionTimeUtc", taskExecutionResult.getCompletionTimeUtc().format(DateTimeFormatter.ISO_DATE_TIME));
+        generator.writeEndObject();
+    }
+
+    static TaskExecutionResult readTaskExecutionResult(JsonParser parser) throws IOException
+    {
+        String status = null;
+        String message = null;
+        Map<String, String> resultData = Maps.newHashMap();
+        String subTaskRunId = null;
+        String completionTimeUtc = null;
+        expect(parser, JsonToken.START_OBJECT);
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch ( fieldName )
+            {
+                case "status":
+                {
+                    status = getText(parser);
+                    break;
+                }
+
+                case "message":
+                {
+                    message = getText(parser);
+                    break;
+                }
+
+                case "resultData":
+                {
+                    resultData = readMap(parser);
+                    break;
+                }
+
+                case "subTaskRunId":
+                {
+                    subTaskRunId = getNullableText(parser);
+                    break;
+                }
+
+                case "completionTimeUtc":
+                {
+                    completionTimeUtc = getText(parser);
+                    break;
+                }
+
+                default:
+                {
+                    parser.skipChildren();
+                    break;
+                }
+            }
+        }
+        return new TaskExecutionResult
+        (
+            TaskExecutionStatus.valueOf(required(status, "status").toUpperCase()),
+            required(message, "message"),
+            resultData,
+            (subTaskRunId == null) ? null : new RunId(subTaskRunId),
+            getDateTime(required(completionTimeUtc, "completionTimeUtc"))
+        );
+    }
+
+    static void writeRunSummary(JsonGenerator generator, RunSummary runSummary) throws IOException
+    {
+        generator.writeStartObject();
+        generator.writeStringField("startTimeUtc", runSummary.getStartTimeUtc().format(DateTimeFormatter.ISO_DATE_TIME));
+        generator.writeStringField("completionTimeUtc", runSummary.getCompletionTimeUtc().isPresent() ? runSummary.getCompletionTimeUtc().get().format(DateTimeFormatter.ISO_DATE_TIME) : null);
+        generator.writeStringField("parentRunId", runSummary.getParentRunId().isPresent() ? runSummary.getParentRunId().get().getId() : null);
+        generator.writeNumberField("completedTaskQty", runSummary.getCompletedTaskQty());
+        generator.writeNumberField("failedTaskQty", runSummary.getFailedTaskQty());
+        generator.writeEndObject();
+    }
+
+    static RunSummary readRunSummary(JsonParser parser) throws IOException
+    {
+        String startTimeUtc = null;
+        String completionTimeUtc = null;
+        String parentRunId = null;
+        int completedTaskQty = 0;
+        int failedTaskQty = 0;
+        expect(parser, JsonToken.START_OBJECT);
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch ( fieldName )
+            {
+                case "startTimeUtc":
+                {
+                    startTimeUtc = getText(parser);
+                    break;
+                }
+
+                case "completionTimeUtc":
+                {
+                    completionTimeUtc = getNullableText(parser);
+                    break;
+                }
+
+                case "parentRunId":
+                {
+                    parentRunId = getNullableText(parser);
+                    break;
+                }
+
+                case "completedTaskQty":
+                {
+                    completedTaskQty = parser.getValueAsInt();
+                    break;
+                }
+
+                case "failedTaskQty":
+                {
+                    failedTaskQty = parser.getValueAsInt();
+                    break;
+                }
+
+                default:
+                {
+                    parser.skipChildren();
+                    break;
+                }
+            }
+        }
+        return new RunSummary
+        (
+            getDateTime(required(startTimeUtc, "startTimeUtc")),
+            (completionTimeUtc == null) ? null : getDateTime(completionTimeUtc),
+            (parentRunId == null) ? null : new RunId(parentRunId),
+            completedTaskQty,
+            failedTaskQty
+        );
+    }
+
+    static void writeStartedTask(JsonGenerator generator, StartedTask startedTask) throws IOException
+    {
+        generator.writeStartObject();
+        generator.writeStringField("instanceName", startedTask.getInstanceName());
+        generator.writeStringField("startDateUtc", startedTask.getStartDateUtc().format(DateTimeFormatter.ISO_DATE_TIME));
+        generator.writeNumberField("progress", startedTask.getProgress());
+        generator.writeEndObject();
+    }
+
+    static StartedTask readStartedTask(JsonParser parser) throws IOException
+    {
+        String instanceName = null;
+        String startDateUtc = null;
+        int progress = 0;
+        expect(parser, JsonToken.START_OBJECT);
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch ( fieldName )
+            {
+                case "instanceName":
+                {
+                    instanceName = getText(parser);
+                    break;
+                }
+
+                case "startDateUtc":
+                {
+                    startDateUtc = getText(parser);
+                    break;
+                }
+
+                case "progress":
+                {
+                    progress = parser.getValueAsInt();
+                    break;
+                }
+
+                default:
+                {
+                    parser.skipChildren();
+                    break;
+                }
+            }
+        }
+        return new StartedTask(required(instanceName, "instanceName"), getDateTime(required(startDateUtc, "startDateUtc")), progress);
+    }
+
+    private static void writeMap(JsonGenerator generator, Map<String, String> map) throws IOException
+    {
+        if ( map == null )
+        {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartObject();
+        for ( Map.Entry<String, String> entry : map.entrySet() )
+        {
+            generator.writeStringField(entry.getKey(), entry.getValue());
+        }
+        generator.writeEndObject();
+    }
+
+    private static Map<String, String> readMap(JsonParser parser) throws IOException
+    {
+        Map<String, String> map = Maps.newHashMap();
+        if ( parser.currentToken() != JsonToken.VALUE_NULL )
+        {
+            expect(parser, JsonToken.START_OBJECT);
+            while ( parser.nextToken() == JsonToken.FIELD_NAME )
+            {
+                String key = parser.getCurrentName();
+                parser.nextToken();
+                map.put(key, getText(parser));
+            }
+        }
+        return map;
+    }
+
+    private static void writeTaskIds(JsonGenerator generator, Collection<TaskId> taskIds) throws IOException
+    {
+        generator.writeStartArray();
+        for ( TaskId taskId : taskIds )
+        {
+            generator.writeString(taskId.getId());
+        }
+        generator.writeEndArray();
+    }
+
+    private static List<TaskId> readTaskIds(JsonParser parser) throws IOException
+    {
+        List<TaskId> taskIds = Lists.newArrayList();
+        for ( String id : readStringList(parser) )
+        {
+            taskIds.add(new TaskId(id));
+        }
+        return taskIds;
+    }
+
+    private static List<String> readStringList(JsonParser parser) throws IOException
+    {
+        List<String> list = Lists.newArrayList();
+        if ( parser.currentToken() != JsonToken.VALUE_NULL )
+        {
+            expect(parser, JsonToken.START_ARRAY);
+            while ( parser.nextToken() != JsonToken.END_ARRAY )
+            {
+                list.add(getText(parser));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Matches {@link com.fasterxml.jackson.databind.JsonNode#asText()} so that values read
+     * here are the same as values read from the tree: scalars are returned as their text
+     * (including <code>"null"</code>) and containers are skipped and returned as empty strings.
+     */
+    private static String getText(JsonParser parser) throws IOException
+    {
+        JsonToken token = parser.currentToken();
+        if ( (token == JsonToken.START_OBJECT) || (token == JsonToken.START_ARRAY) )
+        {
+            parser.skipChildren();
+            return "";
+        }
+        return parser.getText();
+    }
+
+    private static String getNullableText(JsonParser parser) throws IOException
+    {
+        return (parser.currentToken() == JsonToken.VALUE_NULL) ? null : getText(parser);
+    }
+
+    private static LocalDateTime getDateTime(String str)
+    {
+        return LocalDateTime.parse(str, DateTimeFormatter.ISO_DATE_TIME);
+    }
+
+    private static void expect(JsonParser parser, JsonToken token) throws IOException
+    {
+        if ( parser.currentToken() != token )
+        {
+            throw new IOException("Expected " + token + " but found " + parser.currentToken() + " at " + parser.getCurrentLocation());
+        }
+    }
+
+    private static <T> T required(T value, String fieldName) throws IOException
+    {
+        if ( value == null )
+        {
+            throw new IOException("Missing field: " + fieldName);
+        }
+        return value;
+    }
+
+    private JsonStreamingSerializer()
+    {
+    }
+}
@@ -15,6 +15,10 @@
  */
 package com.nirmata.workflow.serialization;
 
+import com.nirmata.workflow.admin.RunInfo;
+import com.nirmata.workflow.details.internalmodels.RunnableTask;
+import com.nirmata.workflow.models.RunId;
+
 public interface Serializer
 {
     /**
@@ -33,4 +37,19 @@ public interface Serializer
      * @return object
      */
     <T> T deserialize(byte[] data, Class<T> clazz);
+
+    /**
+     * Deserialize only the fields needed for a {@link RunInfo} from the bytes of a serialized
+     * run. The default deserializes the entire run. Serializers that can skip the
+     * remaining fields should override this.
+     *
+     * @param runId the run
+     * @param data bytes of a serialized {@link RunnableTask}
+     * @return run info
+     */
+    default RunInfo deserializeRunInfo(RunId runId, byte[] data)
+    {
+        RunnableTask runnableTask = deserialize(data, RunnableTask.class);
+        return new RunInfo(runId, runnableTask.getStartTimeUtc(), runnableTask.getCompletionTimeUtc().orElse(null));
+    }
 }
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.serialization;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * Codec for the built-in models. Each direction is a direct call to the matching
+ * {@link JsonSerializer} or {@link JsonStreamingSerializer} method.
+ */
+class StandardJsonCodec<T> implements JsonCodec<T>
+{
+    private final Function<T, JsonNode> toJson;
+    private final Function<JsonNode, T> fromJson;
+    private final Writer<T> writer;
+    private final Reader<T> reader;
+
+    @FunctionalInterface
+    interface Writer<T>
+    {
+        void write(JsonGenerator generator, T obj) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Reader<T>
+    {
+        T read(JsonParser parser) throws IOException;
+    }
+
+    StandardJsonCodec(Function<T, JsonNode> toJson, Function<JsonNode, T> fromJson, Writer<T> writer, Reader<T> reader)
+    {
+        this.toJson = toJson;
+        this.fromJson = fromJson;
+        this.writer = writer;
+        this.reader = reader;
+    }
+
+    @Override
+    public JsonNode toJson(T obj)
+    {
+        return toJson.apply(obj);
+    }
+
+    @Override
+    public T fromJson(JsonNode node)
+    {
+        return fromJson.apply(node);
+    }
+
+    @Override
+    public void write(JsonGenerator generator, T obj) throws IOException
+    {
+        writer.write(generator, obj);
+    }
+
+    @Override
+    public T read(JsonParser parser) throws IOException
+    {
+        return reader.read(parser);
+    }
+}
@@ -15,40 +15,69 @@
  */
 package com.nirmata.workflow.serialization;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.nirmata.workflow.admin.RunInfo;
+import com.nirmata.workflow.models.RunId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 
+/**
+ * JSON serializer. Models are streamed directly to and from bytes by the codecs of a
+ * {@link JsonCodecRegistry}. The format is the same as that produced by {@link JsonSerializerMapper}.
+ * Payloads written by {@link BinarySerializer} are also read.
+ */
 public class StandardSerializer implements Serializer
 {
     private final Logger log = LoggerFactory.getLogger(getClass());
-    private final JsonSerializerMapper mapper = new JsonSerializerMapper();
+    private final JsonCodecRegistry codecs;
+
+    public StandardSerializer()
+    {
+        this(JsonCodecRegistry.STANDARD);
+    }
+
+    /**
+     * @param codecs codecs to use - e.g. {@link JsonCodecRegistry#STANDARD} with additional types
+     */
+    public StandardSerializer(JsonCodecRegistry codecs)
+    {
+        this.codecs = codecs;
+    }
 
     @Override
     public <T> byte[] serialize(T obj)
     {
-        try
+        JsonCodec<T> codec = codecs.getCodecFor(obj);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try ( JsonGenerator generator = JsonSerializer.getMapper().getFactory().createGenerator(out) )
         {
-            JsonNode node = mapper.make(obj);
-            return JsonSerializer.getMapper().writeValueAsBytes(node);
+            codec.write(generator, obj);
         }
-        catch ( JsonProcessingException e )
+        catch ( IOException e )
         {
             log.error("Could not serialize: " + obj.getClass(), e);
             throw new RuntimeException(e);
         }
+        return out.toByteArray();
     }
 
     @Override
     public <T> T deserialize(byte[] data, Class<T> clazz)
     {
-        try
+        if ( BinarySerializer.isBinary(data) )
         {
-            JsonNode node = JsonSerializer.getMapper().readTree(data);
-            return mapper.get(node, clazz);
+            return readBinary(data, () -> BinarySerializer.decode(data, clazz));
+        }
+
+        JsonCodec<T> codec = codecs.getCodec(clazz);
+        try ( JsonParser parser = JsonSerializer.getMapper().getFactory().createParser(data) )
+        {
+            parser.nextToken();
+            return codec.read(parser);
         }
         catch ( IOException e )
         {
@@ -56,4 +85,43 @@ public class StandardSerializer implements Serializer
             throw new RuntimeException(e);
         }
     }
+
+    @Override
+    public RunInfo deserializeRunInfo(RunId runId, byte[] data)
+    {
+        if ( BinarySerializer.isBinary(data) )
+        {
+            return readBinary(data, () -> BinarySerializer.decodeRunInfo(runId, data));
+        }
+
+        try
+        {
+            return JsonSerializer.getRunInfo(runId, data);
+        }
+        catch ( IOException e )
+        {
+            log.error("Could not deserialize run info: " + Arrays.toString(data), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface BinaryReader<T>
+    {
+        T read() throws IOException;
+    }
+
+    // so that instances can read data written by instances that have switched to BinarySerializer
+    private <T> T readBinary(byte[] data, BinaryReader<T> reader)
+    {
+        try
+        {
+            return reader.read();
+        }
+        catch ( IOException e )
+        {
+            log.error("Could not deserialize binary: " + Arrays.toString(data), e);
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -17,12 +17,18 @@ package com.nirmata.workflow;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.io.Resources;
+import com.nirmata.workflow.admin.CleanResult;
+import com.nirmata.workflow.admin.Page;
+import com.nirmata.workflow.admin.RunFilter;
 import com.nirmata.workflow.admin.RunInfo;
 import com.nirmata.workflow.admin.TaskDetails;
 import com.nirmata.workflow.admin.TaskInfo;
+import com.nirmata.workflow.admin.WorkflowAdmin;
 import com.nirmata.workflow.details.WorkflowManagerImpl;
 import com.nirmata.workflow.details.ZooKeeperConstants;
+import com.nirmata.workflow.details.internalmodels.RunSummary;
 import com.nirmata.workflow.executor.TaskExecutionStatus;
 import com.nirmata.workflow.executor.TaskExecutor;
 import com.nirmata.workflow.models.RunId;
@@ -37,8 +43,13 @@ import org.apache.curator.utils.CloseableUtils;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import java.nio.charset.Charset;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -91,6 +102,97 @@ public class TestAdmin extends BaseForTests
         }
     }
 
+    @Test
+    public void testBulkClean() throws Exception
+    {
+        TaskType taskType = new TaskType("test", "1", true);
+        TaskType pendingTaskType = new TaskType("pending", "1", true);
+        Task root = new Task(new TaskId(), IntStream.range(0, 5).mapToObj(i -> new Task(new TaskId(), taskType)).collect(Collectors.toList()));
+        Task pendingTask = new Task(new TaskId(), pendingTaskType);
+
+        CountDownLatch latch = new CountDownLatch(3 * 5);
+        TaskExecutor taskExecutor = (m, t) -> () -> {
+            latch.countDown();
+            return new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "");
+        };
+        WorkflowManager workflowManager = WorkflowManagerBuilder.builder()
+            .addingTaskExecutor(taskExecutor, 10, taskType)
+            .withCurator(curator, "test", "1")
+            .build();
+        try
+        {
+            workflowManager.start();
+
+            List<RunId> runIds = IntStream.range(0, 3).mapToObj(i -> workflowManager.submitTask(root)).collect(Collectors.toList());
+            runIds.add(workflowManager.submitTask(pendingTask));   // started but not completed - its transaction fails
+            Assert.assertTrue(timing.awaitLatch(latch));
+            timing.sleepABit();
+
+            RunId missingRunId = new RunId();
+            List<RunId> cleanRunIds = Lists.newArrayList(runIds);
+            cleanRunIds.add(missingRunId);
+            Map<RunId, CleanResult> results = workflowManager.getAdmin().clean(cleanRunIds);
+            Assert.assertEquals(results.size(), cleanRunIds.size());
+            runIds.forEach(runId -> Assert.assertEquals(results.get(runId), CleanResult.CLEANED));
+            Assert.assertEquals(results.get(missingRunId), CleanResult.NOT_FOUND);
+
+            CuratorFramework nmCurator = ((WorkflowManagerImpl)workflowManager).getCurator();
+            Assert.assertEquals(nmCurator.checkExists().forPath(ZooKeeperConstants.getRunParentPath()).getNumChildren(), 0);
+            Assert.assertEquals(nmCurator.checkExists().forPath(ZooKeeperConstants.getRunSummaryParentPath()).getNumChildren(), 0);
+            Assert.assertEquals(nmCurator.checkExists().forPath(ZooKeeperConstants.getStartedTasksParentPath()).getNumChildren(), 0);
+            Assert.assertEquals(nmCurator.checkExists().forPath(ZooKeeperConstants.getCompletedTaskParentPath()).getNumChildren(), 0);
+
+            Assert.assertEquals(workflowManager.getAdmin().clean(runIds).values(), Collections.nCopies(runIds.size(), CleanResult.NOT_FOUND));
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(workflowManager);
+        }
+    }
+
+    @Test
+    public void testCompletedRunIndex() throws Exception
+    {
+        TaskType taskType = new TaskType("test", "1", true);
+        CountDownLatch latch = new CountDownLatch(1);
+        TaskExecutor taskExecutor = (m, t) -> () -> {
+            latch.countDown();
+            return new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "");
+        };
+        WorkflowManager workflowManager = WorkflowManagerBuilder.builder()
+            .addingTaskExecutor(taskExecutor, 10, taskType)
+            .withCurator(curator, "test", "1")
+            .build();
+        try
+        {
+            workflowManager.start();
+
+            RunId runId = workflowManager.submitTask(new Task(new TaskId(), taskType));
+            Assert.assertTrue(timing.awaitLatch(latch));
+            timing.sleepABit();
+
+            WorkflowAdmin admin = workflowManager.getAdmin();
+            RunInfo runInfo = admin.getRunInfo(runId);
+            Assert.assertTrue(runInfo.isComplete());
+            String indexPath = ZooKeeperConstants.getCompletedRunIndexPath(runId, runInfo.getCompletionTimeUtc());
+            CuratorFramework nmCurator = ((WorkflowManagerImpl)workflowManager).getCurator();
+            Assert.assertNotNull(nmCurator.checkExists().forPath(indexPath));
+
+            Assert.assertEquals(admin.streamCompletedRunIds(runInfo.getCompletionTimeUtc()).collect(Collectors.toList()), Lists.newArrayList(runId));
+            Assert.assertEquals(admin.streamCompletedRunIds(runInfo.getCompletionTimeUtc().minusNanos(1)).count(), 0);
+            Assert.assertEquals(admin.streamCompletedRunIds(runInfo.getCompletionTimeUtc().plusDays(1)).collect(Collectors.toList()), Lists.newArrayList(runId));
+            Assert.assertEquals(admin.streamCompletedRunIds(runInfo.getCompletionTimeUtc().minusDays(1)).count(), 0);
+
+            Assert.assertTrue(admin.clean(runId));
+            Assert.assertNull(nmCurator.checkExists().forPath(indexPath));
+            Assert.assertEquals(admin.streamCompletedRunIds(runInfo.getCompletionTimeUtc().plusDays(1)).count(), 0);
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(workflowManager);
+        }
+    }
+
     @Test
     public void testTaskInfoAndDetails() throws Exception
     {
@@ -190,6 +292,47 @@ public class TestAdmin extends BaseForTests
         }
     }
 
+    @Test
+    public void testTaskInfoOnlyForRun() throws Exception
+    {
+        TaskType taskType = new TaskType("test", "1", true);
+        Task task1 = new Task(new TaskId(), taskType);
+        Task task2 = new Task(new TaskId(), taskType);
+
+        CountDownLatch latch = new CountDownLatch(2);
+        TaskExecutor taskExecutor = (manager, task) -> () -> {
+            latch.countDown();
+            return new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "");
+        };
+        WorkflowManager workflowManager = WorkflowManagerBuilder.builder()
+            .addingTaskExecutor(taskExecutor, 10, taskType)
+            .withCurator(curator, "test", "1")
+            .build();
+        try
+        {
+            workflowManager.start();
+
+            RunId runId1 = workflowManager.submitTask(task1);
+            RunId runId2 = workflowManager.submitTask(task2);
+            Assert.assertTrue(timing.awaitLatch(latch));
+            timing.sleepABit();
+
+            List<TaskInfo> taskInfos = workflowManager.getAdmin().getTaskInfo(runId1);
+            Assert.assertEquals(taskInfos.size(), 1);
+            Assert.assertEquals(taskInfos.get(0).getTaskId(), task1.getTaskId());
+            Assert.assertTrue(taskInfos.get(0).isComplete());
+
+            taskInfos = workflowManager.getAdmin().getTaskInfo(runId2);
+            Assert.assertEquals(taskInfos.size(), 1);
+            Assert.assertEquals(taskInfos.get(0).getTaskId(), task2.getTaskId());
+            Assert.assertTrue(taskInfos.get(0).isComplete());
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(workflowManager);
+        }
+    }
+
     @Test
     public void testRunInfo() throws Exception
     {
@@ -260,4 +403,167 @@ public class TestAdmin extends BaseForTests
             CloseableUtils.closeQuietly(workflowManager);
         }
     }
+
+    @Test
+    public void testRunSummary() throws Exception
+    {
+        TaskType taskType = new TaskType("test", "1", true);
+        Task task1 = new Task(new TaskId(), taskType);
+        Task task2 = new Task(new TaskId(), taskType);
+        Task root = new Task(new TaskId(), Lists.newArrayList(task1, task2));
+
+        CountDownLatch latch = new CountDownLatch(2);
+        TaskExecutor taskExecutor = (manager, task) -> () -> {
+            latch.countDown();
+            TaskExecutionStatus status = task.getTaskId().equals(task1.getTaskId()) ? TaskExecutionStatus.FAILED_CONTINUE : TaskExecutionStatus.SUCCESS;
+            return new TaskExecutionResult(status, "");
+        };
+        WorkflowManager workflowManager = WorkflowManagerBuilder.builder()
+            .addingTaskExecutor(taskExecutor, 10, taskType)
+            .withCurator(curator, "test", "1")
+            .build();
+        try
+        {
+            workflowManager.start();
+
+            RunId runId = workflowManager.submitTask(root);
+            Assert.assertTrue(timing.awaitLatch(latch));
+            timing.sleepABit();
+
+            WorkflowManagerImpl workflowManagerImpl = (WorkflowManagerImpl)workflowManager;
+            String summaryPath = ZooKeeperConstants.getRunSummaryPath(runId);
+            byte[] summaryBytes = workflowManagerImpl.getCurator().getData().forPath(summaryPath);
+            RunSummary runSummary = workflowManagerImpl.getSerializer().deserialize(summaryBytes, RunSummary.class);
+            Assert.assertTrue(runSummary.getCompletionTimeUtc().isPresent());
+            Assert.assertEquals(runSummary.getCompletedTaskQty(), 2);
+            Assert.assertEquals(runSummary.getFailedTaskQty(), 1);
+
+            RunInfo runInfo = workflowManager.getAdmin().getRunInfo(runId);
+            Assert.assertEquals(runInfo.getCompletionTimeUtc(), runSummary.getCompletionTimeUtc().get());
+
+            // runs without a summary are read in full
+            workflowManagerImpl.getCurator().delete().forPath(summaryPath);
+            Assert.assertEquals(workflowManager.getAdmin().getRunInfo(runId), runInfo);
+            Assert.assertEquals(workflowManager.getAdmin().getRunInfo(), Lists.newArrayList(runInfo));
+
+            Assert.assertTrue(workflowManager.getAdmin().clean(runId));
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(workflowManager);
+        }
+    }
+
+    @Test
+    public void testCanceledRunSummary() throws Exception
+    {
+        TaskType taskType = new TaskType("test", "1", true);
+        TaskType pendingTaskType = new TaskType("pending", "1", true);
+        Task task1 = new Task(new TaskId(), taskType);
+        Task task2 = new Task(new TaskId(), taskType);
+        Task pendingTask = new Task(new TaskId(), pendingTaskType);
+        Task root = new Task(new TaskId(), Lists.newArrayList(task1, task2, pendingTask));
+
+        CountDownLatch latch = new CountDownLatch(2);
+        TaskExecutor taskExecutor = (manager, task) -> () -> {
+            latch.countDown();
+            TaskExecutionStatus status = task.getTaskId().equals(task1.getTaskId()) ? TaskExecutionStatus.FAILED_CONTINUE : TaskExecutionStatus.SUCCESS;
+            return new TaskExecutionResult(status, "");
+        };
+        WorkflowManager workflowManager = WorkflowManagerBuilder.builder()
+            .addingTaskExecutor(taskExecutor, 10, taskType)
+            .withCurator(curator, "test", "1")
+            .build();
+        try
+        {
+            workflowManager.start();
+
+            RunId runId = workflowManager.submitTask(root);
+            Assert.assertTrue(timing.awaitLatch(latch));
+            timing.sleepABit();
+            Assert.assertTrue(workflowManager.cancelRun(runId));
+
+            // the summary of a canceled run counts the tasks that completed before it was canceled
+            WorkflowManagerImpl workflowManagerImpl = (WorkflowManagerImpl)workflowManager;
+            byte[] summaryBytes = workflowManagerImpl.getCurator().getData().forPath(ZooKeeperConstants.getRunSummaryPath(runId));
+            RunSummary runSummary = workflowManagerImpl.getSerializer().deserialize(summaryBytes, RunSummary.class);
+            Assert.assertTrue(runSummary.getCompletionTimeUtc().isPresent());
+            Assert.assertEquals(runSummary.getCompletedTaskQty(), 2);
+            Assert.assertEquals(runSummary.getFailedTaskQty(), 1);
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(workflowManager);
+        }
+    }
+
+    @Test
+    public void testPaging() throws Exception
+    {
+        TaskType taskType = new TaskType("test", "1", true);
+        TaskType pendingTaskType = new TaskType("pending", "1", true);
+        List<TaskId> taskIds = IntStream.range(0, 5).mapToObj(i -> new TaskId()).collect(Collectors.toList());
+        Task root = new Task(new TaskId(), taskIds.stream().map(taskId -> new Task(taskId, taskType)).collect(Collectors.toList()));
+        Task pendingTask = new Task(new TaskId(), pendingTaskType);
+
+        CountDownLatch latch = new CountDownLatch(3 * taskIds.size());
+        TaskExecutor taskExecutor = (manager, task) -> () -> {
+            latch.countDown();
+            return new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "");
+        };
+        WorkflowManager workflowManager = WorkflowManagerBuilder.builder()
+            .addingTaskExecutor(taskExecutor, 10, taskType)
+            .withCurator(curator, "test", "1")
+            .build();
+        try
+        {
+            workflowManager.start();
+
+            List<RunId> completeRunIds = IntStream.range(0, 3).mapToObj(i -> workflowManager.submitTask(root)).collect(Collectors.toList());
+            Assert.assertTrue(timing.awaitLatch(latch));
+            timing.sleepABit();
+            List<RunId> incompleteRunIds = IntStream.range(0, 2).mapToObj(i -> workflowManager.submitTask(pendingTask)).collect(Collectors.toList());
+
+            WorkflowAdmin admin = workflowManager.getAdmin();
+            List<RunId> allRunIds = Lists.newArrayList(completeRunIds);
+            allRunIds.addAll(incompleteRunIds);
+            allRunIds.sort(Comparator.comparing(RunId::getId));
+
+            List<RunId> pagedRunIds = Lists.newArrayList();
+            String cursor = null;
+            int pageQty = 0;
+            do
+            {
+                Page<RunId> page = admin.getRunIds(cursor, 2);
+                Assert.assertTrue(page.getItems().size() <= 2);
+                pagedRunIds.addAll(page.getItems());
+                cursor = page.getNextCursor().orElse(null);
+                ++pageQty;
+            } while ( cursor != null );
+            Assert.assertEquals(pageQty, 3);
+            Assert.assertEquals(pagedRunIds, allRunIds);
+            Assert.assertEquals(admin.streamRunIds().collect(Collectors.toList()), allRunIds);
+
+            Set<RunId> streamedComplete = admin.streamRunInfo(RunFilter.ALL.complete()).map(RunInfo::getRunId).collect(Collectors.toSet());
+            Assert.assertEquals(streamedComplete, Sets.newHashSet(completeRunIds));
+            Set<RunId> streamedIncomplete = admin.streamRunInfo(RunFilter.ALL.incomplete()).map(RunInfo::getRunId).collect(Collectors.toSet());
+            Assert.assertEquals(streamedIncomplete, Sets.newHashSet(incompleteRunIds));
+            Assert.assertEquals(admin.streamRunInfo(RunFilter.ALL.completedBetween(null, LocalDateTime.now(Clock.systemUTC()).minusDays(1))).count(), 0);
+            Assert.assertEquals(admin.streamRunInfo(RunFilter.ALL.startedBetween(LocalDateTime.now(Clock.systemUTC()).minusDays(1), null)).count(), allRunIds.size());
+            List<RunId> resumedRunIds = admin.streamRunInfo(RunFilter.ALL, allRunIds.get(1).getId()).map(RunInfo::getRunId).collect(Collectors.toList());
+            Assert.assertEquals(resumedRunIds, allRunIds.subList(2, allRunIds.size()));
+
+            RunId runId = completeRunIds.get(0);
+            Page<TaskInfo> taskPage = admin.getTaskInfo(runId, null, 3);
+            Assert.assertEquals(taskPage.getItems().size(), 3);
+            Assert.assertTrue(taskPage.getNextCursor().isPresent());
+            Assert.assertEquals(admin.getTaskInfo(runId, taskPage.getNextCursor().get(), 3).getItems().size(), 2);
+            List<TaskId> streamedTaskIds = admin.streamTaskInfo(runId).peek(taskInfo -> Assert.assertTrue(taskInfo.isComplete())).map(TaskInfo::getTaskId).collect(Collectors.toList());
+            Assert.assertEquals(streamedTaskIds, taskIds.stream().sorted(Comparator.comparing(TaskId::getId)).collect(Collectors.toList()));
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(workflowManager);
+        }
+    }
 }
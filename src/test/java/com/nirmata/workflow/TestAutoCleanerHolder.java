@@ -16,6 +16,7 @@
 package com.nirmata.workflow;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.nirmata.workflow.admin.RunInfo;
 import com.nirmata.workflow.admin.StandardAutoCleaner;
 import com.nirmata.workflow.admin.TaskDetails;
@@ -34,6 +35,9 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class TestAutoCleanerHolder
 {
@@ -69,24 +73,138 @@ public class TestAutoCleanerHolder
         );
 
         List<RunId> cleaned = Lists.newArrayList();
-        WorkflowAdmin admin = new WorkflowAdmin()
+        WorkflowAdmin admin = newAdmin(runs, cleaned);
+
+        holder.run(admin);
+        Assert.assertEquals(cleaned.size(), 1);
+        Assert.assertEquals(cleaned.get(0), completedId);
+    }
+
+    @Test
+    public void testIncremental() throws InterruptedException
+    {
+        final int QTY = 10;
+
+        // passes are limited to the 200ms run period and at most 10 cleans per second
+        AutoCleanerHolder holder = new AutoCleanerHolder(new StandardAutoCleaner(Duration.ZERO), Duration.ofMillis(200), 10);
+        List<RunInfo> runs = Lists.newArrayList();
+        for ( int i = 0; i < QTY; ++i )
+        {
+            runs.add(new RunInfo(new RunId(), LocalDateTime.now(Clock.systemUTC()), LocalDateTime.now(Clock.systemUTC()).minusSeconds(1)));
+        }
+        List<RunId> cleaned = Lists.newArrayList();
+        WorkflowAdmin admin = newAdmin(runs, cleaned);
+
+        holder.run(admin);
+        Assert.assertTrue(cleaned.size() < QTY);
+        for ( int i = 0; (i < QTY) && (cleaned.size() < QTY); ++i )
+        {
+            holder.run(admin);
+        }
+        Assert.assertEquals(Sets.newHashSet(cleaned).size(), QTY);   // each run cleaned exactly once
+        Assert.assertEquals(cleaned.size(), QTY);
+    }
+
+    @Test
+    public void testFullScanPages()
+    {
+        final int QTY = 250;
+
+        // a pass limited by the rate reads only the pages of the runs it visits
+        AutoCleanerHolder holder = new AutoCleanerHolder(new StandardAutoCleaner(Duration.ZERO), Duration.ofMillis(500), 100);
+        List<RunInfo> runs = Lists.newArrayList();
+        for ( int i = 0; i < QTY; ++i )
+        {
+            runs.add(new RunInfo(new RunId(), LocalDateTime.now(Clock.systemUTC()), LocalDateTime.now(Clock.systemUTC()).minusSeconds(1)));
+        }
+        List<RunId> cleaned = Lists.newArrayList();
+        AtomicInteger runInfoReads = new AtomicInteger();
+        WorkflowAdmin admin = newAdmin(runs, cleaned, runInfoReads);
+
+        holder.run(admin);
+        Assert.assertTrue(cleaned.size() < QTY);
+        Assert.assertTrue(runInfoReads.get() < QTY);
+
+        for ( int i = 0; (i < QTY) && (cleaned.size() < QTY); ++i )
+        {
+            holder.run(admin);
+        }
+        Assert.assertEquals(Sets.newHashSet(cleaned), runs.stream().map(RunInfo::getRunId).collect(Collectors.toSet()));
+        Assert.assertEquals(cleaned.size(), QTY);
+    }
+
+    @Test
+    public void testIndexed()
+    {
+        AutoCleanerHolder holder = new AutoCleanerHolder(new StandardAutoCleaner(Duration.ofHours(1)), Duration.ofSeconds(10));
+
+        RunId unindexedId = new RunId();
+        List<RunInfo> runs = Lists.newArrayList(
+            new RunInfo(unindexedId, LocalDateTime.now(Clock.systemUTC()), LocalDateTime.now(Clock.systemUTC()).minusHours(2))
+        );
+        List<RunId> cleaned = Lists.newArrayList();
+        List<RunId> indexed = Lists.newArrayList(new RunId(), new RunId());
+        List<LocalDateTime> indexQueries = Lists.newArrayList();
+        WorkflowAdmin admin = newAdmin(runs, cleaned, indexed, indexQueries);
+
+        // the first pass scans all runs - later passes only use the index
+        holder.run(admin);
+        Assert.assertEquals(cleaned, Lists.newArrayList(unindexedId));
+        Assert.assertTrue(indexQueries.isEmpty());
+
+        cleaned.clear();
+        holder.run(admin);
+        Assert.assertEquals(cleaned, indexed);
+        Assert.assertEquals(indexQueries.size(), 1);
+        Duration age = Duration.between(indexQueries.get(0), LocalDateTime.now(Clock.systemUTC()));
+        Assert.assertTrue(age.compareTo(Duration.ofHours(1)) >= 0);
+        Assert.assertTrue(age.compareTo(Duration.ofHours(1).plusMinutes(1)) < 0);
+    }
+
+    private WorkflowAdmin newAdmin(List<RunInfo> runs, List<RunId> cleaned)
+    {
+        return newAdmin(runs, cleaned, Lists.newArrayList(), Lists.newArrayList(), new AtomicInteger());
+    }
+
+    private WorkflowAdmin newAdmin(List<RunInfo> runs, List<RunId> cleaned, AtomicInteger runInfoReads)
+    {
+        return newAdmin(runs, cleaned, Lists.newArrayList(), Lists.newArrayList(), runInfoReads);
+    }
+
+    private WorkflowAdmin newAdmin(List<RunInfo> runs, List<RunId> cleaned, List<RunId> indexed, List<LocalDateTime> indexQueries)
+    {
+        return newAdmin(runs, cleaned, indexed, indexQueries, new AtomicInteger());
+    }
+
+    private WorkflowAdmin newAdmin(List<RunInfo> runs, List<RunId> cleaned, List<RunId> indexed, List<LocalDateTime> indexQueries, AtomicInteger runInfoReads)
+    {
+        return new WorkflowAdmin()
         {
+            @Override
+            public Stream<RunId> streamCompletedRunIds(LocalDateTime completedBeforeUtc)
+            {
+                indexQueries.add(completedBeforeUtc);
+                return indexed.stream();
+            }
+
             @Override
             public List<RunInfo> getRunInfo()
             {
-                return runs;
+                // the auto cleaner must read runs a page at a time
+                throw new UnsupportedOperationException();
             }
 
             @Override
             public List<RunId> getRunIds()
             {
-                throw new UnsupportedOperationException();
+                return runs.stream().map(RunInfo::getRunId).collect(Collectors.toList());
             }
 
             @Override
             public RunInfo getRunInfo(RunId runId)
             {
-                throw new UnsupportedOperationException();
+                runInfoReads.incrementAndGet();
+                return runs.stream().filter(r -> r.getRunId().equals(runId)).findFirst().orElseThrow(IllegalArgumentException::new);
             }
 
             @Override
@@ -114,9 +232,5 @@ public class TestAutoCleanerHolder
                 throw new UnsupportedOperationException();
             }
         };
-
-        holder.run(admin);
-        Assert.assertEquals(cleaned.size(), 1);
-        Assert.assertEquals(cleaned.get(0), completedId);
     }
 }
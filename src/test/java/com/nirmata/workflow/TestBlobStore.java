@@ -0,0 +1,131 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.nirmata.workflow.admin.CleanResult;
+import com.nirmata.workflow.blobs.BlobStore;
+import com.nirmata.workflow.blobs.FileBlobStore;
+import com.nirmata.workflow.details.WorkflowManagerImpl;
+import com.nirmata.workflow.details.ZooKeeperConstants;
+import com.nirmata.workflow.executor.TaskExecutionStatus;
+import com.nirmata.workflow.executor.TaskExecutor;
+import com.nirmata.workflow.models.RunId;
+import com.nirmata.workflow.models.Task;
+import com.nirmata.workflow.models.TaskExecutionResult;
+import com.nirmata.workflow.models.TaskId;
+import com.nirmata.workflow.models.TaskType;
+import org.apache.curator.utils.CloseableUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestBlobStore extends BaseForTests
+{
+    private static final int THRESHOLD = 100;
+
+    private final TaskType taskType = new TaskType("test", "1", true);
+
+    @Test
+    public void testLargeValues() throws Exception
+    {
+        String largeMetaData = Strings.repeat("m", THRESHOLD * 10);
+        String largeResultData = Strings.repeat("r", THRESHOLD * 10);
+
+        Path directory = Files.createTempDirectory("blobs");
+        FileBlobStore fileBlobStore = new FileBlobStore(directory);
+        AtomicInteger getQty = new AtomicInteger();
+        BlobStore blobStore = new BlobStore()
+        {
+            @Override
+            public String put(RunId runId, byte[] data)
+            {
+                return fileBlobStore.put(runId, data);
+            }
+
+            @Override
+            public ByteBuffer get(String key)
+            {
+                getQty.incrementAndGet();
+                return fileBlobStore.get(key);
+            }
+
+            @Override
+            public void delete(RunId runId)
+            {
+                fileBlobStore.delete(runId);
+            }
+        };
+
+        BlockingQueue<String> executedMetaData = new LinkedBlockingQueue<>();
+        TaskExecutor taskExecutor = (manager, task) -> () -> {
+            executedMetaData.add(task.getMetaData().get("large"));
+            return new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "", ImmutableMap.of("small", "s", "large", largeResultData));
+        };
+        WorkflowManagerImpl workflowManager = (WorkflowManagerImpl)WorkflowManagerBuilder.builder()
+            .addingTaskExecutor(taskExecutor, 1, taskType)
+            .withCurator(curator, "test", "1")
+            .withBlobStore(blobStore, THRESHOLD)
+            .build();
+        try
+        {
+            workflowManager.start();
+
+            TaskId taskId = new TaskId();
+            RunId runId = workflowManager.submitTask(new Task(taskId, taskType, Lists.newArrayList(), ImmutableMap.of("small", "s", "large", largeMetaData)));
+            Assert.assertEquals(executedMetaData.poll(timing.milliseconds(), TimeUnit.MILLISECONDS), largeMetaData);
+
+            // ZooKeeper only holds references to the large values
+            Assert.assertTrue(workflowManager.getCurator().getData().forPath(ZooKeeperConstants.getRunPath(runId)).length < largeMetaData.length());
+            String completedTaskPath = workflowManager.getTaskPaths().getCompletedTaskPath(runId, taskId);
+            for ( int i = 0; (workflowManager.getCurator().checkExists().forPath(completedTaskPath) == null) && (i < 100); ++i )
+            {
+                timing.sleepABit();
+            }
+            Assert.assertTrue(workflowManager.getCurator().getData().forPath(completedTaskPath).length < largeResultData.length());
+
+            // stored values are only read when accessed
+            int qty = getQty.get();
+            TaskExecutionResult result = workflowManager.getTaskExecutionResult(runId, taskId).orElseThrow(AssertionError::new);
+            Assert.assertEquals(result.getResultData().get("small"), "s");
+            Assert.assertEquals(getQty.get(), qty);
+            Assert.assertEquals(result.getResultData().get("large"), largeResultData);
+            Assert.assertEquals(result.getResultData().get("large"), largeResultData);
+            Assert.assertEquals(getQty.get(), qty + 1);
+            Assert.assertEquals(workflowManager.getAdmin().getTaskDetails(runId).get(taskId).getMetaData().get("large"), largeMetaData);
+
+            Assert.assertTrue(Files.exists(directory.resolve(runId.getId())));
+            for ( int i = 0; !workflowManager.getAdmin().getRunInfo(runId).isComplete() && (i < 100); ++i )
+            {
+                timing.sleepABit();
+            }
+            Assert.assertEquals(workflowManager.getAdmin().clean(Lists.newArrayList(runId)).get(runId), CleanResult.CLEANED);
+            Assert.assertFalse(Files.exists(directory.resolve(runId.getId())));
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(workflowManager);
+        }
+    }
+}
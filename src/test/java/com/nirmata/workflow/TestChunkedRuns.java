@@ -0,0 +1,162 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.nirmata.workflow.admin.CleanResult;
+import com.nirmata.workflow.admin.RunInfo;
+import com.nirmata.workflow.admin.TaskInfo;
+import com.nirmata.workflow.details.WorkflowManagerImpl;
+import com.nirmata.workflow.details.ZooKeeperConstants;
+import com.nirmata.workflow.executor.TaskExecutionStatus;
+import com.nirmata.workflow.executor.TaskExecutor;
+import com.nirmata.workflow.models.RunId;
+import com.nirmata.workflow.models.Task;
+import com.nirmata.workflow.models.TaskExecutionResult;
+import com.nirmata.workflow.models.TaskId;
+import com.nirmata.workflow.models.TaskType;
+import org.apache.curator.utils.CloseableUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+public class TestChunkedRuns extends BaseForTests
+{
+    private static final int CHUNK_SIZE = 1024;
+    private static final int TASK_QTY = 50;
+
+    private final TaskType taskType = new TaskType("test", "1", true);
+
+    @Test
+    public void testChunkedRun() throws Exception
+    {
+        Set<TaskId> executedTaskIds = Sets.newConcurrentHashSet();
+        CountDownLatch latch = new CountDownLatch(TASK_QTY);
+        TaskExecutor taskExecutor = (manager, task) -> () -> {
+            executedTaskIds.add(task.getTaskId());
+            latch.countDown();
+            return new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "");
+        };
+        WorkflowManagerImpl workflowManager = (WorkflowManagerImpl)WorkflowManagerBuilder.builder()
+            .addingTaskExecutor(taskExecutor, 10, taskType)
+            .withCurator(curator, "test", "1")
+            .withRunChunkSize(CHUNK_SIZE)
+            .build();
+        try
+        {
+            workflowManager.start();
+
+            List<Task> tasks = Lists.newArrayList();
+            for ( int i = 0; i < TASK_QTY; ++i )
+            {
+                tasks.add(new Task(new TaskId(), taskType, Lists.newArrayList(), ImmutableMap.of("index", Integer.toString(i))));
+            }
+            RunId runId = workflowManager.submitTask(new Task(new TaskId(), tasks));
+
+            // the run is stored as a manifest plus chunks that are each no larger than the chunk size
+            List<String> chunks = workflowManager.getCurator().getChildren().forPath(ZooKeeperConstants.getRunChunkParentPath(runId));
+            Assert.assertTrue(chunks.size() > 1);
+            for ( String chunk : chunks )
+            {
+                byte[] bytes = workflowManager.getCurator().getData().forPath(ZooKeeperConstants.getRunChunkParentPath(runId) + "/" + chunk);
+                Assert.assertTrue(bytes.length <= CHUNK_SIZE);
+            }
+            Assert.assertTrue(workflowManager.getCurator().getData().forPath(ZooKeeperConstants.getRunPath(runId)).length < CHUNK_SIZE);
+
+            Assert.assertTrue(timing.awaitLatch(latch));
+            Assert.assertEquals(executedTaskIds.size(), TASK_QTY);
+            Assert.assertEquals(workflowManager.getAdmin().getTaskDetails(runId).size(), TASK_QTY + 1);
+
+            RunInfo runInfo = waitForCompletion(workflowManager, runId);
+            Assert.assertTrue(runInfo.isComplete());
+            List<TaskInfo> taskInfos = workflowManager.getAdmin().getTaskInfo(runId);
+            Assert.assertEquals(taskInfos.size(), TASK_QTY);
+            Assert.assertTrue(taskInfos.stream().allMatch(TaskInfo::isComplete));
+
+            // only the manifest was rewritten when the run completed
+            Assert.assertEquals(workflowManager.getCurator().getChildren().forPath(ZooKeeperConstants.getRunChunkParentPath(runId)).size(), chunks.size());
+
+            Assert.assertEquals(workflowManager.getAdmin().clean(Lists.newArrayList(runId)).get(runId), CleanResult.CLEANED);
+            for ( String chunk : chunks )
+            {
+                Assert.assertNull(workflowManager.getCurator().checkExists().forPath(ZooKeeperConstants.getRunChunkParentPath(runId) + "/" + chunk));
+            }
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(workflowManager);
+        }
+    }
+
+    @Test
+    public void testFailedSubmitDeletesChunks() throws Exception
+    {
+        WorkflowManagerImpl workflowManager = (WorkflowManagerImpl)WorkflowManagerBuilder.builder()
+            .addingTaskExecutor((manager, task) -> () -> new TaskExecutionResult(TaskExecutionStatus.SUCCESS, ""), 10, taskType)
+            .withCurator(curator, "test", "1")
+            .withRunChunkSize(CHUNK_SIZE)
+            .build();
+        try
+        {
+            workflowManager.start();
+
+            // a small run that isn't split
+            RunId runId = workflowManager.submitTask(new Task(new TaskId(), taskType));
+
+            List<Task> tasks = Lists.newArrayList();
+            for ( int i = 0; i < TASK_QTY; ++i )
+            {
+                tasks.add(new Task(new TaskId(), taskType, Lists.newArrayList(), ImmutableMap.of("index", Integer.toString(i))));
+            }
+            try
+            {
+                // its chunks can be written but its run node can't
+                workflowManager.submitTask(runId, new Task(new TaskId(), tasks));
+                Assert.fail("Submitting an existing run should fail");
+            }
+            catch ( RuntimeException expected )
+            {
+                // expected
+            }
+
+            String chunkParentPath = ZooKeeperConstants.getRunChunkParentPath(runId);
+            if ( workflowManager.getCurator().checkExists().forPath(chunkParentPath) != null )
+            {
+                Assert.assertEquals(workflowManager.getCurator().getChildren().forPath(chunkParentPath).size(), 0);
+            }
+            Assert.assertNotNull(workflowManager.getAdmin().getRunInfo(runId));
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(workflowManager);
+        }
+    }
+
+    private RunInfo waitForCompletion(WorkflowManager workflowManager, RunId runId) throws InterruptedException
+    {
+        RunInfo runInfo = workflowManager.getAdmin().getRunInfo(runId);
+        for ( int i = 0; !runInfo.isComplete() && (i < 100); ++i )
+        {
+            timing.sleepABit();
+            runInfo = workflowManager.getAdmin().getRunInfo(runId);
+        }
+        return runInfo;
+    }
+}
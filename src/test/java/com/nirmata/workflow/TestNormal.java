@@ -16,6 +16,8 @@
 
 package com.nirmata.workflow;
 
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Queues;
@@ -25,6 +27,7 @@ import com.nirmata.workflow.admin.RunInfo;
 import com.nirmata.workflow.admin.StandardAutoCleaner;
 import com.nirmata.workflow.admin.TaskInfo;
 import com.nirmata.workflow.details.WorkflowManagerImpl;
+import com.nirmata.workflow.details.ZooKeeperConstants;
 import com.nirmata.workflow.executor.TaskExecution;
 import com.nirmata.workflow.executor.TaskExecutionStatus;
 import com.nirmata.workflow.executor.TaskExecutor;
@@ -51,6 +54,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public class TestNormal extends BaseForTests
 {
@@ -221,6 +225,188 @@ public class TestNormal extends BaseForTests
         }
     }
 
+    @Test
+    public void testSchedulerParallelism() throws Exception
+    {
+        final int RUN_QTY = 10;
+
+        CountDownLatch latch = new CountDownLatch(RUN_QTY * 2);
+        TaskExecutor taskExecutor = (w, t) -> () -> {
+            latch.countDown();
+            return new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "");
+        };
+        TaskType taskType = new TaskType("test", "1", true);
+        WorkflowManager workflowManager = WorkflowManagerBuilder.builder()
+            .addingTaskExecutor(taskExecutor, 10, taskType)
+            .withCurator(curator, "test", "1")
+            .withSchedulerParallelism(4)
+            .build();
+        try
+        {
+            workflowManager.start();
+
+            List<RunId> runIds = Lists.newArrayList();
+            for ( int i = 0; i < RUN_QTY; ++i )
+            {
+                Task task2 = new Task(new TaskId(), taskType);
+                Task task1 = new Task(new TaskId(), taskType, Lists.newArrayList(task2));
+                runIds.add(workflowManager.submitTask(task1));
+            }
+
+            Assert.assertTrue(timing.awaitLatch(latch));
+            timing.sleepABit();
+
+            for ( RunId runId : runIds )
+            {
+                Assert.assertTrue(workflowManager.getAdmin().getRunInfo(runId).isComplete());
+            }
+        }
+        finally
+        {
+            closeWorkflow(workflowManager);
+        }
+    }
+
+    @Test
+    public void testSchedulerPartitions() throws Exception
+    {
+        final int RUN_QTY = 8;
+        final int MANAGER_QTY = 2;
+
+        TaskType taskType = new TaskType("test", "1", true);
+        Set<TaskId> parentTaskIds = Sets.newConcurrentHashSet();
+        Set<TaskId> childTaskIds = Sets.newConcurrentHashSet();
+        CountDownLatch latch = new CountDownLatch(RUN_QTY);
+        TaskExecutor taskExecutor = (workflowManager, task) -> () -> {
+            // parent tasks start a sub-task run that is likely owned by a different partition
+            RunId subTaskRunId = parentTaskIds.contains(task.getTaskId()) ? workflowManager.submitSubTask(task.getRunId(), new Task(new TaskId(), taskType)) : null;
+            if ( childTaskIds.contains(task.getTaskId()) )
+            {
+                latch.countDown();
+            }
+            return new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "", Maps.newHashMap(), subTaskRunId);
+        };
+
+        List<WorkflowManager> workflowManagers = Lists.newArrayList();
+        for ( int i = 0; i < MANAGER_QTY; ++i )
+        {
+            WorkflowManager workflowManager = WorkflowManagerBuilder.builder()
+                .addingTaskExecutor(taskExecutor, 10, taskType)
+                .withCurator(curator, "test", "1")
+                .withSchedulerPartitions(4)
+                .build();
+            workflowManagers.add(workflowManager);
+        }
+        try
+        {
+            workflowManagers.forEach(WorkflowManager::start);
+
+            List<RunId> runIds = Lists.newArrayList();
+            for ( int i = 0; i < RUN_QTY; ++i )
+            {
+                Task child = new Task(new TaskId(), taskType);
+                Task parent = new Task(new TaskId(), taskType, Lists.newArrayList(child));
+                parentTaskIds.add(parent.getTaskId());
+                childTaskIds.add(child.getTaskId());
+                runIds.add(workflowManagers.get(i % MANAGER_QTY).submitTask(parent));
+            }
+
+            Assert.assertTrue(timing.awaitLatch(latch));
+            timing.sleepABit();
+
+            for ( RunId runId : runIds )
+            {
+                Assert.assertTrue(workflowManagers.get(0).getAdmin().getRunInfo(runId).isComplete());
+            }
+        }
+        finally
+        {
+            for ( WorkflowManager workflowManager : workflowManagers )
+            {
+                closeWorkflow(workflowManager);
+            }
+        }
+    }
+
+    @Test
+    public void testAlreadyStartedTaskInBatch() throws Exception
+    {
+        TaskType taskType = new TaskType("test", "1", true);
+        Task task1 = new Task(new TaskId(), taskType);
+        Task task2 = new Task(new TaskId(), taskType);
+        Task task3 = new Task(new TaskId(), taskType);
+        Task root = new Task(new TaskId(), Lists.newArrayList(task1, task2, task3));
+
+        BlockingQueue<TaskId> tasks = Queues.newLinkedBlockingQueue();
+        TaskExecutor taskExecutor = (w, t) -> () -> {
+            tasks.add(t.getTaskId());
+            return new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "");
+        };
+        WorkflowManager workflowManager = WorkflowManagerBuilder.builder()
+            .addingTaskExecutor(taskExecutor, 10, taskType)
+            .withCurator(curator, "test", "1")
+            .build();
+        try
+        {
+            // simulate a task that was started by a previous scheduler - the rest of its batch must still be queued
+            RunId runId = new RunId();
+            ((WorkflowManagerImpl)workflowManager).getCurator().create().creatingParentContainersIfNeeded().forPath(ZooKeeperConstants.getStartedTaskPath(runId, task2.getTaskId()));
+
+            workflowManager.start();
+            workflowManager.submitTask(runId, root);
+
+            Set<TaskId> executed = Sets.newHashSet();
+            executed.add(tasks.poll(timing.milliseconds(), TimeUnit.MILLISECONDS));
+            executed.add(tasks.poll(timing.milliseconds(), TimeUnit.MILLISECONDS));
+            Assert.assertEquals(executed, Sets.newHashSet(task1.getTaskId(), task3.getTaskId()));
+            timing.sleepABit();
+            Assert.assertNull(tasks.peek());
+        }
+        finally
+        {
+            closeWorkflow(workflowManager);
+        }
+    }
+
+    @Test
+    public void testLargeBatch() throws Exception
+    {
+        final int TASK_QTY = 50;
+
+        // together the tasks are larger than jute.maxbuffer - they must be queued in several transactions
+        TaskType taskType = new TaskType("test", "1", true);
+        String metaData = Strings.repeat("x", 30 * 1024);
+        List<Task> children = Lists.newArrayList();
+        for ( int i = 0; i < TASK_QTY; ++i )
+        {
+            children.add(new Task(new TaskId(), taskType, Lists.newArrayList(), ImmutableMap.of("data", metaData)));
+        }
+
+        Set<TaskId> executed = Sets.newConcurrentHashSet();
+        CountDownLatch latch = new CountDownLatch(TASK_QTY);
+        TaskExecutor taskExecutor = (w, t) -> () -> {
+            executed.add(t.getTaskId());
+            latch.countDown();
+            return new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "");
+        };
+        WorkflowManager workflowManager = WorkflowManagerBuilder.builder()
+            .addingTaskExecutor(taskExecutor, 10, taskType)
+            .withCurator(curator, "test", "1")
+            .build();
+        try
+        {
+            workflowManager.start();
+            workflowManager.submitTask(new Task(new TaskId(), children));
+
+            Assert.assertTrue(timing.awaitLatch(latch));
+            Assert.assertEquals(executed, children.stream().map(Task::getTaskId).collect(Collectors.toSet()));
+        }
+        finally
+        {
+            closeWorkflow(workflowManager);
+        }
+    }
+
     @Test
     public void testMultiClientSimple() throws Exception
     {
@@ -52,9 +52,8 @@ public class TestParentNodeDeletion extends BaseForTests
         final String namespace = "test";
         final String workflowPath = "/" + namespace + "-" + VERSION;
 
-        try ( CuratorFramework curator = newCurator() )
+        try ( CuratorFramework curator = newCurator(); WorkflowManager workflowManager = buildWorkflow(curator, namespace) )
         {
-            WorkflowManager workflowManager = buildWorkflow(curator, namespace);
             RunId runId = submitTask(workflowManager);
             assertTask(workflowManager, runId);
 
@@ -0,0 +1,310 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+import com.nirmata.workflow.admin.StandardAutoCleaner;
+import com.nirmata.workflow.details.WorkflowManagerImpl;
+import com.nirmata.workflow.details.ZooKeeperConstants;
+import com.nirmata.workflow.events.WorkflowEvent;
+import com.nirmata.workflow.events.WorkflowListenerManager;
+import com.nirmata.workflow.executor.TaskExecutionStatus;
+import com.nirmata.workflow.executor.TaskExecutor;
+import com.nirmata.workflow.models.RunId;
+import com.nirmata.workflow.models.Task;
+import com.nirmata.workflow.models.TaskExecutionResult;
+import com.nirmata.workflow.models.TaskId;
+import com.nirmata.workflow.models.TaskType;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.zookeeper.data.Stat;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestRunDataTtl extends BaseForTests
+{
+    private static final String EXTENDED_TYPES_PROPERTY = "zookeeper.extendedTypesEnabled";
+    private static final String CONTAINER_CHECK_PROPERTY = "znode.container.checkIntervalMs";
+
+    private static final long MAX_WAIT_MS = TimeUnit.SECONDS.toMillis(15);
+
+    private final TaskType taskType = new TaskType("test", "1", true);
+
+    @Test
+    public void testTtl() throws Exception
+    {
+        System.setProperty(EXTENDED_TYPES_PROPERTY, "true");
+        System.setProperty(CONTAINER_CHECK_PROPERTY, "100");
+        try
+        {
+            server.restart();
+
+            CountDownLatch latch = new CountDownLatch(1);
+            WorkflowManagerImpl workflowManager = newWorkflowManager(latch, Duration.ofSeconds(1), Duration.ofDays(1));
+            try
+            {
+                workflowManager.start();
+                Assert.assertTrue(workflowManager.getRunDataExpiry().isTtlEnabled());
+
+                workflowManager.submitTask(new Task(new TaskId(), taskType));
+                Assert.assertTrue(timing.awaitLatch(latch));
+
+                // the auto cleaner doesn't run - ZooKeeper deletes the run's nodes
+                Assert.assertTrue(waitForNoRuns(workflowManager));
+                Assert.assertTrue(waitForNoChildren(workflowManager, ZooKeeperConstants.getRunSummaryParentPath()));
+                Assert.assertTrue(waitForNoChildren(workflowManager, ZooKeeperConstants.getCompletedTaskParentPath()));
+                Assert.assertTrue(waitForNoChildren(workflowManager, ZooKeeperConstants.getStartedTasksParentPath()));
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(workflowManager);
+            }
+        }
+        finally
+        {
+            System.clearProperty(EXTENDED_TYPES_PROPERTY);
+            System.clearProperty(CONTAINER_CHECK_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testLongRunningRun() throws Exception
+    {
+        System.setProperty(EXTENDED_TYPES_PROPERTY, "true");
+        System.setProperty(CONTAINER_CHECK_PROPERTY, "100");
+        try
+        {
+            server.restart();
+
+            CountDownLatch startedLatch = new CountDownLatch(1);
+            CountDownLatch continueLatch = new CountDownLatch(1);
+            TaskExecutor taskExecutor = (manager, task) -> () -> {
+                startedLatch.countDown();
+                try
+                {
+                    continueLatch.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "");
+            };
+            WorkflowManagerImpl workflowManager = (WorkflowManagerImpl)WorkflowManagerBuilder.builder()
+                .addingTaskExecutor(taskExecutor, 10, taskType)
+                .withCurator(curator, "test", "1")
+                .withRunDataTtl(Duration.ofSeconds(1), Duration.ofDays(1))
+                .withRunChunkSize(64)
+                .build();
+            try
+            {
+                workflowManager.start();
+
+                Task task = new Task(new TaskId(), taskType, Lists.newArrayList(), ImmutableMap.of("data", Strings.repeat("x", 256)));
+                RunId runId = workflowManager.submitTask(task);
+                Assert.assertTrue(timing.awaitLatch(startedLatch));
+
+                // the run, summary and chunk nodes of a run that hasn't completed are persistent - they outlive
+                // the TTL. Task nodes are TTL nodes from the start.
+                TimeUnit.SECONDS.sleep(3);
+                Assert.assertTrue(exists(workflowManager, ZooKeeperConstants.getRunPath(runId)));
+                Assert.assertTrue(exists(workflowManager, ZooKeeperConstants.getRunSummaryPath(runId)));
+                Assert.assertTrue(exists(workflowManager, ZooKeeperConstants.getRunChunkPath(runId, 0)));
+                Assert.assertFalse(exists(workflowManager, workflowManager.getTaskPaths().getStartedTaskPath(runId, task.getTaskId())));
+
+                // once the run completes all of its nodes expire
+                continueLatch.countDown();
+                Assert.assertTrue(waitForNoRuns(workflowManager));
+                Assert.assertTrue(waitForNoChildren(workflowManager, ZooKeeperConstants.getRunChunkParentPath(runId)));
+                Assert.assertTrue(waitForNoChildren(workflowManager, ZooKeeperConstants.getRunSummaryParentPath()));
+                Assert.assertTrue(waitForNoChildren(workflowManager, ZooKeeperConstants.getCompletedTaskParentPath()));
+                Assert.assertTrue(waitForNoChildren(workflowManager, ZooKeeperConstants.getStartedTasksParentPath()));
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(workflowManager);
+            }
+        }
+        finally
+        {
+            System.clearProperty(EXTENDED_TYPES_PROPERTY);
+            System.clearProperty(CONTAINER_CHECK_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testListenerEvents() throws Exception
+    {
+        System.setProperty(EXTENDED_TYPES_PROPERTY, "true");
+        try
+        {
+            server.restart();
+
+            AtomicInteger executionQty = new AtomicInteger();
+            TaskExecutor taskExecutor = (manager, task) -> () -> {
+                executionQty.incrementAndGet();
+                return new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "");
+            };
+            WorkflowManagerImpl workflowManager = (WorkflowManagerImpl)WorkflowManagerBuilder.builder()
+                .addingTaskExecutor(taskExecutor, 10, taskType)
+                .withCurator(curator, "test", "1")
+                .withRunDataTtl(Duration.ofMinutes(10), Duration.ofDays(1))
+                .build();
+            WorkflowListenerManager workflowListenerManager = null;
+            try
+            {
+                BlockingQueue<WorkflowEvent> eventQueue = Queues.newLinkedBlockingQueue();
+                workflowListenerManager = workflowManager.newWorkflowListenerManager();
+                workflowListenerManager.getListenable().addListener(eventQueue::add);
+                workflowManager.start();
+                workflowListenerManager.start();
+                Assert.assertTrue(workflowManager.getRunDataExpiry().isTtlEnabled());
+
+                Task task = new Task(new TaskId(), taskType);
+                RunId runId = workflowManager.submitTask(task);
+                Assert.assertTrue(waitForCompletion(workflowManager, runId));
+                timing.sleepABit();
+
+                // recreating the run's nodes as TTL nodes is reported as an update - not as a new run
+                Set<WorkflowEvent> expected = Sets.newHashSet(
+                    new WorkflowEvent(WorkflowEvent.EventType.RUN_STARTED, runId),
+                    new WorkflowEvent(WorkflowEvent.EventType.TASK_STARTED, runId, task.getTaskId()),
+                    new WorkflowEvent(WorkflowEvent.EventType.TASK_COMPLETED, runId, task.getTaskId()),
+                    new WorkflowEvent(WorkflowEvent.EventType.RUN_UPDATED, runId)
+                );
+                List<WorkflowEvent> events = Lists.newArrayList(eventQueue);
+                Assert.assertEquals(events.size(), expected.size(), events.toString());
+                Assert.assertEquals(Sets.newHashSet(events), expected);
+                Assert.assertEquals(executionQty.get(), 1);
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(workflowListenerManager);
+                CloseableUtils.closeQuietly(workflowManager);
+            }
+        }
+        finally
+        {
+            System.clearProperty(EXTENDED_TYPES_PROPERTY);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testAutoCleanerConflict()
+    {
+        WorkflowManagerBuilder.builder()
+            .withAutoCleaner(new StandardAutoCleaner(Duration.ofDays(1)), Duration.ofMinutes(1))
+            .withRunDataTtl(Duration.ofDays(1), Duration.ofMinutes(1));
+    }
+
+    @Test
+    public void testFallbackToAutoCleaner() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        WorkflowManagerImpl workflowManager = newWorkflowManager(latch, Duration.ofMillis(1), Duration.ofMillis(1));
+        try
+        {
+            workflowManager.start();
+            Assert.assertFalse(workflowManager.getRunDataExpiry().isTtlEnabled());
+
+            workflowManager.submitTask(new Task(new TaskId(), taskType));
+            Assert.assertTrue(timing.awaitLatch(latch));
+
+            Assert.assertTrue(waitForNoRuns(workflowManager));
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(workflowManager);
+        }
+    }
+
+    private WorkflowManagerImpl newWorkflowManager(CountDownLatch latch, Duration ttl, Duration fallbackRunPeriod)
+    {
+        TaskExecutor taskExecutor = (manager, task) -> () -> {
+            latch.countDown();
+            return new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "");
+        };
+        return (WorkflowManagerImpl)WorkflowManagerBuilder.builder()
+            .addingTaskExecutor(taskExecutor, 10, taskType)
+            .withCurator(curator, "test", "1")
+            .withRunDataTtl(ttl, fallbackRunPeriod)
+            .build();
+    }
+
+    private int getChildQty(WorkflowManagerImpl workflowManager, String path) throws Exception
+    {
+        // parents are containers - ZooKeeper deletes them once they are empty
+        Stat stat = workflowManager.getCurator().checkExists().forPath(path);
+        return (stat != null) ? stat.getNumChildren() : 0;
+    }
+
+    private boolean exists(WorkflowManagerImpl workflowManager, String path) throws Exception
+    {
+        return workflowManager.getCurator().checkExists().forPath(path) != null;
+    }
+
+    private boolean waitForCompletion(WorkflowManager workflowManager, RunId runId) throws InterruptedException
+    {
+        long startMs = System.currentTimeMillis();
+        while ( (System.currentTimeMillis() - startMs) < MAX_WAIT_MS )
+        {
+            if ( workflowManager.getAdmin().getRunInfo(runId).isComplete() )
+            {
+                return true;
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        return false;
+    }
+
+    private boolean waitForNoChildren(WorkflowManagerImpl workflowManager, String path) throws Exception
+    {
+        long startMs = System.currentTimeMillis();
+        while ( (System.currentTimeMillis() - startMs) < MAX_WAIT_MS )
+        {
+            if ( getChildQty(workflowManager, path) == 0 )
+            {
+                return true;
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        return false;
+    }
+
+    private boolean waitForNoRuns(WorkflowManager workflowManager) throws InterruptedException
+    {
+        long startMs = System.currentTimeMillis();
+        while ( (System.currentTimeMillis() - startMs) < MAX_WAIT_MS )
+        {
+            if ( workflowManager.getAdmin().getRunIds().isEmpty() )
+            {
+                return true;
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        return false;
+    }
+}
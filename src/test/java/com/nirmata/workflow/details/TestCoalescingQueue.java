@@ -0,0 +1,128 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.nirmata.workflow.models.RunId;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class TestCoalescingQueue
+{
+    @Test
+    public void testCoalescing() throws InterruptedException
+    {
+        CoalescingQueue<RunId> queue = new CoalescingQueue<>(10);
+        RunId runId1 = new RunId();
+        RunId runId2 = new RunId();
+        Assert.assertTrue(queue.add(runId1));
+        Assert.assertTrue(queue.add(runId2));
+        Assert.assertTrue(queue.add(new RunId(runId1.getId())));
+        Assert.assertTrue(queue.add(runId1));
+        Assert.assertEquals(queue.size(), 2);
+
+        // first-added order
+        Assert.assertEquals(queue.poll(0, TimeUnit.MILLISECONDS), runId1);
+        Assert.assertEquals(queue.poll(0, TimeUnit.MILLISECONDS), runId2);
+        Assert.assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
+
+        // once removed, an item can be added again
+        Assert.assertTrue(queue.add(runId1));
+        Assert.assertEquals(queue.size(), 1);
+        Assert.assertFalse(queue.clearOverflowed());
+    }
+
+    @Test
+    public void testBound() throws InterruptedException
+    {
+        CoalescingQueue<RunId> queue = new CoalescingQueue<>(2);
+        RunId runId = new RunId();
+        Assert.assertTrue(queue.add(runId));
+        Assert.assertTrue(queue.add(new RunId()));
+        Assert.assertFalse(queue.add(new RunId()));
+        Assert.assertTrue(queue.add(runId));    // already pending - not dropped
+        Assert.assertEquals(queue.size(), 2);
+
+        Assert.assertTrue(queue.clearOverflowed());
+        Assert.assertFalse(queue.clearOverflowed());
+        Assert.assertEquals(queue.size(), 2);
+
+        queue.poll(0, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(queue.add(new RunId()));
+        Assert.assertFalse(queue.clearOverflowed());
+    }
+
+    @Test
+    public void testMarkOverflowed() throws InterruptedException
+    {
+        CoalescingQueue<RunId> queue = new CoalescingQueue<>(10);
+        queue.markOverflowed();
+
+        // an overflowed queue returns immediately so that the consumer can re-evaluate everything
+        long startMs = System.currentTimeMillis();
+        Assert.assertNull(queue.poll(1, TimeUnit.MINUTES));
+        Assert.assertTrue((System.currentTimeMillis() - startMs) < TimeUnit.SECONDS.toMillis(10));
+        Assert.assertTrue(queue.clearOverflowed());
+        Assert.assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+
+        RunId runId = new RunId();
+        queue.add(runId);
+        queue.markOverflowed();
+        Assert.assertEquals(queue.poll(1, TimeUnit.MINUTES), runId);
+        queue.clear();
+        Assert.assertEquals(queue.size(), 0);
+        Assert.assertFalse(queue.clearOverflowed());
+    }
+
+    @Test
+    public void testOverflowSharding() throws InterruptedException
+    {
+        final int WORKER_QTY = 4;
+        final int RUN_QTY = 100;
+
+        // each worker's queue only holds a few runs - most runs are dropped
+        List<CoalescingQueue<RunId>> queues = IntStream.range(0, WORKER_QTY).mapToObj(i -> new CoalescingQueue<RunId>(2)).collect(Collectors.toList());
+        List<RunId> runIds = IntStream.range(0, RUN_QTY).mapToObj(i -> new RunId()).collect(Collectors.toList());
+        runIds.forEach(runId -> queues.get(Scheduler.getWorkerIndex(runId, WORKER_QTY)).add(runId));
+
+        // an overflowed worker re-evaluates exactly the runs it owns - together the workers cover each run once
+        List<String> ids = runIds.stream().map(RunId::getId).collect(Collectors.toList());
+        Set<RunId> evaluated = Sets.newHashSet();
+        for ( int workerIndex = 0; workerIndex < WORKER_QTY; ++workerIndex )
+        {
+            CoalescingQueue<RunId> queue = queues.get(workerIndex);
+            Assert.assertTrue(queue.clearOverflowed());
+            List<RunId> workerRunIds = Scheduler.getWorkerRunIds(ids, workerIndex, WORKER_QTY);
+            for ( RunId runId = queue.poll(0, TimeUnit.MILLISECONDS); runId != null; runId = queue.poll(0, TimeUnit.MILLISECONDS) )
+            {
+                Assert.assertTrue(workerRunIds.contains(runId));
+            }
+            for ( RunId runId : workerRunIds )
+            {
+                Assert.assertEquals(Scheduler.getWorkerIndex(runId, WORKER_QTY), workerIndex);
+                Assert.assertTrue(evaluated.add(runId));
+            }
+        }
+        Assert.assertEquals(evaluated, Sets.newHashSet(runIds));
+        Assert.assertTrue(Scheduler.getWorkerRunIds(Lists.newArrayList(), 0, WORKER_QTY).isEmpty());
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.nirmata.workflow.executor.TaskExecutionStatus;
+import com.nirmata.workflow.models.TaskExecutionResult;
+import com.nirmata.workflow.serialization.Serializer;
+import com.nirmata.workflow.serialization.StandardSerializer;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.zookeeper.data.Stat;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestDecodedDataCache
+{
+    private final Serializer serializer = new StandardSerializer();
+
+    @Test
+    public void testVersions()
+    {
+        DecodedDataCache cache = new DecodedDataCache(serializer, 10);
+        byte[] bytes = serializer.serialize(new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "test"));
+
+        TaskExecutionResult result = cache.get(newChildData("/a", 1, 0, bytes), TaskExecutionResult.class);
+        Assert.assertEquals(result.getMessage(), "test");
+        Assert.assertSame(cache.get(newChildData("/a", 1, 0, bytes), TaskExecutionResult.class), result);
+
+        Assert.assertNotSame(cache.get(newChildData("/a", 2, 1, bytes), TaskExecutionResult.class), result);
+        Assert.assertEquals(cache.size(), 1);
+
+        cache.remove("/a");
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testTypes()
+    {
+        // the node of a chunked run is decoded both as the run and as its summary
+        DecodedDataCache cache = new DecodedDataCache(serializer, 10);
+        byte[] bytes = serializer.serialize(new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "test"));
+        ChildData data = newChildData("/a", 1, 0, bytes);
+
+        TaskExecutionResult result = cache.get(data, TaskExecutionResult.class);
+        String message = cache.get(data, String.class, TestDecodedDataCache::decodeMessage);
+        Assert.assertEquals(message, "test");
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertSame(cache.get(data, TaskExecutionResult.class), result);
+        Assert.assertSame(cache.get(data, String.class, TestDecodedDataCache::decodeMessage), message);
+
+        cache.remove("/a");
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    private static String decodeMessage(byte[] bytes)
+    {
+        return new String(new StandardSerializer().deserialize(bytes, TaskExecutionResult.class).getMessage());
+    }
+
+    private ChildData newChildData(String path, long mzxid, int version, byte[] bytes)
+    {
+        Stat stat = new Stat();
+        stat.setMzxid(mzxid);
+        stat.setVersion(version);
+        return new ChildData(path, stat, bytes);
+    }
+}
@@ -79,7 +79,7 @@ public class TestDisruptedScheduler
         final CuratorFramework curator;
         final WorkflowManager workflowManager;
 
-        private Client(int id, TestingCluster cluster, Set<TaskId> executedTasks, CountDownLatch executedTasksLatch)
+        private Client(int id, TestingCluster cluster, Set<TaskId> executedTasks, CountDownLatch executedTasksLatch, boolean standby)
         {
             curator = CuratorFrameworkFactory.builder().connectString(cluster.getConnectString()).retryPolicy(new ExponentialBackoffRetry(10, 3)).build();
             curator.start();
@@ -98,6 +98,7 @@ public class TestDisruptedScheduler
                 .addingTaskExecutor(taskExecutor, 10, taskType)
                 .withCurator(curator, "test", "1")
                 .withInstanceName("i-" + id)
+                .withSchedulerStandby(standby)
                 .build();
             workflowManager.start();
         }
@@ -112,9 +113,20 @@ public class TestDisruptedScheduler
 
     @Test
     public void testDisruptedScheduler() throws Exception
+    {
+        runDisruptedScheduler(false);
+    }
+
+    @Test
+    public void testDisruptedStandbyScheduler() throws Exception
+    {
+        runDisruptedScheduler(true);
+    }
+
+    private void runDisruptedScheduler(boolean standby) throws Exception
     {
         final int QTY = 3;
-        IntStream.range(0, QTY).forEach(i -> clients.add(new Client(i, cluster, executedTasks, executedTasksLatch)));
+        IntStream.range(0, QTY).forEach(i -> clients.add(new Client(i, cluster, executedTasks, executedTasksLatch, standby)));
 
         Optional<Client> clientOptional = Optional.empty();
         for ( int i = 0; !clientOptional.isPresent() && (i < 3); ++i )
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.collect.Lists;
+import com.nirmata.workflow.details.internalmodels.RunnableTask;
+import com.nirmata.workflow.models.ExecutableTask;
+import com.nirmata.workflow.models.RunId;
+import com.nirmata.workflow.models.Task;
+import com.nirmata.workflow.models.TaskId;
+import com.nirmata.workflow.models.TaskType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class TestRunState
+{
+    private final TaskType taskType = new TaskType("test", "1", true);
+
+    @Test
+    public void testFanOutFanIn()
+    {
+        Task task4 = new Task(new TaskId("task4"), taskType);
+        Task task3 = new Task(new TaskId("task3"), taskType, Lists.newArrayList(task4));
+        Task task2 = new Task(new TaskId("task2"), taskType, Lists.newArrayList(task4));
+        Task task1 = new Task(new TaskId("task1"), taskType, Lists.newArrayList(task2, task3));
+        Task root = new Task(new TaskId("root"), Lists.newArrayList(task1));
+        RunState runState = newRunState(root);
+
+        Assert.assertEquals(taskIds(runState.takeReadyTasks()), Lists.newArrayList("task1"));
+        Assert.assertTrue(runState.takeReadyTasks().isEmpty());
+
+        runState.taskCompleted(new TaskId("task1"));
+        Assert.assertEquals(taskIds(runState.takeReadyTasks()).stream().sorted().collect(Collectors.toList()), Lists.newArrayList("task2", "task3"));
+
+        runState.taskCompleted(new TaskId("task2"));
+        Assert.assertTrue(runState.takeReadyTasks().isEmpty());
+        runState.taskCompleted(new TaskId("task3"));
+        Assert.assertEquals(taskIds(runState.takeReadyTasks()), Lists.newArrayList("task4"));
+        Assert.assertFalse(runState.isComplete());
+
+        runState.taskCompleted(new TaskId("task4"));
+        Assert.assertTrue(runState.isComplete());
+    }
+
+    @Test
+    public void testStartedAndSubTaskRuns()
+    {
+        Task task2 = new Task(new TaskId("task2"), taskType);
+        Task task1 = new Task(new TaskId("task1"), taskType, Lists.newArrayList(task2));
+        RunState runState = newRunState(task1);
+
+        runState.taskStarted(new TaskId("task1"));
+        Assert.assertTrue(runState.takeReadyTasks().isEmpty());
+
+        RunId subTaskRunId = new RunId();
+        runState.taskWaitingOnSubTaskRun(subTaskRunId, new TaskId("task1"));
+        Assert.assertTrue(runState.hasResult(new TaskId("task1")));
+        Assert.assertTrue(runState.takeReadyTasks().isEmpty());
+
+        runState.subTaskRunCompleted(subTaskRunId);
+        Assert.assertEquals(taskIds(runState.takeReadyTasks()), Lists.newArrayList("task2"));
+    }
+
+    @Test
+    public void testDispatchFailed()
+    {
+        Task task2 = new Task(new TaskId("task2"), taskType);
+        Task task1 = new Task(new TaskId("task1"), taskType, Lists.newArrayList(task2));
+        RunState runState = newRunState(task1);
+
+        Assert.assertEquals(taskIds(runState.takeReadyTasks()), Lists.newArrayList("task1"));
+        runState.taskDispatchFailed(new TaskId("task1"));
+        Assert.assertEquals(taskIds(runState.takeReadyTasks()), Lists.newArrayList("task1"));
+
+        // a failure reported after the task completed is ignored
+        runState.taskCompleted(new TaskId("task1"));
+        runState.taskDispatchFailed(new TaskId("task1"));
+        Assert.assertEquals(taskIds(runState.takeReadyTasks()), Lists.newArrayList("task2"));
+    }
+
+    private RunState newRunState(Task task)
+    {
+        RunId runId = new RunId();
+        RunnableTaskDagBuilder builder = new RunnableTaskDagBuilder(task);
+        Map<TaskId, ExecutableTask> tasks = builder.getTasks().values().stream()
+            .collect(Collectors.toMap(Task::getTaskId, t -> new ExecutableTask(runId, t.getTaskId(), t.isExecutable() ? t.getTaskType() : new TaskType("", "", false), t.getMetaData(), t.isExecutable())));
+        return new RunState(runId, new RunnableTask(tasks, builder.getEntries(), LocalDateTime.now()), 0);
+    }
+
+    private List<String> taskIds(List<ExecutableTask> tasks)
+    {
+        return tasks.stream().map(t -> t.getTaskId().getId()).collect(Collectors.toList());
+    }
+}
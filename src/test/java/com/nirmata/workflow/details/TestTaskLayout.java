@@ -0,0 +1,136 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.google.common.io.Resources;
+import com.nirmata.workflow.BaseForTests;
+import com.nirmata.workflow.WorkflowManager;
+import com.nirmata.workflow.WorkflowManagerBuilder;
+import com.nirmata.workflow.admin.TaskInfo;
+import com.nirmata.workflow.admin.TaskLayout;
+import com.nirmata.workflow.executor.TaskExecutionStatus;
+import com.nirmata.workflow.executor.TaskExecutor;
+import com.nirmata.workflow.models.RunId;
+import com.nirmata.workflow.models.Task;
+import com.nirmata.workflow.models.TaskExecutionResult;
+import com.nirmata.workflow.models.TaskType;
+import com.nirmata.workflow.serialization.JsonSerializerMapper;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.utils.CloseableUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class TestTaskLayout extends BaseForTests
+{
+    private static final TaskType taskType = new TaskType("test", "1", true);
+
+    @Test
+    public void testHierarchical() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(6);
+        WorkflowManager workflowManager = newWorkflowManager(TaskLayout.HIERARCHICAL, false, latch);
+        try
+        {
+            workflowManager.start();
+            RunId runId = workflowManager.submitTask(getTask());
+            Assert.assertTrue(timing.awaitLatch(latch));
+            awaitCompletion(workflowManager, runId);
+
+            CuratorFramework nmCurator = ((WorkflowManagerImpl)workflowManager).getCurator();
+            Assert.assertEquals(nmCurator.getChildren().forPath(ZooKeeperConstants.getStartedTasksParentPath()).size(), 1);
+            Assert.assertEquals(nmCurator.getChildren().forPath(ZooKeeperConstants.getCompletedTaskParentPath()).size(), 1);
+            Assert.assertEquals(nmCurator.getChildren().forPath(ZooKeeperConstants.getStartedTaskRunPath(runId)).size(), 6);
+            Assert.assertEquals(nmCurator.getChildren().forPath(ZooKeeperConstants.getCompletedTaskRunPath(runId)).size(), 6);
+
+            List<TaskInfo> taskInfos = workflowManager.getAdmin().getTaskInfo(runId);
+            Assert.assertEquals(taskInfos.size(), 6);
+            Assert.assertTrue(taskInfos.stream().allMatch(TaskInfo::isComplete));
+
+            Assert.assertTrue(workflowManager.getAdmin().clean(runId));
+            Assert.assertEquals(nmCurator.checkExists().forPath(ZooKeeperConstants.getStartedTasksParentPath()).getNumChildren(), 0);
+            Assert.assertEquals(nmCurator.checkExists().forPath(ZooKeeperConstants.getCompletedTaskParentPath()).getNumChildren(), 0);
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(workflowManager);
+        }
+    }
+
+    @Test
+    public void testMigration() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(6);
+        WorkflowManager flatWorkflowManager = newWorkflowManager(TaskLayout.FLAT, false, latch);
+        RunId runId;
+        try
+        {
+            flatWorkflowManager.start();
+            runId = flatWorkflowManager.submitTask(getTask());
+            Assert.assertTrue(timing.awaitLatch(latch));
+            awaitCompletion(flatWorkflowManager, runId);
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(flatWorkflowManager);
+        }
+
+        WorkflowManager dualReadWorkflowManager = newWorkflowManager(TaskLayout.HIERARCHICAL, true, new CountDownLatch(0));
+        List<TaskInfo> taskInfos = dualReadWorkflowManager.getAdmin().getTaskInfo(runId);
+        Assert.assertEquals(taskInfos.size(), 6);
+        Assert.assertTrue(taskInfos.stream().allMatch(TaskInfo::isComplete));
+
+        Assert.assertEquals(dualReadWorkflowManager.getAdmin().migrateTaskLayout(), 12);
+        Assert.assertEquals(dualReadWorkflowManager.getAdmin().migrateTaskLayout(), 0);
+
+        WorkflowManager hierarchicalWorkflowManager = newWorkflowManager(TaskLayout.HIERARCHICAL, false, new CountDownLatch(0));
+        taskInfos = hierarchicalWorkflowManager.getAdmin().getTaskInfo(runId);
+        Assert.assertEquals(taskInfos.size(), 6);
+        Assert.assertTrue(taskInfos.stream().allMatch(TaskInfo::isComplete));
+        taskInfos.forEach(taskInfo -> Assert.assertTrue(hierarchicalWorkflowManager.getTaskExecutionResult(runId, taskInfo.getTaskId()).isPresent()));
+    }
+
+    private WorkflowManager newWorkflowManager(TaskLayout layout, boolean dualRead, CountDownLatch latch)
+    {
+        TaskExecutor taskExecutor = (m, t) -> () -> {
+            latch.countDown();
+            return new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "");
+        };
+        return WorkflowManagerBuilder.builder()
+            .addingTaskExecutor(taskExecutor, 10, taskType)
+            .withCurator(curator, "test", "1")
+            .withTaskLayout(layout, dualRead)
+            .build();
+    }
+
+    private Task getTask() throws Exception
+    {
+        String json = Resources.toString(Resources.getResource("tasks.json"), Charset.defaultCharset());
+        JsonSerializerMapper jsonSerializerMapper = new JsonSerializerMapper();
+        return jsonSerializerMapper.get(jsonSerializerMapper.getMapper().readTree(json), Task.class);
+    }
+
+    private void awaitCompletion(WorkflowManager workflowManager, RunId runId) throws InterruptedException
+    {
+        for ( int i = 0; !workflowManager.getAdmin().getRunInfo(runId).isComplete(); ++i )
+        {
+            Assert.assertTrue(i < 100, "Run did not complete: " + runId);
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2014 Nirmata, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nirmata.workflow.details;
+
+import com.nirmata.workflow.models.RunId;
+import com.nirmata.workflow.models.TaskId;
+import com.nirmata.workflow.serialization.JDKSerializer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.util.Base64;
+
+public class TestZooKeeperConstants
+{
+    // RunIds serialized by versions that held the ID string
+    private static final String SERIALIZED_UUID_RUN_ID = "rO0ABXNyACFjb20ubmlybWF0YS53b3JrZmxvdy5tb2RlbHMuUnVuSWTO0paPSxbxogIAAHhyAB5jb20ubmlybWF0YS53b3JrZmxvdy5tb2RlbHMuSWTTkoTYw5boVQIAAUwAAmlkdAASTGphdmEvbGFuZy9TdHJpbmc7eHB0ACQ0YjljMGE1Mi02ZjBlLTRjMWUtOWQzYS0xZjJlM2Q0YzViNmE=";
+    private static final String SERIALIZED_STRING_RUN_ID = "rO0ABXNyACFjb20ubmlybWF0YS53b3JrZmxvdy5tb2RlbHMuUnVuSWTO0paPSxbxogIAAHhyAB5jb20ubmlybWF0YS53b3JrZmxvdy5tb2RlbHMuSWTTkoTYw5boVQIAAUwAAmlkdAASTGphdmEvbGFuZy9TdHJpbmc7eHB0AAZteS1ydW4=";
+
+    @Test
+    public void testTaskPaths()
+    {
+        RunId runId = new RunId();
+        TaskId taskId = new TaskId("my-task");
+        String parentPath = ZooKeeperConstants.getCompletedTaskParentPath();
+        for ( String path : new String[]{ZooKeeperConstants.getCompletedTaskPath(runId, taskId), ZooKeeperConstants.getHierarchicalCompletedTaskPath(runId, taskId)} )
+        {
+            Assert.assertTrue(ZooKeeperConstants.isTaskPath(parentPath, path));
+            Assert.assertEquals(ZooKeeperConstants.getRunIdFromTaskPath(parentPath, path), runId.getId());
+            Assert.assertEquals(ZooKeeperConstants.getTaskIdFromTaskPath(parentPath, path), taskId.getId());
+            Assert.assertEquals(ZooKeeperConstants.parseRunIdFromTaskPath(parentPath, path), runId);
+            Assert.assertEquals(ZooKeeperConstants.parseTaskIdFromTaskPath(parentPath, path), taskId);
+        }
+        Assert.assertEquals(ZooKeeperConstants.getRunIdFromCompletedTasksPath(ZooKeeperConstants.getCompletedTaskPath(runId, taskId)), runId.getId());
+        Assert.assertEquals(ZooKeeperConstants.getTaskIdFromCompletedTasksPath(ZooKeeperConstants.getCompletedTaskPath(runId, taskId)), taskId.getId());
+
+        // the parent, hierarchical run nodes and nodes of other parents aren't tasks
+        String runPath = ZooKeeperConstants.getCompletedTaskRunPath(runId);
+        Assert.assertFalse(ZooKeeperConstants.isTaskPath(parentPath, runPath));
+        Assert.assertNull(ZooKeeperConstants.parseTaskIdFromTaskPath(parentPath, runPath));
+        Assert.assertEquals(ZooKeeperConstants.parseRunIdFromTaskPath(parentPath, runPath), runId);
+        Assert.assertFalse(ZooKeeperConstants.isTaskPath(parentPath, parentPath));
+        Assert.assertNull(ZooKeeperConstants.parseRunIdFromTaskPath(parentPath, parentPath));
+        Assert.assertNull(ZooKeeperConstants.parseRunIdFromTaskPath(parentPath, ZooKeeperConstants.getStartedTaskPath(runId, taskId)));
+        Assert.assertNull(ZooKeeperConstants.parseRunIdFromTaskPath(parentPath, parentPath + "-other/" + runId.getId()));
+        Assert.assertFalse(ZooKeeperConstants.isTaskPath(parentPath, ZooKeeperConstants.getHierarchicalCompletedTaskPath(runId, taskId) + "/child"));
+
+        Assert.assertEquals(ZooKeeperConstants.parseRunIdFromRunPath(ZooKeeperConstants.getRunPath(runId)), runId);
+        Assert.assertEquals(ZooKeeperConstants.getRunIdFromRunPath(ZooKeeperConstants.getRunPath(runId)), runId.getId());
+    }
+
+    @Test
+    public void testIds()
+    {
+        // UUIDs are held compactly but are otherwise the same as the original string
+        String uuid = "4b9c0a52-6f0e-4c1e-9d3a-1f2e3d4c5b6a";
+        RunId runId = new RunId(uuid);
+        Assert.assertEquals(runId.getId(), uuid);
+        Assert.assertSame(runId.getId(), runId.getId());
+        Assert.assertEquals(new RunId("/runs/" + uuid, 6, 42), runId);
+        Assert.assertEquals(new RunId("/runs/" + uuid, 6, 42).hashCode(), runId.hashCode());
+        Assert.assertEquals(new RunId().getId().length(), uuid.length());
+        Assert.assertEquals(new RunId(new RunId().getId()).getId().length(), uuid.length());
+
+        // anything else is held as is
+        String upperCase = uuid.toUpperCase();
+        Assert.assertEquals(new RunId(upperCase).getId(), upperCase);
+        Assert.assertNotEquals(new RunId(upperCase), runId);
+        Assert.assertEquals(new RunId("my-run").getId(), "my-run");
+        Assert.assertFalse(new RunId("").isValid());
+        Assert.assertNotEquals(new TaskId(uuid), runId);
+
+        Assert.assertSame(new RunId(uuid).intern(), runId.intern());
+        Assert.assertSame(new TaskId("my-task").intern(), new TaskId("my-task").intern());
+
+        JDKSerializer serializer = new JDKSerializer();
+        Assert.assertEquals(serializer.deserialize(Base64.getDecoder().decode(SERIALIZED_UUID_RUN_ID), RunId.class), runId);
+        Assert.assertEquals(serializer.deserialize(Base64.getDecoder().decode(SERIALIZED_STRING_RUN_ID), RunId.class), new RunId("my-run"));
+        Assert.assertEquals(serializer.deserialize(serializer.serialize(runId), RunId.class), runId);
+        Assert.assertEquals(serializer.deserialize(serializer.serialize(runId), RunId.class).getId(), uuid);
+        Assert.assertEquals(serializer.deserialize(serializer.serialize(new RunId("my-run")), RunId.class), new RunId("my-run"));
+    }
+}
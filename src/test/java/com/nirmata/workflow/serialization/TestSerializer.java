@@ -16,9 +16,13 @@
 package com.nirmata.workflow.serialization;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.io.Resources;
+import com.nirmata.workflow.admin.RunInfo;
+import com.nirmata.workflow.details.RunnableTaskDagBuilder;
+import com.nirmata.workflow.details.internalmodels.RunSummary;
 import com.nirmata.workflow.details.internalmodels.RunnableTask;
 import com.nirmata.workflow.details.internalmodels.RunnableTaskDag;
 import com.nirmata.workflow.details.internalmodels.StartedTask;
@@ -33,6 +37,7 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.LocalDateTime;
 import java.util.Collection;
@@ -95,6 +100,57 @@ public class TestSerializer
         Assert.assertEquals(runnableTask, unRunnableTask);
     }
 
+    @Test
+    public void testRunInfo()
+    {
+        Task task = randomTask(0);
+        RunnableTaskDagBuilder builder = new RunnableTaskDagBuilder(task);
+        Map<TaskId, ExecutableTask> tasks = builder.getTasks().values().stream()
+            .collect(Collectors.toMap(Task::getTaskId, t -> new ExecutableTask(new RunId(), t.getTaskId(), t.getTaskType(), t.getMetaData(), t.isExecutable())));
+        LocalDateTime completionTime = random.nextBoolean() ? LocalDateTime.now() : null;
+        RunnableTask runnableTask = new RunnableTask(tasks, builder.getEntries(), builder.getDependents(), LocalDateTime.now(), completionTime, new RunId());
+
+        RunId runId = new RunId();
+        RunInfo runInfo = new RunInfo(runId, runnableTask.getStartTimeUtc(), completionTime);
+        Serializer standardSerializer = new StandardSerializer();
+        Assert.assertEquals(standardSerializer.deserializeRunInfo(runId, standardSerializer.serialize(runnableTask)), runInfo);
+
+        // the default implementation decodes the entire run
+        Serializer defaultSerializer = new Serializer()
+        {
+            @Override
+            public <T> byte[] serialize(T obj)
+            {
+                return standardSerializer.serialize(obj);
+            }
+
+            @Override
+            public <T> T deserialize(byte[] data, Class<T> clazz)
+            {
+                return standardSerializer.deserialize(data, clazz);
+            }
+        };
+        Assert.assertEquals(defaultSerializer.deserializeRunInfo(runId, defaultSerializer.serialize(runnableTask)), runInfo);
+    }
+
+    @Test
+    public void testRunnableTaskDependents()
+    {
+        Task task = randomTask(0);
+        RunnableTaskDagBuilder builder = new RunnableTaskDagBuilder(task);
+        Map<TaskId, ExecutableTask> tasks = builder.getTasks().values().stream()
+            .collect(Collectors.toMap(Task::getTaskId, t -> new ExecutableTask(new RunId(), t.getTaskId(), t.getTaskType(), t.getMetaData(), t.isExecutable())));
+        RunnableTask runnableTask = new RunnableTask(tasks, builder.getEntries(), builder.getDependents(), LocalDateTime.now(), null, null);
+        Assert.assertEquals(runnableTask, new RunnableTask(tasks, builder.getEntries(), runnableTask.getStartTimeUtc()));
+
+        // runs written before dependents were stored must still load
+        ObjectNode node = (ObjectNode)newRunnableTask(runnableTask);
+        node.remove("taskDependents");
+        RunnableTask unRunnableTask = getRunnableTask(fromString(nodeToString(node)));
+        Assert.assertEquals(runnableTask, unRunnableTask);
+        Assert.assertEquals(unRunnableTask.getTaskDependents(), builder.getDependents());
+    }
+
     @Test
     public void testTaskExecutionResult()
     {
@@ -107,6 +163,20 @@ public class TestSerializer
         Assert.assertEquals(taskExecutionResult, unTaskExecutionResult);
     }
 
+    @Test
+    public void testRunSummary()
+    {
+        LocalDateTime completionTime = random.nextBoolean() ? LocalDateTime.now() : null;
+        RunId parentRunId = random.nextBoolean() ? new RunId() : null;
+        RunSummary runSummary = new RunSummary(LocalDateTime.now(), completionTime, parentRunId, random.nextInt(100), random.nextInt(100));
+        JsonNode node = newRunSummary(runSummary);
+        String str = nodeToString(node);
+        System.out.println(str);
+
+        RunSummary unRunSummary = getRunSummary(fromString(str));
+        Assert.assertEquals(runSummary, unRunSummary);
+    }
+
     @Test
     public void testStartedTask()
     {
@@ -174,6 +244,134 @@ public class TestSerializer
         Assert.assertEquals(task, unTask);
     }
 
+    @Test
+    public void testStreamingCompatibility() throws IOException
+    {
+        RunnableTask runnableTask = randomRunnableTask(randomTask(0));
+        List<Object> objects = randomModels(runnableTask);
+
+        // the streaming encoding must be byte-for-byte the same as the tree encoding and each must read the other
+        JsonSerializerMapper mapper = new JsonSerializerMapper();
+        Serializer serializer = new StandardSerializer();
+        for ( Object obj : objects )
+        {
+            byte[] treeBytes = getMapper().writeValueAsBytes(mapper.make(obj));
+            byte[] streamedBytes = serializer.serialize(obj);
+            Assert.assertEquals(new String(streamedBytes, StandardCharsets.UTF_8), new String(treeBytes, StandardCharsets.UTF_8));
+            Assert.assertEquals(serializer.deserialize(treeBytes, obj.getClass()), obj);
+            Assert.assertEquals(mapper.get(getMapper().readTree(streamedBytes), obj.getClass()), obj);
+        }
+
+        // older formats without optional fields must still load
+        ObjectNode node = (ObjectNode)newRunnableTask(runnableTask);
+        node.remove("taskDependents");
+        Assert.assertEquals(serializer.deserialize(toBytes(node), RunnableTask.class), runnableTask);
+        node = (ObjectNode)newStartedTask(new StartedTask("test", LocalDateTime.now(Clock.systemUTC()), 0));
+        node.remove("progress");
+        Assert.assertEquals(serializer.deserialize(toBytes(node), StartedTask.class).getProgress(), 0);
+    }
+
+    @Test
+    public void testCustomCodec()
+    {
+        JsonCodec<RunId> runIdCodec = JsonCodec.of(runId -> getMapper().getNodeFactory().textNode(runId.getId()), node -> new RunId(node.asText()));
+        JsonCodecRegistry codecs = JsonCodecRegistry.STANDARD.with(RunId.class, runIdCodec);
+
+        RunId runId = new RunId();
+        Serializer serializer = new StandardSerializer(codecs);
+        Assert.assertEquals(serializer.deserialize(serializer.serialize(runId), RunId.class), runId);
+        JsonSerializerMapper mapper = new JsonSerializerMapper(codecs);
+        Assert.assertEquals(mapper.get(mapper.make(runId), RunId.class), runId);
+
+        // the built-in models are still available and the standard registry is unchanged
+        StartedTask startedTask = new StartedTask("test", LocalDateTime.now(Clock.systemUTC()), 0);
+        Assert.assertEquals(serializer.deserialize(serializer.serialize(startedTask), StartedTask.class), startedTask);
+        try
+        {
+            new StandardSerializer().serialize(runId);
+            Assert.fail("RunId should not have a standard codec");
+        }
+        catch ( NullPointerException expected )
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBinarySerializer()
+    {
+        Task task = randomTask(0);
+        RunnableTask runnableTask = randomRunnableTask(task);
+        Serializer binarySerializer = new BinarySerializer();
+        Serializer jsonSerializer = new StandardSerializer();
+        for ( Object obj : randomModels(runnableTask) )
+        {
+            byte[] binaryBytes = binarySerializer.serialize(obj);
+            Assert.assertTrue(BinarySerializer.isBinary(binaryBytes));
+            Assert.assertEquals(binarySerializer.deserialize(binaryBytes, obj.getClass()), obj);
+
+            // mixed clusters - each serializer reads the other's format
+            Assert.assertEquals(jsonSerializer.deserialize(binaryBytes, obj.getClass()), obj);
+            Assert.assertEquals(binarySerializer.deserialize(jsonSerializer.serialize(obj), obj.getClass()), obj);
+        }
+
+        RunId runId = new RunId();
+        RunInfo runInfo = new RunInfo(runId, runnableTask.getStartTimeUtc(), runnableTask.getCompletionTimeUtc().orElse(null));
+        Assert.assertEquals(binarySerializer.deserializeRunInfo(runId, binarySerializer.serialize(runnableTask)), runInfo);
+        Assert.assertEquals(jsonSerializer.deserializeRunInfo(runId, binarySerializer.serialize(runnableTask)), runInfo);
+        Assert.assertEquals(binarySerializer.deserializeRunInfo(runId, jsonSerializer.serialize(runnableTask)), runInfo);
+
+        // non-UUID ids, non-ASCII strings and sub-millisecond times must round trip exactly
+        TaskExecutionResult result = new TaskExecutionResult(TaskExecutionStatus.SUCCESS, "", Maps.newHashMap(), new RunId("not-a-uuid"), LocalDateTime.of(1969, 7, 20, 20, 17, 40, 123456789));
+        Assert.assertEquals(binarySerializer.deserialize(binarySerializer.serialize(result), TaskExecutionResult.class), result);
+        ExecutableTask executableTask = new ExecutableTask(new RunId(), new TaskId("\u00e9t\u00e9"), randomTaskType(), Maps.newHashMap(), true);
+        Assert.assertEquals(binarySerializer.deserialize(binarySerializer.serialize(executableTask), ExecutableTask.class), executableTask);
+
+        int binaryLength = binarySerializer.serialize(runnableTask).length;
+        int jsonLength = jsonSerializer.serialize(runnableTask).length;
+        Assert.assertTrue(binaryLength < (jsonLength / 2), "binary: " + binaryLength + " json: " + jsonLength);
+    }
+
+    @Test
+    public void testCompressingSerializer()
+    {
+        RunnableTask runnableTask = randomRunnableTask(randomTask(0));
+        StartedTask startedTask = new StartedTask("test", LocalDateTime.now(Clock.systemUTC()), 0);
+        Serializer jsonSerializer = new StandardSerializer();
+        int runLength = jsonSerializer.serialize(runnableTask).length;
+        CompressingSerializer serializer = new CompressingSerializer(jsonSerializer, 128, runLength / 2);
+
+        // small payloads are unchanged so that instances without compression can still read them
+        byte[] startedTaskBytes = serializer.serialize(startedTask);
+        Assert.assertEquals(startedTaskBytes, jsonSerializer.serialize(startedTask));
+        Assert.assertEquals(serializer.deserialize(startedTaskBytes, StartedTask.class), startedTask);
+
+        byte[] runBytes = serializer.serialize(runnableTask);
+        Assert.assertTrue(CompressingSerializer.isCompressed(runBytes));
+        Assert.assertTrue(runBytes.length < runLength);
+        Assert.assertEquals(serializer.deserialize(runBytes, RunnableTask.class), runnableTask);
+        RunId runId = new RunId();
+        Assert.assertEquals(serializer.deserializeRunInfo(runId, runBytes), jsonSerializer.deserializeRunInfo(runId, jsonSerializer.serialize(runnableTask)));
+
+        CompressionStats stats = serializer.getStats();
+        Assert.assertEquals(stats.getPayloadQty(), 2);
+        Assert.assertEquals(stats.getCompressedQty(), 1);
+        Assert.assertEquals(stats.getCompressedInputBytes(), runLength);
+        Assert.assertEquals(stats.getCompressedOutputBytes(), runBytes.length);
+        Assert.assertTrue(stats.getCompressionRatio() > 1.0);
+        Assert.assertEquals(stats.getUncompressedSizeDistribution().values().stream().mapToLong(Long::longValue).sum(), 2);
+        Assert.assertEquals(stats.getStoredSizeDistribution().values().stream().mapToLong(Long::longValue).sum(), 2);
+        // the stored size of the run is its compressed size
+        int runBucket = stats.getStoredSizeDistribution().keySet().stream().filter(bound -> runBytes.length <= bound).findFirst().orElseThrow(IllegalStateException::new);
+        int startedTaskBucket = stats.getStoredSizeDistribution().keySet().stream().filter(bound -> startedTaskBytes.length <= bound).findFirst().orElseThrow(IllegalStateException::new);
+        Assert.assertEquals(stats.getStoredSizeDistribution().get(runBucket).longValue(), (runBucket == startedTaskBucket) ? 2 : 1);
+        Assert.assertEquals(stats.getOversizedQty(), (runBytes.length > (runLength / 2)) ? 1 : 0);
+
+        // decorates the binary serializer as well
+        Serializer binarySerializer = new CompressingSerializer(new BinarySerializer(), 0);
+        Assert.assertEquals(binarySerializer.deserialize(binarySerializer.serialize(runnableTask), RunnableTask.class), runnableTask);
+    }
+
     @Test
     public void testAlternateSerializers()
     {
@@ -185,6 +383,29 @@ public class TestSerializer
         Assert.assertEquals(startedTask, unStartedTask);
     }
 
+    private RunnableTask randomRunnableTask(Task task)
+    {
+        RunnableTaskDagBuilder builder = new RunnableTaskDagBuilder(task);
+        RunId runId = new RunId();
+        Map<TaskId, ExecutableTask> tasks = builder.getTasks().values().stream()
+            .collect(Collectors.toMap(Task::getTaskId, t -> new ExecutableTask(runId, t.getTaskId(), t.getTaskType(), t.getMetaData(), t.isExecutable())));
+        return new RunnableTask(tasks, builder.getEntries(), builder.getDependents(), LocalDateTime.now(), random.nextBoolean() ? LocalDateTime.now() : null, random.nextBoolean() ? new RunId() : null);
+    }
+
+    private List<Object> randomModels(RunnableTask runnableTask)
+    {
+        return Lists.newArrayList(
+            randomTask(0),
+            runnableTask,
+            new RunnableTaskDag(new TaskId(), randomTasks()),
+            new ExecutableTask(new RunId(), new TaskId(), randomTaskType(), randomMap(), random.nextBoolean()),
+            new TaskExecutionResult(TaskExecutionStatus.FAILED_STOP, Integer.toString(random.nextInt()), randomMap(), new RunId()),
+            new RunSummary(LocalDateTime.now(), null, new RunId(), random.nextInt(100), random.nextInt(100)),
+            new StartedTask(Integer.toString(random.nextInt()), LocalDateTime.now(Clock.systemUTC()), random.nextInt(100)),
+            randomTaskType()
+        );
+    }
+
     private Task randomTask(int index)
     {
         List<Task> childrenTasks = Lists.newArrayList();